@@ -0,0 +1,37 @@
+package com.jairo.accounts;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs JMH benchmarks like {@link org.openjdk.jmh.Main}, same arguments, but also writes the results as JSON to
+ * target/benchmarks/jmh-[timestamp].json so runs can be compared over time, unless a result file or format is given
+ * (-rf, -rff).
+ */
+public class BenchmarkRunner {
+
+    private static final Path RESULTS_DIRECTORY = Path.of("target", "benchmarks");
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLineOptions);
+        if (!commandLineOptions.getResultFormat().hasValue() && !commandLineOptions.getResult().hasValue()) {
+            Files.createDirectories(RESULTS_DIRECTORY);
+            Path result = RESULTS_DIRECTORY.resolve("jmh-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+            options.resultFormat(ResultFormatType.JSON).result(result.toString());
+            System.out.println("JSON results: " + result);
+        }
+        new Runner(options.build()).run();
+    }
+}
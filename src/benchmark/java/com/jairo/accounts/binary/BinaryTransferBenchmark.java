@@ -0,0 +1,138 @@
+package com.jairo.accounts.binary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Module;
+import com.jairo.accounts.endpoints.dto.AccountDTO;
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.javalin.JavalinApp;
+import com.jairo.accounts.service.ExternalTransferMonitoringService;
+import com.jairo.accounts.service.WithdrawalService;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.PollingPolicy;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Internal transfers per second from a single client, over http one request at a time and over the binary protocol
+ * with windows of 1 to 1000 pipelined requests, in memory or journaled. With a journal each http request waits for its
+ * own sync, while the binary server makes a whole window durable with one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryTransferBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"false", "true"})
+    private boolean journal;
+
+    @Param({"1", "100", "1000"})
+    private int window;
+
+    private Path journalFile;
+    private ExternalTransferMonitoringService monitoringService;
+    private JavalinApp javalinApp;
+    private HttpClient httpClient;
+    private HttpRequest internalTransfer;
+    private BinaryTransferClient binaryClient;
+    private long senderAccountId;
+    private long receiverAccountId;
+    private long requestId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        Config.Builder config = AppModule.defaultConfig()
+                .pollingPolicy(PollingPolicy.fixed(TimeUnit.HOURS.toMillis(1)))
+                .binaryProtocol(0);
+        if (journal) {
+            journalFile = Files.createTempFile("journal", ".bin");
+            config.journal(journalFile, Config.DEFAULT_GROUP_COMMIT_WINDOW_IN_MICROS);
+        }
+        WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub();
+        monitoringService = new ExternalTransferMonitoringService(withdrawalService, config.build());
+        //created here rather than by the app so its threads can be stopped once done
+        Module services = binder -> {
+            binder.bind(WithdrawalService.class).toInstance(withdrawalService);
+            binder.bind(ExternalTransferMonitoringService.class).toInstance(monitoringService);
+        };
+        javalinApp = new JavalinApp(config.build(), services);
+        javalinApp.getApp().start(0);
+        String baseUrl = "http://localhost:" + javalinApp.getApp().port();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        senderAccountId = createAccount(baseUrl, "1000000000");
+        receiverAccountId = createAccount(baseUrl, "0");
+        internalTransfer = post(baseUrl + "/accounts/transfer/internal/from/%s/to/%s/%s".formatted(senderAccountId, receiverAccountId, AMOUNT));
+        int port = javalinApp.getBinaryTransferServer().orElseThrow().getPort();
+        binaryClient = BinaryTransferClient.connect(new InetSocketAddress("localhost", port));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        binaryClient.close();
+        javalinApp.getApp().stop();
+        monitoringService.shutdown();
+        if (journalFile != null) {
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    private long createAccount(String baseUrl, String initialBalance) throws IOException, InterruptedException {
+        return OBJECT_MAPPER.readValue(send(post(baseUrl + "/accounts/" + initialBalance)), AccountDTO.class).accountId();
+    }
+
+    private static HttpRequest post(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.uri() + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    /**
+     * Not pipelined, the window doesn't apply
+     */
+    @Benchmark
+    public String http() throws IOException, InterruptedException {
+        return send(internalTransfer);
+    }
+
+    /**
+     * Sends a window of transfers then reads their responses, the score is windows per second
+     */
+    @Benchmark
+    public long binary() throws IOException {
+        for (int i = 0; i < window; i++) {
+            binaryClient.internalTransfer(requestId++, senderAccountId, receiverAccountId, AMOUNT);
+        }
+        binaryClient.flush();
+        long lastRequestId = 0;
+        for (int i = 0; i < window; i++) {
+            BinaryTransferClient.Response response = binaryClient.read();
+            if (response.status() != BinaryProtocol.Status.OK) {
+                throw new IllegalStateException("Request " + response.requestId() + " answered " + response.status() + ": " + response.message());
+            }
+            lastRequestId = response.requestId();
+        }
+        return lastRequestId;
+    }
+}
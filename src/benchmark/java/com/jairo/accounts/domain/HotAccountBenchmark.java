@@ -0,0 +1,76 @@
+package com.jairo.accounts.domain;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deposits and withdrawals on a single account shared by every benchmark thread, for each balance representation.
+ * STRIPED is the balance of hot accounts, deposits scale with threads while withdrawals pay for consolidating stripes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotAccountBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"BIG_DECIMAL", "FIXED_POINT", "STRIPED"})
+    private String balanceType;
+
+    private Account account;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BigDecimal initialBalance = BigDecimal.valueOf(1_000_000_000);
+        account = new Account(1L, switch (balanceType) {
+            case "BIG_DECIMAL" -> new BigDecimalBalance(initialBalance);
+            case "FIXED_POINT" -> new FixedPointBalance(initialBalance, 2);
+            case "STRIPED" -> new StripedBalance(initialBalance, 2, 64);
+            default -> throw new IllegalArgumentException(balanceType);
+        });
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void deposit_1thread() {
+        account.deposit(AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void deposit_8threads() {
+        account.deposit(AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void deposit_32threads() {
+        account.deposit(AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void depositAndWithdraw_1thread() {
+        account.deposit(AMOUNT);
+        account.withdraw(AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void depositAndWithdraw_8threads() {
+        account.deposit(AMOUNT);
+        account.withdraw(AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void depositAndWithdraw_32threads() {
+        account.deposit(AMOUNT);
+        account.withdraw(AMOUNT);
+    }
+}
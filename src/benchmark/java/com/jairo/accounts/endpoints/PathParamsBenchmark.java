@@ -0,0 +1,61 @@
+package com.jairo.accounts.endpoints;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the ids and amount of an internal transfer path by {@link PathParams}, compared with the JDK parsers
+ * Javalin validators use, which report malformed input by throwing (and filling the stack trace of) a
+ * {@link NumberFormatException}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathParamsBenchmark {
+
+    @Param({"WELL_FORMED", "MALFORMED"})
+    private String input;
+
+    private String accountId;
+    private String amount;
+
+    @Setup
+    public void setUp() {
+        boolean wellFormed = input.equals("WELL_FORMED");
+        accountId = wellFormed ? "1234567" : "1234567x";
+        amount = wellFormed ? "15000.56" : "15000,56";
+    }
+
+    @Benchmark
+    public Object jdkLong() {
+        try {
+            return Long.valueOf(accountId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Object jdkDecimal() {
+        try {
+            return new BigDecimal(amount);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Object pathParamsLong() {
+        return PathParams.parseLong(accountId);
+    }
+
+    @Benchmark
+    public Object pathParamsDecimal() {
+        return PathParams.parseDecimal(amount);
+    }
+}
@@ -0,0 +1,94 @@
+package com.jairo.accounts.javalin;
+
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.service.WithdrawalService;
+import com.jairo.accounts.service.concurrent.VirtualThreads;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import io.javalin.Javalin;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * External transfer throughput when the withdrawal provider takes 200 millis to accept a request, with request
+ * handling on platform threads and on virtual threads.
+ * <p>
+ * Arguments: [in-flight requests, default 1000] [duration in seconds, default 20]
+ */
+public class ExternalTransferLoadTest {
+
+    private static final long PROVIDER_LATENCY_IN_MILLIS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int inFlightRequests = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int durationInSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.out.printf("Virtual threads available: %s, %d in-flight requests, %d ms provider latency%n",
+                VirtualThreads.isAvailable(), inFlightRequests, PROVIDER_LATENCY_IN_MILLIS);
+        for (boolean useVirtualThreads : new boolean[]{false, true}) {
+            double throughput = run(useVirtualThreads, inFlightRequests, durationInSeconds);
+            System.out.printf("useVirtualThreads=%s: %.1f external transfers/s%n", useVirtualThreads, throughput);
+        }
+        System.exit(0);
+    }
+
+    private static double run(boolean useVirtualThreads, int inFlightRequests, int durationInSeconds) throws Exception {
+        Javalin app = new JavalinApp(AppModule.defaultConfig().useVirtualThreads(useVirtualThreads).build(),
+                binder -> binder.bind(WithdrawalService.class).toInstance(
+                        new WithdrawalServiceStub(PROVIDER_LATENCY_IN_MILLIS, PROVIDER_LATENCY_IN_MILLIS, 0, 0.5)))
+                .getApp()
+                .start(0);
+        try {
+            String baseUrl = "http://localhost:" + app.port();
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+            client.send(post(baseUrl + "/accounts/" + BigDecimal.valueOf(Long.MAX_VALUE).toPlainString()), HttpResponse.BodyHandlers.discarding());
+            URI transferUri = URI.create(baseUrl + "/accounts/transfer/external/from/1/to/address/1");
+
+            //warm up, then measure
+            drive(client, transferUri, inFlightRequests, 5);
+            long start = System.nanoTime();
+            long completed = drive(client, transferUri, inFlightRequests, durationInSeconds);
+            return completed / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            app.stop();
+        }
+    }
+
+    /**
+     * Keeps given number of requests in flight for given duration.
+     * @return number of successful requests
+     */
+    private static long drive(HttpClient client, URI uri, int inFlightRequests, int durationInSeconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(inFlightRequests);
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationInSeconds);
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            client.sendAsync(post(uri.toString()), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        if (e == null && response.statusCode() == 200) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(inFlightRequests);
+        if (failed.get() > 0) {
+            System.out.printf("  %d requests failed%n", failed.get());
+        }
+        return succeeded.get();
+    }
+
+    private static HttpRequest post(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(60)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+}
@@ -0,0 +1,132 @@
+package com.jairo.accounts.javalin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jairo.accounts.endpoints.dto.AccountDTO;
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.service.AsyncWithdrawalService;
+import com.jairo.accounts.service.ExecutorAsyncWithdrawalService;
+import com.jairo.accounts.service.ExternalTransferMonitoringService;
+import com.jairo.accounts.service.WithdrawalService;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.PollingPolicy;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import io.javalin.Javalin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing requests of 1000 external transfers per second with each JSON mapper, as a page or as a streamed array.
+ * The {@code bytes} secondary result is the response bytes per second. Run with {@code -prof gc} for allocations per
+ * request ({@code gc.alloc.rate.norm}), client and server together as both run in the benchmark JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExternalTransfersListingBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int TRANSFERS = 1000;
+
+    @Param({"JACKSON", "STREAMING"})
+    private Config.JsonMapperType jsonMapper;
+
+    private ExternalTransferMonitoringService monitoringService;
+    private ExecutorService withdrawalExecutor;
+    private Javalin app;
+    private HttpClient client;
+    private HttpRequest listPage;
+    private HttpRequest listAll;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ResponseBytes {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        //withdrawals never polled during the benchmark
+        Config config = AppModule.defaultConfig()
+                .pollingPolicy(PollingPolicy.fixed(TimeUnit.HOURS.toMillis(1)))
+                .jsonMapper(jsonMapper)
+                .build();
+        WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub();
+        monitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+        withdrawalExecutor = Executors.newFixedThreadPool(config.getNumberOfWithdrawalThreads());
+        //services created here rather than by the app so their threads can be stopped once done
+        app = new JavalinApp(config, binder -> {
+            binder.bind(WithdrawalService.class).toInstance(withdrawalService);
+            binder.bind(AsyncWithdrawalService.class).toInstance(new ExecutorAsyncWithdrawalService(withdrawalService, withdrawalExecutor));
+            binder.bind(ExternalTransferMonitoringService.class).toInstance(monitoringService);
+        }).getApp().start(0);
+        String baseUrl = "http://localhost:" + app.port();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long senderAccountId = OBJECT_MAPPER.readValue(send(post(baseUrl + "/accounts/1000000000")), AccountDTO.class).accountId();
+        for (int i = 0; i < TRANSFERS; i++) {
+            send(post(baseUrl + "/accounts/transfer/external/from/%s/to/address-%s/1.25".formatted(senderAccountId, i)));
+        }
+        listPage = get(baseUrl + "/accounts/%s/transfers/external?limit=%s".formatted(senderAccountId, TRANSFERS));
+        listAll = get(baseUrl + "/accounts/%s/transfers/external".formatted(senderAccountId));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+        monitoringService.shutdown();
+        withdrawalExecutor.shutdownNow();
+    }
+
+    private static HttpRequest post(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static HttpRequest get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).build();
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.uri() + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    //body read and dropped, so client allocations don't depend on the response size
+    private long sendCountingBytes(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        long bytes = 0;
+        try (InputStream body = response.body()) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = body.read(buffer)) >= 0; ) {
+                bytes += read;
+            }
+        }
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.uri() + " answered " + response.statusCode());
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public void listPage(ResponseBytes responseBytes) throws IOException, InterruptedException {
+        responseBytes.bytes += sendCountingBytes(listPage);
+    }
+
+    @Benchmark
+    public void listAll(ResponseBytes responseBytes) throws IOException, InterruptedException {
+        responseBytes.bytes += sendCountingBytes(listAll);
+    }
+}
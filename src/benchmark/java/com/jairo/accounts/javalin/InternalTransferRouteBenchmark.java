@@ -0,0 +1,122 @@
+package com.jairo.accounts.javalin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.util.Modules;
+import com.jairo.accounts.endpoints.AccountsResource;
+import com.jairo.accounts.endpoints.TransfersResource;
+import com.jairo.accounts.endpoints.dto.AccountDTO;
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.service.ExternalTransferMonitoringService;
+import com.jairo.accounts.service.WithdrawalService;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.PollingPolicy;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import io.javalin.Javalin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Internal transfers per second through the http path, with handlers bound once to singleton resources
+ * ({@code HANDLER_TABLE}, as {@link JavalinApp} does) or with the previous wiring replayed
+ * ({@code PER_REQUEST_INJECTION}): a resource built by Guice on every request, after path parameters have been
+ * parsed by Javalin validators.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InternalTransferRouteBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String INTERNAL_TRANSFER_PATH = "/accounts/transfer/internal/from/{senderAccountId}/to/{receiverAccountId}/{amount}";
+
+    @Param({"HANDLER_TABLE", "PER_REQUEST_INJECTION"})
+    private String wiring;
+
+    private ExternalTransferMonitoringService monitoringService;
+    private Javalin app;
+    private HttpClient client;
+    private HttpRequest internalTransfer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        Config config = AppModule.defaultConfig().pollingPolicy(PollingPolicy.fixed(TimeUnit.HOURS.toMillis(1))).build();
+        WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub();
+        monitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+        //created here rather than by the app so its threads can be stopped once done
+        Module services = binder -> {
+            binder.bind(WithdrawalService.class).toInstance(withdrawalService);
+            binder.bind(ExternalTransferMonitoringService.class).toInstance(monitoringService);
+        };
+        app = wiring.equals("HANDLER_TABLE") ? new JavalinApp(config, services).getApp() : perRequestInjectionApp(config, services);
+        app.start(0);
+        String baseUrl = "http://localhost:" + app.port();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long senderAccountId = createAccount(baseUrl, "1000000000");
+        long receiverAccountId = createAccount(baseUrl, "0");
+        internalTransfer = post(baseUrl + "/accounts/transfer/internal/from/%s/to/%s/0.01".formatted(senderAccountId, receiverAccountId));
+    }
+
+    private static Javalin perRequestInjectionApp(Config config, Module services) {
+        Injector injector = Guice.createInjector(Modules.override(new AppModule(config)).with(services, binder -> {
+            binder.bind(AccountsResource.class).in(Scopes.NO_SCOPE);
+            binder.bind(TransfersResource.class).in(Scopes.NO_SCOPE);
+        }));
+        return Javalin.create(javalinConfig -> javalinConfig.validation.register(BigDecimal.class, BigDecimal::new))
+                .post(JavalinApp.CREATE_ACCOUNT, ctx -> injector.getInstance(AccountsResource.class).createAccount(ctx))
+                .post(INTERNAL_TRANSFER_PATH, ctx -> {
+                    ctx.pathParamAsClass("senderAccountId", Long.class).get();
+                    ctx.pathParamAsClass("receiverAccountId", Long.class).get();
+                    ctx.pathParamAsClass("amount", BigDecimal.class).get();
+                    injector.getInstance(TransfersResource.class).internalTransfer(ctx);
+                });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+        monitoringService.shutdown();
+    }
+
+    private long createAccount(String baseUrl, String initialBalance) throws IOException, InterruptedException {
+        return OBJECT_MAPPER.readValue(send(post(baseUrl + "/accounts/" + initialBalance)), AccountDTO.class).accountId();
+    }
+
+    private static HttpRequest post(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.uri() + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String internalTransfer_1thread() throws IOException, InterruptedException {
+        return send(internalTransfer);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String internalTransfer_8threads() throws IOException, InterruptedException {
+        return send(internalTransfer);
+    }
+}
@@ -0,0 +1,316 @@
+package com.jairo.accounts.javalin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jairo.accounts.endpoints.dto.AccountDTO;
+import com.jairo.accounts.endpoints.dto.TransferIdDTO;
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.service.WithdrawalService;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import io.javalin.Javalin;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load test: boots the app in-process on an ephemeral port, creates accounts through the http api, then sends
+ * a mix of requests at a fixed rate whatever the response times. Latency is measured from the time each request was
+ * scheduled to be sent, not from when it actually was, so a server stall is accounted for every request it delayed
+ * (no coordinated omission). Reports throughput and HdrHistogram latency percentiles per endpoint, and writes each
+ * endpoint's percentile distribution to target/benchmarks/load-[endpoint].hgrm for plotting.
+ * <p>
+ * Arguments are key=value options, several of them can be given in a single argument separated by spaces:
+ * <ul>
+ * <li>rate - requests per second, default 1000</li>
+ * <li>duration - measured seconds, default 30</li>
+ * <li>warmup - seconds of load before measuring, default 10</li>
+ * <li>accounts - number of accounts, default 1000</li>
+ * <li>mix - weight of each endpoint, default internal:70,external:10,get:10,list:10</li>
+ * <li>maxInFlight - max requests waiting for a response, scheduled ones wait beyond it, default 10000</li>
+ * <li>virtualThreads - handle requests on virtual threads, default false</li>
+ * <li>providerLatency - min:max millis taken by the withdrawal provider to accept a request, default 0:0</li>
+ * <li>providerUnavailability - ratio of withdrawal requests rejected by the provider, default 0</li>
+ * <li>providerFailure - ratio of accepted withdrawals ending up FAILED, default 0.5</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final Path RESULTS_DIRECTORY = Path.of("target", "benchmarks");
+
+    //latencies are recorded in micros, up to 1 minute with 3 significant digits
+    private static final long MAX_LATENCY_IN_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private static final int RECENT_TRANSFERS = 1024;
+
+    private enum Endpoint {
+        INTERNAL("internal"),
+        EXTERNAL("external"),
+        GET("get"),
+        LIST("list");
+
+        private final String option;
+
+        Endpoint(String option) {
+            this.option = option;
+        }
+    }
+
+    private static final class Stats {
+        private final Recorder latencies = new Recorder(MAX_LATENCY_IN_MICROS, 3);
+        private final LongAdder succeeded = new LongAdder();
+        //answered with a 4xx, e.g. not enough funds
+        private final LongAdder rejected = new LongAdder();
+        //answered with a 5xx or not answered at all
+        private final LongAdder failed = new LongAdder();
+
+        private void record(long latencyInNanos, int status) {
+            latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyInNanos), MAX_LATENCY_IN_MICROS));
+            (status >= 200 && status < 300 ? succeeded : status >= 400 && status < 500 ? rejected : failed).increment();
+        }
+
+        private void reset() {
+            latencies.reset();
+            succeeded.reset();
+            rejected.reset();
+            failed.reset();
+        }
+    }
+
+    private final Map<String, String> options;
+    private final int numberOfAccounts;
+    private final Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+    private final int totalWeight;
+    private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    //paths of recent external transfers, read by GET requests
+    private final AtomicReferenceArray<String> recentTransfers = new AtomicReferenceArray<>(RECENT_TRANSFERS);
+    private final AtomicLong externalTransfers = new AtomicLong();
+    private long[] accountIds;
+    private String baseUrl;
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.numberOfAccounts = intOption("accounts", 1000);
+        if (numberOfAccounts < 2) {
+            throw new IllegalArgumentException("Internal transfers need at least 2 accounts");
+        }
+        int weights = 0;
+        for (String entry : options.getOrDefault("mix", "internal:70,external:10,get:10,list:10").split(",")) {
+            String[] endpointAndWeight = entry.split(":");
+            Endpoint endpoint = Endpoint.valueOf(endpointAndWeight[0].trim().toUpperCase(Locale.ROOT));
+            int weight = Integer.parseInt(endpointAndWeight[1].trim());
+            mix.put(endpoint, weight);
+            weights += weight;
+        }
+        if (weights <= 0) {
+            throw new IllegalArgumentException("Mix must have a positive weight");
+        }
+        this.totalWeight = weights;
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            for (String option : arg.trim().split("\\s+")) {
+                if (!option.isEmpty()) {
+                    String[] keyAndValue = option.split("=", 2);
+                    if (keyAndValue.length != 2) {
+                        throw new IllegalArgumentException("Options are key=value: " + option);
+                    }
+                    options.put(keyAndValue[0], keyAndValue[1]);
+                }
+            }
+        }
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private void run() throws Exception {
+        int rate = intOption("rate", 1000);
+        int warmupInSeconds = intOption("warmup", 10);
+        int durationInSeconds = intOption("duration", 30);
+        int maxInFlight = intOption("maxInFlight", 10000);
+        String[] providerLatency = options.getOrDefault("providerLatency", "0:0").split(":");
+        WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub(Long.parseLong(providerLatency[0]),
+                Long.parseLong(providerLatency[providerLatency.length - 1]),
+                doubleOption("providerUnavailability", 0), doubleOption("providerFailure", 0.5));
+        Javalin app = new JavalinApp(AppModule.defaultConfig().useVirtualThreads(Boolean.parseBoolean(options.get("virtualThreads"))).build(),
+                binder -> binder.bind(WithdrawalService.class).toInstance(withdrawalService))
+                .getApp()
+                .start(0);
+        try {
+            baseUrl = "http://localhost:" + app.port();
+            System.out.printf("%d requests/s for %d s after %d s of warmup, %d accounts, mix %s, options %s%n",
+                    rate, durationInSeconds, warmupInSeconds, numberOfAccounts, mix, options);
+            createAccounts();
+            Semaphore inFlight = new Semaphore(maxInFlight);
+            drive(rate, warmupInSeconds, inFlight);
+            //warmup requests answered during the measurement would be recorded with it
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+            stats.values().forEach(Stats::reset);
+            long start = System.nanoTime();
+            drive(rate, durationInSeconds, inFlight);
+            //requests still in flight are part of the measurement, their latency grows while we wait for them
+            if (!inFlight.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+                System.out.println("Some requests never got a response");
+            }
+            report((System.nanoTime() - start) / 1e9);
+        } finally {
+            app.stop();
+        }
+    }
+
+    private void createAccounts() throws IOException, InterruptedException {
+        accountIds = new long[numberOfAccounts];
+        for (int i = 0; i < numberOfAccounts; i++) {
+            HttpResponse<String> response = client.send(post("/accounts/1000000000"), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Account creation answered " + response.statusCode() + ": " + response.body());
+            }
+            accountIds[i] = OBJECT_MAPPER.readValue(response.body(), AccountDTO.class).accountId();
+        }
+    }
+
+    /**
+     * Sends requests at given rate for given duration, the i-th one being due at start + i / rate whatever happened to
+     * the previous ones.
+     */
+    private void drive(int rate, int durationInSeconds, Semaphore inFlight) throws InterruptedException {
+        long start = System.nanoTime();
+        long requests = (long) rate * durationInSeconds;
+        for (long i = 0; i < requests; i++) {
+            long dueAt = start + i * TimeUnit.SECONDS.toNanos(1) / rate;
+            for (long wait = dueAt - System.nanoTime(); wait > 0; wait = dueAt - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquire();
+            send(nextEndpoint(), dueAt, inFlight);
+        }
+    }
+
+    private Endpoint nextEndpoint() {
+        int draw = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            draw -= entry.getValue();
+            if (draw < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    private void send(Endpoint endpoint, long dueAt, Semaphore inFlight) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int account = random.nextInt(accountIds.length);
+        long accountId = accountIds[account];
+        long remembered = Math.min(externalTransfers.get(), RECENT_TRANSFERS);
+        String recentTransfer = remembered == 0 ? null : recentTransfers.get(random.nextInt((int) remembered));
+        if (endpoint == Endpoint.GET && recentTransfer == null) {
+            //no external transfer to get yet
+            endpoint = Endpoint.LIST;
+        }
+        HttpRequest request = switch (endpoint) {
+            case INTERNAL -> {
+                long receiverId = accountIds[(account + 1 + random.nextInt(accountIds.length - 1)) % accountIds.length];
+                yield post("/accounts/transfer/internal/from/%d/to/%d/0.01".formatted(accountId, receiverId));
+            }
+            case EXTERNAL -> post("/accounts/transfer/external/from/%d/to/address-%d/0.01".formatted(accountId, random.nextInt(1000)));
+            case GET -> get(recentTransfer);
+            case LIST -> get("/accounts/%d/transfers/external?limit=20".formatted(accountId));
+        };
+        Endpoint sentEndpoint = endpoint;
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, e) -> {
+                    stats.get(sentEndpoint).record(System.nanoTime() - dueAt, e == null ? response.statusCode() : 0);
+                    if (e == null && sentEndpoint == Endpoint.EXTERNAL && response.statusCode() == 200) {
+                        remember(accountId, response.body());
+                    }
+                    inFlight.release();
+                });
+    }
+
+    private void remember(long accountId, String transferIdResponse) {
+        try {
+            TransferIdDTO transferId = OBJECT_MAPPER.readValue(transferIdResponse, TransferIdDTO.class);
+            int slot = (int) (externalTransfers.getAndIncrement() % RECENT_TRANSFERS);
+            recentTransfers.set(slot, "/accounts/%d/transfer/external/%s".formatted(accountId, transferId.transferId()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected external transfer response " + transferIdResponse, e);
+        }
+    }
+
+    private HttpRequest post(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+
+    private void report(double elapsedInSeconds) throws IOException {
+        Files.createDirectories(RESULTS_DIRECTORY);
+        System.out.printf("%-9s %9s %8s %8s %8s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "ok/s", "ok", "4xx", "failed", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "p99.99 ms", "max ms");
+        for (Map.Entry<Endpoint, Stats> entry : stats.entrySet()) {
+            Stats endpointStats = entry.getValue();
+            Histogram histogram = endpointStats.latencies.getIntervalHistogram();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-9s %9.1f %8d %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().option,
+                    endpointStats.succeeded.sum() / elapsedInSeconds,
+                    endpointStats.succeeded.sum(), endpointStats.rejected.sum(), endpointStats.failed.sum(),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getValueAtPercentile(99.99)), millis(histogram.getMaxValue()));
+            Path distribution = RESULTS_DIRECTORY.resolve("load-" + entry.getKey().option + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(distribution))) {
+                //values are in micros, scaled to millis
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println("Percentile distributions written to " + RESULTS_DIRECTORY.resolve("load-*.hgrm"));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
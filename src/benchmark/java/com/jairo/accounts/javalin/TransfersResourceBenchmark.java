@@ -0,0 +1,124 @@
+package com.jairo.accounts.javalin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jairo.accounts.endpoints.dto.AccountDTO;
+import com.jairo.accounts.endpoints.dto.TransferIdDTO;
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.service.AsyncWithdrawalService;
+import com.jairo.accounts.service.ExecutorAsyncWithdrawalService;
+import com.jairo.accounts.service.ExternalTransferMonitoringService;
+import com.jairo.accounts.service.WithdrawalService;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.PollingPolicy;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import io.javalin.Javalin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second through the whole http path: loopback connection, Javalin routing, handler, service call and
+ * JSON serialization of the response. Internal transfer responses have no body, an external transfer is a single
+ * JSON object and a page of the listing holds 100 of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransfersResourceBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ExternalTransferMonitoringService monitoringService;
+    private ExecutorService withdrawalExecutor;
+    private Javalin app;
+    private HttpClient client;
+    private HttpRequest internalTransfer;
+    private HttpRequest getExternalTransfer;
+    private HttpRequest listExternalTransfers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        //withdrawals never polled during the benchmark
+        Config config = AppModule.defaultConfig().pollingPolicy(PollingPolicy.fixed(TimeUnit.HOURS.toMillis(1))).build();
+        WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub();
+        monitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+        withdrawalExecutor = Executors.newFixedThreadPool(config.getNumberOfWithdrawalThreads());
+        //services created here rather than by the app so their threads can be stopped once done
+        app = new JavalinApp(config, binder -> {
+            binder.bind(WithdrawalService.class).toInstance(withdrawalService);
+            binder.bind(AsyncWithdrawalService.class).toInstance(new ExecutorAsyncWithdrawalService(withdrawalService, withdrawalExecutor));
+            binder.bind(ExternalTransferMonitoringService.class).toInstance(monitoringService);
+        }).getApp().start(0);
+        String baseUrl = "http://localhost:" + app.port();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long senderAccountId = createAccount(baseUrl, "1000000000");
+        long receiverAccountId = createAccount(baseUrl, "0");
+        TransferIdDTO transferId = null;
+        for (int i = 0; i < 100; i++) {
+            transferId = OBJECT_MAPPER.readValue(send(post(baseUrl + "/accounts/transfer/external/from/%s/to/address-%s/1"
+                    .formatted(senderAccountId, i))), TransferIdDTO.class);
+        }
+        internalTransfer = post(baseUrl + "/accounts/transfer/internal/from/%s/to/%s/0.01".formatted(senderAccountId, receiverAccountId));
+        getExternalTransfer = HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/%s/transfer/external/%s"
+                .formatted(senderAccountId, transferId.transferId()))).build();
+        listExternalTransfers = HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/%s/transfers/external?limit=100"
+                .formatted(senderAccountId))).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+        monitoringService.shutdown();
+        withdrawalExecutor.shutdownNow();
+    }
+
+    private long createAccount(String baseUrl, String initialBalance) throws IOException, InterruptedException {
+        return OBJECT_MAPPER.readValue(send(post(baseUrl + "/accounts/" + initialBalance)), AccountDTO.class).accountId();
+    }
+
+    private static HttpRequest post(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.uri() + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String internalTransfer_1thread() throws IOException, InterruptedException {
+        return send(internalTransfer);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String internalTransfer_8threads() throws IOException, InterruptedException {
+        return send(internalTransfer);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String getExternalTransfer() throws IOException, InterruptedException {
+        return send(getExternalTransfer);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String listExternalTransfersPage() throws IOException, InterruptedException {
+        return send(listExternalTransfers);
+    }
+}
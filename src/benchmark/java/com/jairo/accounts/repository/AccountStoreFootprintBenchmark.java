@@ -0,0 +1,86 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.Config.AccountStoreType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Retained heap of {@link AccountsRepository} holding N accounts, for each account store and balance type. Heap is
+ * measured after full GCs, before and after the accounts are created. Run it with a heap big enough for the largest
+ * size, e.g. -Xmx16g for 50M accounts, sizes not fitting in the heap are reported as such. Every account starts with
+ * the same initial balance instance, so big decimal balances don't count a {@link BigDecimal} each. The mapped store
+ * keeps balances in a temporary file, off heap.
+ * <p>
+ * Arguments: [comma separated numbers of accounts, default 1000000,10000000,50000000]
+ */
+public class AccountStoreFootprintBenchmark {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100.00");
+
+    public static void main(String[] args) {
+        String sizes = args.length > 0 ? args[0] : "1000000,10000000,50000000";
+        System.out.printf("Max heap: %d MB%n", Runtime.getRuntime().maxMemory() >> 20);
+        for (String size : sizes.split(",")) {
+            int numberOfAccounts = Integer.parseInt(size.trim());
+            for (AccountStoreType accountStoreType : AccountStoreType.values()) {
+                for (Config.BalanceType balanceType : Config.BalanceType.values()) {
+                    Config.Builder config = Config.builder().accountStoreType(accountStoreType);
+                    if (accountStoreType == AccountStoreType.MAPPED_FILE) {
+                        if (balanceType != Config.BalanceType.FIXED_POINT) {
+                            continue;
+                        }
+                        config.mappedAccountStore(temporaryFile());
+                    }
+                    if (balanceType == Config.BalanceType.FIXED_POINT) {
+                        config.fixedPointBalances(2);
+                    }
+                    String result;
+                    try {
+                        long bytes = retainedBytes(config.build(), numberOfAccounts);
+                        result = "%,d MB, %d bytes/account".formatted(bytes >> 20, bytes / numberOfAccounts);
+                    } catch (OutOfMemoryError e) {
+                        result = "doesn't fit in the heap";
+                    }
+                    System.out.printf("%,d accounts, %s store, %s balances: %s%n", numberOfAccounts, accountStoreType, balanceType, result);
+                }
+            }
+        }
+    }
+
+    static Path temporaryFile() {
+        try {
+            Path file = Files.createTempFile("accounts", ".store");
+            file.toFile().deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long retainedBytes(Config config, int numberOfAccounts) {
+        long before = usedHeapAfterGc();
+        AccountsRepository repository = new AccountsRepository(config);
+        for (int i = 0; i < numberOfAccounts; i++) {
+            repository.createNew(INITIAL_BALANCE);
+        }
+        long after = usedHeapAfterGc();
+        Reference.reachabilityFence(repository);
+        return after - before;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
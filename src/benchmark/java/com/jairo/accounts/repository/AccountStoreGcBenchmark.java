@@ -0,0 +1,125 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.engine.TransferEngine;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GC pauses of random internal transfers between N accounts kept on heap ({@link ConcurrentMapAccountStore} with
+ * fixed point balances) and off heap ({@link MappedAccountStore}), plus the duration of a full GC once the transfers
+ * are done. Pauses are the ones reported by the JVM garbage collector beans, concurrent cycles are left out.
+ * <p>
+ * Arguments: [number of accounts, default 10000000] [transferring threads, default 4] [duration in seconds, default 30]
+ */
+public class AccountStoreGcBenchmark {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    public static void main(String[] args) throws Exception {
+        int numberOfAccounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int numberOfThreads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int durationInSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        System.out.printf("Max heap: %d MB, %,d accounts, %d threads, %d s%n", Runtime.getRuntime().maxMemory() >> 20,
+                numberOfAccounts, numberOfThreads, durationInSeconds);
+        PauseRecorder pauses = new PauseRecorder();
+        run("on heap", Config.builder().fixedPointBalances(2).build(), numberOfAccounts, numberOfThreads, durationInSeconds, pauses);
+        run("mapped", Config.builder().fixedPointBalances(2).mappedAccountStore(AccountStoreFootprintBenchmark.temporaryFile()).build(),
+                numberOfAccounts, numberOfThreads, durationInSeconds, pauses);
+        System.exit(0);
+    }
+
+    private static void run(String name, Config config, int numberOfAccounts, int numberOfThreads, int durationInSeconds,
+                            PauseRecorder pauses) throws InterruptedException {
+        AccountsRepository repository = new AccountsRepository(config);
+        for (int i = 0; i < numberOfAccounts; i++) {
+            repository.createNew(INITIAL_BALANCE);
+        }
+        System.gc();
+        TransferEngine transferEngine = new OrderedLockingTransferEngine();
+        LongAdder transfers = new LongAdder();
+        pauses.reset();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationInSeconds);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numberOfThreads; i++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    long sender = random.nextLong(1, numberOfAccounts + 1);
+                    long receiver = random.nextLong(1, numberOfAccounts + 1);
+                    if (sender == receiver) {
+                        continue;
+                    }
+                    Account senderAccount = repository.findById(sender).orElseThrow();
+                    Account receiverAccount = repository.findById(receiver).orElseThrow();
+                    transferEngine.transfer(senderAccount, receiverAccount, AMOUNT);
+                    transfers.increment();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long count = pauses.count.get();
+        long total = pauses.totalInMillis.get();
+        long max = pauses.maxInMillis.get();
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        long fullGcInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fullGcStart);
+        Reference.reachabilityFence(repository);
+        System.out.printf("%s: %,.0f transfers/s, %d GC pauses, total %d ms, max %d ms, full GC %d ms%n", name,
+                transfers.sum() / (double) durationInSeconds, count, total, max, fullGcInMillis);
+    }
+
+    private static final class PauseRecorder implements NotificationListener {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalInMillis = new AtomicLong();
+        private final AtomicLong maxInMillis = new AtomicLong();
+
+        private PauseRecorder() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+
+        void reset() {
+            count.set(0);
+            totalInMillis.set(0);
+            maxInMillis.set(0);
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent") || info.getGcCause().equals("System.gc()")) {
+                return;
+            }
+            long duration = info.getGcInfo().getDuration();
+            count.incrementAndGet();
+            totalInMillis.addAndGet(duration);
+            maxInMillis.accumulateAndGet(duration, Math::max);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.jairo.accounts.repository.journal;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.engine.TransferEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable transfers per second: each operation transfers between two random accounts and waits until the transfer is
+ * synced to disk, as a transfer request does. With many requests in flight a wider group commit window makes more of
+ * them share each sync, at the cost of latency (see the average time mode).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class JournalBenchmark {
+
+    private static final int NUMBER_OF_ACCOUNTS = 10_000;
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+    @Param({"0", "100", "1000", "5000"})
+    private long groupCommitWindowInMicros;
+
+    private Path file;
+    private FileJournal journal;
+    private TransferEngine transferEngine;
+    private Account[] accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("journal", ".bin");
+        journal = new FileJournal(file, groupCommitWindowInMicros);
+        transferEngine = new OrderedLockingTransferEngine(journal);
+        accounts = new Account[NUMBER_OF_ACCOUNTS];
+        for (int i = 0; i < NUMBER_OF_ACCOUNTS; i++) {
+            accounts[i] = new Account((long) i, BigDecimal.valueOf(Long.MAX_VALUE));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%.1f events per sync%n", (double) journal.getAppended() / Math.max(1, journal.getSyncs()));
+        journal.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void durableTransfer() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void durableTransferConcurrent() {
+        transfer();
+    }
+
+    private void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sender = random.nextInt(NUMBER_OF_ACCOUNTS);
+        int receiver = (sender + 1 + random.nextInt(NUMBER_OF_ACCOUNTS - 1)) % NUMBER_OF_ACCOUNTS;
+        transferEngine.transfer(accounts[sender], accounts[receiver], AMOUNT);
+        journal.awaitDurable();
+    }
+}
@@ -0,0 +1,90 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.domain.WithdrawalHistory.Cursor;
+import com.jairo.accounts.endpoints.dto.ExternalTransfersPage;
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.PollingPolicy;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * External transfer listings of an account with a large withdrawal history: first page, a page from the middle of
+ * the history, a page filtered by a state no withdrawal has (the whole history is scanned) and the whole history
+ * streamed. Withdrawals are never polled during the benchmark, so they all stay PROCESSING.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExternalTransfersBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10000", "100000"})
+    private int historySize;
+
+    private ExternalTransferMonitoringService monitoringService;
+    private TransferService transferService;
+    private Long accountId;
+    private Cursor middleCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Config config = AppModule.defaultConfig()
+                .pollingPolicy(PollingPolicy.fixed(TimeUnit.HOURS.toMillis(1)))
+                .build();
+        AccountsRepository accountsRepository = new AccountsRepository(config);
+        WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub();
+        monitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+        transferService = new TransferService(accountsRepository, withdrawalService, null, monitoringService, new OrderedLockingTransferEngine(), Journal.NONE, new MetricsRegistry());
+        accountId = accountsRepository.createNew(BigDecimal.valueOf(1_000_000_000)).getId();
+        for (int i = 0; i < historySize; i++) {
+            transferService.transfer(accountId, new Address("address-" + i), new BigDecimal("0.01"));
+        }
+        ExternalTransfersPage firstHalf = transferService.getExternalTransfers(accountId,
+                new ExternalTransfersQuery(null, Set.of(), Long.MIN_VALUE, Long.MAX_VALUE, historySize / 2));
+        middleCursor = Cursor.parse(firstHalf.nextCursor());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        monitoringService.shutdown();
+    }
+
+    @Benchmark
+    public ExternalTransfersPage firstPage() {
+        return transferService.getExternalTransfers(accountId,
+                new ExternalTransfersQuery(null, Set.of(), Long.MIN_VALUE, Long.MAX_VALUE, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public ExternalTransfersPage middlePage() {
+        return transferService.getExternalTransfers(accountId,
+                new ExternalTransfersQuery(middleCursor, Set.of(), Long.MIN_VALUE, Long.MAX_VALUE, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public ExternalTransfersPage filteredPageWithoutMatches() {
+        return transferService.getExternalTransfers(accountId,
+                new ExternalTransfersQuery(null, Set.of(WithdrawalState.COMPLETED), Long.MIN_VALUE, Long.MAX_VALUE, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public void streamWholeHistory(Blackhole blackhole) {
+        transferService.streamExternalTransfers(accountId, ExternalTransfersQuery.all()).forEach(blackhole::consume);
+    }
+}
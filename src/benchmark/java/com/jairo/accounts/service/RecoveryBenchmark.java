@@ -0,0 +1,115 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.FileJournal;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.Config.AccountStoreType;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.engine.TransferEngine;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Restart time with a given number of accounts: a first run opens the accounts, transfers between them, requests
+ * external withdrawals left PROCESSING and writes a snapshot, then keeps transferring so the journal has a tail after
+ * the snapshot. The app is then restarted from the snapshot and journal tail, and from the whole journal.
+ * <p>
+ * Arguments: [number of accounts, default 10000000] [transfers after the snapshot, default 1000000]
+ * [account store type, default CONCURRENT_MAP], e.g.
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.jairo.accounts.service.RecoveryBenchmark -Dbenchmark=10000000}
+ */
+public class RecoveryBenchmark {
+
+    private static final int PENDING_WITHDRAWALS = 10_000;
+
+    public static void main(String[] args) throws IOException {
+        int numberOfAccounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int transfersAfterSnapshot = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        AccountStoreType accountStoreType = args.length > 2 ? AccountStoreType.valueOf(args[2]) : AccountStoreType.CONCURRENT_MAP;
+        Path directory = Files.createTempDirectory("recovery");
+        try {
+            Config.Builder config = Config.builder()
+                    .monitoringDelayInMillis(100)
+                    .numberOfMonitoringThreads(1)
+                    .accountStoreType(accountStoreType)
+                    .journal(directory.resolve("journal"), 0);
+            Config withoutSnapshots = config.build();
+            Config withSnapshots = config.snapshot(directory.resolve("snapshot"), Long.MAX_VALUE / 2).build();
+            writeHistory(withSnapshots, numberOfAccounts, transfersAfterSnapshot);
+            System.out.printf("%d accounts, %d pending withdrawals: snapshot %d MB, journal %d MB%n", numberOfAccounts, PENDING_WITHDRAWALS,
+                    Files.size(directory.resolve("snapshot")) >> 20, Files.size(directory.resolve("journal")) >> 20);
+
+            System.out.printf("restart from snapshot and %d transfers: %d ms%n", transfersAfterSnapshot, restart(withSnapshots, numberOfAccounts));
+            System.out.printf("restart from whole journal: %d ms%n", restart(withoutSnapshots, numberOfAccounts));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void writeHistory(Config config, int numberOfAccounts, int transfersAfterSnapshot) {
+        try (FileJournal journal = new FileJournal(config)) {
+            AccountsRepository accountsRepository = new AccountsRepository(config, journal);
+            WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub();
+            ExternalTransferMonitoringService monitoringService = new ExternalTransferMonitoringService(withdrawalService, config, journal);
+            RecoveryService recoveryService = new RecoveryService(accountsRepository, monitoringService, journal, config);
+            TransferEngine transferEngine = new OrderedLockingTransferEngine(journal);
+            TransferService transferService = new TransferService(accountsRepository, withdrawalService, null, monitoringService, transferEngine, journal, new MetricsRegistry());
+            Account[] accounts = new Account[numberOfAccounts];
+            for (int i = 0; i < numberOfAccounts; i++) {
+                accounts[i] = accountsRepository.createNew(BigDecimal.valueOf(ThreadLocalRandom.current().nextLong(1_000, 1_000_000), 2));
+            }
+            transfer(accounts, transferEngine, numberOfAccounts);
+            for (int i = 0; i < PENDING_WITHDRAWALS; i++) {
+                transferService.transfer(accounts[i].getId(), new Address("address-" + i), new BigDecimal("0.01"));
+            }
+            journal.awaitDurable();
+            recoveryService.writeSnapshot();
+            transfer(accounts, transferEngine, transfersAfterSnapshot);
+            journal.awaitDurable();
+            recoveryService.shutdown();
+        }
+    }
+
+    private static void transfer(Account[] accounts, TransferEngine transferEngine, int transfers) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < transfers; i++) {
+            Account sender = accounts[random.nextInt(accounts.length)];
+            Account receiver = accounts[random.nextInt(accounts.length)];
+            if (sender != receiver) {
+                transferEngine.transfer(sender, receiver, new BigDecimal("0.01"));
+            }
+        }
+    }
+
+    /**
+     * @return millis until the restarted app could serve requests
+     */
+    private static long restart(Config config, int numberOfAccounts) {
+        System.gc();
+        long start = System.nanoTime();
+        try (FileJournal journal = new FileJournal(config)) {
+            AccountsRepository accountsRepository = new AccountsRepository(config, journal);
+            ExternalTransferMonitoringService monitoringService = new ExternalTransferMonitoringService(new WithdrawalServiceStub(), config, journal);
+            RecoveryService recoveryService = new RecoveryService(accountsRepository, monitoringService, journal, config);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            recoveryService.shutdown();
+            if (accountsRepository.size() != numberOfAccounts) {
+                throw new IllegalStateException("Restored " + accountsRepository.size() + " accounts");
+            }
+            return elapsed;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Internal transfers per second through {@link TransferService#transfer(Long, Long, BigDecimal)}, account lookup and
+ * default (ordered locking) engine included, between account pairs drawn uniformly or from a Zipfian distribution
+ * (exponent 0.99, as in YCSB) where a few accounts take most transfers, like popular merchants do.
+ * <p>
+ * Pairs are drawn before measuring, so sampling isn't measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private static final int NUMBER_OF_PAIRS = 1 << 16;
+
+    private static final double ZIPFIAN_EXPONENT = 0.99;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private String distribution;
+
+    @Param({"10000"})
+    private int numberOfAccounts;
+
+    private ExternalTransferMonitoringService monitoringService;
+    private TransferService transferService;
+    private long[] senders;
+    private long[] receivers;
+
+    @State(Scope.Thread)
+    public static class Pairs {
+        private int next = ThreadLocalRandom.current().nextInt(NUMBER_OF_PAIRS);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Config config = AppModule.defaultConfig().build();
+        AccountsRepository accountsRepository = new AccountsRepository(config);
+        WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub();
+        monitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+        transferService = new TransferService(accountsRepository, withdrawalService, null, monitoringService, new OrderedLockingTransferEngine(), Journal.NONE, new MetricsRegistry());
+        long[] accountIds = new long[numberOfAccounts];
+        for (int i = 0; i < numberOfAccounts; i++) {
+            accountIds[i] = accountsRepository.createNew(BigDecimal.valueOf(1_000_000_000)).getId();
+        }
+        double[] cumulativeProbabilities = distribution.equals("ZIPFIAN") ? zipfian(numberOfAccounts) : null;
+        SplittableRandom random = new SplittableRandom(42);
+        senders = new long[NUMBER_OF_PAIRS];
+        receivers = new long[NUMBER_OF_PAIRS];
+        for (int i = 0; i < NUMBER_OF_PAIRS; i++) {
+            int sender = draw(random, cumulativeProbabilities);
+            int receiver = draw(random, cumulativeProbabilities);
+            senders[i] = accountIds[sender];
+            receivers[i] = accountIds[receiver == sender ? (receiver + 1) % numberOfAccounts : receiver];
+        }
+    }
+
+    private static double[] zipfian(int n) {
+        double[] cumulativeProbabilities = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPFIAN_EXPONENT);
+            cumulativeProbabilities[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulativeProbabilities[rank] /= sum;
+        }
+        return cumulativeProbabilities;
+    }
+
+    private int draw(SplittableRandom random, double[] cumulativeProbabilities) {
+        if (cumulativeProbabilities == null) {
+            return random.nextInt(numberOfAccounts);
+        }
+        int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, numberOfAccounts - 1);
+    }
+
+    private void transfer(Pairs pairs) {
+        int pair = pairs.next++ & (NUMBER_OF_PAIRS - 1);
+        transferService.transfer(senders[pair], receivers[pair], AMOUNT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        monitoringService.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transfer_1thread(Pairs pairs) {
+        transfer(pairs);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void transfer_8threads(Pairs pairs) {
+        transfer(pairs);
+    }
+}
@@ -0,0 +1,83 @@
+package com.jairo.accounts.service.engine;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.service.config.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Internal transfers per second between random pairs of accounts, for each transfer engine (SHARDED_n is the sharded
+ * engine with n shards). Few accounts means most transfers contend on the same accounts, many accounts means they
+ * mostly don't.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferEngineBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"SEQUENTIAL", "ORDERED_LOCKING", "SHARDED_1", "SHARDED_2", "SHARDED_4", "SHARDED_8"})
+    private String transferEngineType;
+
+    @Param({"16", "10000"})
+    private int numberOfAccounts;
+
+    private TransferEngine transferEngine;
+    private Account[] accounts;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        transferEngine = switch (transferEngineType) {
+            case "SEQUENTIAL" -> new SequentialTransferEngine();
+            case "ORDERED_LOCKING" -> new OrderedLockingTransferEngine();
+            default -> new ShardedTransferEngine(Config.builder()
+                    .shardedTransferEngine(Integer.parseInt(transferEngineType.substring("SHARDED_".length())))
+                    .transferRingBufferSize(1024)
+                    .build(), Journal.NONE);
+        };
+        accounts = new Account[numberOfAccounts];
+        for (int i = 0; i < numberOfAccounts; i++) {
+            accounts[i] = new Account((long) i, BigDecimal.valueOf(1_000_000_000));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (transferEngine instanceof ShardedTransferEngine shardedTransferEngine) {
+            shardedTransferEngine.shutdown();
+        }
+    }
+
+    private void randomTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sender = random.nextInt(accounts.length);
+        int receiver = (sender + 1 + random.nextInt(accounts.length - 1)) % accounts.length;
+        transferEngine.transfer(accounts[sender], accounts[receiver], AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void randomPairs_1thread() {
+        randomTransfer();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void randomPairs_8threads() {
+        randomTransfer();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void randomPairs_32threads() {
+        randomTransfer();
+    }
+}
@@ -0,0 +1,69 @@
+package com.jairo.accounts.service.scheduler;
+
+import com.jairo.accounts.service.config.Config.SchedulerType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of re-arming a withdrawal poll timer while a given number of timers are pending. Each operation schedules a
+ * timer and cancels it, so the number of pending timers stays constant through the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SchedulerBenchmark {
+
+    private static final Runnable NO_OP = () -> {
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    private int pendingTimers;
+
+    @Param({"EXECUTOR", "HASHED_WHEEL"})
+    private SchedulerType schedulerType;
+
+    private ExecutorService workers;
+    private Scheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workers = Executors.newFixedThreadPool(4);
+        scheduler = switch (schedulerType) {
+            case EXECUTOR -> new ExecutorScheduler(1);
+            case HASHED_WHEEL -> new HashedWheelScheduler(10, TimeUnit.MILLISECONDS, 512, workers);
+        };
+        for (int i = 0; i < pendingTimers; i++) {
+            scheduler.schedule(NO_OP, randomDelayInMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.shutdown();
+        workers.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean scheduleAndCancel() {
+        return scheduler.schedule(NO_OP, randomDelayInMillis(), TimeUnit.MILLISECONDS).cancel();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean scheduleAndCancelContended() {
+        return scheduler.schedule(NO_OP, randomDelayInMillis(), TimeUnit.MILLISECONDS).cancel();
+    }
+
+    private static long randomDelayInMillis() {
+        //far enough in the future for pending timers to never expire during the run
+        return ThreadLocalRandom.current().nextLong(TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(60));
+    }
+}
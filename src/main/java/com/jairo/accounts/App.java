@@ -1,14 +1,47 @@
 
 package com.jairo.accounts;
 
+import com.jairo.accounts.guice.AppModule;
 import com.jairo.accounts.javalin.JavalinApp;
+import com.jairo.accounts.service.config.Config;
+
+import java.nio.file.Path;
 
 public class App {
 
     public static void main(String[] args) {
-        JavalinApp javalinApp = new JavalinApp();
+        Config.Builder config = AppModule.defaultConfig()
+                .useVirtualThreads(Boolean.getBoolean("accounts.useVirtualThreads"))
+                .stuckWithdrawalsReconcileIntervalInMillis(Long.getLong("accounts.stuckWithdrawalsReconcileIntervalInMillis",
+                        Config.DEFAULT_STUCK_WITHDRAWALS_RECONCILE_INTERVAL_IN_MILLIS));
+        String mappedAccountsFile = System.getProperty("accounts.mappedAccountsFile");
+        if (mappedAccountsFile != null) {
+            config.mappedAccountStore(Path.of(mappedAccountsFile));
+        }
+        String journalFile = System.getProperty("accounts.journalFile");
+        if (journalFile != null) {
+            config.journal(Path.of(journalFile),
+                    Long.getLong("accounts.groupCommitWindowInMicros", Config.DEFAULT_GROUP_COMMIT_WINDOW_IN_MICROS));
+        }
+        String snapshotFile = System.getProperty("accounts.snapshotFile");
+        if (snapshotFile != null) {
+            config.snapshot(Path.of(snapshotFile),
+                    Long.getLong("accounts.snapshotIntervalInMillis", Config.DEFAULT_SNAPSHOT_INTERVAL_IN_MILLIS));
+        }
+        String lockProfilerSampleRate = System.getProperty("accounts.lockProfilerSampleRate");
+        if (lockProfilerSampleRate != null) {
+            config.lockProfiler(Double.parseDouble(lockProfilerSampleRate),
+                    Integer.getInteger("accounts.lockProfilerTopAccounts", Config.DEFAULT_LOCK_PROFILER_TOP_ACCOUNTS));
+        }
+        Integer binaryProtocolPort = Integer.getInteger("accounts.binaryProtocolPort");
+        if (binaryProtocolPort != null) {
+            config.binaryProtocol(binaryProtocolPort);
+        }
+        JavalinApp javalinApp = new JavalinApp(config.build());
         //TODO read port from external config
         javalinApp.getApp().start(8080);
+        //stopping the server stops the app services as well, e.g. the journal writes the events appended so far
+        Runtime.getRuntime().addShutdownHook(new Thread(javalinApp.getApp()::stop));
     }
 
 }
@@ -0,0 +1,86 @@
+package com.jairo.accounts.binary;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Length-prefixed binary frames of the transfer protocol, big endian. Every frame starts with the length of what
+ * follows it (int). A request is then
+ * <pre>
+ * type (byte) | request id (long) | command
+ * INTERNAL_TRANSFER command: sender account id (long) | receiver account id (long) | amount
+ * EXTERNAL_TRANSFER command: sender account id (long) | amount | address length (byte, unsigned) | address (UTF-8)
+ * amount: unscaled value (long) | scale (byte), e.g. 1050, 2 for 10.50
+ * </pre>
+ * and a response
+ * <pre>
+ * request id (long) | status (byte) | body
+ * OK body: none for an internal transfer, transfer id (2 longs, most significant bits first) for an external one
+ * other statuses body: message length (short, unsigned) | message (UTF-8)
+ * </pre>
+ * Requests of a connection may be pipelined, their responses are correlated by request id: internal transfers are
+ * answered in order, external transfers once the withdrawal service has accepted them.
+ */
+public final class BinaryProtocol {
+
+    public static final byte INTERNAL_TRANSFER = 1;
+    public static final byte EXTERNAL_TRANSFER = 2;
+
+    public enum Status {
+        OK,
+        /** frame isn't a valid request, e.g. unknown type */
+        MALFORMED,
+        /** e.g. amount <= 0 or sender and receiver are the same account */
+        INVALID,
+        NOT_FOUND,
+        NOT_SUFFICIENT_FUNDS,
+        /** e.g. withdrawal service unavailable */
+        FAILED;
+
+        private static final Status[] VALUES = values();
+
+        static Status of(byte code) {
+            if (code < 0 || code >= VALUES.length) {
+                throw new IllegalArgumentException("Unknown status " + code);
+            }
+            return VALUES[code];
+        }
+    }
+
+    static final int MAX_FRAME_LENGTH = 1024;
+    static final int INTERNAL_TRANSFER_LENGTH = 1 + 8 + 8 + 8 + 8 + 1;
+    static final int EXTERNAL_TRANSFER_MIN_LENGTH = 1 + 8 + 8 + 8 + 1 + 1;
+    static final int MAX_MESSAGE_LENGTH = 256;
+    //frame length, request id, status and longest body
+    static final int MAX_RESPONSE_LENGTH = 4 + 8 + 1 + 2 + MAX_MESSAGE_LENGTH * 3;
+
+    private BinaryProtocol() {
+    }
+
+    static void putAmount(ByteBuffer buffer, BigDecimal amount) {
+        if (amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE || amount.unscaledValue().bitLength() > 63) {
+            throw new IllegalArgumentException("Amount " + amount + " doesn't fit an unscaled long and a byte scale");
+        }
+        buffer.putLong(amount.unscaledValue().longValue());
+        buffer.put((byte) amount.scale());
+    }
+
+    static BigDecimal getAmount(ByteBuffer buffer) {
+        long unscaled = buffer.getLong();
+        return BigDecimal.valueOf(unscaled, buffer.get());
+    }
+
+    static void putMessage(ByteBuffer buffer, String message) {
+        String truncated = message == null ? "" : message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+        byte[] bytes = truncated.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getMessage(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,138 @@
+package com.jairo.accounts.binary;
+
+import com.jairo.accounts.binary.BinaryProtocol.Status;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Blocking client of a {@link BinaryTransferServer}, not thread safe. Requests are buffered until {@link #flush()}
+ * (or the buffer is full), so a caller gets the most out of a connection by sending a window of requests, flushing,
+ * then reading as many responses:
+ * <pre>
+ * for (long id = 0; id &lt; 100; id++) client.internalTransfer(id, 1L, 2L, BigDecimal.ONE);
+ * client.flush();
+ * for (int i = 0; i &lt; 100; i++) client.read();
+ * </pre>
+ */
+public class BinaryTransferClient implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param transferId - id of the external transfer created, null for an internal transfer or unless OK
+     * @param message - why the request failed, null if OK
+     */
+    public record Response(long requestId, Status status, UUID transferId, String message) {
+    }
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+
+    private BinaryTransferClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public static BinaryTransferClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return new BinaryTransferClient(channel);
+    }
+
+    public void internalTransfer(long requestId, long senderAccountId, long receiverAccountId, BigDecimal amount) throws IOException {
+        ensureRemaining(4 + BinaryProtocol.INTERNAL_TRANSFER_LENGTH);
+        out.putInt(BinaryProtocol.INTERNAL_TRANSFER_LENGTH)
+                .put(BinaryProtocol.INTERNAL_TRANSFER)
+                .putLong(requestId)
+                .putLong(senderAccountId)
+                .putLong(receiverAccountId);
+        BinaryProtocol.putAmount(out, amount);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the address is longer than 255 bytes in UTF-8
+     */
+    public void externalTransfer(long requestId, long senderAccountId, String address, BigDecimal amount) throws IOException {
+        byte[] addressBytes = address.getBytes(StandardCharsets.UTF_8);
+        if (addressBytes.length > 255) {
+            throw new IllegalArgumentException("Address must be at most 255 bytes");
+        }
+        int length = BinaryProtocol.EXTERNAL_TRANSFER_MIN_LENGTH + addressBytes.length;
+        ensureRemaining(4 + length);
+        out.putInt(length)
+                .put(BinaryProtocol.EXTERNAL_TRANSFER)
+                .putLong(requestId)
+                .putLong(senderAccountId);
+        BinaryProtocol.putAmount(out, amount);
+        out.put((byte) addressBytes.length).put(addressBytes);
+    }
+
+    /**
+     * Sends buffered requests
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Blocks until the next response is received, flushing buffered requests first
+     * @throws EOFException if the server closed the connection
+     */
+    public Response read() throws IOException {
+        if (out.position() > 0) {
+            flush();
+        }
+        fill(4);
+        int length = in.getInt();
+        fill(length);
+        int frameEnd = in.position() + length;
+        long requestId = in.getLong();
+        Status status = Status.of(in.get());
+        UUID transferId = null;
+        String message = null;
+        if (status != Status.OK) {
+            message = BinaryProtocol.getMessage(in);
+        } else if (in.position() < frameEnd) {
+            transferId = new UUID(in.getLong(), in.getLong());
+        }
+        in.position(frameEnd);
+        return new Response(requestId, status, transferId, message);
+    }
+
+    private void ensureRemaining(int length) throws IOException {
+        if (out.remaining() < length) {
+            flush();
+        }
+    }
+
+    private void fill(int length) throws IOException {
+        if (in.remaining() >= length) {
+            return;
+        }
+        in.compact();
+        while (in.position() < length) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+        }
+        in.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
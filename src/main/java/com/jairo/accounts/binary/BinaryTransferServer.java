@@ -0,0 +1,280 @@
+package com.jairo.accounts.binary;
+
+import com.jairo.accounts.binary.BinaryProtocol.Status;
+import com.jairo.accounts.exception.AccountNotFoundException;
+import com.jairo.accounts.exception.NotSufficientFundsException;
+import com.jairo.accounts.service.TransferService;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.concurrent.VirtualThreads;
+import com.jairo.accounts.service.config.Config;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link BinaryProtocol} requests over TCP, as an alternative to http for clients pushing lots of transfers.
+ * Each connection is served by its own thread, reading as many pipelined requests as are available at once: internal
+ * transfers read together are applied one after the other and made durable together, then answered with a single
+ * write. External transfers are answered as soon as the withdrawal service accepts them, possibly ahead of requests
+ * sent before them.
+ */
+@Singleton
+public class BinaryTransferServer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TransferService transferService;
+    private final int configuredPort;
+    private final ExecutorService connectionExecutor;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocketChannel serverChannel;
+
+    @Inject
+    public BinaryTransferServer(TransferService transferService, Config config) {
+        this.transferService = transferService;
+        this.configuredPort = config.getBinaryProtocolPort().orElse(0);
+        this.connectionExecutor = config.isUseVirtualThreads() && VirtualThreads.isAvailable()
+                ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "binary-transfer-connection");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Starts accepting connections on the configured port
+     * @throws IllegalStateException if already started or the port can't be bound
+     */
+    public synchronized BinaryTransferServer start() {
+        if (serverChannel != null) {
+            throw new IllegalStateException("Binary transfer server already started");
+        }
+        try {
+            serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress(configuredPort));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to bind binary transfer server to port " + configuredPort, e);
+        }
+        Thread acceptor = new Thread(this::acceptConnections, "binary-transfer-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * @return port connections are accepted on, e.g. the one picked when configured with 0
+     */
+    public int getPort() {
+        ServerSocketChannel channel = serverChannel;
+        if (channel == null) {
+            throw new IllegalStateException("Binary transfer server not started");
+        }
+        return channel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones, responses not written yet are lost.
+     */
+    public synchronized void stop() {
+        if (serverChannel != null) {
+            closeQuietly(serverChannel);
+        }
+        connections.forEach(Connection::close);
+        connectionExecutor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        ServerSocketChannel channel = serverChannel;
+        while (channel.isOpen()) {
+            try {
+                SocketChannel socketChannel = channel.accept();
+                socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(socketChannel);
+                connections.add(connection);
+                connectionExecutor.execute(connection);
+            } catch (IOException e) {
+                //closed by stop, or connection reset while being accepted
+            } catch (RuntimeException e) {
+                //connection executor shut down by stop
+                return;
+            }
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //nothing left to do with it
+        }
+    }
+
+    private final class Connection implements Runnable {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        //responses of internal transfers, only written once they're durable
+        private final ByteBuffer pending = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        //guards writes to the channel, shared with external transfer completions
+        private final Object writeLock = new Object();
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (channel.read(in) >= 0) {
+                    in.flip();
+                    if (!handleFrames()) {
+                        return;
+                    }
+                    in.compact();
+                    //nothing else to read for now, answer what's been read before waiting for more
+                    writePending();
+                }
+            } catch (IOException e) {
+                //closed by the client or by stop
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * @return false if a frame has an invalid length, the stream can't be read any further
+         */
+        private boolean handleFrames() throws IOException {
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length <= 0 || length > BinaryProtocol.MAX_FRAME_LENGTH) {
+                    return false;
+                }
+                if (in.remaining() < 4 + length) {
+                    return true;
+                }
+                if (pending.remaining() < BinaryProtocol.MAX_RESPONSE_LENGTH) {
+                    writePending();
+                }
+                int frameEnd = in.position() + 4 + length;
+                in.position(in.position() + 4);
+                handleRequest(length);
+                in.position(frameEnd);
+            }
+            return true;
+        }
+
+        private void handleRequest(int length) {
+            byte type = in.get();
+            long requestId = length >= 9 ? in.getLong() : -1;
+            if (type == BinaryProtocol.INTERNAL_TRANSFER && length == BinaryProtocol.INTERNAL_TRANSFER_LENGTH) {
+                long senderAccountId = in.getLong();
+                long receiverAccountId = in.getLong();
+                BigDecimal amount = BinaryProtocol.getAmount(in);
+                try {
+                    transferService.transferDeferringDurability(senderAccountId, receiverAccountId, amount);
+                    pending.putInt(8 + 1).putLong(requestId).put((byte) Status.OK.ordinal());
+                } catch (RuntimeException e) {
+                    putFailure(pending, requestId, e);
+                }
+            } else if (type == BinaryProtocol.EXTERNAL_TRANSFER && length >= BinaryProtocol.EXTERNAL_TRANSFER_MIN_LENGTH
+                    && length == BinaryProtocol.EXTERNAL_TRANSFER_MIN_LENGTH + Byte.toUnsignedInt(in.get(in.position() + 8 + 9))) {
+                long senderAccountId = in.getLong();
+                BigDecimal amount = BinaryProtocol.getAmount(in);
+                byte[] address = new byte[Byte.toUnsignedInt(in.get())];
+                in.get(address);
+                externalTransfer(requestId, senderAccountId, new Address(new String(address, StandardCharsets.UTF_8)), amount);
+            } else {
+                putResponse(pending, requestId, Status.MALFORMED, "Unknown request type " + type + " or length " + length);
+            }
+        }
+
+        private void externalTransfer(long requestId, long senderAccountId, Address address, BigDecimal amount) {
+            try {
+                transferService.transferAsync(senderAccountId, address, amount).whenComplete((transferId, e) -> {
+                    ByteBuffer response = ByteBuffer.allocate(BinaryProtocol.MAX_RESPONSE_LENGTH);
+                    if (e == null) {
+                        UUID id = transferId.value();
+                        response.putInt(8 + 1 + 16).putLong(requestId).put((byte) Status.OK.ordinal())
+                                .putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+                    } else {
+                        putFailure(response, requestId, e instanceof CompletionException ? e.getCause() : e);
+                    }
+                    write(response.flip());
+                });
+            } catch (RuntimeException e) {
+                putFailure(pending, requestId, e);
+            }
+        }
+
+        private void putFailure(ByteBuffer buffer, long requestId, Throwable e) {
+            Status status;
+            if (e instanceof AccountNotFoundException) {
+                status = Status.NOT_FOUND;
+            } else if (e instanceof NotSufficientFundsException) {
+                status = Status.NOT_SUFFICIENT_FUNDS;
+            } else if (e instanceof IllegalArgumentException) {
+                status = Status.INVALID;
+            } else {
+                status = Status.FAILED;
+            }
+            putResponse(buffer, requestId, status, e.getMessage());
+        }
+
+        private void putResponse(ByteBuffer buffer, long requestId, Status status, String message) {
+            int lengthPosition = buffer.position();
+            buffer.putInt(0).putLong(requestId).put((byte) status.ordinal());
+            BinaryProtocol.putMessage(buffer, message);
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+        }
+
+        /**
+         * Waits until the internal transfers answered in pending responses are durable, then writes the responses
+         */
+        private void writePending() {
+            if (pending.position() == 0) {
+                return;
+            }
+            try {
+                transferService.awaitDurable();
+            } catch (RuntimeException e) {
+                //transfers applied but maybe lost on restart, the client must not be told they're done
+                close();
+                throw e;
+            }
+            write(pending.flip());
+            pending.clear();
+        }
+
+        private void write(ByteBuffer buffer) {
+            synchronized (writeLock) {
+                try {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        }
+
+        private void close() {
+            connections.remove(this);
+            closeQuietly(channel);
+        }
+    }
+}
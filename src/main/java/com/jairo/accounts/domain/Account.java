@@ -5,83 +5,162 @@ import com.jairo.accounts.service.WithdrawalService.Address;
 import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
 import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigDecimal;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static java.util.Collections.unmodifiableMap;
+import java.util.Optional;
 
 public class Account {
 
-    private final Long id;
+    private static final VarHandle REQUESTED_EXTERNAL_WITHDRAWALS;
+
+    static {
+        try {
+            REQUESTED_EXTERNAL_WITHDRAWALS = MethodHandles.lookup().findVarHandle(Account.class, "requestedExternalWithdrawals", WithdrawalHistory.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
-    private BigDecimal balance;
+    private final long id;
 
-    private final Map<WithdrawalId, RequestedExternalWithdrawal> requestedExternalWithdrawals = new ConcurrentHashMap<>();
+    private final Balance balance;
+
+    //most accounts never withdraw externally, their history is only allocated on first access
+    private volatile WithdrawalHistory requestedExternalWithdrawals;
 
     public Account(Long id, BigDecimal initialBalance) {
-        this.id = id;
-        this.balance = initialBalance;
+        this(id, new BigDecimalBalance(initialBalance));
     }
 
     public Account(Long id) {
+        this(id, BigDecimal.ZERO);
+    }
+
+    public Account(Long id, Balance balance) {
         this.id = id;
-        this.balance = BigDecimal.ZERO;
+        this.balance = balance;
     }
 
     public Long getId() {
         return id;
     }
 
-    public synchronized void deposit(BigDecimal amount) {
+    //thread safety of balance updates is up to the balance implementation, see Balance
+    public void deposit(BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Can't deposit amount <= 0");
         }
-        balance = balance.add(amount);
+        balance.deposit(amount);
     }
 
-    public synchronized void withdraw(BigDecimal amount) {
+    public void withdraw(BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Can't withdraw amount <= 0");
         }
-        if (balance.compareTo(amount) >= 0) {
-            balance = balance.subtract(amount);
-        } else {
-            throw new NotSufficientFundsException("Not sufficient funds available in account %s: current balance is %s".formatted(this.id, balance.toPlainString()));
+        if (!balance.tryWithdraw(amount)) {
+            throw new NotSufficientFundsException("Not sufficient funds available in account %s: current balance is %s".formatted(this.id, balance.get().toPlainString()));
         }
     }
 
-    public synchronized void requestWithdrawal(BigDecimal amount, WithdrawalId withdrawalId, Address address) {
+    public void requestWithdrawal(BigDecimal amount, WithdrawalId withdrawalId, Address address) {
+        requestWithdrawal(amount, withdrawalId, address, System.currentTimeMillis());
+    }
+
+    public void requestWithdrawal(BigDecimal amount, WithdrawalId withdrawalId, Address address, long requestedAtInMillis) {
         withdraw(amount);
-        requestedExternalWithdrawals.put(withdrawalId, new RequestedExternalWithdrawal(withdrawalId, WithdrawalState.PROCESSING, amount, address));
+        getWithdrawalHistory().add(new RequestedExternalWithdrawal(withdrawalId, WithdrawalState.PROCESSING, amount, address), requestedAtInMillis);
     }
 
-    public synchronized void failWithdrawal(WithdrawalId withdrawalId) {
-        RequestedExternalWithdrawal requestedExternalWithdrawal = updateWithdrawalRequestState(withdrawalId, WithdrawalState.FAILED);
-        balance = balance.add(requestedExternalWithdrawal.amount());
+    /**
+     * Adds a PROCESSING withdrawal whose amount has already been taken from the balance, e.g. when restoring accounts.
+     */
+    public void restoreWithdrawal(BigDecimal amount, WithdrawalId withdrawalId, Address address, long requestedAtInMillis) {
+        getWithdrawalHistory().add(new RequestedExternalWithdrawal(withdrawalId, WithdrawalState.PROCESSING, amount, address), requestedAtInMillis);
     }
 
-    public void completeWithdrawal(WithdrawalId withdrawalId) {
-        updateWithdrawalRequestState(withdrawalId, WithdrawalState.COMPLETED);
+    /**
+     * Settles the withdrawal as FAILED and gives its amount back, unless it's already settled: a repeated or
+     * concurrent settlement neither changes its state nor refunds it again.
+     * @return true if this call settled the withdrawal
+     */
+    public boolean failWithdrawal(WithdrawalId withdrawalId) {
+        Optional<RequestedExternalWithdrawal> settled = updateWithdrawalRequestState(withdrawalId, WithdrawalState.FAILED);
+        settled.ifPresent(requestedExternalWithdrawal -> balance.deposit(requestedExternalWithdrawal.amount()));
+        return settled.isPresent();
     }
 
-    private RequestedExternalWithdrawal updateWithdrawalRequestState(WithdrawalId withdrawalId, WithdrawalState withdrawalState) {
-        RequestedExternalWithdrawal requestedExternalWithdrawal = requestedExternalWithdrawals.get(withdrawalId);
-        if (requestedExternalWithdrawal == null) {
+    /**
+     * Settles the withdrawal as COMPLETED, unless it's already settled
+     * @return true if this call settled the withdrawal
+     */
+    public boolean completeWithdrawal(WithdrawalId withdrawalId) {
+        return updateWithdrawalRequestState(withdrawalId, WithdrawalState.COMPLETED).isPresent();
+    }
+
+    private Optional<RequestedExternalWithdrawal> updateWithdrawalRequestState(WithdrawalId withdrawalId, WithdrawalState withdrawalState) {
+        WithdrawalHistory history = findWithdrawalHistory();
+        if (history == null) {
             throw new IllegalArgumentException("No withdrawal request found for id " + withdrawalId);
-        } else {
-            requestedExternalWithdrawals.computeIfPresent(withdrawalId, (key, existingValue) ->
-                    new RequestedExternalWithdrawal(existingValue.withdrawalId(), withdrawalState, existingValue.amount(), existingValue.address())
-            );
-            return requestedExternalWithdrawal;
         }
+        return history.updateState(withdrawalId, withdrawalState);
     }
 
     public BigDecimal getBalance() {
-        return balance;
+        return balance.get();
+    }
+
+    public Optional<RequestedExternalWithdrawal> getRequestedExternalWithdrawal(WithdrawalId withdrawalId) {
+        WithdrawalHistory history = findWithdrawalHistory();
+        return history == null ? Optional.empty() : history.get(withdrawalId).map(WithdrawalHistory.Entry::getWithdrawal);
     }
 
     public Map<WithdrawalId, RequestedExternalWithdrawal> getRequestedExternalWithdrawals() {
-        return unmodifiableMap(requestedExternalWithdrawals);
+        return getWithdrawalHistory().asMap();
+    }
+
+    /**
+     * @return withdrawal history, allocated on first call
+     */
+    public WithdrawalHistory getWithdrawalHistory() {
+        WithdrawalHistory history = requestedExternalWithdrawals;
+        if (history != null) {
+            return history;
+        }
+        history = new WithdrawalHistory();
+        WithdrawalHistory witness = (WithdrawalHistory) REQUESTED_EXTERNAL_WITHDRAWALS.compareAndExchange(this, null, history);
+        return witness == null ? history : witness;
+    }
+
+    /**
+     * @return true if a withdrawal history has been allocated, i.e. the account may have requested external withdrawals
+     */
+    public boolean hasWithdrawalHistory() {
+        return findWithdrawalHistory() != null;
+    }
+
+    /**
+     * @return withdrawal history, null if it hasn't been allocated yet. Unlike {@link #getWithdrawalHistory()} it never
+     * allocates one, for reads of accounts which may never have withdrawn externally.
+     */
+    public WithdrawalHistory findWithdrawalHistory() {
+        return requestedExternalWithdrawals;
+    }
+
+    /**
+     * @return monitor held by transfer engines while updating the account, the account itself unless several
+     * instances may stand for the same account
+     */
+    public Object getLock() {
+        return this;
+    }
+
+    /**
+     * @return order in which the lock of the account is taken among others, accounts with same lock order must have
+     * the same lock
+     */
+    public long getLockOrder() {
+        return id;
     }
 }
@@ -0,0 +1,18 @@
+package com.jairo.accounts.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance of an {@link Account}, implementations must be thread safe. Amounts are validated (> 0) by the account.
+ */
+public interface Balance {
+
+    BigDecimal get();
+
+    void deposit(BigDecimal amount);
+
+    /**
+     * @return true if amount was withdrawn, false if balance was lower than amount (balance is left unchanged)
+     */
+    boolean tryWithdraw(BigDecimal amount);
+}
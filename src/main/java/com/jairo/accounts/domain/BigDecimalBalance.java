@@ -0,0 +1,34 @@
+package com.jairo.accounts.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance kept as a {@link BigDecimal}, every update is serialized on the balance monitor.
+ */
+public class BigDecimalBalance implements Balance {
+
+    private volatile BigDecimal balance;
+
+    public BigDecimalBalance(BigDecimal initialBalance) {
+        this.balance = initialBalance;
+    }
+
+    @Override
+    public BigDecimal get() {
+        return balance;
+    }
+
+    @Override
+    public synchronized void deposit(BigDecimal amount) {
+        balance = balance.add(amount);
+    }
+
+    @Override
+    public synchronized boolean tryWithdraw(BigDecimal amount) {
+        if (balance.compareTo(amount) >= 0) {
+            balance = balance.subtract(amount);
+            return true;
+        }
+        return false;
+    }
+}
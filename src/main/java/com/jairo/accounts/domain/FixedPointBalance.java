@@ -0,0 +1,97 @@
+package com.jairo.accounts.domain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Lock-free balance kept as a number of minor units (e.g. cents for a scale of 2) in a long, updated with CAS.
+ * Amounts with more decimal places than the scale, and updates overflowing a long, are rejected.
+ */
+public class FixedPointBalance implements Balance {
+
+    private static final VarHandle UNITS;
+
+    static {
+        try {
+            UNITS = MethodHandles.lookup().findVarHandle(FixedPointBalance.class, "units", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int scale;
+
+    private volatile long units;
+
+    public FixedPointBalance(BigDecimal initialBalance, int scale) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("Scale must be >= 0");
+        }
+        this.scale = scale;
+        this.units = toUnits(initialBalance, scale);
+    }
+
+    /**
+     * @return balance with the scale of the currency minor unit, e.g. 2 for EUR or 0 for JPY
+     */
+    public static FixedPointBalance forCurrency(BigDecimal initialBalance, Currency currency) {
+        if (currency.getDefaultFractionDigits() < 0) {
+            throw new IllegalArgumentException("Currency %s has no minor unit".formatted(currency));
+        }
+        return new FixedPointBalance(initialBalance, currency.getDefaultFractionDigits());
+    }
+
+    @Override
+    public BigDecimal get() {
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    @Override
+    public void deposit(BigDecimal amount) {
+        long delta = toUnits(amount, scale);
+        long current;
+        long updated;
+        do {
+            current = units;
+            updated = addExact(current, delta);
+        } while (!UNITS.weakCompareAndSet(this, current, updated));
+    }
+
+    @Override
+    public boolean tryWithdraw(BigDecimal amount) {
+        long delta = toUnits(amount, scale);
+        long current;
+        do {
+            current = units;
+            if (current < delta) {
+                return false;
+            }
+        } while (!UNITS.weakCompareAndSet(this, current, current - delta));
+        return true;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    static long toUnits(BigDecimal amount, int scale) {
+        try {
+            return amount.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException e) {
+            if (amount.stripTrailingZeros().scale() > scale) {
+                throw new IllegalArgumentException("Amount %s has more than %d decimal places".formatted(amount.toPlainString(), scale));
+            }
+            throw new IllegalArgumentException("Amount %s is out of range".formatted(amount.toPlainString()));
+        }
+    }
+
+    static long addExact(long units, long delta) {
+        try {
+            return Math.addExact(units, delta);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Balance would overflow");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jairo.accounts.domain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Lock-free balance of minor units (as {@link FixedPointBalance}) kept in a long of a (typically memory mapped)
+ * direct buffer instead of the heap, updated with CAS on the buffer.
+ */
+public class MappedBalance implements Balance {
+
+    private static final VarHandle UNITS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int index;
+    private final int scale;
+
+    /**
+     * @param buffer - direct buffer holding the balance
+     * @param index - byte index of the balance in the buffer, must be 8 bytes aligned
+     */
+    public MappedBalance(ByteBuffer buffer, int index, int scale) {
+        if (!buffer.isDirect() || buffer.alignmentOffset(index, Long.BYTES) != 0) {
+            throw new IllegalArgumentException("Balance must be 8 bytes aligned in a direct buffer");
+        }
+        if (scale < 0) {
+            throw new IllegalArgumentException("Scale must be >= 0");
+        }
+        this.buffer = buffer;
+        this.index = index;
+        this.scale = scale;
+    }
+
+    /**
+     * Writes the initial balance to the buffer.
+     */
+    public static MappedBalance initialize(ByteBuffer buffer, int index, int scale, BigDecimal initialBalance) {
+        MappedBalance balance = new MappedBalance(buffer, index, scale);
+        UNITS.setVolatile(buffer, index, FixedPointBalance.toUnits(initialBalance, scale));
+        return balance;
+    }
+
+    @Override
+    public BigDecimal get() {
+        return BigDecimal.valueOf((long) UNITS.getVolatile(buffer, index), scale);
+    }
+
+    @Override
+    public void deposit(BigDecimal amount) {
+        long delta = FixedPointBalance.toUnits(amount, scale);
+        long current;
+        long updated;
+        do {
+            current = (long) UNITS.getVolatile(buffer, index);
+            updated = FixedPointBalance.addExact(current, delta);
+        } while (!UNITS.weakCompareAndSet(buffer, index, current, updated));
+    }
+
+    @Override
+    public boolean tryWithdraw(BigDecimal amount) {
+        long delta = FixedPointBalance.toUnits(amount, scale);
+        long current;
+        do {
+            current = (long) UNITS.getVolatile(buffer, index);
+            if (current < delta) {
+                return false;
+            }
+        } while (!UNITS.weakCompareAndSet(buffer, index, current, current - delta));
+        return true;
+    }
+}
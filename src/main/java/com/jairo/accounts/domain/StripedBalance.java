@@ -0,0 +1,171 @@
+package com.jairo.accounts.domain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+
+/**
+ * Balance of minor units (as {@link FixedPointBalance}) for accounts receiving lots of concurrent deposits, e.g. a
+ * merchant account. Deposits are spread, LongAdder style, over several stripes picked by the depositing thread, so they
+ * don't contend on a single value. Withdrawals are taken from a base value, stripes are only consolidated into the base
+ * when it doesn't hold enough funds.
+ * <p>
+ * Stripes are each capped to {@code Long.MAX_VALUE / (stripes + 2)} units, and so are deposits into the base, so
+ * their sum can never overflow. A consolidation may take the base up to twice that, withdrawals larger than the cap may
+ * then fail even though the balance is enough. A deposit is only rejected once neither a stripe nor the base has room
+ * for it.
+ */
+public class StripedBalance implements Balance {
+
+    //stripes are 16 longs (128 bytes) apart so two of them never share a cache line, even with adjacent line prefetch
+    private static final int PADDING = 16;
+    private static final VarHandle STRIPES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BASE;
+
+    static {
+        try {
+            BASE = MethodHandles.lookup().findVarHandle(StripedBalance.class, "base", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int scale;
+    private final int mask;
+    private final long[] stripes;
+    private final long maxUnits;
+    private final Object consolidationLock = new Object();
+
+    private volatile long base;
+
+    /**
+     * @param numberOfStripes - number of stripes deposits are spread over, rounded up to a power of 2
+     */
+    public StripedBalance(BigDecimal initialBalance, int scale, int numberOfStripes) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("Scale must be >= 0");
+        }
+        if (numberOfStripes <= 0 || numberOfStripes > 1 << 16) {
+            throw new IllegalArgumentException("Number of stripes must be in range (0, 2^16]");
+        }
+        int stripeCount = numberOfStripes == 1 ? 1 : Integer.highestOneBit(numberOfStripes - 1) << 1;
+        this.scale = scale;
+        this.mask = stripeCount - 1;
+        this.stripes = new long[stripeCount * PADDING];
+        this.maxUnits = Long.MAX_VALUE / (stripeCount + 2);
+        long initialUnits = FixedPointBalance.toUnits(initialBalance, scale);
+        if (initialUnits > maxUnits) {
+            throw new IllegalArgumentException("Balance would overflow");
+        }
+        this.base = initialUnits;
+    }
+
+    @Override
+    public BigDecimal get() {
+        long units = base;
+        for (int i = 0; i <= mask; i++) {
+            units += (long) STRIPES.getVolatile(stripes, i * PADDING);
+        }
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    @Override
+    public void deposit(BigDecimal amount) {
+        long delta = FixedPointBalance.toUnits(amount, scale);
+        int stripe = stripeOf(Thread.currentThread());
+        for (int attempt = 0; attempt <= mask; attempt++, stripe = (stripe + 1) & mask) {
+            long current = (long) STRIPES.getVolatile(stripes, stripe * PADDING);
+            if (current > maxUnits - delta) {
+                //stripe is full, try the next one
+                continue;
+            }
+            if (STRIPES.compareAndSet(stripes, stripe * PADDING, current, current + delta)) {
+                return;
+            }
+        }
+        //every stripe looked full or contended, fall back to the base
+        while (true) {
+            long current = base;
+            if (current <= maxUnits - delta) {
+                if (BASE.weakCompareAndSet(this, current, current + delta)) {
+                    return;
+                }
+            } else if (depositIntoStripeWithRoom(delta)) {
+                //base is full, e.g. above the cap after a consolidation, while stripes aren't
+                return;
+            } else {
+                throw new IllegalArgumentException("Balance would overflow");
+            }
+        }
+    }
+
+    /**
+     * @return false if no stripe has room for delta
+     */
+    private boolean depositIntoStripeWithRoom(long delta) {
+        boolean roomLeft = true;
+        while (roomLeft) {
+            roomLeft = false;
+            for (int i = 0; i <= mask; i++) {
+                long current = (long) STRIPES.getVolatile(stripes, i * PADDING);
+                if (current <= maxUnits - delta) {
+                    roomLeft = true;
+                    if (STRIPES.compareAndSet(stripes, i * PADDING, current, current + delta)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryWithdraw(BigDecimal amount) {
+        long delta = FixedPointBalance.toUnits(amount, scale);
+        if (withdrawFromBase(delta)) {
+            return true;
+        }
+        synchronized (consolidationLock) {
+            do {
+                if (withdrawFromBase(delta)) {
+                    return true;
+                }
+            } while (consolidateStripeIntoBase(delta));
+            return false;
+        }
+    }
+
+    /**
+     * Moves next non empty stripe into the base, unless the base is already above the cap.
+     * @return false if every stripe was empty, or the base can't take more
+     */
+    private boolean consolidateStripeIntoBase(long delta) {
+        //deposits keep the base within the cap, so with at most one more stripe it stays within twice the cap
+        if (base > maxUnits) {
+            return false;
+        }
+        for (int i = 0; i <= mask; i++) {
+            long units = (long) STRIPES.getAndSet(stripes, i * PADDING, 0L);
+            if (units > 0) {
+                BASE.getAndAdd(this, units);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean withdrawFromBase(long delta) {
+        long current;
+        do {
+            current = base;
+            if (current < delta) {
+                return false;
+            }
+        } while (!BASE.weakCompareAndSet(this, current, current - delta));
+        return true;
+    }
+
+    private int stripeOf(Thread thread) {
+        return (int) (thread.getId() * 0x9E3779B97F4A7C15L >>> 40) & mask;
+    }
+}
@@ -0,0 +1,300 @@
+package com.jairo.accounts.domain;
+
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * External withdrawals requested by an account, indexed by id and by request time. Request times are kept monotonic
+ * per account, so request order and time order are the same: a withdrawal requested after a {@link Cursor} was
+ * handed out always comes after it.
+ */
+public class WithdrawalHistory {
+
+    public static final Comparator<Entry> REQUEST_ORDER = Comparator.comparingLong(Entry::getRequestedAtInMillis)
+            .thenComparingLong(Entry::getSequence);
+
+    private final Map<WithdrawalId, Entry> entriesById = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> entriesInRequestOrder = new ConcurrentSkipListSet<>(REQUEST_ORDER);
+    private long sequence;
+    private long lastRequestedAtInMillis;
+
+    /**
+     * Adds the withdrawal, replacing the one with same id if any.
+     */
+    public synchronized Entry add(RequestedExternalWithdrawal withdrawal, long nowInMillis) {
+        lastRequestedAtInMillis = Math.max(lastRequestedAtInMillis, nowInMillis);
+        Entry entry = new Entry(withdrawal, lastRequestedAtInMillis, ++sequence);
+        Entry replaced = entriesById.put(withdrawal.withdrawalId(), entry);
+        if (replaced != null) {
+            entriesInRequestOrder.remove(replaced);
+        }
+        entriesInRequestOrder.add(entry);
+        return entry;
+    }
+
+    public Optional<Entry> get(WithdrawalId withdrawalId) {
+        return Optional.ofNullable(entriesById.get(withdrawalId));
+    }
+
+    /**
+     * Settles a PROCESSING withdrawal, once: a withdrawal already settled (e.g. by a concurrent or repeated update) is
+     * left unchanged.
+     * @param withdrawalState - COMPLETED or FAILED
+     * @return the withdrawal before the update, empty if it was already settled
+     * @throws IllegalArgumentException if there's no withdrawal with such id
+     */
+    public Optional<RequestedExternalWithdrawal> updateState(WithdrawalId withdrawalId, WithdrawalState withdrawalState) {
+        if (withdrawalState == WithdrawalState.PROCESSING) {
+            throw new IllegalArgumentException("A withdrawal can only be settled as COMPLETED or FAILED");
+        }
+        Entry entry = entriesById.get(withdrawalId);
+        if (entry == null) {
+            throw new IllegalArgumentException("No withdrawal request found for id " + withdrawalId);
+        }
+        return entry.updateState(withdrawalState);
+    }
+
+    public int size() {
+        return entriesById.size();
+    }
+
+    /**
+     * Removes settled (not PROCESSING) withdrawals requested before {@code requestedBeforeInMillis}, and the oldest
+     * settled ones beyond {@code maxSettled}. They are handed to {@code archiver} before being removed, so a reader
+     * always finds them either in the history or wherever the archiver put them (for a short while in both). If the
+     * archiver throws nothing is removed.
+     * @param maxSettled - number of settled withdrawals to keep, 0 to keep them all
+     * @return removed entries, in request order
+     */
+    public synchronized List<Entry> removeSettled(long requestedBeforeInMillis, int maxSettled, Consumer<List<Entry>> archiver) {
+        List<Entry> settled = new ArrayList<>();
+        for (Entry entry : entriesInRequestOrder) {
+            if (entry.getWithdrawal().withdrawalState() != WithdrawalState.PROCESSING) {
+                settled.add(entry);
+            }
+        }
+        int excess = maxSettled == 0 ? 0 : Math.max(0, settled.size() - maxSettled);
+        List<Entry> removed = new ArrayList<>();
+        for (int i = 0; i < settled.size(); i++) {
+            Entry entry = settled.get(i);
+            if (i < excess || entry.getRequestedAtInMillis() < requestedBeforeInMillis) {
+                removed.add(entry);
+            }
+        }
+        if (removed.isEmpty()) {
+            return removed;
+        }
+        archiver.accept(removed);
+        for (Entry entry : removed) {
+            entriesById.remove(entry.getWithdrawal().withdrawalId());
+            entriesInRequestOrder.remove(entry);
+        }
+        return removed;
+    }
+
+    /**
+     * @param after - cursor of the last entry already seen, null to start from the first one
+     * @param fromInMillis - min request time, inclusive
+     * @param toInMillis - max request time, exclusive
+     * @return lazy, weakly consistent view of the entries in request order
+     */
+    public Iterable<Entry> inRequestOrder(Cursor after, long fromInMillis, long toInMillis) {
+        Entry from = Entry.probe(fromInMillis, Long.MIN_VALUE);
+        boolean fromInclusive = true;
+        if (after != null && REQUEST_ORDER.compare(after.probe(), from) >= 0) {
+            from = after.probe();
+            fromInclusive = false;
+        }
+        Entry to = Entry.probe(toInMillis, Long.MIN_VALUE);
+        if (REQUEST_ORDER.compare(from, to) > 0) {
+            return Set.of();
+        }
+        return entriesInRequestOrder.subSet(from, fromInclusive, to, false);
+    }
+
+    /**
+     * @return unmodifiable live view of the withdrawals by id, iterated in request order
+     */
+    public Map<WithdrawalId, RequestedExternalWithdrawal> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public Set<Map.Entry<WithdrawalId, RequestedExternalWithdrawal>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Map.Entry<WithdrawalId, RequestedExternalWithdrawal>> iterator() {
+                        Iterator<WithdrawalHistory.Entry> entries = entriesInRequestOrder.iterator();
+                        return new Iterator<>() {
+                            @Override
+                            public boolean hasNext() {
+                                return entries.hasNext();
+                            }
+
+                            @Override
+                            public Map.Entry<WithdrawalId, RequestedExternalWithdrawal> next() {
+                                RequestedExternalWithdrawal withdrawal = entries.next().getWithdrawal();
+                                return Map.entry(withdrawal.withdrawalId(), withdrawal);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return entriesById.size();
+                    }
+                };
+            }
+
+            @Override
+            public RequestedExternalWithdrawal get(Object key) {
+                WithdrawalHistory.Entry entry = entriesById.get(key);
+                return entry == null ? null : entry.getWithdrawal();
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return entriesById.containsKey(key);
+            }
+        };
+    }
+
+    /**
+     * @param first - entries in request order
+     * @param second - entries in request order
+     * @return lazy merge of both in request order, an entry found in both (same cursor) is returned once, from first
+     */
+    public static Iterator<Entry> mergeInRequestOrder(Iterator<Entry> first, Iterator<Entry> second) {
+        return new Iterator<>() {
+            private Entry nextOfFirst = nextOrNull(first);
+            private Entry nextOfSecond = nextOrNull(second);
+
+            @Override
+            public boolean hasNext() {
+                return nextOfFirst != null || nextOfSecond != null;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int comparison = nextOfFirst == null ? 1 : nextOfSecond == null ? -1 : REQUEST_ORDER.compare(nextOfFirst, nextOfSecond);
+                Entry next = comparison <= 0 ? nextOfFirst : nextOfSecond;
+                if (comparison <= 0) {
+                    nextOfFirst = nextOrNull(first);
+                }
+                if (comparison >= 0) {
+                    nextOfSecond = nextOrNull(second);
+                }
+                return next;
+            }
+        };
+    }
+
+    private static Entry nextOrNull(Iterator<Entry> entries) {
+        return entries.hasNext() ? entries.next() : null;
+    }
+
+    /**
+     * Position of an entry in request order, handed out to page through the history.
+     */
+    public record Cursor(long requestedAtInMillis, long sequence) {
+
+        /**
+         * @throws IllegalArgumentException if the cursor isn't one returned by {@link #toString()}
+         */
+        public static Cursor parse(String cursor) {
+            int separator = cursor.indexOf('-');
+            try {
+                return new Cursor(Long.parseLong(cursor.substring(0, separator)), Long.parseLong(cursor.substring(separator + 1)));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor);
+            }
+        }
+
+        private Entry probe() {
+            return Entry.probe(requestedAtInMillis, sequence);
+        }
+
+        @Override
+        public String toString() {
+            return requestedAtInMillis + "-" + sequence;
+        }
+    }
+
+    public static final class Entry {
+        private static final VarHandle WITHDRAWAL;
+
+        static {
+            try {
+                WITHDRAWAL = MethodHandles.lookup().findVarHandle(Entry.class, "withdrawal", RequestedExternalWithdrawal.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final long requestedAtInMillis;
+        private final long sequence;
+        private volatile RequestedExternalWithdrawal withdrawal;
+
+        private Entry(RequestedExternalWithdrawal withdrawal, long requestedAtInMillis, long sequence) {
+            this.withdrawal = withdrawal;
+            this.requestedAtInMillis = requestedAtInMillis;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return detached entry, e.g. one read back from an archive
+         */
+        public static Entry of(RequestedExternalWithdrawal withdrawal, long requestedAtInMillis, long sequence) {
+            return new Entry(withdrawal, requestedAtInMillis, sequence);
+        }
+
+        //entry with no withdrawal, only used to search entries
+        private static Entry probe(long requestedAtInMillis, long sequence) {
+            return new Entry(null, requestedAtInMillis, sequence);
+        }
+
+        public RequestedExternalWithdrawal getWithdrawal() {
+            return withdrawal;
+        }
+
+        public long getRequestedAtInMillis() {
+            return requestedAtInMillis;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Cursor getCursor() {
+            return new Cursor(requestedAtInMillis, sequence);
+        }
+
+        //withdrawal only ever moves from PROCESSING to a settled state, a lost CAS means another update settled it
+        private Optional<RequestedExternalWithdrawal> updateState(WithdrawalState withdrawalState) {
+            RequestedExternalWithdrawal previous = withdrawal;
+            if (previous.withdrawalState() != WithdrawalState.PROCESSING) {
+                return Optional.empty();
+            }
+            RequestedExternalWithdrawal settled = new RequestedExternalWithdrawal(previous.withdrawalId(), withdrawalState, previous.amount(), previous.address());
+            return WITHDRAWAL.compareAndSet(this, previous, settled) ? Optional.of(previous) : Optional.empty();
+        }
+    }
+}
@@ -3,26 +3,40 @@ package com.jairo.accounts.endpoints;
 import com.jairo.accounts.domain.Account;
 import com.jairo.accounts.endpoints.dto.AccountDTO;
 import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.Journal;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
+import io.javalin.http.UnprocessableContentResponse;
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 
 import java.math.BigDecimal;
 
+@Singleton
 public class AccountsResource {
     private static final String PATH_PARAM_INITIAL_BALANCE = "initialBalance";
+    private static final String QUERY_PARAM_HOT = "hot";
 
     private final AccountsRepository accountsRepository;
+    private final Journal journal;
 
     @Inject
-    public AccountsResource(AccountsRepository accountsRepository) {
+    public AccountsResource(AccountsRepository accountsRepository, Journal journal) {
         this.accountsRepository = accountsRepository;
+        this.journal = journal;
     }
 
     public void createAccount(Context ctx) {
-        BigDecimal initialBalance = ctx.pathParamAsClass(PATH_PARAM_INITIAL_BALANCE, BigDecimal.class).get();
+        BigDecimal initialBalance = PathParams.decimalParam(ctx, PATH_PARAM_INITIAL_BALANCE);
+        boolean hot = ctx.queryParamAsClass(QUERY_PARAM_HOT, Boolean.class).getOrDefault(false);
 
-        Account account = accountsRepository.createNew(initialBalance);
+        Account account;
+        try {
+            account = hot ? accountsRepository.createNewHot(initialBalance) : accountsRepository.createNew(initialBalance);
+        } catch (IllegalArgumentException e) {
+            throw new UnprocessableContentResponse(e.getMessage());
+        }
+        journal.awaitDurable();
         ctx.json(new AccountDTO(account.getId()));
         ctx.status(HttpStatus.CREATED);
     }
@@ -0,0 +1,159 @@
+package com.jairo.accounts.endpoints;
+
+import com.jairo.accounts.service.config.Config;
+import io.javalin.http.HttpResponseException;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Responses of requests sent with an idempotency key, so retries of a request get its original response instead of
+ * executing it again. Duplicates arriving while the request is still executing wait for that same execution.
+ * <p>
+ * Responses are kept for the key ttl, counted from the first request, and the oldest keys are forgotten first once
+ * the cache is full. Failures answered with a 4xx are replayed like responses, any other failure (e.g. withdrawal
+ * service unavailable) is forgotten so a retry executes the request again.
+ */
+@Singleton
+public class IdempotencyCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    //every entry lives for the same ttl, so insertion order is also expiration order
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    //entries in insertion order, including the ones already removed from the map, which is bounded by the size
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final int maxSize;
+    private final long ttlInNanos;
+    private final LongSupplier nanoClock;
+
+    @Inject
+    public IdempotencyCache(Config config) {
+        this(config.getIdempotencyCacheSize(), config.getIdempotencyKeyTtlInMillis(), System::nanoTime);
+    }
+
+    IdempotencyCache(int maxSize, long ttlInMillis, LongSupplier nanoClock) {
+        if (maxSize <= 0 || ttlInMillis <= 0) {
+            throw new IllegalArgumentException("Idempotency cache size and key ttl must be > 0");
+        }
+        this.maxSize = maxSize;
+        this.ttlInNanos = TimeUnit.MILLISECONDS.toNanos(ttlInMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    public record Outcome<T>(CompletableFuture<T> response, boolean replayed) {
+    }
+
+    /**
+     * Executes a request unless its key has been seen already, in which case the response of the first request is
+     * returned, completed or not.
+     * @param key - idempotency key sent by the client
+     * @param request - what the request is, e.g. its method and path, the key can't be reused for another one
+     * @param execution - executes the request, failing the response with an {@link HttpResponseException} when it
+     * must be answered with a given status
+     * @throws IllegalArgumentException if the key has been used for another request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Outcome<T> execute(String key, String request, Supplier<CompletableFuture<T>> execution) {
+        long now = nanoClock.getAsLong();
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(key, entry);
+            } else if (entry != null) {
+                if (!entry.request.equals(request)) {
+                    throw new IllegalArgumentException("Idempotency key " + key + " has been used for another request");
+                }
+                return new Outcome<>((CompletableFuture<T>) entry.response, true);
+            } else {
+                Entry created = new Entry(key, request, now + ttlInNanos);
+                if (entries.putIfAbsent(key, created) == null) {
+                    insertionOrder.add(created);
+                    queued.incrementAndGet();
+                    evict(now);
+                    run(created, execution);
+                    return new Outcome<>((CompletableFuture<T>) created.response, false);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private <T> void run(Entry entry, Supplier<CompletableFuture<T>> execution) {
+        CompletableFuture<T> response;
+        try {
+            response = execution.get();
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((value, failure) -> {
+            if (failure == null) {
+                entry.response.complete(value);
+                return;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            //removed before completing, so a retry made once the failure is seen executes again
+            if (!(cause instanceof HttpResponseException httpFailure && httpFailure.getStatus() < 500)) {
+                entries.remove(entry.key, entry);
+            }
+            entry.response.completeExceptionally(cause);
+        });
+    }
+
+    /**
+     * Forgets expired keys, then the oldest ones while the cache is full. Requests still executing are only forgotten
+     * to make room, their callers still get the response but later duplicates execute again.
+     */
+    private void evict(long now) {
+        //a single thread evicts, the others don't need to wait for it
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            for (Entry oldest = insertionOrder.peek(); oldest != null; oldest = insertionOrder.peek()) {
+                boolean stale = entries.get(oldest.key) != oldest;
+                if (!stale && !oldest.isExpired(now) && queued.get() <= maxSize) {
+                    break;
+                }
+                insertionOrder.poll();
+                queued.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String request;
+        private final long expiresAtInNanos;
+        private final CompletableFuture<Object> response = new CompletableFuture<>();
+
+        private Entry(String key, String request, long expiresAtInNanos) {
+            this.key = key;
+            this.request = request;
+            this.expiresAtInNanos = expiresAtInNanos;
+        }
+
+        //an entry still executing never expires, its duplicates keep waiting for it
+        private boolean isExpired(long now) {
+            return response.isDone() && now - expiresAtInNanos >= 0;
+        }
+    }
+}
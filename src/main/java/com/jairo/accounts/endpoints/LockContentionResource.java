@@ -0,0 +1,43 @@
+package com.jairo.accounts.endpoints;
+
+import com.jairo.accounts.endpoints.dto.HotAccountDTO;
+import com.jairo.accounts.endpoints.dto.LockContentionDTO;
+import com.jairo.accounts.service.metrics.LockContentionProfiler;
+import com.jairo.accounts.service.metrics.SpaceSaving;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+@Singleton
+public class LockContentionResource {
+
+    private final LockContentionProfiler lockContentionProfiler;
+
+    @Inject
+    public LockContentionResource(LockContentionProfiler lockContentionProfiler) {
+        this.lockContentionProfiler = lockContentionProfiler;
+    }
+
+    public void getLockContention(Context ctx) {
+        LockContentionProfiler.Report report = lockContentionProfiler.report();
+        ctx.json(new LockContentionDTO(report.transferEngine().name(), report.sampleRate(), report.sampledAcquisitions(), TimeUnit.NANOSECONDS.toMicros(report.sampledWaitInNanos()),
+                toHotAccounts(report.mostLocked(), LongUnaryOperator.identity()),
+                toHotAccounts(report.mostWaitedFor(), TimeUnit.NANOSECONDS::toMicros)));
+    }
+
+    public void resetLockContention(Context ctx) {
+        lockContentionProfiler.reset();
+        ctx.status(HttpStatus.NO_CONTENT);
+    }
+
+    private static List<HotAccountDTO> toHotAccounts(List<SpaceSaving.Entry> entries, LongUnaryOperator unit) {
+        return entries.stream()
+                .map(entry -> new HotAccountDTO(entry.item(), unit.applyAsLong(entry.weight()), unit.applyAsLong(entry.error())))
+                .toList();
+    }
+}
@@ -0,0 +1,22 @@
+package com.jairo.accounts.endpoints;
+
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import io.javalin.http.Context;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+@Singleton
+public class MetricsResource {
+
+    private final MetricsRegistry metricsRegistry;
+
+    @Inject
+    public MetricsResource(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public void metrics(Context ctx) {
+        ctx.contentType(MetricsRegistry.CONTENT_TYPE);
+        ctx.result(metricsRegistry.write());
+    }
+}
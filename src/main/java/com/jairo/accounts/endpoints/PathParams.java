@@ -0,0 +1,180 @@
+package com.jairo.accounts.endpoints;
+
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Parses ids and amounts of request paths in a single scan, a malformed value is answered with 400 without going
+ * through a {@link NumberFormatException} (or Javalin validator) first. Parse methods accept what {@link Long#valueOf},
+ * {@link BigDecimal#BigDecimal(String)} and canonical {@link UUID#toString()} do, and return null for anything else.
+ */
+public final class PathParams {
+
+    private PathParams() {
+    }
+
+    static Long longParam(Context ctx, String name) {
+        Long value = parseLong(ctx.pathParam(name));
+        if (value == null) {
+            throw new BadRequestResponse("Path parameter '" + name + "' must be an integer");
+        }
+        return value;
+    }
+
+    static BigDecimal decimalParam(Context ctx, String name) {
+        BigDecimal value = parseDecimal(ctx.pathParam(name));
+        if (value == null) {
+            throw new BadRequestResponse("Path parameter '" + name + "' must be a decimal number");
+        }
+        return value;
+    }
+
+    static UUID uuidParam(Context ctx, String name) {
+        UUID value = parseUuid(ctx.pathParam(name));
+        if (value == null) {
+            throw new BadRequestResponse("Path parameter '" + name + "' must be a UUID");
+        }
+        return value;
+    }
+
+    /**
+     * @return decimal integer, null if malformed or out of long range
+     */
+    public static Long parseLong(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        if (i == length) {
+            return null;
+        }
+        //accumulated negatively, as Long.MIN_VALUE has no positive counterpart
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                return null;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return null;
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * @return decimal number, optionally signed and with an exponent (e.g. 1.5E+3), null if malformed
+     */
+    public static BigDecimal parseDecimal(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        long unscaled = 0;
+        boolean overflow = false;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (point) {
+                    fractionDigits++;
+                }
+                if (unscaled > (Long.MAX_VALUE - 9) / 10) {
+                    overflow = true;
+                } else {
+                    unscaled = unscaled * 10 + (c - '0');
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return null;
+        }
+        int exponent = 0;
+        if (i < length) {
+            char c = value.charAt(i++);
+            if (c != 'e' && c != 'E') {
+                return null;
+            }
+            boolean negativeExponent = false;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                negativeExponent = value.charAt(i++) == '-';
+            }
+            //at most 9 digits, so the exponent and the scale derived from it fit in an int
+            if (i == length || length - i > 9) {
+                return null;
+            }
+            for (; i < length; i++) {
+                int digit = value.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return null;
+                }
+                exponent = exponent * 10 + digit;
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        //more than 18 significant digits are rare, the input is known to be well formed by now
+        return overflow
+                ? new BigDecimal(value.toString())
+                : BigDecimal.valueOf(negative ? -unscaled : unscaled, fractionDigits - exponent);
+    }
+
+    /**
+     * @return UUID in canonical form (8-4-4-4-12 hex digits), null if malformed
+     */
+    public static UUID parseUuid(CharSequence value) {
+        if (value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-' || value.charAt(18) != '-' || value.charAt(23) != '-') {
+            return null;
+        }
+        long mostSignificantBits = 0;
+        long leastSignificantBits = 0;
+        for (int i = 0, hexDigits = 0; i < 36; i++) {
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                continue;
+            }
+            int digit = hexDigit(value.charAt(i));
+            if (digit < 0) {
+                return null;
+            }
+            if (hexDigits++ < 16) {
+                mostSignificantBits = mostSignificantBits << 4 | digit;
+            } else {
+                leastSignificantBits = leastSignificantBits << 4 | digit;
+            }
+        }
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,223 @@
+package com.jairo.accounts.endpoints;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jairo.accounts.endpoints.dto.AccountDTO;
+import com.jairo.accounts.endpoints.dto.ExternalTransferDetails;
+import com.jairo.accounts.endpoints.dto.ExternalTransfersPage;
+import com.jairo.accounts.endpoints.dto.TransferIdDTO;
+import com.jairo.accounts.endpoints.dto.TransferResultDTO;
+import com.jairo.accounts.service.ExternalTransfersPageIterator;
+import io.javalin.json.JavalinJackson;
+import io.javalin.json.JsonMapper;
+import jakarta.inject.Singleton;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Writes response DTOs with writers built once for each record instead of Jackson serializers looked up by
+ * reflection, same JSON as Javalin's Jackson mapper. Listings are written straight to the response stream as they're
+ * read, other values and request bodies are left to Jackson.
+ */
+@Singleton
+public class StreamingJsonMapper implements JsonMapper {
+
+    @FunctionalInterface
+    private interface DtoWriter<T> {
+        void write(JsonGenerator generator, T value) throws IOException;
+    }
+
+    private static final SerializableString ACCOUNT_ID = new SerializedString("accountId");
+    private static final SerializableString TRANSFER_ID = new SerializedString("transferId");
+    private static final SerializableString AMOUNT = new SerializedString("amount");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString ADDRESS = new SerializedString("address");
+    private static final SerializableString REQUESTED_AT_IN_MILLIS = new SerializedString("requestedAtInMillis");
+    private static final SerializableString TRANSFERS = new SerializedString("transfers");
+    private static final SerializableString NEXT_CURSOR = new SerializedString("nextCursor");
+    private static final SerializableString INDEX = new SerializedString("index");
+    private static final SerializableString ERROR = new SerializedString("error");
+
+    private static final Map<Class<?>, DtoWriter<Object>> WRITERS = new HashMap<>();
+
+    static {
+        register(AccountDTO.class, (generator, account) -> {
+            generator.writeStartObject();
+            generator.writeFieldName(ACCOUNT_ID);
+            writeNumber(generator, account.accountId());
+            generator.writeEndObject();
+        });
+        register(TransferIdDTO.class, (generator, transferId) -> {
+            generator.writeStartObject();
+            generator.writeFieldName(TRANSFER_ID);
+            writeUuid(generator, transferId.transferId());
+            generator.writeEndObject();
+        });
+        register(ExternalTransferDetails.class, StreamingJsonMapper::writeExternalTransfer);
+        register(ExternalTransfersPage.class, (generator, page) -> {
+            generator.writeStartObject();
+            generator.writeFieldName(TRANSFERS);
+            if (page.transfers() == null) {
+                generator.writeNull();
+            } else {
+                writeExternalTransfers(generator, page.transfers().iterator());
+            }
+            generator.writeFieldName(NEXT_CURSOR);
+            generator.writeString(page.nextCursor());
+            generator.writeEndObject();
+        });
+        register(TransferResultDTO.class, (generator, result) -> {
+            generator.writeStartObject();
+            generator.writeFieldName(INDEX);
+            generator.writeNumber(result.index());
+            generator.writeFieldName(STATUS);
+            generator.writeString(result.status());
+            generator.writeFieldName(ERROR);
+            generator.writeString(result.error());
+            generator.writeEndObject();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void register(Class<T> type, DtoWriter<T> writer) {
+        WRITERS.put(type, (DtoWriter<Object>) writer);
+    }
+
+    private final JavalinJackson jackson = new JavalinJackson();
+    private final ObjectMapper objectMapper = jackson.getMapper();
+    //generators of the object mapper factory can hand values without a pre-built writer back to it
+    private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        if (obj instanceof String string) {
+            //as Javalin's mappers, strings are taken as already serialized
+            return string;
+        }
+        StringWriter json = new StringWriter(128);
+        try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            writeValue(generator, obj);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        return new ByteArrayInputStream(toJsonString(obj, type).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void writeToOutputStream(Stream<?> stream, OutputStream outputStream) {
+        try (stream; JsonGenerator generator = jsonFactory.createGenerator(outputStream)) {
+            generator.writeStartArray();
+            for (Iterator<?> iterator = stream.iterator(); iterator.hasNext(); ) {
+                writeValue(generator, iterator.next());
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a page of transfers as {@link ExternalTransfersPage} would be, reading it as it's written
+     */
+    public void writeExternalTransfersPage(ExternalTransfersPageIterator page, OutputStream outputStream) {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeFieldName(TRANSFERS);
+            writeExternalTransfers(generator, page);
+            generator.writeFieldName(NEXT_CURSOR);
+            generator.writeString(page.getNextCursor());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type targetType) {
+        return jackson.fromJsonString(json, targetType);
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType) {
+        return jackson.fromJsonStream(json, targetType);
+    }
+
+    private void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+            return;
+        }
+        DtoWriter<Object> writer = WRITERS.get(value.getClass());
+        if (writer != null) {
+            writer.write(generator, value);
+        } else if (value instanceof Collection<?> collection) {
+            generator.writeStartArray();
+            for (Object element : collection) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else {
+            objectMapper.writeValue(generator, value);
+        }
+    }
+
+    private static void writeExternalTransfers(JsonGenerator generator, Iterator<ExternalTransferDetails> transfers) throws IOException {
+        generator.writeStartArray();
+        while (transfers.hasNext()) {
+            writeExternalTransfer(generator, transfers.next());
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeExternalTransfer(JsonGenerator generator, ExternalTransferDetails transfer) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(TRANSFER_ID);
+        writeUuid(generator, transfer.transferId());
+        generator.writeFieldName(AMOUNT);
+        generator.writeNumber(transfer.amount());
+        generator.writeFieldName(STATUS);
+        generator.writeString(transfer.status());
+        generator.writeFieldName(ADDRESS);
+        generator.writeString(transfer.address());
+        generator.writeFieldName(REQUESTED_AT_IN_MILLIS);
+        generator.writeNumber(transfer.requestedAtInMillis());
+        generator.writeEndObject();
+    }
+
+    private static void writeNumber(JsonGenerator generator, Long value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value.longValue());
+        }
+    }
+
+    private static void writeUuid(JsonGenerator generator, UUID value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
@@ -1,23 +1,52 @@
 package com.jairo.accounts.endpoints;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.jairo.accounts.domain.TransferId;
+import com.jairo.accounts.domain.WithdrawalHistory.Cursor;
 import com.jairo.accounts.endpoints.dto.ExternalTransferDetails;
+import com.jairo.accounts.endpoints.dto.InternalTransferDTO;
 import com.jairo.accounts.endpoints.dto.TransferIdDTO;
+import com.jairo.accounts.endpoints.dto.TransferResultDTO;
 import com.jairo.accounts.exception.AccountNotFoundException;
 import com.jairo.accounts.exception.NotSufficientFundsException;
 import com.jairo.accounts.exception.TransferIdNotFoundException;
+import com.jairo.accounts.service.ExternalTransfersPageIterator;
+import com.jairo.accounts.service.ExternalTransfersQuery;
 import com.jairo.accounts.service.TransferService;
+import com.jairo.accounts.service.TransferService.BatchMode;
 import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+import com.jairo.accounts.service.config.Config;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
 import io.javalin.http.NotFoundResponse;
 import io.javalin.http.UnprocessableContentResponse;
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Singleton
 public class TransfersResource {
 
     private static final String PATH_PARAM_ACCOUNT_ID = "accountId";
@@ -29,57 +58,227 @@ public class TransfersResource {
     private static final String PATH_PARAM_ADDRESS = "address";
     private static final String PATH_PARAM_AMOUNT = "amount";
 
+    private static final String QUERY_PARAM_MODE = "mode";
+    private static final String QUERY_PARAM_CURSOR = "cursor";
+    private static final String QUERY_PARAM_LIMIT = "limit";
+    private static final String QUERY_PARAM_STATUS = "status";
+    private static final String QUERY_PARAM_FROM = "from";
+    private static final String QUERY_PARAM_TO = "to";
+
+    public static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String HEADER_IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    //reads a JSON array of transfers as well as NDJSON (one transfer per line)
+    private static final ObjectReader TRANSFERS_READER = OBJECT_MAPPER.readerFor(InternalTransferDTO.class);
+
     private final TransferService transferService;
+    private final IdempotencyCache idempotencyCache;
+    private final Config config;
 
     @Inject
-    public TransfersResource(TransferService transferService) {
+    public TransfersResource(TransferService transferService, IdempotencyCache idempotencyCache, Config config) {
         this.transferService = transferService;
+        this.idempotencyCache = idempotencyCache;
+        this.config = config;
     }
 
+    /**
+     * With an {@value #HEADER_IDEMPOTENCY_KEY} header, retries get the response of the first request without
+     * transferring again.
+     */
     public void internalTransfer(Context ctx) {
         runMappingExceptionsToResponseHttpCode(context -> {
-            Long senderAccountId = context.pathParamAsClass(PATH_PARAM_SENDER_ACCOUNT_ID, Long.class).get();
-            Long receiverAccountId = context.pathParamAsClass(PATH_PARAM_RECEIVER_ACCOUNT_ID, Long.class).get();
-            BigDecimal amount = context.pathParamAsClass(PATH_PARAM_AMOUNT, BigDecimal.class).get();
-            transferService.transfer(senderAccountId, receiverAccountId, amount);
+            Long senderAccountId = PathParams.longParam(context, PATH_PARAM_SENDER_ACCOUNT_ID);
+            Long receiverAccountId = PathParams.longParam(context, PATH_PARAM_RECEIVER_ACCOUNT_ID);
+            BigDecimal amount = PathParams.decimalParam(context, PATH_PARAM_AMOUNT);
+            String idempotencyKey = idempotencyKey(context);
+            if (idempotencyKey == null) {
+                transferService.transfer(senderAccountId, receiverAccountId, amount);
+                return;
+            }
+            respondIdempotently(context, idempotencyKey, () -> {
+                try {
+                    transferService.transfer(senderAccountId, receiverAccountId, amount);
+                    return CompletableFuture.completedFuture(null);
+                } catch (RuntimeException e) {
+                    throw mapExceptionToResponseHttpCode(e);
+                }
+            }, (noContent, noResponse) -> {
+            });
         }, ctx);
     }
 
+    private static String idempotencyKey(Context context) {
+        String key = context.header(HEADER_IDEMPOTENCY_KEY);
+        if (key != null && (key.isBlank() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new BadRequestResponse(HEADER_IDEMPOTENCY_KEY + " must have 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        return key;
+    }
+
+    /**
+     * Executes the request, or replays the response of the first one with the same key, released from the server
+     * thread while it's still executing.
+     */
+    private <T> void respondIdempotently(Context context, String idempotencyKey, Supplier<CompletableFuture<T>> execution,
+                                         BiConsumer<Context, T> writer) {
+        String request = context.method() + " " + context.path();
+        IdempotencyCache.Outcome<T> outcome = idempotencyCache.execute(idempotencyKey, request, execution);
+        if (outcome.replayed()) {
+            context.header(HEADER_IDEMPOTENT_REPLAYED, "true");
+        }
+        context.future(() -> outcome.response().thenAccept(response -> writer.accept(context, response)));
+    }
+
+    /**
+     * Body is a JSON array of transfers or NDJSON, parsed as it's streamed. An all-or-nothing batch with a failed
+     * transfer is answered with 422, results tell which transfers failed.
+     */
+    public void internalTransferBatch(Context ctx) {
+        runMappingExceptionsToResponseHttpCode(context -> {
+            String mode = context.queryParam(QUERY_PARAM_MODE);
+            BatchMode batchMode = mode == null ? BatchMode.BEST_EFFORT
+                    : queryParam(QUERY_PARAM_MODE, mode, value -> BatchMode.valueOf(value.toUpperCase(Locale.ROOT)));
+            List<TransferResultDTO> results = transferService.transferBatch(readTransfers(context.bodyInputStream()), batchMode);
+            boolean anyFailed = results.stream().anyMatch(result -> !result.status().equals("COMPLETED"));
+            context.status(batchMode == BatchMode.ALL_OR_NOTHING && anyFailed ? HttpStatus.UNPROCESSABLE_CONTENT : HttpStatus.OK);
+            context.json(results);
+        }, ctx);
+    }
+
+    private List<InternalTransferDTO> readTransfers(InputStream body) {
+        List<InternalTransferDTO> transfers = new ArrayList<>();
+        try (MappingIterator<InternalTransferDTO> iterator = TRANSFERS_READER.readValues(body)) {
+            while (iterator.hasNextValue()) {
+                if (transfers.size() == config.getMaxBatchTransfers()) {
+                    throw new IllegalArgumentException("Batch can't have more than " + config.getMaxBatchTransfers() + " transfers");
+                }
+                transfers.add(iterator.nextValue());
+            }
+        } catch (IOException e) {
+            throw new BadRequestResponse("Invalid batch of transfers: " + e.getMessage());
+        }
+        return transfers;
+    }
+
     public void externalTransfer(Context ctx) {
         runMappingExceptionsToResponseHttpCode(context -> {
-            Long senderAccountId = context.pathParamAsClass(PATH_PARAM_SENDER_ACCOUNT_ID, Long.class).get();
-            String address = context.pathParamAsClass(PATH_PARAM_ADDRESS, String.class).get();
-            BigDecimal amount = context.pathParamAsClass(PATH_PARAM_AMOUNT, BigDecimal.class).get();
-            TransferId transferId = transferService.transfer(senderAccountId, new Address(address), amount);
-            context.json(new TransferIdDTO(transferId.value()));
+            Long senderAccountId = PathParams.longParam(context, PATH_PARAM_SENDER_ACCOUNT_ID);
+            String address = context.pathParam(PATH_PARAM_ADDRESS);
+            BigDecimal amount = PathParams.decimalParam(context, PATH_PARAM_AMOUNT);
+            String idempotencyKey = idempotencyKey(context);
+            if (idempotencyKey == null) {
+                //funds are reserved before returning, server thread is released while the withdrawal is requested
+                CompletableFuture<TransferId> transfer = transferService.transferAsync(senderAccountId, new Address(address), amount);
+                context.future(() -> transfer
+                        .thenAccept(transferId -> context.json(new TransferIdDTO(transferId.value())))
+                        .exceptionally(e -> {
+                            throw mapExceptionToResponseHttpCode(e instanceof CompletionException ? e.getCause() : e);
+                        }));
+                return;
+            }
+            //retries get the id of the first withdrawal instead of requesting a new one
+            respondIdempotently(context, idempotencyKey, () -> {
+                try {
+                    return transferService.transferAsync(senderAccountId, new Address(address), amount)
+                            .thenApply(transferId -> new TransferIdDTO(transferId.value()))
+                            .exceptionally(e -> {
+                                throw mapExceptionToResponseHttpCode(e instanceof CompletionException ? e.getCause() : e);
+                            });
+                } catch (RuntimeException e) {
+                    throw mapExceptionToResponseHttpCode(e);
+                }
+            }, Context::json);
         }, ctx);
     }
 
+    /**
+     * Lists transfers in request order, filtered by status (comma separated) and request time range (epoch millis,
+     * from inclusive, to exclusive). With a cursor or a limit the response is a page with the cursor of the next one,
+     * otherwise every transfer is streamed as a JSON array without being held in memory.
+     */
     public void listExternalTransfers(Context ctx) {
         runMappingExceptionsToResponseHttpCode(context -> {
-            Long accountId = context.pathParamAsClass(PATH_PARAM_ACCOUNT_ID, Long.class).get();
-            Collection<ExternalTransferDetails> data = transferService.getExternalTransfers(accountId);
-            context.json(data);
+            Long accountId = PathParams.longParam(context, PATH_PARAM_ACCOUNT_ID);
+            String cursor = context.queryParam(QUERY_PARAM_CURSOR);
+            String limit = context.queryParam(QUERY_PARAM_LIMIT);
+            String status = context.queryParam(QUERY_PARAM_STATUS);
+            Set<WithdrawalState> states = status == null ? Set.of() : queryParam(QUERY_PARAM_STATUS, status, value -> Arrays.stream(value.split(","))
+                    .map(state -> WithdrawalState.valueOf(state.trim().toUpperCase(Locale.ROOT)))
+                    .collect(Collectors.toSet()));
+            long from = context.queryParamAsClass(QUERY_PARAM_FROM, Long.class).getOrDefault(Long.MIN_VALUE);
+            long to = context.queryParamAsClass(QUERY_PARAM_TO, Long.class).getOrDefault(Long.MAX_VALUE);
+            if (cursor == null && limit == null) {
+                Stream<ExternalTransferDetails> transfers = transferService.streamExternalTransfers(accountId,
+                        new ExternalTransfersQuery(null, states, from, to, Integer.MAX_VALUE));
+                context.writeJsonStream(transfers);
+                return;
+            }
+            int pageSize = context.queryParamAsClass(QUERY_PARAM_LIMIT, Integer.class)
+                    .check(value -> value > 0 && value <= MAX_PAGE_SIZE, "Limit must be in range (0, " + MAX_PAGE_SIZE + "]")
+                    .getOrDefault(DEFAULT_PAGE_SIZE);
+            ExternalTransfersQuery query = new ExternalTransfersQuery(cursor == null ? null : queryParam(QUERY_PARAM_CURSOR, cursor, Cursor::parse),
+                    states, from, to, pageSize);
+            if (context.jsonMapper() instanceof StreamingJsonMapper streamingJsonMapper) {
+                //the page is written as it's read from the account history, never collected
+                ExternalTransfersPageIterator page = transferService.iterateExternalTransfers(accountId, query);
+                context.contentType(ContentType.APPLICATION_JSON);
+                streamingJsonMapper.writeExternalTransfersPage(page, context.outputStream());
+                return;
+            }
+            context.json(transferService.getExternalTransfers(accountId, query));
         }, ctx);
     }
 
     public void getExternalTransfer(Context ctx) {
         runMappingExceptionsToResponseHttpCode(context -> {
-            Long accountId = context.pathParamAsClass(PATH_PARAM_ACCOUNT_ID, Long.class).get();
-            UUID transferId = context.pathParamAsClass(PATH_PARAM_TRANSFER_ID, UUID.class).get();
+            Long accountId = PathParams.longParam(context, PATH_PARAM_ACCOUNT_ID);
+            UUID transferId = PathParams.uuidParam(context, PATH_PARAM_TRANSFER_ID);
             ExternalTransferDetails data = transferService.getExternalTransfer(accountId, new TransferId(transferId));
             context.json(data);
         }, ctx);
 
     }
 
+    /**
+     * @return query param parsed by given parser, a malformed one (parser throwing IllegalArgumentException) is
+     * answered with 400 rather than mapped to 422 as invalid requests
+     */
+    private static <T> T queryParam(String name, String value, Function<String, T> parser) {
+        try {
+            return parser.apply(value);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestResponse("Query parameter '" + name + "' is invalid: " + value);
+        }
+    }
+
     private void runMappingExceptionsToResponseHttpCode(Consumer<Context> consumer, Context ctx) {
         try {
             consumer.accept(ctx);
-        } catch (AccountNotFoundException | TransferIdNotFoundException e) {
-            throw new NotFoundResponse(e.getMessage());
-        } catch (NotSufficientFundsException | IllegalArgumentException e) {
-            throw new UnprocessableContentResponse(e.getMessage());
+        } catch (RuntimeException e) {
+            throw mapExceptionToResponseHttpCode(e);
+        }
+    }
+
+    public void getExternalTransferById(Context ctx) {
+        runMappingExceptionsToResponseHttpCode(context -> {
+            UUID transferId = PathParams.uuidParam(context, PATH_PARAM_TRANSFER_ID);
+            context.json(transferService.getExternalTransfer(new TransferId(transferId)));
+        }, ctx);
+    }
+
+    private RuntimeException mapExceptionToResponseHttpCode(Throwable e) {
+        if (e instanceof AccountNotFoundException || e instanceof TransferIdNotFoundException) {
+            return new NotFoundResponse(e.getMessage());
+        }
+        if (e instanceof NotSufficientFundsException || e instanceof IllegalArgumentException) {
+            return new UnprocessableContentResponse(e.getMessage());
         }
+        return e instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(e);
     }
 }
@@ -3,5 +3,5 @@ package com.jairo.accounts.endpoints.dto;
 import java.math.BigDecimal;
 import java.util.UUID;
 
-public record ExternalTransferDetails(UUID transferId, BigDecimal amount, String status, String address) {
+public record ExternalTransferDetails(UUID transferId, BigDecimal amount, String status, String address, long requestedAtInMillis) {
 }
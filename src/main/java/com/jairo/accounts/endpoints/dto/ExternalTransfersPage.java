@@ -0,0 +1,9 @@
+package com.jairo.accounts.endpoints.dto;
+
+import java.util.List;
+
+/**
+ * @param nextCursor - cursor to get the next page with, null if this is the last one
+ */
+public record ExternalTransfersPage(List<ExternalTransferDetails> transfers, String nextCursor) {
+}
@@ -0,0 +1,7 @@
+package com.jairo.accounts.endpoints.dto;
+
+/**
+ * @param maxOverestimate - count may be overestimated by up to this much
+ */
+public record HotAccountDTO(Long accountId, long count, long maxOverestimate) {
+}
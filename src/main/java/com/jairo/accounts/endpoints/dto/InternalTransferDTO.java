@@ -0,0 +1,6 @@
+package com.jairo.accounts.endpoints.dto;
+
+import java.math.BigDecimal;
+
+public record InternalTransferDTO(Long senderAccountId, Long receiverAccountId, BigDecimal amount) {
+}
@@ -0,0 +1,13 @@
+package com.jairo.accounts.endpoints.dto;
+
+import java.util.List;
+
+/**
+ * Counts and waits are sampled, divide them by the sample rate to estimate the real ones.
+ * @param transferEngine - engine profiled, only ORDERED_LOCKING locks accounts, sample rate is 0 with the others
+ * @param mostLocked - accounts locked most often, count being the number of sampled acquisitions
+ * @param mostWaitedFor - accounts waited for the longest, count being the sampled wait in micros
+ */
+public record LockContentionDTO(String transferEngine, double sampleRate, long sampledAcquisitions, long sampledWaitInMicros,
+                                List<HotAccountDTO> mostLocked, List<HotAccountDTO> mostWaitedFor) {
+}
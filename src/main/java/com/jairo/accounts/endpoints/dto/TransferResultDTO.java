@@ -0,0 +1,8 @@
+package com.jairo.accounts.endpoints.dto;
+
+/**
+ * @param index - position of the transfer in the batch
+ * @param error - reason of a FAILED transfer, null otherwise
+ */
+public record TransferResultDTO(int index, String status, String error) {
+}
@@ -1,24 +1,88 @@
 package com.jairo.accounts.guice;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Scopes;
 import com.jairo.accounts.endpoints.AccountsResource;
+import com.jairo.accounts.endpoints.LockContentionResource;
+import com.jairo.accounts.endpoints.MetricsResource;
+import com.jairo.accounts.endpoints.StreamingJsonMapper;
 import com.jairo.accounts.endpoints.TransfersResource;
+import com.jairo.accounts.repository.journal.FileJournal;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.service.AsyncWithdrawalService;
+import com.jairo.accounts.service.ExecutorAsyncWithdrawalService;
 import com.jairo.accounts.service.ExternalTransferMonitoringService;
+import com.jairo.accounts.service.RecoveryService;
 import com.jairo.accounts.service.TransferService;
+import com.jairo.accounts.service.WithdrawalRetentionService;
 import com.jairo.accounts.service.WithdrawalService;
 import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.PollingPolicy;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.engine.SequentialTransferEngine;
+import com.jairo.accounts.service.engine.ShardedTransferEngine;
+import com.jairo.accounts.service.engine.TransferEngine;
+import com.jairo.accounts.service.metrics.LockContentionProfiler;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
 import com.jairo.accounts.service.stubs.WithdrawalServiceStub;
+import io.javalin.json.JavalinJackson;
+import io.javalin.json.JsonMapper;
+
+import java.util.concurrent.TimeUnit;
 
 public class AppModule extends AbstractModule {
 
+    private final Config config;
+
+    public AppModule() {
+        this(defaultConfig().build());
+    }
+
+    public AppModule(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * @return builder pre-populated with the app defaults
+     */
+    public static Config.Builder defaultConfig() {
+        //TODO: read params from external config
+        return Config.builder()
+                .monitoringDelayInMillis(100)
+                .numberOfMonitoringThreads(50)
+                //withdrawals settle 1 to 10 seconds after request, no point polling them before
+                .pollingPolicy(new PollingPolicy(1000, 1.5, 1500, 0.1, TimeUnit.MINUTES.toMillis(5)));
+    }
+
     @Override
     protected void configure() {
-        //TODO: read params from external config
-        bind(Config.class).toInstance(new Config(100, 50));
+        bind(Config.class).toInstance(config);
+        bind(MetricsRegistry.class);
+        bind(LockContentionProfiler.class);
+        if (config.getJournalFile().isPresent()) {
+            bind(Journal.class).to(FileJournal.class);
+        } else {
+            bind(Journal.class).toInstance(Journal.NONE);
+        }
         bind(WithdrawalService.class).to(WithdrawalServiceStub.class);
+        bind(AsyncWithdrawalService.class).to(ExecutorAsyncWithdrawalService.class);
         bind(ExternalTransferMonitoringService.class);
+        bind(TransferEngine.class).to(switch (config.getTransferEngineType()) {
+            case SEQUENTIAL -> SequentialTransferEngine.class;
+            case ORDERED_LOCKING -> OrderedLockingTransferEngine.class;
+            case SHARDED -> ShardedTransferEngine.class;
+        });
         bind(TransferService.class);
+        bind(WithdrawalRetentionService.class).asEagerSingleton();
+        //accounts are restored before the app serves any request
+        bind(RecoveryService.class).asEagerSingleton();
+        bind(JsonMapper.class).to(switch (config.getJsonMapperType()) {
+            case JACKSON -> JavalinJackson.class;
+            case STREAMING -> StreamingJsonMapper.class;
+        }).in(Scopes.SINGLETON);
         bind(TransfersResource.class);
         bind(AccountsResource.class);
+        bind(MetricsResource.class);
+        bind(LockContentionResource.class);
     }
 }
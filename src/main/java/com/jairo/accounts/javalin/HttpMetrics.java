@@ -0,0 +1,81 @@
+package com.jairo.accounts.javalin;
+
+import com.jairo.accounts.service.metrics.Counter;
+import com.jairo.accounts.service.metrics.Histogram;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latency and number of requests of each endpoint, labelled by route (e.g. /accounts/{accountId}/transfers/external)
+ * rather than by path so the number of series stays bounded. Series of a route are registered on its first request.
+ */
+class HttpMetrics {
+
+    static final String UNMATCHED_ROUTE = "unmatched";
+
+    private final MetricsRegistry metricsRegistry;
+    private final Map<HandlerType, ConcurrentMap<String, RouteMetrics>> routes = new EnumMap<>(HandlerType.class);
+
+    HttpMetrics(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        for (HandlerType method : HandlerType.values()) {
+            routes.put(method, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Records a request once it's been responded, see {@link io.javalin.config.RequestLoggerConfig#http}
+     */
+    void record(Context ctx, Float executionTimeInMillis) {
+        HandlerType method = ctx.method();
+        RouteMetrics route = routes.get(method).computeIfAbsent(route(ctx), path -> new RouteMetrics(method, path));
+        route.duration.record((long) (executionTimeInMillis * 1_000_000));
+        route.requests(ctx.statusCode()).increment();
+    }
+
+    private static String route(Context ctx) {
+        try {
+            String path = ctx.endpointHandlerPath();
+            return path.isEmpty() ? UNMATCHED_ROUTE : path;
+        } catch (IllegalStateException e) {
+            //no endpoint handled the request, e.g. 404
+            return UNMATCHED_ROUTE;
+        }
+    }
+
+    private final class RouteMetrics {
+        private final String method;
+        private final String path;
+        private final Histogram duration;
+        //by status class, created on first response of the class
+        private final Counter[] requests = new Counter[6];
+
+        private RouteMetrics(HandlerType method, String path) {
+            this.method = method.name();
+            this.path = path;
+            this.duration = metricsRegistry.histogram("http_request_duration_seconds", "Duration of http requests",
+                    "method", this.method, "route", path);
+        }
+
+        private Counter requests(int status) {
+            int statusClass = status / 100;
+            if (statusClass < 1 || statusClass >= requests.length) {
+                statusClass = 5;
+            }
+            Counter counter = requests[statusClass];
+            if (counter == null) {
+                //racing threads get the same counter from the registry
+                counter = metricsRegistry.counter("http_requests_total", "Http requests by status class",
+                        "method", method, "route", path, "status", statusClass + "xx");
+                requests[statusClass] = counter;
+            }
+            return counter;
+        }
+    }
+}
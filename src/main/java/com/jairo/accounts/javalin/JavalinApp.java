@@ -2,13 +2,28 @@ package com.jairo.accounts.javalin;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.util.Modules;
+import com.jairo.accounts.binary.BinaryTransferServer;
 import com.jairo.accounts.endpoints.AccountsResource;
+import com.jairo.accounts.endpoints.LockContentionResource;
+import com.jairo.accounts.endpoints.MetricsResource;
 import com.jairo.accounts.endpoints.TransfersResource;
 import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.FileJournal;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.service.ExternalTransferMonitoringService;
+import com.jairo.accounts.service.RecoveryService;
+import com.jairo.accounts.service.WithdrawalRetentionService;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.engine.ShardedTransferEngine;
+import com.jairo.accounts.service.engine.TransferEngine;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
 import io.javalin.Javalin;
+import io.javalin.json.JsonMapper;
 
-import java.math.BigDecimal;
-import java.util.UUID;
+import java.util.Optional;
 
 public class JavalinApp {
 
@@ -16,29 +31,91 @@ public class JavalinApp {
 
     public static final String CREATE_ACCOUNT = ACCOUNTS + "/{initialBalance}";
     private static final String INTERNAL_TRANSFER_PATH = ACCOUNTS + "/transfer/internal/from/{senderAccountId}/to/{receiverAccountId}/{amount}";
+    private static final String INTERNAL_TRANSFER_BATCH_PATH = ACCOUNTS + "/transfer/internal/batch";
     private static final String EXTERNAL_TRANSFER_PATH = ACCOUNTS + "/transfer/external/from/{senderAccountId}/to/{address}/{amount}";
     private static final String EXTERNAL_TRANSFER_LIST = ACCOUNTS + "/{accountId}/transfers/external";
     private static final String EXTERNAL_TRANSFER = ACCOUNTS + "/{accountId}/transfer/external/{transferId}";
+    private static final String EXTERNAL_TRANSFER_BY_ID = "/transfers/external/{transferId}";
+    public static final String METRICS = "/metrics";
+    public static final String LOCK_CONTENTION = "/admin/lock-contention";
 
 
     private final Javalin app;
+    private final BinaryTransferServer binaryTransferServer;
 
     public JavalinApp() {
-        Injector injector = Guice.createInjector(new AppModule());
+        this(AppModule.defaultConfig().build());
+    }
+
+    public JavalinApp(Config appConfig) {
+        this(appConfig, Modules.EMPTY_MODULE);
+    }
+
+    /**
+     * @param appConfig - app configuration
+     * @param overrides - bindings replacing the ones of {@link AppModule}, e.g. a different withdrawal service
+     */
+    public JavalinApp(Config appConfig, Module overrides) {
+        Injector injector = Guice.createInjector(Modules.override(new AppModule(appConfig)).with(overrides));
+        HttpMetrics httpMetrics = new HttpMetrics(injector.getInstance(MetricsRegistry.class));
+        JsonMapper jsonMapper = injector.getInstance(JsonMapper.class);
+        //resources are singletons, looked up once rather than on every request
+        AccountsResource accountsResource = injector.getInstance(AccountsResource.class);
+        TransfersResource transfersResource = injector.getInstance(TransfersResource.class);
+        MetricsResource metricsResource = injector.getInstance(MetricsResource.class);
+        LockContentionResource lockContentionResource = injector.getInstance(LockContentionResource.class);
+        binaryTransferServer = appConfig.getBinaryProtocolPort().isPresent() ? injector.getInstance(BinaryTransferServer.class) : null;
 
         app = Javalin.create(config -> {
-                    config.validation.register(BigDecimal.class, BigDecimal::new);
-                    config.validation.register(UUID.class, UUID::fromString);
+                    //request handlers block while calling the withdrawal service, virtual threads make it cheap
+                    config.useVirtualThreads = appConfig.isUseVirtualThreads();
+                    config.requestLogger.http(httpMetrics::record);
+                    config.jsonMapper(jsonMapper);
+                    if (binaryTransferServer != null) {
+                        //binary protocol served alongside http, on its own port
+                        config.events.serverStarted(binaryTransferServer::start);
+                        config.events.serverStopped(binaryTransferServer::stop);
+                    }
+                    //once no more requests are served
+                    config.events.serverStopped(() -> stopServices(injector));
                 })
-                .post(CREATE_ACCOUNT, ctx -> injector.getInstance(AccountsResource.class).createAccount(ctx))
-                .post(INTERNAL_TRANSFER_PATH, ctx -> injector.getInstance(TransfersResource.class).internalTransfer(ctx))
-                .post(EXTERNAL_TRANSFER_PATH, ctx -> injector.getInstance(TransfersResource.class).externalTransfer(ctx))
-                .get(EXTERNAL_TRANSFER, ctx -> injector.getInstance(TransfersResource.class).getExternalTransfer(ctx))
-                .get(EXTERNAL_TRANSFER_LIST, ctx -> injector.getInstance(TransfersResource.class).listExternalTransfers(ctx));
+                .post(CREATE_ACCOUNT, accountsResource::createAccount)
+                .post(INTERNAL_TRANSFER_PATH, transfersResource::internalTransfer)
+                .post(INTERNAL_TRANSFER_BATCH_PATH, transfersResource::internalTransferBatch)
+                .post(EXTERNAL_TRANSFER_PATH, transfersResource::externalTransfer)
+                .get(EXTERNAL_TRANSFER, transfersResource::getExternalTransfer)
+                .get(EXTERNAL_TRANSFER_BY_ID, transfersResource::getExternalTransferById)
+                .get(EXTERNAL_TRANSFER_LIST, transfersResource::listExternalTransfers)
+                .get(METRICS, metricsResource::metrics)
+                .get(LOCK_CONTENTION, lockContentionResource::getLockContention)
+                .delete(LOCK_CONTENTION, lockContentionResource::resetLockContention);
+    }
 
+    /**
+     * Stops the services of the app, each one before the ones it depends on: transfers, withdrawal monitoring and
+     * retention, snapshots, then the journal and the account files.
+     */
+    private static void stopServices(Injector injector) {
+        if (injector.getInstance(TransferEngine.class) instanceof ShardedTransferEngine shardedTransferEngine) {
+            shardedTransferEngine.shutdown();
+        }
+        injector.getInstance(ExternalTransferMonitoringService.class).shutdown();
+        injector.getInstance(WithdrawalRetentionService.class).shutdown();
+        injector.getInstance(RecoveryService.class).shutdown();
+        if (injector.getInstance(Journal.class) instanceof FileJournal fileJournal) {
+            fileJournal.close();
+        }
+        injector.getInstance(AccountsRepository.class).close();
     }
 
     public Javalin getApp() {
         return app;
     }
+
+    /**
+     * @return server of the binary transfer protocol, if a port is configured for it
+     */
+    public Optional<BinaryTransferServer> getBinaryTransferServer() {
+        return Optional.ofNullable(binaryTransferServer);
+    }
 }
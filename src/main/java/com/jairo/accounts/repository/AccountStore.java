@@ -0,0 +1,46 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.Balance;
+
+import java.util.function.Consumer;
+
+/**
+ * Accounts by id, as kept by {@link AccountsRepository}. Implementations are thread safe.
+ */
+public interface AccountStore {
+
+    /**
+     * @return account with such id, null if there's none
+     */
+    Account get(long accountId);
+
+    /**
+     * Adds an account, replacing the one with same id if any.
+     * @return added account
+     */
+    Account add(long accountId, Balance balance);
+
+    /**
+     * Applies action to every account, weakly consistent with concurrent adds.
+     */
+    void forEach(Consumer<Account> action);
+
+    /**
+     * Applies action to every account which has a withdrawal history, weakly consistent with concurrent updates.
+     */
+    default void forEachWithWithdrawalHistory(Consumer<Account> action) {
+        forEach(account -> {
+            if (account.hasWithdrawalHistory()) {
+                action.accept(account);
+            }
+        });
+    }
+
+    long size();
+
+    /**
+     * @return highest account id in the store, 0 if it's empty
+     */
+    long maxId();
+}
@@ -1,27 +1,194 @@
 package com.jairo.accounts.repository;
 
 import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.Balance;
+import com.jairo.accounts.domain.BigDecimalBalance;
+import com.jairo.accounts.domain.FixedPointBalance;
+import com.jairo.accounts.domain.StripedBalance;
+import com.jairo.accounts.domain.TransferId;
+import com.jairo.accounts.domain.WithdrawalHistory;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.AccountOpened;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.RetentionPolicy;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Singleton
 public class AccountsRepository {
 
-    private AtomicLong sequence = new AtomicLong(1);
-    private Map<Long, Account> accountRepo = new ConcurrentHashMap<>();
+    private final AtomicLong sequence;
+    private final AccountStore accountStore;
+    private final Map<UUID, Long> accountIdByExternalTransferId = new ConcurrentHashMap<>();
+    private final BalanceFactory balanceFactory;
+    private final BalanceFactory hotBalanceFactory;
+    private final WithdrawalArchive withdrawalArchive;
+    private final Journal journal;
+
+    public AccountsRepository() {
+        this(Config.builder().build());
+    }
+
+    public AccountsRepository(Config config) {
+        this(config, Journal.NONE);
+    }
+
+    @Inject
+    public AccountsRepository(Config config, Journal journal) {
+        this(config, switch (config.getAccountStoreType()) {
+            case CONCURRENT_MAP -> new ConcurrentMapAccountStore();
+            case SEGMENTED_ARRAY -> new SegmentedArrayAccountStore();
+            case MAPPED_FILE -> new MappedAccountStore(config.getMappedAccountsFile(), config.getBalanceScale());
+        }, journal);
+    }
+
+    AccountsRepository(Config config, AccountStore accountStore) {
+        this(config, accountStore, Journal.NONE);
+    }
+
+    AccountsRepository(Config config, AccountStore accountStore, Journal journal) {
+        this.accountStore = accountStore;
+        this.journal = journal;
+        if (accountStore instanceof MappedAccountStore mappedAccountStore) {
+            //mapped balances are fixed point and kept off heap, hot accounts included
+            this.balanceFactory = mappedAccountStore::newBalance;
+            this.hotBalanceFactory = mappedAccountStore::newBalance;
+        } else {
+            this.balanceFactory = switch (config.getBalanceType()) {
+                case BIG_DECIMAL -> (accountId, initialBalance) -> new BigDecimalBalance(initialBalance);
+                case FIXED_POINT -> (accountId, initialBalance) -> new FixedPointBalance(initialBalance, config.getBalanceScale());
+            };
+            this.hotBalanceFactory = (accountId, initialBalance) ->
+                    new StripedBalance(initialBalance, config.getBalanceScale(), config.getHotAccountStripes());
+        }
+        //ids carry on from the accounts already in a persistent store
+        this.sequence = new AtomicLong(accountStore.maxId() + 1);
+        //archived withdrawals are keyed by account id, only kept when the accounts they belong to are recovered
+        boolean accountsRecovered = accountStore instanceof MappedAccountStore || config.getJournalFile().isPresent();
+        this.withdrawalArchive = config.getRetentionPolicy()
+                .<WithdrawalArchive>map(retentionPolicy -> new FileWithdrawalArchive(retentionPolicy.archiveFile(), accountsRecovered))
+                .orElse(WithdrawalArchive.NONE);
+    }
 
     public Optional<Account> findById(Long accountId) {
-        return Optional.ofNullable(accountRepo.getOrDefault(accountId, null));
+        return Optional.ofNullable(accountStore.get(accountId));
+    }
+
+    /**
+     * @return sender account of the external transfer, if it has been indexed with {@link #indexExternalTransfer}
+     */
+    public Optional<Account> findByExternalTransferId(TransferId transferId) {
+        Long accountId = accountIdByExternalTransferId.get(transferId.value());
+        return accountId == null ? Optional.empty() : findById(accountId);
+    }
+
+    public void indexExternalTransfer(TransferId transferId, Long accountId) {
+        accountIdByExternalTransferId.put(transferId.value(), accountId);
+    }
+
+    /**
+     * Moves the settled withdrawals of every account which are out of the retention policy to the archive. Archived
+     * transfers are no longer indexed by id, they can only be found through their account.
+     * @return number of withdrawals archived
+     */
+    public int archiveSettledWithdrawals(RetentionPolicy retentionPolicy, long nowInMillis) {
+        long requestedBeforeInMillis = retentionPolicy.hasMaxAge() ? nowInMillis - retentionPolicy.maxAgeInMillis() : Long.MIN_VALUE;
+        int[] archived = new int[1];
+        accountStore.forEachWithWithdrawalHistory(account -> {
+            List<WithdrawalHistory.Entry> entries = account.getWithdrawalHistory().removeSettled(requestedBeforeInMillis,
+                    retentionPolicy.maxCount(), settled -> withdrawalArchive.append(account.getId(), settled));
+            for (WithdrawalHistory.Entry entry : entries) {
+                accountIdByExternalTransferId.remove(entry.getWithdrawal().withdrawalId().value());
+            }
+            archived[0] += entries.size();
+        });
+        return archived[0];
+    }
+
+    /**
+     * @return archived withdrawals of the account, lazily read in request order, with the contract of
+     * {@link WithdrawalHistory#inRequestOrder}
+     */
+    public Stream<WithdrawalHistory.Entry> findArchivedWithdrawals(Long accountId, WithdrawalHistory.Cursor after, long fromInMillis, long toInMillis) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                withdrawalArchive.inRequestOrder(accountId, after, fromInMillis, toInMillis), Spliterator.ORDERED), false);
+    }
+
+    public Optional<WithdrawalHistory.Entry> findArchivedWithdrawal(Long accountId, WithdrawalId withdrawalId) {
+        return withdrawalArchive.find(accountId, withdrawalId);
+    }
+
+    public long size() {
+        return accountStore.size();
     }
 
     public Account createNew(BigDecimal initialBalance) {
-        Account account = new Account(sequence.getAndIncrement(), initialBalance);
-        accountRepo.put(account.getId(), account);
+        return add(balanceFactory, initialBalance);
+    }
+
+    /**
+     * Creates an account receiving lots of concurrent deposits (e.g. a merchant), whose balance is striped so deposits
+     * don't contend with each other. Amounts can't have more decimal places than the configured balance scale.
+     * Balances of a {@link Config.AccountStoreType#MAPPED_FILE} store aren't striped.
+     */
+    public Account createNewHot(BigDecimal initialBalance) {
+        return add(hotBalanceFactory, initialBalance);
+    }
+
+    /**
+     * Adds an account with given id and balance without journaling it, e.g. when restoring accounts from a snapshot.
+     * Accounts created afterwards get higher ids.
+     */
+    public Account restore(long accountId, BigDecimal balance, boolean hot) {
+        Account account = accountStore.add(accountId, (hot ? hotBalanceFactory : balanceFactory).create(accountId, balance));
+        sequence.accumulateAndGet(accountId + 1, Math::max);
         return account;
     }
+
+    private Account add(BalanceFactory factory, BigDecimal initialBalance) {
+        long accountId = sequence.getAndIncrement();
+        //validates the initial balance, the account can't be found yet (a mapped record isn't published)
+        Balance balance = factory.create(accountId, initialBalance);
+        //journaled before the account is added to the store, so nothing moving its funds is journaled first, and an
+        //account whose opening failed to be journaled is never found (its id is just skipped)
+        journal.append(new AccountOpened(accountId, initialBalance, factory == hotBalanceFactory));
+        return accountStore.add(accountId, balance);
+    }
+
+    @FunctionalInterface
+    private interface BalanceFactory {
+        Balance create(long accountId, BigDecimal initialBalance);
+    }
+
+    /**
+     * Closes the files of the account store and withdrawal archive, if any. Accounts are no longer readable once closed.
+     */
+    public void close() {
+        try {
+            if (accountStore instanceof Closeable closeableStore) {
+                closeableStore.close();
+            }
+            if (withdrawalArchive instanceof Closeable closeableArchive) {
+                closeableArchive.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't close accounts", e);
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.Balance;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Accounts in a {@link ConcurrentHashMap}, works with any ids but costs a map node and a boxed key per account.
+ */
+public class ConcurrentMapAccountStore implements AccountStore {
+
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+    private final AtomicLong maxId = new AtomicLong();
+
+    @Override
+    public Account get(long accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public Account add(long accountId, Balance balance) {
+        Account account = new Account(accountId, balance);
+        accounts.put(accountId, account);
+        maxId.accumulateAndGet(accountId, Math::max);
+        return account;
+    }
+
+    @Override
+    public void forEach(Consumer<Account> action) {
+        accounts.values().forEach(action);
+    }
+
+    @Override
+    public long maxId() {
+        return maxId.get();
+    }
+
+    @Override
+    public long size() {
+        return accounts.size();
+    }
+}
@@ -0,0 +1,295 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.RequestedExternalWithdrawal;
+import com.jairo.accounts.domain.WithdrawalHistory.Cursor;
+import com.jairo.accounts.domain.WithdrawalHistory.Entry;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Archive appending withdrawals to a single file, as length prefixed binary records. The only thing kept on the heap
+ * is, per account, the request time, sequence and file offset of each archived withdrawal (24 bytes) sorted in request
+ * order, so listings seek straight to their first record. The index is rebuilt from the file on startup, a truncated
+ * record left by a crash is dropped. Records are keyed by account id, so they're only meaningful to a run recovering
+ * the accounts of the run which archived them.
+ * <p>
+ * Looking an archived withdrawal up by id reads every archived record of the account.
+ */
+public class FileWithdrawalArchive implements WithdrawalArchive, Closeable {
+
+    private static final WithdrawalState[] STATES = WithdrawalState.values();
+
+    private final FileChannel channel;
+    private final Map<Long, AccountIndex> indexByAccountId = new ConcurrentHashMap<>();
+    private long size;
+
+    public FileWithdrawalArchive(Path file) {
+        this(file, true);
+    }
+
+    /**
+     * @param keepArchived - false to start from an empty archive, e.g. when accounts aren't persisted: their ids
+     *                     start over, and withdrawals archived by a previous run would be listed for unrelated accounts
+     */
+    public FileWithdrawalArchive(Path file, boolean keepArchived) {
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!keepArchived) {
+                channel.truncate(0);
+            }
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open withdrawal archive " + file, e);
+        }
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        long offset = 0;
+        while (offset + Integer.BYTES <= fileSize) {
+            int length = readLength(offset);
+            if (length <= 0 || offset + Integer.BYTES + length > fileSize) {
+                break;
+            }
+            DataInputStream record = readRecord(offset, length);
+            Long accountId = record.readLong();
+            index(accountId).add(record.readLong(), record.readLong(), offset);
+            offset += Integer.BYTES + length;
+        }
+        if (offset < fileSize) {
+            channel.truncate(offset);
+        }
+        size = offset;
+    }
+
+    @Override
+    public synchronized void append(Long accountId, List<Entry> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 128);
+        long[] offsets = new long[entries.size()];
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (int i = 0; i < entries.size(); i++) {
+                offsets[i] = size + bytes.size();
+                byte[] record = encode(accountId, entries.get(i));
+                out.writeInt(record.length);
+                out.write(record);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            long position = size;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't archive withdrawals of account " + accountId, e);
+        }
+        size += bytes.size();
+        //records are indexed once written, so readers never see an offset past the end of the file
+        AccountIndex index = index(accountId);
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            index.add(entry.getRequestedAtInMillis(), entry.getSequence(), offsets[i]);
+        }
+    }
+
+    @Override
+    public Iterator<Entry> inRequestOrder(Long accountId, Cursor after, long fromInMillis, long toInMillis) {
+        AccountIndex index = indexByAccountId.get(accountId);
+        if (index == null) {
+            return Collections.emptyIterator();
+        }
+        boolean fromCursor = after != null && compare(after.requestedAtInMillis(), after.sequence(), fromInMillis, Long.MIN_VALUE) >= 0;
+        return new Iterator<>() {
+            //next position is looked up again on every step, so withdrawals archived meanwhile are picked up
+            private long requestedAtInMillis = fromCursor ? after.requestedAtInMillis() : fromInMillis;
+            private long sequence = fromCursor ? after.sequence() : Long.MIN_VALUE;
+            private boolean inclusive = !fromCursor;
+            private Position next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    Position position = index.next(requestedAtInMillis, sequence, inclusive);
+                    if (position != null && position.requestedAtInMillis() < toInMillis) {
+                        next = position;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Position position = next;
+                next = null;
+                requestedAtInMillis = position.requestedAtInMillis();
+                sequence = position.sequence();
+                inclusive = false;
+                return read(position.offset());
+            }
+        };
+    }
+
+    @Override
+    public Optional<Entry> find(Long accountId, WithdrawalId withdrawalId) {
+        Iterator<Entry> entries = inRequestOrder(accountId, null, Long.MIN_VALUE, Long.MAX_VALUE);
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry.getWithdrawal().withdrawalId().equals(withdrawalId)) {
+                return Optional.of(entry);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private AccountIndex index(Long accountId) {
+        return indexByAccountId.computeIfAbsent(accountId, id -> new AccountIndex());
+    }
+
+    private static byte[] encode(Long accountId, Entry entry) throws IOException {
+        RequestedExternalWithdrawal withdrawal = entry.getWithdrawal();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(accountId);
+        out.writeLong(entry.getRequestedAtInMillis());
+        out.writeLong(entry.getSequence());
+        UUID id = withdrawal.withdrawalId().value();
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+        out.writeByte(withdrawal.withdrawalState().ordinal());
+        out.writeInt(withdrawal.amount().scale());
+        byte[] unscaled = withdrawal.amount().unscaledValue().toByteArray();
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+        out.writeUTF(withdrawal.address().value());
+        return bytes.toByteArray();
+    }
+
+    private Entry read(long offset) {
+        try {
+            DataInputStream in = readRecord(offset, readLength(offset));
+            in.readLong();
+            long requestedAtInMillis = in.readLong();
+            long sequence = in.readLong();
+            WithdrawalId id = new WithdrawalId(new UUID(in.readLong(), in.readLong()));
+            WithdrawalState state = STATES[in.readByte()];
+            int scale = in.readInt();
+            byte[] unscaled = new byte[in.readShort()];
+            in.readFully(unscaled);
+            BigDecimal amount = new BigDecimal(new BigInteger(unscaled), scale);
+            Address address = new Address(in.readUTF());
+            return Entry.of(new RequestedExternalWithdrawal(id, state, amount, address), requestedAtInMillis, sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read archived withdrawal at offset " + offset, e);
+        }
+    }
+
+    private int readLength(long offset) throws IOException {
+        return readFully(offset, Integer.BYTES).getInt();
+    }
+
+    private DataInputStream readRecord(long offset, int length) throws IOException {
+        ByteBuffer record = readFully(offset + Integer.BYTES, length);
+        return new DataInputStream(new ByteArrayInputStream(record.array()));
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of withdrawal archive");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static int compare(long requestedAtInMillis, long sequence, long otherRequestedAtInMillis, long otherSequence) {
+        int comparison = Long.compare(requestedAtInMillis, otherRequestedAtInMillis);
+        return comparison != 0 ? comparison : Long.compare(sequence, otherSequence);
+    }
+
+    private record Position(long requestedAtInMillis, long sequence, long offset) {}
+
+    /**
+     * Positions of the archived withdrawals of an account, sorted in request order. Withdrawals are mostly archived in
+     * request order, so inserting usually appends.
+     */
+    private static final class AccountIndex {
+        private long[] requestedAtInMillis = new long[8];
+        private long[] sequences = new long[8];
+        private long[] offsets = new long[8];
+        private int size;
+
+        synchronized void add(long requestedAtInMillis, long sequence, long offset) {
+            if (size == offsets.length) {
+                int capacity = size * 2;
+                this.requestedAtInMillis = Arrays.copyOf(this.requestedAtInMillis, capacity);
+                this.sequences = Arrays.copyOf(sequences, capacity);
+                this.offsets = Arrays.copyOf(offsets, capacity);
+            }
+            int index = search(requestedAtInMillis, sequence, false);
+            int moved = size - index;
+            System.arraycopy(this.requestedAtInMillis, index, this.requestedAtInMillis, index + 1, moved);
+            System.arraycopy(sequences, index, sequences, index + 1, moved);
+            System.arraycopy(offsets, index, offsets, index + 1, moved);
+            this.requestedAtInMillis[index] = requestedAtInMillis;
+            sequences[index] = sequence;
+            offsets[index] = offset;
+            size++;
+        }
+
+        /**
+         * @return first position after (or at, if inclusive) the given one, null if there's none
+         */
+        synchronized Position next(long requestedAtInMillis, long sequence, boolean inclusive) {
+            int index = search(requestedAtInMillis, sequence, inclusive);
+            return index == size ? null : new Position(this.requestedAtInMillis[index], sequences[index], offsets[index]);
+        }
+
+        private int search(long requestedAtInMillis, long sequence, boolean inclusive) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(this.requestedAtInMillis[middle], sequences[middle], requestedAtInMillis, sequence);
+                if (comparison < 0 || comparison == 0 && !inclusive) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.Balance;
+import com.jairo.accounts.domain.MappedBalance;
+import com.jairo.accounts.domain.WithdrawalHistory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Accounts kept off heap in a memory mapped file, as fixed width records indexed by account id: balance (minor units,
+ * updated with CAS on the mapping, see {@link MappedBalance}), creation time and flags. The file is mapped in chunks
+ * of 1M records on first use, reopening it is instant (nothing is replayed) and balances survive a restart of the
+ * process; they're only forced to disk on {@link #force()} or {@link #close()}, so an OS crash may lose recent updates.
+ * <p>
+ * Account objects are short-lived flyweights over the records, created on every lookup, so the heap doesn't grow with
+ * the number of accounts. As several instances may stand for the same account, they lock one of
+ * {@value #LOCK_STRIPES} shared locks picked by id (see {@link Account#getLock()}). Withdrawal histories are kept on the
+ * heap, by account id.
+ */
+public class MappedAccountStore implements AccountStore, Closeable {
+
+    static final int RECORD_SIZE = 32;
+    static final int CHUNK_RECORDS = 1 << 20;
+    static final long MAX_ACCOUNTS = 1L << 31;
+    static final int LOCK_STRIPES = 4096;
+
+    private static final long MAGIC = 0x4143435453544f52L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final long CHUNK_BYTES = (long) CHUNK_RECORDS * RECORD_SIZE;
+    //header fields
+    private static final int MAGIC_INDEX = 0;
+    private static final int VERSION_INDEX = 8;
+    private static final int RECORD_SIZE_INDEX = 12;
+    private static final int SCALE_INDEX = 16;
+    private static final int BYTE_ORDER_INDEX = 20;
+    private static final int MAX_ID_INDEX = 24;
+    //record fields
+    private static final int BALANCE_OFFSET = 0;
+    private static final int CREATED_AT_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 16;
+    private static final long EXISTS = 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle CHUNKS = MethodHandles.arrayElementVarHandle(MappedByteBuffer[].class);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] chunks = new MappedByteBuffer[(int) (MAX_ACCOUNTS / CHUNK_RECORDS)];
+    private final int scale;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Map<Long, WithdrawalHistory> withdrawalHistories = new ConcurrentHashMap<>();
+
+    /**
+     * @param scale - number of decimal places of the balances, must be the one the file was created with
+     */
+    public MappedAccountStore(Path file, int scale) {
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = channel.size() == 0;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+            if (created) {
+                header.putInt(VERSION_INDEX, VERSION);
+                header.putInt(RECORD_SIZE_INDEX, RECORD_SIZE);
+                header.putInt(SCALE_INDEX, scale);
+                header.putInt(BYTE_ORDER_INDEX, byteOrder());
+                header.putLong(MAGIC_INDEX, MAGIC);
+                header.force();
+            } else {
+                checkHeader(file, scale);
+            }
+            this.scale = scale;
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new Object();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open account store " + file, e);
+        }
+    }
+
+    private void checkHeader(Path file, int scale) {
+        if (header.getLong(MAGIC_INDEX) != MAGIC || header.getInt(VERSION_INDEX) != VERSION
+                || header.getInt(RECORD_SIZE_INDEX) != RECORD_SIZE || header.getInt(BYTE_ORDER_INDEX) != byteOrder()) {
+            throw new IllegalStateException("File " + file + " isn't an account store of this version and platform");
+        }
+        if (header.getInt(SCALE_INDEX) != scale) {
+            throw new IllegalStateException("Account store " + file + " has balance scale " + header.getInt(SCALE_INDEX) + ", not " + scale);
+        }
+    }
+
+    private static int byteOrder() {
+        return ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 1 : 2;
+    }
+
+    /**
+     * Writes the record of a new account, which can't be found until it's published by {@link #add(long, Balance)}.
+     * @return its balance, to be passed to {@link #add(long, Balance)}
+     */
+    public Balance newBalance(long accountId, BigDecimal initialBalance) {
+        checkRange(accountId);
+        MappedByteBuffer chunk = chunk(accountId);
+        int record = recordIndex(accountId);
+        MappedBalance balance = MappedBalance.initialize(chunk, record + BALANCE_OFFSET, scale, initialBalance);
+        LONGS.setVolatile(chunk, record + CREATED_AT_OFFSET, System.currentTimeMillis());
+        return balance;
+    }
+
+    /**
+     * Publishes the record written by {@link #newBalance(long, BigDecimal)}: the account can be found from now on, and
+     * is kept across restarts.
+     * @param balance - balance returned by {@link #newBalance(long, BigDecimal)} for the same id
+     */
+    @Override
+    public Account add(long accountId, Balance balance) {
+        if (!(balance instanceof MappedBalance)) {
+            throw new IllegalArgumentException("Balance of a mapped account must come from newBalance");
+        }
+        MappedByteBuffer chunk = chunk(accountId);
+        //release so a reader seeing the flag sees the whole record
+        LONGS.setRelease(chunk, recordIndex(accountId) + FLAGS_OFFSET, EXISTS);
+        long maxId;
+        do {
+            maxId = (long) LONGS.getVolatile(header, MAX_ID_INDEX);
+        } while (maxId < accountId && !LONGS.weakCompareAndSet(header, MAX_ID_INDEX, maxId, accountId));
+        return get(accountId);
+    }
+
+    @Override
+    public Account get(long accountId) {
+        if (accountId < 0 || accountId > maxId()) {
+            return null;
+        }
+        MappedByteBuffer chunk = chunk(accountId);
+        int record = recordIndex(accountId);
+        if ((long) LONGS.getAcquire(chunk, record + FLAGS_OFFSET) != EXISTS) {
+            return null;
+        }
+        return new MappedAccount(accountId, new MappedBalance(chunk, record + BALANCE_OFFSET, scale));
+    }
+
+    /**
+     * Materializes every account, prefer {@link #forEachWithWithdrawalHistory(Consumer)} when possible.
+     */
+    @Override
+    public void forEach(Consumer<Account> action) {
+        long maxId = maxId();
+        for (long accountId = 0; accountId <= maxId; accountId++) {
+            Account account = get(accountId);
+            if (account != null) {
+                action.accept(account);
+            }
+        }
+    }
+
+    @Override
+    public void forEachWithWithdrawalHistory(Consumer<Account> action) {
+        withdrawalHistories.keySet().forEach(accountId -> action.accept(get(accountId)));
+    }
+
+    /**
+     * @return number of accounts, counted by scanning the records
+     */
+    @Override
+    public long size() {
+        long size = 0;
+        long maxId = maxId();
+        for (long accountId = 0; accountId <= maxId; accountId++) {
+            if ((long) LONGS.getAcquire(chunk(accountId), recordIndex(accountId) + FLAGS_OFFSET) == EXISTS) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long maxId() {
+        return (long) LONGS.getVolatile(header, MAX_ID_INDEX);
+    }
+
+    /**
+     * Forces every update to disk.
+     */
+    public void force() {
+        for (int i = 0; i < chunks.length; i++) {
+            MappedByteBuffer chunk = (MappedByteBuffer) CHUNKS.getAcquire(chunks, i);
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+        header.force();
+    }
+
+    /**
+     * Forces every update to disk and closes the file, the mapping itself stays valid until collected.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private MappedByteBuffer chunk(long accountId) {
+        int index = (int) (accountId / CHUNK_RECORDS);
+        MappedByteBuffer chunk = (MappedByteBuffer) CHUNKS.getAcquire(chunks, index);
+        if (chunk != null) {
+            return chunk;
+        }
+        synchronized (this) {
+            chunk = chunks[index];
+            if (chunk == null) {
+                try {
+                    //mapping beyond the end of the file grows it
+                    chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * CHUNK_BYTES, CHUNK_BYTES);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Can't map accounts from id " + (long) index * CHUNK_RECORDS, e);
+                }
+                CHUNKS.setRelease(chunks, index, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    private static int recordIndex(long accountId) {
+        return (int) (accountId % CHUNK_RECORDS) * RECORD_SIZE;
+    }
+
+    private static void checkRange(long accountId) {
+        if (accountId < 0 || accountId >= MAX_ACCOUNTS) {
+            throw new IllegalArgumentException("Account id must be in range [0, " + MAX_ACCOUNTS + ")");
+        }
+    }
+
+    private final class MappedAccount extends Account {
+
+        private MappedAccount(long accountId, MappedBalance balance) {
+            super(accountId, balance);
+        }
+
+        @Override
+        public WithdrawalHistory getWithdrawalHistory() {
+            return withdrawalHistories.computeIfAbsent(getId(), accountId -> new WithdrawalHistory());
+        }
+
+        @Override
+        public WithdrawalHistory findWithdrawalHistory() {
+            return withdrawalHistories.get(getId());
+        }
+
+        @Override
+        public Object getLock() {
+            return locks[(int) getLockOrder()];
+        }
+
+        @Override
+        public long getLockOrder() {
+            return getId() & (LOCK_STRIPES - 1);
+        }
+    }
+}
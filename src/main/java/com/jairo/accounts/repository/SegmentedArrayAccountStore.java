@@ -0,0 +1,92 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.Balance;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Accounts in a two level array indexed by id, for the dense ids handed out by {@link AccountsRepository}: the id
+ * selects a segment of 64K references, allocated on first put, then a slot in it. An account costs a single
+ * reference on top of the account itself, with no map node or boxed key.
+ * <p>
+ * Ids must be in range [0, 2^31), reads are lock-free.
+ */
+public class SegmentedArrayAccountStore implements AccountStore {
+
+    static final int SEGMENT_BITS = 16;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    static final long MAX_ACCOUNTS = 1L << 31;
+
+    private static final VarHandle SEGMENTS = MethodHandles.arrayElementVarHandle(Account[][].class);
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Account[].class);
+
+    private final Account[][] segments = new Account[(int) (MAX_ACCOUNTS >>> SEGMENT_BITS)][];
+    private final LongAdder size = new LongAdder();
+    private final AtomicLong maxId = new AtomicLong();
+
+    @Override
+    public Account get(long accountId) {
+        if (accountId < 0 || accountId >= MAX_ACCOUNTS) {
+            return null;
+        }
+        Account[] segment = (Account[]) SEGMENTS.getAcquire(segments, (int) (accountId >>> SEGMENT_BITS));
+        return segment == null ? null : (Account) SLOTS.getAcquire(segment, (int) accountId & (SEGMENT_SIZE - 1));
+    }
+
+    @Override
+    public Account add(long accountId, Balance balance) {
+        if (accountId < 0 || accountId >= MAX_ACCOUNTS) {
+            throw new IllegalArgumentException("Account id must be in range [0, " + MAX_ACCOUNTS + ")");
+        }
+        Account account = new Account(accountId, balance);
+        Account[] segment = segment((int) (accountId >>> SEGMENT_BITS));
+        //release so readers see a fully constructed account
+        Account replaced = (Account) SLOTS.getAndSetRelease(segment, (int) accountId & (SEGMENT_SIZE - 1), account);
+        if (replaced == null) {
+            size.increment();
+        }
+        maxId.accumulateAndGet(accountId, Math::max);
+        return account;
+    }
+
+    private Account[] segment(int index) {
+        Account[] segment = (Account[]) SEGMENTS.getAcquire(segments, index);
+        if (segment != null) {
+            return segment;
+        }
+        segment = new Account[SEGMENT_SIZE];
+        Account[] witness = (Account[]) SEGMENTS.compareAndExchangeRelease(segments, index, null, segment);
+        return witness == null ? segment : witness;
+    }
+
+    @Override
+    public void forEach(Consumer<Account> action) {
+        for (int i = 0; i < segments.length; i++) {
+            Account[] segment = (Account[]) SEGMENTS.getAcquire(segments, i);
+            if (segment == null) {
+                continue;
+            }
+            for (int j = 0; j < SEGMENT_SIZE; j++) {
+                Account account = (Account) SLOTS.getAcquire(segment, j);
+                if (account != null) {
+                    action.accept(account);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long maxId() {
+        return maxId.get();
+    }
+
+    @Override
+    public long size() {
+        return size.sum();
+    }
+}
@@ -0,0 +1,50 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.WithdrawalHistory.Cursor;
+import com.jairo.accounts.domain.WithdrawalHistory.Entry;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Settled withdrawals moved out of the accounts {@link com.jairo.accounts.domain.WithdrawalHistory}, still readable
+ * in request order. Archived withdrawals are never updated.
+ */
+public interface WithdrawalArchive {
+
+    /**
+     * Archive keeping nothing, used when no retention policy is configured.
+     */
+    WithdrawalArchive NONE = new WithdrawalArchive() {
+        @Override
+        public void append(Long accountId, List<Entry> entries) {
+            throw new UnsupportedOperationException("No withdrawal archive configured");
+        }
+
+        @Override
+        public Iterator<Entry> inRequestOrder(Long accountId, Cursor after, long fromInMillis, long toInMillis) {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public Optional<Entry> find(Long accountId, WithdrawalId withdrawalId) {
+            return Optional.empty();
+        }
+    };
+
+    /**
+     * Archives the entries of the account, they're readable once this returns.
+     * @throws java.io.UncheckedIOException if they couldn't be archived
+     */
+    void append(Long accountId, List<Entry> entries);
+
+    /**
+     * Same contract as {@link com.jairo.accounts.domain.WithdrawalHistory#inRequestOrder(Cursor, long, long)}.
+     */
+    Iterator<Entry> inRequestOrder(Long accountId, Cursor after, long fromInMillis, long toInMillis);
+
+    Optional<Entry> find(Long accountId, WithdrawalId withdrawalId);
+}
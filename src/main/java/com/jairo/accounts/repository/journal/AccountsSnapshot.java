@@ -0,0 +1,478 @@
+package com.jairo.accounts.repository.journal;
+
+import com.jairo.accounts.repository.journal.JournalEvent.AccountOpened;
+import com.jairo.accounts.repository.journal.JournalEvent.Transferred;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalRequested;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalStateChanged;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * State of the accounts as of a position of the {@link Journal}: balances and withdrawals still PROCESSING, built by
+ * applying journal events. Settled withdrawals aren't kept.
+ * <p>
+ * Applying events rather than copying live balances makes the state exact at its journal position while writers keep
+ * going, the way a replica of the journal would. Balances are kept in primitive arrays indexed by account id (a
+ * balance whose unscaled value doesn't fit a long is kept aside), so millions of accounts cost a few bytes each.
+ * <p>
+ * Snapshot files hold the journal position followed by the accounts in id order, ids as deltas and balances as
+ * variable length integers, then the pending withdrawals, and end with a CRC32C of the whole content. They're written
+ * to a temporary file first and moved over the previous one, so a crash never leaves a partial snapshot.
+ * <p>
+ * Not thread safe, meant to be used by a single thread.
+ */
+public final class AccountsSnapshot {
+
+    private static final int MAGIC = 0x4A534E50;
+    private static final int VERSION = 1;
+
+    private static final byte EXISTS = 1;
+    private static final byte HOT = 2;
+    //balance kept in bigBalances
+    private static final byte BIG = 4;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    //room for the largest value written at once without the buffer being drained
+    private static final int MAX_VALUE_SIZE = 16;
+
+    private long journalPosition;
+    private byte[] flags = new byte[1024];
+    private long[] units = new long[1024];
+    private byte[] scales = new byte[1024];
+    private final Map<Integer, BigDecimal> bigBalances = new HashMap<>();
+    private int numberOfAccounts;
+    private final Map<UUID, WithdrawalRequested> pendingWithdrawals = new LinkedHashMap<>();
+
+    @FunctionalInterface
+    public interface AccountConsumer {
+        void accept(long accountId, BigDecimal balance, boolean hot);
+    }
+
+    /**
+     * @return position following the last journal event applied
+     */
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+
+    public int getNumberOfAccounts() {
+        return numberOfAccounts;
+    }
+
+    /**
+     * Applies the durable events appended to given journal since the last ones applied.
+     * @param toPosition - position up to which events are durable, see {@link Journal#getDurablePosition()}
+     * @return number of events applied
+     */
+    public long applyJournal(Path journalFile, long toPosition) {
+        long[] applied = new long[1];
+        journalPosition = FileJournal.read(journalFile, journalPosition, toPosition, event -> {
+            apply(event);
+            applied[0]++;
+        });
+        return applied[0];
+    }
+
+    public void apply(JournalEvent event) {
+        if (event instanceof AccountOpened opened) {
+            int index = index(opened.accountId());
+            ensureCapacity(index);
+            if (!exists(index)) {
+                numberOfAccounts++;
+            }
+            flags[index] = (byte) (EXISTS | (opened.hot() ? HOT : 0));
+            setBalance(index, opened.initialBalance());
+        } else if (event instanceof Transferred transferred) {
+            int sender = existingIndex(transferred.senderAccountId());
+            int receiver = existingIndex(transferred.receiverAccountId());
+            setBalance(sender, getBalance(sender).subtract(transferred.amount()));
+            setBalance(receiver, getBalance(receiver).add(transferred.amount()));
+        } else if (event instanceof WithdrawalRequested requested) {
+            int index = existingIndex(requested.accountId());
+            setBalance(index, getBalance(index).subtract(requested.amount()));
+            pendingWithdrawals.put(requested.withdrawalId(), requested);
+        } else if (event instanceof WithdrawalStateChanged changed) {
+            //a withdrawal which isn't pending has already been settled, e.g. a failure following a failed request
+            WithdrawalRequested requested = pendingWithdrawals.remove(changed.withdrawalId());
+            if (requested != null && changed.state() == WithdrawalState.FAILED) {
+                int index = existingIndex(requested.accountId());
+                setBalance(index, getBalance(index).add(requested.amount()));
+            }
+        }
+    }
+
+    /**
+     * Calls given consumer for each account, in id order.
+     */
+    public void forEachAccount(AccountConsumer consumer) {
+        for (int index = 0; index < flags.length; index++) {
+            if (exists(index)) {
+                consumer.accept(index, getBalance(index), (flags[index] & HOT) != 0);
+            }
+        }
+    }
+
+    /**
+     * @return withdrawals still PROCESSING, in request order
+     */
+    public Collection<WithdrawalRequested> getPendingWithdrawals() {
+        return List.copyOf(pendingWithdrawals.values());
+    }
+
+    public void write(Path file) {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(journalPosition);
+            out.writeInt(numberOfAccounts);
+            int previousIndex = 0;
+            for (int index = 0; index < flags.length; index++) {
+                if (exists(index)) {
+                    out.writeVarLong(index - previousIndex);
+                    out.writeByte(flags[index] & ~BIG);
+                    out.writeAmount(getBalance(index));
+                    previousIndex = index;
+                }
+            }
+            out.writeInt(pendingWithdrawals.size());
+            for (WithdrawalRequested withdrawal : pendingWithdrawals.values()) {
+                out.writeVarLong(withdrawal.accountId());
+                out.writeLong(withdrawal.withdrawalId().getMostSignificantBits());
+                out.writeLong(withdrawal.withdrawalId().getLeastSignificantBits());
+                out.writeAmount(withdrawal.amount());
+                out.writeString(withdrawal.address());
+                out.writeVarLong(withdrawal.requestedAtInMillis());
+            }
+            out.close();
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write snapshot " + temporaryFile, e);
+        }
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't replace snapshot " + file, e);
+        }
+    }
+
+    /**
+     * @return state read from given snapshot file, an empty state at the beginning of the journal if there's no file
+     * @throws IllegalStateException if the file isn't a valid snapshot
+     */
+    public static AccountsSnapshot read(Path file) {
+        AccountsSnapshot snapshot = new AccountsSnapshot();
+        if (!Files.exists(file)) {
+            return snapshot;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel, channel.size() - Integer.BYTES);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalStateException("Not a snapshot file " + file);
+            }
+            snapshot.journalPosition = in.readLong();
+            int numberOfAccounts = in.readInt();
+            int index = 0;
+            for (int i = 0; i < numberOfAccounts; i++) {
+                index = Math.addExact(index, (int) in.readVarLong());
+                snapshot.ensureCapacity(index);
+                snapshot.flags[index] = in.readByte();
+                snapshot.setBalance(index, in.readAmount());
+            }
+            snapshot.numberOfAccounts = numberOfAccounts;
+            int numberOfPendingWithdrawals = in.readInt();
+            for (int i = 0; i < numberOfPendingWithdrawals; i++) {
+                WithdrawalRequested withdrawal = new WithdrawalRequested(in.readVarLong(), new UUID(in.readLong(), in.readLong()),
+                        in.readAmount(), in.readString(), in.readVarLong());
+                snapshot.pendingWithdrawals.put(withdrawal.withdrawalId(), withdrawal);
+            }
+            in.checkCrc();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read snapshot " + file, e);
+        }
+        return snapshot;
+    }
+
+    private static int index(long accountId) {
+        if (accountId < 0 || accountId >= Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Account id out of snapshot range " + accountId);
+        }
+        return (int) accountId;
+    }
+
+    private int existingIndex(long accountId) {
+        int index = index(accountId);
+        if (!exists(index)) {
+            throw new IllegalStateException("Journal refers to account " + accountId + " before it's opened");
+        }
+        return index;
+    }
+
+    private boolean exists(int index) {
+        return index < flags.length && (flags[index] & EXISTS) != 0;
+    }
+
+    private void ensureCapacity(int index) {
+        if (index >= flags.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8L, Math.max(index + 1L, flags.length * 2L));
+            flags = Arrays.copyOf(flags, capacity);
+            units = Arrays.copyOf(units, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+        }
+    }
+
+    private BigDecimal getBalance(int index) {
+        return (flags[index] & BIG) != 0 ? bigBalances.get(index) : BigDecimal.valueOf(units[index], scales[index]);
+    }
+
+    private void setBalance(int index, BigDecimal balance) {
+        BigInteger unscaled = balance.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE && balance.scale() == (byte) balance.scale()) {
+            units[index] = unscaled.longValue();
+            scales[index] = (byte) balance.scale();
+            if ((flags[index] & BIG) != 0) {
+                flags[index] &= ~BIG;
+                bigBalances.remove(index);
+            }
+        } else {
+            flags[index] |= BIG;
+            bigBalances.put(index, balance);
+        }
+    }
+
+    /**
+     * Buffered writer of the snapshot, keeping the CRC of everything written.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32C crc = new CRC32C();
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensureRoom(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void writeByte(int value) throws IOException {
+            ensureRoom(1);
+            buffer.put((byte) value);
+        }
+
+        private void writeInt(int value) throws IOException {
+            ensureRoom(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void writeLong(long value) throws IOException {
+            ensureRoom(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Zigzag encoded, 7 bits per byte, small values of either sign take a single byte.
+         */
+        private void writeVarLong(long value) throws IOException {
+            ensureRoom(MAX_VALUE_SIZE);
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            buffer.put((byte) zigzag);
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            writeVarLong(bytes.length);
+            for (int written = 0; written < bytes.length; ) {
+                ensureRoom(1);
+                int length = Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, length);
+                written += length;
+            }
+        }
+
+        /**
+         * Scale then unscaled value, as a long when it fits or as its bytes otherwise.
+         */
+        private void writeAmount(BigDecimal amount) throws IOException {
+            writeVarLong(amount.scale());
+            BigInteger unscaled = amount.unscaledValue();
+            if (unscaled.bitLength() < Long.SIZE) {
+                writeByte(0);
+                writeVarLong(unscaled.longValue());
+            } else {
+                writeByte(1);
+                writeBytes(unscaled.toByteArray());
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void close() throws IOException {
+            drain();
+            buffer.putInt((int) crc.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Buffered reader of the snapshot, checking the CRC of its content.
+     */
+    private static final class Input {
+        private final FileChannel channel;
+        private final long contentSize;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+        private final CRC32C crc = new CRC32C();
+        private long position;
+
+        private Input(FileChannel channel, long contentSize) throws IOException {
+            if (contentSize < 0) {
+                throw new IllegalStateException("Truncated snapshot");
+            }
+            this.channel = channel;
+            this.contentSize = contentSize;
+        }
+
+        private void ensureAvailable(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            //only the content is read through the buffer, the CRC following it is read by checkCrc
+            while (buffer.position() < buffer.capacity() && position < contentSize) {
+                int start = buffer.position();
+                buffer.limit((int) Math.min(buffer.capacity(), start + contentSize - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                crc.update(buffer.array(), start, read);
+                position += read;
+            }
+            buffer.flip();
+            //fewer bytes may be left at the end of the content than asked for a variable length value
+            if (buffer.remaining() == 0) {
+                throw new IllegalStateException("Truncated snapshot");
+            }
+        }
+
+        private byte readByte() throws IOException {
+            ensureAvailable(1);
+            return buffer.get();
+        }
+
+        private int readInt() throws IOException {
+            ensureAvailable(Integer.BYTES);
+            checkAvailable(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        private long readLong() throws IOException {
+            ensureAvailable(Long.BYTES);
+            checkAvailable(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        private void checkAvailable(int bytes) {
+            if (buffer.remaining() < bytes) {
+                throw new IllegalStateException("Truncated snapshot");
+            }
+        }
+
+        private long readVarLong() throws IOException {
+            ensureAvailable(MAX_VALUE_SIZE);
+            long zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift >= Long.SIZE || !buffer.hasRemaining()) {
+                    throw new IllegalStateException("Corrupted snapshot");
+                }
+                byte b = buffer.get();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        private byte[] readBytes() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > contentSize) {
+                throw new IllegalStateException("Corrupted snapshot");
+            }
+            byte[] bytes = new byte[(int) length];
+            for (int read = 0; read < bytes.length; ) {
+                ensureAvailable(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - read);
+                buffer.get(bytes, read, chunk);
+                read += chunk;
+            }
+            return bytes;
+        }
+
+        private BigDecimal readAmount() throws IOException {
+            int scale = (int) readVarLong();
+            return readByte() == 0
+                    ? BigDecimal.valueOf(readVarLong(), scale)
+                    : new BigDecimal(new BigInteger(readBytes()), scale);
+        }
+
+        private String readString() throws IOException {
+            return new String(readBytes(), StandardCharsets.UTF_8);
+        }
+
+        private void checkCrc() throws IOException {
+            if (buffer.hasRemaining() || position != contentSize) {
+                throw new IllegalStateException("Corrupted snapshot");
+            }
+            ByteBuffer expected = ByteBuffer.allocate(Integer.BYTES);
+            while (expected.hasRemaining()) {
+                if (channel.read(expected, contentSize + expected.position()) < 0) {
+                    throw new IllegalStateException("Truncated snapshot");
+                }
+            }
+            if (expected.getInt(0) != (int) crc.getValue()) {
+                throw new IllegalStateException("Corrupted snapshot");
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.jairo.accounts.repository.journal;
+
+import com.jairo.accounts.service.config.Config;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal appending events to a single file as records of [length][CRC32C][event], synced to disk with group commit:
+ * appended events are queued, a writer thread waits up to the group commit window after the first queued event for
+ * others to come, then writes all of them and syncs the file once. Many requests then share each sync, for at most the
+ * window of extra latency, and with a 0 window events queued while a sync is running still go together in the next one.
+ * <p>
+ * A record torn by a crash is dropped when the journal is opened again.
+ */
+@Singleton
+public class FileJournal implements Journal, Closeable {
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    //a group is written as soon as it reaches this size, whatever the window
+    private static final int MAX_GROUP_SIZE_IN_BYTES = 1 << 20;
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final long groupCommitWindowInNanos;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition eventsAppended = lock.newCondition();
+    private final Condition eventsDurable = lock.newCondition();
+    //guarded by lock
+    private List<byte[]> pending = new ArrayList<>();
+    private int pendingSizeInBytes;
+    private long appended;
+    private long durable;
+    private long durablePosition;
+    private long syncs;
+    private IOException failure;
+    private boolean closed;
+
+    private long position;
+
+    @Inject
+    public FileJournal(Config config) {
+        this(config.getJournalFile().orElseThrow(() -> new IllegalArgumentException("No journal file configured")),
+                config.getGroupCommitWindowInMicros());
+    }
+
+    public FileJournal(Path file, long groupCommitWindowInMicros) {
+        if (groupCommitWindowInMicros < 0) {
+            throw new IllegalArgumentException("Group commit window must be >= 0");
+        }
+        this.groupCommitWindowInNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitWindowInMicros);
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.position = scan(channel, 0, channel.size(), null);
+            if (position < channel.size()) {
+                channel.truncate(position);
+            }
+            this.durablePosition = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open journal " + file, e);
+        }
+        this.writer = new Thread(this::writeGroups, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Reads every complete event of given journal file, in append order.
+     */
+    public static void read(Path file, Consumer<JournalEvent> consumer) {
+        read(file, 0, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Reads the complete events of given journal file between two positions, in append order.
+     * @param fromPosition - position of the first event, e.g. the one returned by a previous read
+     * @param toPosition - position events are read up to, e.g. {@link #getDurablePosition()} to skip events which may
+     * still be lost
+     * @return position following the last event read
+     */
+    public static long read(Path file, long fromPosition, long toPosition, Consumer<JournalEvent> consumer) {
+        if (!Files.exists(file)) {
+            if (fromPosition > 0) {
+                throw new IllegalStateException("Journal " + file + " is missing");
+            }
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (fromPosition > channel.size()) {
+                throw new IllegalStateException("Journal " + file + " is shorter than position " + fromPosition);
+            }
+            return scan(channel, fromPosition, Math.min(toPosition, channel.size()), consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read journal " + file, e);
+        }
+    }
+
+    /**
+     * @return position following the last valid record between given positions, the ones past it are torn or corrupted
+     */
+    private static long scan(FileChannel channel, long fromPosition, long toPosition, Consumer<JournalEvent> consumer) throws IOException {
+        long offset = fromPosition;
+        //buffer position is always at offset in the file
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE).limit(0);
+        CRC32C crc = new CRC32C();
+        while (offset + HEADER_SIZE <= toPosition && fill(channel, buffer, offset, HEADER_SIZE)) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || offset + HEADER_SIZE + length > toPosition) {
+                break;
+            }
+            if (buffer.capacity() < HEADER_SIZE + length) {
+                buffer = ByteBuffer.allocate(HEADER_SIZE + length).put(buffer).flip();
+            }
+            if (!fill(channel, buffer, offset, HEADER_SIZE + length)) {
+                break;
+            }
+            int recordStart = buffer.position() + HEADER_SIZE;
+            crc.reset();
+            crc.update(buffer.array(), recordStart, length);
+            if ((int) crc.getValue() != buffer.getInt(buffer.position() + Integer.BYTES)) {
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(JournalCodec.decode(buffer.array(), recordStart, length));
+            }
+            buffer.position(recordStart + length);
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Reads from the file until given number of bytes are available in the buffer.
+     * @return false if the file ends before
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, long offset, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        long readPosition = offset + buffer.position();
+        while (buffer.position() < bytes) {
+            int read = channel.read(buffer, readPosition);
+            if (read < 0) {
+                buffer.flip();
+                return false;
+            }
+            readPosition += read;
+        }
+        buffer.flip();
+        return true;
+    }
+
+    @Override
+    public long append(JournalEvent event) {
+        byte[] record = JournalCodec.encode(event);
+        lock.lock();
+        try {
+            checkWritable();
+            pending.add(record);
+            pendingSizeInBytes += HEADER_SIZE + record.length;
+            if (pending.size() == 1 || pendingSizeInBytes >= MAX_GROUP_SIZE_IN_BYTES) {
+                eventsAppended.signal();
+            }
+            return ++appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void awaitDurable() {
+        lock.lock();
+        try {
+            long target = appended;
+            //events appended before closing are still written, so only a failure stops the wait
+            while (durable < target) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Journal can no longer be written", failure);
+                }
+                eventsDurable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getDurablePosition() {
+        lock.lock();
+        try {
+            return durablePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of events appended since the journal was opened
+     */
+    public long getAppended() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of times the file has been synced, each one making a group of events durable
+     */
+    public long getSyncs() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkWritable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal can no longer be written", failure);
+        }
+        if (closed) {
+            throw new UncheckedIOException("Journal is closed", new ClosedChannelException());
+        }
+    }
+
+    private void writeGroups() {
+        while (true) {
+            List<byte[]> group;
+            int groupSizeInBytes;
+            long groupEnd;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    eventsAppended.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                long windowEnd = System.nanoTime() + groupCommitWindowInNanos;
+                for (long remaining = groupCommitWindowInNanos; remaining > 0 && !closed && pendingSizeInBytes < MAX_GROUP_SIZE_IN_BYTES;
+                     remaining = windowEnd - System.nanoTime()) {
+                    try {
+                        eventsAppended.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        //nothing interrupts the writer, if something does the group is just written earlier
+                        break;
+                    }
+                }
+                group = pending;
+                groupSizeInBytes = pendingSizeInBytes;
+                groupEnd = appended;
+                pending = new ArrayList<>();
+                pendingSizeInBytes = 0;
+            } finally {
+                lock.unlock();
+            }
+            IOException groupFailure = write(group, groupSizeInBytes);
+            long groupEndPosition = position;
+            lock.lock();
+            try {
+                if (groupFailure != null) {
+                    failure = groupFailure;
+                    eventsDurable.signalAll();
+                    return;
+                }
+                durable = groupEnd;
+                durablePosition = groupEndPosition;
+                syncs++;
+                eventsDurable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private IOException write(List<byte[]> group, int groupSizeInBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(groupSizeInBytes);
+        CRC32C crc = new CRC32C();
+        for (byte[] record : group) {
+            crc.reset();
+            crc.update(record);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Writes the events appended so far then closes the file.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            eventsAppended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't close journal", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.jairo.accounts.repository.journal;
+
+/**
+ * Append-only log of {@link JournalEvent}s. Writers append events while they update the state, which must be done so
+ * any prefix of the journal rebuilds a valid state:
+ * <ul>
+ * <li>an event adding funds to an account is appended <b>before</b> the funds are visible, so nothing spending them can
+ * be journaled first</li>
+ * <li>an event taking funds from an account is appended <b>after</b> they've been taken, so a failed withdrawal is never
+ * journaled</li>
+ * </ul>
+ * Appending doesn't wait for the event to be durable, requests wait once with {@link #awaitDurable()} before answering.
+ */
+public interface Journal {
+
+    /**
+     * Journal keeping nothing, used when no journal is configured.
+     */
+    Journal NONE = new Journal() {
+        @Override
+        public long append(JournalEvent event) {
+            return 0;
+        }
+
+        @Override
+        public void awaitDurable() {
+        }
+
+        @Override
+        public long getDurablePosition() {
+            return 0;
+        }
+    };
+
+    /**
+     * @return sequence number of the event
+     * @throws java.io.UncheckedIOException if the journal can no longer be written, e.g. it failed or is closed
+     */
+    long append(JournalEvent event);
+
+    /**
+     * Waits until every event appended so far is durable.
+     * @throws java.io.UncheckedIOException if the journal can no longer be written
+     */
+    void awaitDurable();
+
+    /**
+     * @return position in the journal up to which events are durable, a snapshot covering them can't be ahead of the
+     * journal after a crash
+     */
+    long getDurablePosition();
+}
@@ -0,0 +1,102 @@
+package com.jairo.accounts.repository.journal;
+
+import com.jairo.accounts.repository.journal.JournalEvent.AccountOpened;
+import com.jairo.accounts.repository.journal.JournalEvent.Transferred;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalRequested;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalStateChanged;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.UUID;
+
+/**
+ * Binary encoding of journal events: a type byte followed by the event fields.
+ */
+final class JournalCodec {
+
+    private static final byte ACCOUNT_OPENED = 1;
+    private static final byte TRANSFERRED = 2;
+    private static final byte WITHDRAWAL_REQUESTED = 3;
+    private static final byte WITHDRAWAL_STATE_CHANGED = 4;
+
+    private static final WithdrawalState[] STATES = WithdrawalState.values();
+
+    private JournalCodec() {
+    }
+
+    static byte[] encode(JournalEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            if (event instanceof AccountOpened opened) {
+                out.writeByte(ACCOUNT_OPENED);
+                out.writeLong(opened.accountId());
+                writeAmount(out, opened.initialBalance());
+                out.writeBoolean(opened.hot());
+            } else if (event instanceof Transferred transferred) {
+                out.writeByte(TRANSFERRED);
+                out.writeLong(transferred.senderAccountId());
+                out.writeLong(transferred.receiverAccountId());
+                writeAmount(out, transferred.amount());
+            } else if (event instanceof WithdrawalRequested requested) {
+                out.writeByte(WITHDRAWAL_REQUESTED);
+                out.writeLong(requested.accountId());
+                writeUuid(out, requested.withdrawalId());
+                writeAmount(out, requested.amount());
+                out.writeUTF(requested.address());
+                out.writeLong(requested.requestedAtInMillis());
+            } else if (event instanceof WithdrawalStateChanged changed) {
+                out.writeByte(WITHDRAWAL_STATE_CHANGED);
+                out.writeLong(changed.accountId());
+                writeUuid(out, changed.withdrawalId());
+                out.writeByte(changed.state().ordinal());
+            }
+        } catch (IOException e) {
+            //writing to a byte array doesn't fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalEvent decode(byte[] bytes, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+        byte type = in.readByte();
+        return switch (type) {
+            case ACCOUNT_OPENED -> new AccountOpened(in.readLong(), readAmount(in), in.readBoolean());
+            case TRANSFERRED -> new Transferred(in.readLong(), in.readLong(), readAmount(in));
+            case WITHDRAWAL_REQUESTED -> new WithdrawalRequested(in.readLong(), readUuid(in), readAmount(in), in.readUTF(), in.readLong());
+            case WITHDRAWAL_STATE_CHANGED -> new WithdrawalStateChanged(in.readLong(), readUuid(in), STATES[in.readByte()]);
+            default -> throw new IOException("Unknown journal event type " + type);
+        };
+    }
+
+    private static void writeAmount(DataOutputStream out, BigDecimal amount) throws IOException {
+        out.writeInt(amount.scale());
+        byte[] unscaled = amount.unscaledValue().toByteArray();
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readAmount(DataInputStream in) throws IOException {
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
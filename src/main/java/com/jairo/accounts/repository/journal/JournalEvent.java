@@ -0,0 +1,35 @@
+package com.jairo.accounts.repository.journal;
+
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Change of the accounts state, as written to the {@link Journal}. Balances are only ever changed by these events, so
+ * replaying them over the initial state rebuilds every balance.
+ */
+public sealed interface JournalEvent {
+
+    /**
+     * Account creation, its initial balance being a deposit.
+     */
+    record AccountOpened(long accountId, BigDecimal initialBalance, boolean hot) implements JournalEvent {}
+
+    /**
+     * Internal transfer, both legs. A transfer undone (e.g. failed deposit, rolled back batch) is journaled as a
+     * reverse transfer.
+     */
+    record Transferred(long senderAccountId, long receiverAccountId, BigDecimal amount) implements JournalEvent {}
+
+    /**
+     * Funds reserved for an external withdrawal, withdrawal is PROCESSING.
+     */
+    record WithdrawalRequested(long accountId, UUID withdrawalId, BigDecimal amount, String address,
+                               long requestedAtInMillis) implements JournalEvent {}
+
+    /**
+     * Withdrawal settled, funds go back to the account if it FAILED.
+     */
+    record WithdrawalStateChanged(long accountId, UUID withdrawalId, WithdrawalState state) implements JournalEvent {}
+}
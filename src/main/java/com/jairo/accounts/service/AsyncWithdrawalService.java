@@ -0,0 +1,30 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link WithdrawalService}, with same semantics: failures complete the returned future
+ * exceptionally instead of being thrown.
+ */
+public interface AsyncWithdrawalService {
+    /**
+     * Request a withdrawal for given address and amount.
+     * @param id - a caller generated withdrawal id, used for idempotency
+     * @param address - an address withdraw to, can be any arbitrary string
+     * @param amount - an amount to withdraw
+     * @return future completed once the withdrawal service has accepted the request
+     */
+    CompletableFuture<Void> requestWithdrawal(WithdrawalId id, Address address, BigDecimal amount);
+
+    /**
+     * Return current state of withdrawal
+     * @param id - a withdrawal id
+     * @return future completed with current state of withdrawal
+     */
+    CompletableFuture<WithdrawalState> getRequestState(WithdrawalId id);
+}
@@ -0,0 +1,55 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+import com.jairo.accounts.service.concurrent.VirtualThreads;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link AsyncWithdrawalService} running a blocking {@link WithdrawalService} on a dedicated executor, so callers
+ * (e.g. http server threads) are never blocked by a slow withdrawal service.
+ */
+@Singleton
+public class ExecutorAsyncWithdrawalService implements AsyncWithdrawalService {
+
+    private final WithdrawalService withdrawalService;
+    private final Executor executor;
+
+    @Inject
+    public ExecutorAsyncWithdrawalService(WithdrawalService withdrawalService, Config config, MetricsRegistry metricsRegistry) {
+        this(TimedWithdrawalService.of(withdrawalService, metricsRegistry), config.isUseVirtualThreads() && VirtualThreads.isAvailable()
+                ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(validNumberOfThreads(config.getNumberOfWithdrawalThreads())));
+    }
+
+    public ExecutorAsyncWithdrawalService(WithdrawalService withdrawalService, Executor executor) {
+        this.withdrawalService = withdrawalService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> requestWithdrawal(WithdrawalId id, Address address, BigDecimal amount) {
+        return CompletableFuture.runAsync(() -> withdrawalService.requestWithdrawal(id, address, amount), executor);
+    }
+
+    @Override
+    public CompletableFuture<WithdrawalState> getRequestState(WithdrawalId id) {
+        return CompletableFuture.supplyAsync(() -> withdrawalService.getRequestState(id), executor);
+    }
+
+    private static int validNumberOfThreads(int numberOfThreads) {
+        if (numberOfThreads <= 0) {
+            throw new IllegalArgumentException("Number of withdrawal threads must be > 0");
+        }
+        return numberOfThreads;
+    }
+}
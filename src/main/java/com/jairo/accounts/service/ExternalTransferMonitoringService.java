@@ -1,43 +1,331 @@
 package com.jairo.accounts.service;
 
 import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalStateChanged;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
 import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+import com.jairo.accounts.service.concurrent.VirtualThreads;
 import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.PollingPolicy;
+import com.jairo.accounts.service.metrics.Counter;
+import com.jairo.accounts.service.metrics.Histogram;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import com.jairo.accounts.service.scheduler.ExecutorScheduler;
+import com.jairo.accounts.service.scheduler.HashedWheelScheduler;
+import com.jairo.accounts.service.scheduler.Scheduler;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
+/**
+ * Tracks every PROCESSING withdrawal until it's settled. Each pending withdrawal has a timer, set according to the
+ * {@link PollingPolicy}, which queues it for polling once expired. Queued withdrawals are picked up by a sweep running
+ * on a fixed delay, split in batches (spread across the monitoring threads) and their states are requested to the
+ * withdrawal service with one bulk call per batch.
+ * Withdrawals still PROCESSING after the policy max age are marked as stuck and no longer polled by the sweeps, their
+ * funds remain reserved until they are reconciled: every stuck withdrawal is polled again at the reconcile interval
+ * (see {@link Config#getStuckWithdrawalsReconcileIntervalInMillis()}), the ones settled meanwhile are settled as any
+ * other and are no longer stuck.
+ * <p>
+ * Settlements are journaled before they're applied to the account, one which can't be journaled is polled again.
+ * <p>
+ * Number of pending and stuck withdrawals, polls answered, time from request to settlement and reconciled withdrawals are
+ * exposed as metrics.
+ */
 @Singleton
 public class ExternalTransferMonitoringService {
 
-    private final ScheduledExecutorService executorService;
+    private final ConcurrentMap<WithdrawalId, PendingWithdrawal> pendingWithdrawals = new ConcurrentHashMap<>();
+    private final ConcurrentMap<WithdrawalId, PendingWithdrawal> stuckWithdrawals = new ConcurrentHashMap<>();
+    private final Queue<PendingWithdrawal> dueWithdrawals = new ConcurrentLinkedQueue<>();
+    //time from request to settlement spans seconds to minutes, as per polling policy
+    private static final long[] SETTLEMENT_BUCKETS_IN_NANOS = {
+            Histogram.millis(100), Histogram.millis(500), Histogram.seconds(1), Histogram.millis(2500), Histogram.seconds(5),
+            Histogram.seconds(10), Histogram.seconds(30), Histogram.seconds(60), Histogram.seconds(120), Histogram.seconds(300),
+            Histogram.seconds(600), Histogram.seconds(1800), Histogram.seconds(3600)
+    };
+
+    private final Counter numberOfPolls;
+    private final Counter reconciledWithdrawals;
+    private final Histogram completedSettlements;
+    private final Histogram failedSettlements;
+    private final Scheduler scheduler;
+    private final ExecutorService pollingExecutor;
     private final WithdrawalService withdrawalService;
+    private final PollingPolicy pollingPolicy;
     private final int monitoringDelayInMillis;
+    private final long reconcileIntervalInMillis;
+    private final int numberOfMonitoringThreads;
+    private final int monitoringBatchSize;
+    private final Journal journal;
 
-    @Inject
     public ExternalTransferMonitoringService(WithdrawalService withdrawalService, Config config) {
+        this(withdrawalService, config, Journal.NONE);
+    }
+
+    public ExternalTransferMonitoringService(WithdrawalService withdrawalService, Config config, Journal journal) {
+        this(withdrawalService, config, journal, new MetricsRegistry());
+    }
+
+    @Inject
+    public ExternalTransferMonitoringService(WithdrawalService withdrawalService, Config config, Journal journal, MetricsRegistry metricsRegistry) {
         if (config.getNumberOfMonitoringThreads() <= 0) {
             throw new IllegalArgumentException("Number of monitoring threads must be > 0");
         }
         if (config.getMonitoringDelayInMillis() <= 0) {
             throw new IllegalArgumentException("Monitoring delay in millis must be > 0");
         }
-        this.withdrawalService = withdrawalService;
-        this.executorService = Executors.newScheduledThreadPool(config.getNumberOfMonitoringThreads());
+        if (config.getMonitoringBatchSize() <= 0) {
+            throw new IllegalArgumentException("Monitoring batch size must be > 0");
+        }
+        this.withdrawalService = TimedWithdrawalService.of(withdrawalService, metricsRegistry);
+        this.journal = journal;
+        this.pollingPolicy = config.getPollingPolicy();
         this.monitoringDelayInMillis = config.getMonitoringDelayInMillis();
+        this.reconcileIntervalInMillis = config.getStuckWithdrawalsReconcileIntervalInMillis();
+        this.numberOfMonitoringThreads = config.getNumberOfMonitoringThreads();
+        this.monitoringBatchSize = config.getMonitoringBatchSize();
+        //with virtual threads number of monitoring threads still bounds how many batches a sweep is split in
+        this.pollingExecutor = config.isUseVirtualThreads() && VirtualThreads.isAvailable()
+                ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(numberOfMonitoringThreads);
+        this.scheduler = switch (config.getSchedulerType()) {
+            case EXECUTOR -> new ExecutorScheduler(1);
+            case HASHED_WHEEL -> new HashedWheelScheduler(config.getSchedulerTickInMillis(), TimeUnit.MILLISECONDS, 512, pollingExecutor);
+        };
+        this.numberOfPolls = metricsRegistry.counter("accounts_withdrawal_polls_total", "Withdrawal states answered by the withdrawal service");
+        this.reconciledWithdrawals = metricsRegistry.counter("accounts_stuck_withdrawals_reconciled_total", "Stuck withdrawals found settled and reconciled");
+        String settlementHelp = "Time from withdrawal request to its settlement";
+        this.completedSettlements = metricsRegistry.histogram("accounts_withdrawal_settlement_seconds", settlementHelp,
+                SETTLEMENT_BUCKETS_IN_NANOS, "state", WithdrawalState.COMPLETED.name());
+        this.failedSettlements = metricsRegistry.histogram("accounts_withdrawal_settlement_seconds", settlementHelp,
+                SETTLEMENT_BUCKETS_IN_NANOS, "state", WithdrawalState.FAILED.name());
+        metricsRegistry.gauge("accounts_pending_withdrawals", "Withdrawals being monitored until they're settled", pendingWithdrawals::size);
+        metricsRegistry.gauge("accounts_stuck_withdrawals", "Withdrawals no longer polled, waiting to be reconciled", stuckWithdrawals::size);
+        scheduleNextSweep();
+        scheduleNextReconciliation();
+    }
+
+    public void initiateResponseMonitoring(Account sender, WithdrawalId withdrawalId) {
+        PendingWithdrawal pendingWithdrawal = new PendingWithdrawal(sender, withdrawalId, System.nanoTime());
+        pendingWithdrawals.put(withdrawalId, pendingWithdrawal);
+        pendingWithdrawal.scheduleFirstPoll();
+    }
+
+    public int getNumberOfPendingWithdrawals() {
+        return pendingWithdrawals.size();
+    }
+
+    /**
+     * @return number of status polls made so far for a pending or stuck withdrawal, empty if it's not monitored
+     */
+    public OptionalInt getPollAttempts(WithdrawalId withdrawalId) {
+        PendingWithdrawal pendingWithdrawal = pendingWithdrawals.get(withdrawalId);
+        if (pendingWithdrawal == null) {
+            pendingWithdrawal = stuckWithdrawals.get(withdrawalId);
+        }
+        return pendingWithdrawal != null ? OptionalInt.of(pendingWithdrawal.attempts) : OptionalInt.empty();
+    }
+
+    /**
+     * @return total number of withdrawal states answered by the withdrawal service, polls of a failed bulk call aren't
+     * counted
+     */
+    public long getNumberOfPolls() {
+        return numberOfPolls.get();
+    }
+
+    public Collection<StuckWithdrawal> getStuckWithdrawals() {
+        return stuckWithdrawals.values().stream()
+                .map(stuckWithdrawal -> new StuckWithdrawal(stuckWithdrawal.withdrawalId, stuckWithdrawal.sender.getId(), stuckWithdrawal.attempts))
+                .toList();
+    }
+
+    /**
+     * @return number of stuck withdrawals found settled and reconciled so far
+     */
+    public long getNumberOfReconciledWithdrawals() {
+        return reconciledWithdrawals.get();
+    }
+
+    /**
+     * Polls every stuck withdrawal again, in batches, on the calling thread. The ones settled meanwhile are settled,
+     * releasing the funds of the failed ones, and are no longer stuck. Runs at the reconcile interval.
+     */
+    public void reconcileStuckWithdrawals() {
+        List<PendingWithdrawal> stuck = List.copyOf(stuckWithdrawals.values());
+        for (int from = 0; from < stuck.size(); from += monitoringBatchSize) {
+            pollBatch(stuck.subList(from, Math.min(from + monitoringBatchSize, stuck.size())), stuckWithdrawals);
+        }
+    }
+
+    /**
+     * Stops polling, withdrawals still pending are no longer settled.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        pollingExecutor.shutdownNow();
+    }
+
+    private void scheduleNextSweep() {
+        scheduler.schedule(this::pollDueWithdrawals, monitoringDelayInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //next one scheduled once this one is done, so reconciliations never overlap
+    private void scheduleNextReconciliation() {
+        scheduler.schedule(() -> pollingExecutor.execute(() -> {
+            try {
+                reconcileStuckWithdrawals();
+            } finally {
+                scheduleNextReconciliation();
+            }
+        }), reconcileIntervalInMillis, TimeUnit.MILLISECONDS);
     }
 
-    public void initiateResponseMonitoring(Account sender, WithdrawalService.WithdrawalId withdrawalId) {
-        executorService.schedule(() -> {
-            WithdrawalState requestState = withdrawalService.getRequestState(withdrawalId);
-            switch (requestState) {
-                case PROCESSING -> initiateResponseMonitoring(sender, withdrawalId);
-                case COMPLETED -> sender.completeWithdrawal(withdrawalId);
-                case FAILED -> sender.failWithdrawal(withdrawalId);
+    private void pollDueWithdrawals() {
+        try {
+            List<PendingWithdrawal> due = new ArrayList<>();
+            for (PendingWithdrawal pendingWithdrawal = dueWithdrawals.poll(); pendingWithdrawal != null; pendingWithdrawal = dueWithdrawals.poll()) {
+                due.add(pendingWithdrawal);
             }
-        }, monitoringDelayInMillis, TimeUnit.MILLISECONDS);
+            if (due.isEmpty()) {
+                return;
+            }
+            int batchSize = Math.min(monitoringBatchSize, (due.size() + numberOfMonitoringThreads - 1) / numberOfMonitoringThreads);
+            for (int from = 0; from < due.size(); from += batchSize) {
+                List<PendingWithdrawal> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+                pollingExecutor.execute(() -> pollBatch(batch, pendingWithdrawals));
+            }
+        } finally {
+            scheduleNextSweep();
+        }
+    }
+
+    /**
+     * @param monitored - pending or stuck withdrawals the batch is taken from, a withdrawal still PROCESSING stays there
+     */
+    private void pollBatch(List<PendingWithdrawal> batch, ConcurrentMap<WithdrawalId, PendingWithdrawal> monitored) {
+        List<WithdrawalId> withdrawalIds = new ArrayList<>(batch.size());
+        for (PendingWithdrawal pendingWithdrawal : batch) {
+            withdrawalIds.add(pendingWithdrawal.withdrawalId);
+        }
+        Map<WithdrawalId, WithdrawalState> requestStates;
+        try {
+            requestStates = withdrawalService.getRequestStates(withdrawalIds);
+            numberOfPolls.add(batch.size());
+        } catch (RuntimeException e) {
+            //withdrawals of a failed batch are polled again as per polling policy
+            requestStates = Map.of();
+        }
+        long now = System.nanoTime();
+        for (PendingWithdrawal pendingWithdrawal : batch) {
+            WithdrawalState requestState = requestStates.getOrDefault(pendingWithdrawal.withdrawalId, WithdrawalState.PROCESSING);
+            try {
+                switch (requestState) {
+                    case PROCESSING -> {
+                        if (monitored == pendingWithdrawals) {
+                            pendingWithdrawal.scheduleNextPoll(now);
+                        } else {
+                            pendingWithdrawal.attempts++;
+                        }
+                    }
+                    case COMPLETED -> settle(monitored, pendingWithdrawal, WithdrawalState.COMPLETED, Account::completeWithdrawal, now);
+                    case FAILED -> settle(monitored, pendingWithdrawal, WithdrawalState.FAILED, Account::failWithdrawal, now);
+                }
+            } catch (RuntimeException e) {
+                //e.g. settlement failing, the withdrawal is polled again rather than left without a timer, and the
+                //rest of the batch is still handled
+                monitored.putIfAbsent(pendingWithdrawal.withdrawalId, pendingWithdrawal);
+                if (monitored == pendingWithdrawals) {
+                    pendingWithdrawal.scheduleNextPoll(now);
+                }
+            }
+        }
+    }
+
+    private void settle(ConcurrentMap<WithdrawalId, PendingWithdrawal> monitored, PendingWithdrawal pendingWithdrawal, WithdrawalState state,
+                        BiConsumer<Account, WithdrawalId> settlement, long now) {
+        if (monitored.remove(pendingWithdrawal.withdrawalId, pendingWithdrawal)) {
+            try {
+                journal.append(new WithdrawalStateChanged(pendingWithdrawal.sender.getId(), pendingWithdrawal.withdrawalId.value(), state));
+            } catch (RuntimeException e) {
+                //journal can no longer be written, the withdrawal stays pending (or stuck) and is polled again
+                monitored.put(pendingWithdrawal.withdrawalId, pendingWithdrawal);
+                if (monitored == pendingWithdrawals) {
+                    pendingWithdrawal.scheduleNextPoll(now);
+                }
+                return;
+            }
+            settlement.accept(pendingWithdrawal.sender, pendingWithdrawal.withdrawalId);
+            (state == WithdrawalState.COMPLETED ? completedSettlements : failedSettlements).record(now - pendingWithdrawal.requestedAt);
+            if (monitored == stuckWithdrawals) {
+                reconciledWithdrawals.increment();
+            }
+        }
+    }
+
+    private void markAsStuck(PendingWithdrawal pendingWithdrawal) {
+        if (pendingWithdrawals.remove(pendingWithdrawal.withdrawalId, pendingWithdrawal)) {
+            stuckWithdrawals.put(pendingWithdrawal.withdrawalId, pendingWithdrawal);
+        }
+    }
+
+    public record StuckWithdrawal(WithdrawalId withdrawalId, Long accountId, int pollAttempts) {
+    }
+
+    /**
+     * Polling state of a withdrawal. A withdrawal is either waiting on its timer, queued for next sweep, being polled
+     * or stuck, so there's a single writer of its state at any time.
+     */
+    private final class PendingWithdrawal {
+        private final Account sender;
+        private final WithdrawalId withdrawalId;
+        private final long requestedAt;
+        private final long deadline;
+        private volatile int attempts;
+
+        private PendingWithdrawal(Account sender, WithdrawalId withdrawalId, long requestedAt) {
+            this.sender = sender;
+            this.withdrawalId = withdrawalId;
+            this.requestedAt = requestedAt;
+            this.deadline = requestedAt + TimeUnit.MILLISECONDS.toNanos(pollingPolicy.maxAgeInMillis());
+        }
+
+        private void scheduleFirstPoll() {
+            schedulePoll(System.nanoTime());
+        }
+
+        private void scheduleNextPoll(long now) {
+            attempts++;
+            //a withdrawal is polled one last time at its deadline before being considered stuck
+            if (pollingPolicy.hasMaxAge() && now - deadline >= 0) {
+                markAsStuck(this);
+            } else {
+                schedulePoll(now);
+            }
+        }
+
+        private void schedulePoll(long now) {
+            long delay = TimeUnit.MILLISECONDS.toNanos(pollingPolicy.delayInMillis(attempts, ThreadLocalRandom.current().nextDouble()));
+            if (pollingPolicy.hasMaxAge()) {
+                delay = Math.min(delay, deadline - now);
+            }
+            scheduler.schedule(() -> dueWithdrawals.add(this), delay, TimeUnit.NANOSECONDS);
+        }
     }
 }
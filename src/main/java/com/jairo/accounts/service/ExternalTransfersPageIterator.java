@@ -0,0 +1,54 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.domain.WithdrawalHistory;
+import com.jairo.accounts.endpoints.dto.ExternalTransferDetails;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Transfers of a listing page read lazily from the account history, so a page can be written out without being
+ * collected first. The cursor of the next page is only known once the page has been iterated.
+ */
+public final class ExternalTransfersPageIterator implements Iterator<ExternalTransferDetails> {
+
+    private final Iterator<WithdrawalHistory.Entry> entries;
+    private final int limit;
+    private final Function<WithdrawalHistory.Entry, ExternalTransferDetails> toDetails;
+    private int returned;
+    private WithdrawalHistory.Entry last;
+
+    ExternalTransfersPageIterator(Iterator<WithdrawalHistory.Entry> entries, int limit,
+                                  Function<WithdrawalHistory.Entry, ExternalTransferDetails> toDetails) {
+        this.entries = entries;
+        this.limit = limit;
+        this.toDetails = toDetails;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return returned < limit && entries.hasNext();
+    }
+
+    @Override
+    public ExternalTransferDetails next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        last = entries.next();
+        returned++;
+        return toDetails.apply(last);
+    }
+
+    /**
+     * @return cursor to get the next page with, null if this is the last one
+     * @throws IllegalStateException if the page hasn't been iterated yet
+     */
+    public String getNextCursor() {
+        if (hasNext()) {
+            throw new IllegalStateException("Next cursor is only known once the page has been iterated");
+        }
+        return returned == limit && entries.hasNext() ? last.getCursor().toString() : null;
+    }
+}
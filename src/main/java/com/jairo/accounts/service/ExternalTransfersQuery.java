@@ -0,0 +1,32 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.domain.WithdrawalHistory.Cursor;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+
+import java.util.Set;
+
+/**
+ * Filters of an external transfer listing.
+ * @param after - cursor of the last transfer already seen, null to start from the first one
+ * @param states - states of the transfers to list, empty for all of them
+ * @param fromInMillis - min request time, inclusive
+ * @param toInMillis - max request time, exclusive
+ * @param limit - max number of transfers of a page
+ */
+public record ExternalTransfersQuery(Cursor after, Set<WithdrawalState> states, long fromInMillis, long toInMillis, int limit) {
+
+    public ExternalTransfersQuery {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be > 0");
+        }
+        states = Set.copyOf(states);
+    }
+
+    public static ExternalTransfersQuery all() {
+        return new ExternalTransfersQuery(null, Set.of(), Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public boolean matches(WithdrawalState state) {
+        return states.isEmpty() || states.contains(state);
+    }
+}
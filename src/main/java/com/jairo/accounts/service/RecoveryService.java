@@ -0,0 +1,99 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.TransferId;
+import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.AccountsSnapshot;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalRequested;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.config.Config;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restores the journaled state on startup: accounts are loaded from the latest snapshot and the journal events
+ * appended after it, withdrawals still PROCESSING are monitored again. When snapshots are configured, the restored
+ * state is written in the background straight away and then kept up to date by applying the durable journal events on
+ * a fixed delay, so a restart only replays the events appended since the last snapshot. Does nothing if no journal is
+ * configured.
+ * <p>
+ * Only pending withdrawals are restored, settled ones are lost unless they have been archived (see
+ * {@link com.jairo.accounts.service.config.RetentionPolicy}).
+ */
+@Singleton
+public class RecoveryService {
+
+    private final Journal journal;
+    private final Optional<Path> journalFile;
+    private final Optional<Path> snapshotFile;
+    private final AccountsSnapshot snapshot;
+    private final ScheduledExecutorService executor;
+
+    @Inject
+    public RecoveryService(AccountsRepository accountsRepository, ExternalTransferMonitoringService externalTransferMonitoringService,
+                           Journal journal, Config config) {
+        this.journal = journal;
+        this.journalFile = config.getJournalFile();
+        this.snapshotFile = config.getSnapshotFile();
+        this.snapshot = journalFile.map(file -> {
+            AccountsSnapshot restored = snapshotFile.map(AccountsSnapshot::read).orElseGet(AccountsSnapshot::new);
+            restored.applyJournal(file, journal.getDurablePosition());
+            restore(restored, accountsRepository, externalTransferMonitoringService);
+            return restored;
+        }).orElse(null);
+        this.executor = snapshotFile.map(file -> {
+            ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            //restored state is written straight away, in the background
+            scheduledExecutor.scheduleWithFixedDelay(this::writeSnapshot, 0, config.getSnapshotIntervalInMillis(), TimeUnit.MILLISECONDS);
+            return scheduledExecutor;
+        }).orElse(null);
+    }
+
+    private static void restore(AccountsSnapshot snapshot, AccountsRepository accountsRepository,
+                                ExternalTransferMonitoringService externalTransferMonitoringService) {
+        snapshot.forEachAccount(accountsRepository::restore);
+        for (WithdrawalRequested withdrawal : snapshot.getPendingWithdrawals()) {
+            Account account = accountsRepository.findById(withdrawal.accountId()).orElseThrow();
+            WithdrawalId withdrawalId = new WithdrawalId(withdrawal.withdrawalId());
+            account.restoreWithdrawal(withdrawal.amount(), withdrawalId, new Address(withdrawal.address()), withdrawal.requestedAtInMillis());
+            accountsRepository.indexExternalTransfer(new TransferId(withdrawal.withdrawalId()), account.getId());
+            externalTransferMonitoringService.initiateResponseMonitoring(account, withdrawalId);
+        }
+    }
+
+    /**
+     * Applies the journal events made durable since the last snapshot and writes the snapshot.
+     * @return false if there's no snapshot to write, or it couldn't be written
+     */
+    public synchronized boolean writeSnapshot() {
+        if (snapshotFile.isEmpty() || journalFile.isEmpty()) {
+            return false;
+        }
+        try {
+            snapshot.applyJournal(journalFile.get(), journal.getDurablePosition());
+            snapshot.write(snapshotFile.get());
+            return true;
+        } catch (RuntimeException e) {
+            //events not in the snapshot yet (e.g. snapshot file not writable) are still in the journal, replayed on restart
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
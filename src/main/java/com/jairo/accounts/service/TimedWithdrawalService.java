@@ -0,0 +1,84 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.service.metrics.Counter;
+import com.jairo.accounts.service.metrics.Histogram;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * {@link WithdrawalService} recording the latency and errors of each call to the one it wraps.
+ */
+public final class TimedWithdrawalService implements WithdrawalService {
+
+    private static final String LATENCY = "accounts_withdrawal_service_call_seconds";
+    private static final String LATENCY_HELP = "Latency of calls to the withdrawal service";
+    private static final String ERRORS = "accounts_withdrawal_service_errors_total";
+    private static final String ERRORS_HELP = "Calls to the withdrawal service which threw";
+
+    private final WithdrawalService withdrawalService;
+    private final Histogram requestLatency;
+    private final Histogram stateLatency;
+    private final Histogram statesLatency;
+    private final Counter requestErrors;
+    private final Counter stateErrors;
+    private final Counter statesErrors;
+
+    private TimedWithdrawalService(WithdrawalService withdrawalService, MetricsRegistry metricsRegistry) {
+        this.withdrawalService = withdrawalService;
+        this.requestLatency = metricsRegistry.histogram(LATENCY, LATENCY_HELP, "operation", "requestWithdrawal");
+        this.stateLatency = metricsRegistry.histogram(LATENCY, LATENCY_HELP, "operation", "getRequestState");
+        this.statesLatency = metricsRegistry.histogram(LATENCY, LATENCY_HELP, "operation", "getRequestStates");
+        this.requestErrors = metricsRegistry.counter(ERRORS, ERRORS_HELP, "operation", "requestWithdrawal");
+        this.stateErrors = metricsRegistry.counter(ERRORS, ERRORS_HELP, "operation", "getRequestState");
+        this.statesErrors = metricsRegistry.counter(ERRORS, ERRORS_HELP, "operation", "getRequestStates");
+    }
+
+    /**
+     * @return given withdrawal service timed, unless it already is
+     */
+    public static WithdrawalService of(WithdrawalService withdrawalService, MetricsRegistry metricsRegistry) {
+        return withdrawalService instanceof TimedWithdrawalService ? withdrawalService : new TimedWithdrawalService(withdrawalService, metricsRegistry);
+    }
+
+    @Override
+    public void requestWithdrawal(WithdrawalId id, Address address, BigDecimal amount) {
+        long start = System.nanoTime();
+        try {
+            withdrawalService.requestWithdrawal(id, address, amount);
+        } catch (RuntimeException e) {
+            requestErrors.increment();
+            throw e;
+        } finally {
+            requestLatency.recordSince(start);
+        }
+    }
+
+    @Override
+    public WithdrawalState getRequestState(WithdrawalId id) {
+        long start = System.nanoTime();
+        try {
+            return withdrawalService.getRequestState(id);
+        } catch (RuntimeException e) {
+            stateErrors.increment();
+            throw e;
+        } finally {
+            stateLatency.recordSince(start);
+        }
+    }
+
+    @Override
+    public Map<WithdrawalId, WithdrawalState> getRequestStates(Collection<WithdrawalId> ids) {
+        long start = System.nanoTime();
+        try {
+            return withdrawalService.getRequestStates(ids);
+        } catch (RuntimeException e) {
+            statesErrors.increment();
+            throw e;
+        } finally {
+            statesLatency.recordSince(start);
+        }
+    }
+}
@@ -1,75 +1,366 @@
 package com.jairo.accounts.service;
 
 import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.RequestedExternalWithdrawal;
+import com.jairo.accounts.domain.WithdrawalHistory;
 import com.jairo.accounts.domain.TransferId;
 import com.jairo.accounts.endpoints.dto.ExternalTransferDetails;
+import com.jairo.accounts.endpoints.dto.ExternalTransfersPage;
+import com.jairo.accounts.endpoints.dto.InternalTransferDTO;
+import com.jairo.accounts.endpoints.dto.TransferResultDTO;
 import com.jairo.accounts.exception.AccountNotFoundException;
+import com.jairo.accounts.exception.NotSufficientFundsException;
 import com.jairo.accounts.exception.TransferIdNotFoundException;
 import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalRequested;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalStateChanged;
 import com.jairo.accounts.service.WithdrawalService.Address;
 import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+import com.jairo.accounts.service.engine.Transfer;
+import com.jairo.accounts.service.engine.TransferEngine;
+import com.jairo.accounts.service.engine.TransferOutcome;
+import com.jairo.accounts.service.metrics.Counter;
+import com.jairo.accounts.service.metrics.Histogram;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Objects;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.UUID.randomUUID;
 
 @Singleton
 public class TransferService {
 
+    public enum BatchMode {
+        /** every transfer is applied or none is */
+        ALL_OR_NOTHING,
+        /** every valid transfer with enough funds is applied, the others fail */
+        BEST_EFFORT
+    }
+
     private final AccountsRepository accountsRepository;
     private final WithdrawalService withdrawalService;
+    private final AsyncWithdrawalService asyncWithdrawalService;
     private final ExternalTransferMonitoringService externalTransferMonitoringService;
+    private final TransferEngine transferEngine;
+    private final Journal journal;
+    private final Histogram transferDuration;
+    private final Counter completedTransfers;
+    private final Counter notSufficientFundsTransfers;
+    private final Counter accountNotFoundTransfers;
+    private final Counter invalidTransfers;
+    private final Counter failedTransfers;
 
+    /**
+     * @param journal - journal the transfer engine and monitoring service append to as well, requests return once
+     * their changes are durable
+     */
     @Inject
-    public TransferService(AccountsRepository accountsRepository, WithdrawalService withdrawalService, ExternalTransferMonitoringService externalTransferMonitoringService) {
+    public TransferService(AccountsRepository accountsRepository, WithdrawalService withdrawalService, AsyncWithdrawalService asyncWithdrawalService,
+                           ExternalTransferMonitoringService externalTransferMonitoringService, TransferEngine transferEngine, Journal journal,
+                           MetricsRegistry metricsRegistry) {
         this.accountsRepository = accountsRepository;
-        this.withdrawalService = withdrawalService;
+        this.withdrawalService = TimedWithdrawalService.of(withdrawalService, metricsRegistry);
+        this.asyncWithdrawalService = asyncWithdrawalService;
         this.externalTransferMonitoringService = externalTransferMonitoringService;
+        this.transferEngine = transferEngine;
+        this.journal = journal;
+        this.transferDuration = metricsRegistry.histogram("accounts_transfer_duration_seconds", "Duration of internal transfers, until they're durable");
+        String transfersHelp = "Internal transfers by result";
+        this.completedTransfers = metricsRegistry.counter("accounts_transfers_total", transfersHelp, "result", "completed");
+        this.notSufficientFundsTransfers = metricsRegistry.counter("accounts_transfers_total", transfersHelp, "result", "not_sufficient_funds");
+        this.accountNotFoundTransfers = metricsRegistry.counter("accounts_transfers_total", transfersHelp, "result", "account_not_found");
+        this.invalidTransfers = metricsRegistry.counter("accounts_transfers_total", transfersHelp, "result", "invalid");
+        this.failedTransfers = metricsRegistry.counter("accounts_transfers_total", transfersHelp, "result", "failed");
     }
 
     public void transfer(Long senderAccountId, Long receiverAccountId, BigDecimal amount) {
+        transfer(senderAccountId, receiverAccountId, amount, true);
+    }
+
+    /**
+     * Same as {@link #transfer(Long, Long, BigDecimal)} returning once the transfer is applied, before it's durable:
+     * callers applying several transfers wait for all of them at once with {@link #awaitDurable()}, and mustn't
+     * acknowledge any before.
+     */
+    public void transferDeferringDurability(Long senderAccountId, Long receiverAccountId, BigDecimal amount) {
+        transfer(senderAccountId, receiverAccountId, amount, false);
+    }
+
+    /**
+     * Waits until every change applied so far is durable
+     */
+    public void awaitDurable() {
+        journal.awaitDurable();
+    }
+
+    private void transfer(Long senderAccountId, Long receiverAccountId, BigDecimal amount, boolean awaitDurable) {
+        long start = System.nanoTime();
+        try {
+            transferBetweenAccounts(senderAccountId, receiverAccountId, amount);
+            if (awaitDurable) {
+                journal.awaitDurable();
+            }
+            completedTransfers.increment();
+        } catch (NotSufficientFundsException e) {
+            notSufficientFundsTransfers.increment();
+            throw e;
+        } catch (AccountNotFoundException e) {
+            accountNotFoundTransfers.increment();
+            throw e;
+        } catch (IllegalArgumentException e) {
+            invalidTransfers.increment();
+            throw e;
+        } catch (RuntimeException e) {
+            failedTransfers.increment();
+            throw e;
+        } finally {
+            transferDuration.recordSince(start);
+        }
+    }
+
+    private void transferBetweenAccounts(Long senderAccountId, Long receiverAccountId, BigDecimal amount) {
         if (senderAccountId.equals(receiverAccountId)) {
             throw new IllegalArgumentException("Sender and receiver account can't be same");
         }
         Account sender = getAccountOrThrowException(senderAccountId);
         Account receiver = getAccountOrThrowException(receiverAccountId);
-        sender.withdraw(amount);
-        receiver.deposit(amount);
+        transferEngine.transfer(sender, receiver, amount);
+    }
+
+    /**
+     * Applies internal transfers in order. Each account is looked up once per batch, and the transfer engine may lock
+     * an account once for several transfers. An all-or-nothing batch is either applied as a whole or not at all, it
+     * needs a transfer engine able to apply it atomically (see {@link TransferEngine#transferBatch(List, boolean)}).
+     * @return result of each transfer, in the same order
+     * @throws IllegalArgumentException if the batch is all-or-nothing and the engine can't apply it atomically
+     */
+    public List<TransferResultDTO> transferBatch(List<InternalTransferDTO> transfers, BatchMode mode) {
+        Map<Long, Optional<Account>> accounts = new HashMap<>();
+        List<TransferOutcome> outcomes = new ArrayList<>(transfers.size());
+        List<Transfer> validTransfers = new ArrayList<>(transfers.size());
+        List<Integer> validTransferIndexes = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            InternalTransferDTO transfer = transfers.get(i);
+            try {
+                validTransfers.add(toTransfer(transfer, accounts));
+                validTransferIndexes.add(i);
+                outcomes.add(null);
+            } catch (RuntimeException e) {
+                outcomes.add(TransferOutcome.failed(e));
+            }
+        }
+        boolean allOrNothing = mode == BatchMode.ALL_OR_NOTHING;
+        if (allOrNothing && validTransfers.size() < transfers.size()) {
+            outcomes.replaceAll(outcome -> outcome == null ? TransferOutcome.NOT_APPLIED : outcome);
+        } else {
+            List<TransferOutcome> validTransferOutcomes = transferEngine.transferBatch(validTransfers, allOrNothing);
+            for (int i = 0; i < validTransferOutcomes.size(); i++) {
+                outcomes.set(validTransferIndexes.get(i), validTransferOutcomes.get(i));
+            }
+            journal.awaitDurable();
+        }
+        List<TransferResultDTO> results = new ArrayList<>(outcomes.size());
+        for (int i = 0; i < outcomes.size(); i++) {
+            TransferOutcome outcome = outcomes.get(i);
+            results.add(new TransferResultDTO(i, outcome.status().name(), outcome.failure() == null ? null : outcome.failure().getMessage()));
+        }
+        return results;
+    }
+
+    private Transfer toTransfer(InternalTransferDTO transfer, Map<Long, Optional<Account>> accounts) {
+        if (transfer.senderAccountId() == null || transfer.receiverAccountId() == null || transfer.amount() == null) {
+            throw new IllegalArgumentException("Sender account, receiver account and amount are mandatory");
+        }
+        if (transfer.senderAccountId().equals(transfer.receiverAccountId())) {
+            throw new IllegalArgumentException("Sender and receiver account can't be same");
+        }
+        if (transfer.amount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Can't transfer amount <= 0");
+        }
+        Account sender = getAccountOrThrowException(transfer.senderAccountId(), accounts);
+        Account receiver = getAccountOrThrowException(transfer.receiverAccountId(), accounts);
+        return new Transfer(sender, receiver, transfer.amount());
+    }
+
+    private Account getAccountOrThrowException(Long accountId, Map<Long, Optional<Account>> accounts) {
+        return accounts.computeIfAbsent(accountId, accountsRepository::findById)
+                .orElseThrow(() -> new AccountNotFoundException("Account with id " + accountId + " not found"));
     }
 
     public TransferId transfer(Long senderAccountId, Address address, BigDecimal amount) {
         Account sender = getAccountOrThrowException(senderAccountId);
         WithdrawalId withdrawalId = new WithdrawalId(randomUUID());
-        sender.requestWithdrawal(amount, withdrawalId, address);
+        requestWithdrawal(sender, amount, withdrawalId, address);
+        accountsRepository.indexExternalTransfer(new TransferId(withdrawalId.value()), sender.getId());
         try {
             withdrawalService.requestWithdrawal(withdrawalId, address, amount);
         } catch (Exception e) {
             //even if withdrawal request hasn't really been sent to external service, we track it as FAILED in the audit.
-            sender.failWithdrawal(withdrawalId);
+            failWithdrawal(sender, withdrawalId, e);
             throw e;
         }
         externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId);
         return new TransferId(withdrawalId.value());
     }
 
+    /**
+     * Same as {@link #transfer(Long, Address, BigDecimal)} without blocking on the withdrawal service: funds are
+     * reserved straight away, the withdrawal is requested asynchronously.
+     * @return future completed once the withdrawal service has accepted the request, or completed exceptionally
+     * (and the withdrawal tracked as FAILED) if the request failed
+     * @throws AccountNotFoundException if sender account doesn't exist
+     * @throws NotSufficientFundsException if sender account balance is lower than amount
+     */
+    public CompletableFuture<TransferId> transferAsync(Long senderAccountId, Address address, BigDecimal amount) {
+        Account sender = getAccountOrThrowException(senderAccountId);
+        WithdrawalId withdrawalId = new WithdrawalId(randomUUID());
+        requestWithdrawal(sender, amount, withdrawalId, address);
+        accountsRepository.indexExternalTransfer(new TransferId(withdrawalId.value()), sender.getId());
+        CompletableFuture<Void> withdrawalRequest;
+        try {
+            withdrawalRequest = asyncWithdrawalService.requestWithdrawal(withdrawalId, address, amount);
+        } catch (RuntimeException e) {
+            withdrawalRequest = CompletableFuture.failedFuture(e);
+        }
+        return withdrawalRequest.handle((ignored, e) -> {
+            if (e != null) {
+                //even if withdrawal request hasn't really been sent to external service, we track it as FAILED in the audit.
+                failWithdrawal(sender, withdrawalId, e);
+                throw e instanceof CompletionException completionException ? completionException : new CompletionException(e);
+            }
+            externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId);
+            return new TransferId(withdrawalId.value());
+        });
+    }
+
+    /**
+     * Reserves the funds of the withdrawal and waits until the request is durable, so the withdrawal service is never
+     * asked for a withdrawal which could be lost.
+     */
+    private void requestWithdrawal(Account sender, BigDecimal amount, WithdrawalId withdrawalId, Address address) {
+        long requestedAtInMillis = System.currentTimeMillis();
+        sender.requestWithdrawal(amount, withdrawalId, address, requestedAtInMillis);
+        try {
+            journal.append(new WithdrawalRequested(sender.getId(), withdrawalId.value(), amount, address.value(), requestedAtInMillis));
+            journal.awaitDurable();
+        } catch (RuntimeException e) {
+            //the request may still reach the disk, a recovery would then monitor a withdrawal never requested
+            failWithdrawal(sender, withdrawalId, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Journals the withdrawal as FAILED if the journal can still be written, then releases its funds anyway. A journal
+     * failure is added to the cause, which is what callers throw.
+     */
+    private void failWithdrawal(Account sender, WithdrawalId withdrawalId, Throwable cause) {
+        try {
+            journal.append(new WithdrawalStateChanged(sender.getId(), withdrawalId.value(), WithdrawalState.FAILED));
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        } finally {
+            sender.failWithdrawal(withdrawalId);
+        }
+    }
+
     private Account getAccountOrThrowException(Long accountId) {
         return accountsRepository.findById(accountId).orElseThrow(() -> new AccountNotFoundException("Account with id " + accountId + " not found"));
     }
 
     public Collection<ExternalTransferDetails> getExternalTransfers(Long accountId) {
+        return streamExternalTransfers(accountId, ExternalTransfersQuery.all()).toList();
+    }
+
+    /**
+     * @return transfers matching the query in request order, read lazily from the account history (query limit is
+     * ignored)
+     * @throws AccountNotFoundException straight away if account doesn't exist
+     */
+    public Stream<ExternalTransferDetails> streamExternalTransfers(Long accountId, ExternalTransfersQuery query) {
         Account account = getAccountOrThrowException(accountId);
-        return account.getRequestedExternalWithdrawals().values().stream()
-                .map(x -> new ExternalTransferDetails(x.withdrawalId().value(), x.amount(), x.withdrawalState().name(), x.address().value()))
-                .toList();
+        return matchingEntries(account, query).map(TransferService::toExternalTransferDetails);
+    }
+
+    /**
+     * @return first page of transfers matching the query after query cursor, in request order
+     */
+    public ExternalTransfersPage getExternalTransfers(Long accountId, ExternalTransfersQuery query) {
+        ExternalTransfersPageIterator page = iterateExternalTransfers(accountId, query);
+        List<ExternalTransferDetails> transfers = new ArrayList<>(Math.min(query.limit(), 1024));
+        page.forEachRemaining(transfers::add);
+        return new ExternalTransfersPage(transfers, page.getNextCursor());
+    }
+
+    /**
+     * Same as {@link #getExternalTransfers(Long, ExternalTransfersQuery)} without collecting the page
+     * @throws AccountNotFoundException straight away if account doesn't exist
+     */
+    public ExternalTransfersPageIterator iterateExternalTransfers(Long accountId, ExternalTransfersQuery query) {
+        Account account = getAccountOrThrowException(accountId);
+        return new ExternalTransfersPageIterator(matchingEntries(account, query).iterator(), query.limit(),
+                TransferService::toExternalTransferDetails);
+    }
+
+    //live and archived withdrawals merged in request order, reads don't allocate a history for the account
+    private Stream<WithdrawalHistory.Entry> matchingEntries(Account account, ExternalTransfersQuery query) {
+        WithdrawalHistory history = account.findWithdrawalHistory();
+        Iterator<WithdrawalHistory.Entry> live = history == null ? Collections.emptyIterator()
+                : history.inRequestOrder(query.after(), query.fromInMillis(), query.toInMillis()).iterator();
+        Iterator<WithdrawalHistory.Entry> archived = accountsRepository
+                .findArchivedWithdrawals(account.getId(), query.after(), query.fromInMillis(), query.toInMillis()).iterator();
+        Iterator<WithdrawalHistory.Entry> entries = WithdrawalHistory.mergeInRequestOrder(live, archived);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(entries, Spliterator.ORDERED), false)
+                .filter(entry -> query.matches(entry.getWithdrawal().withdrawalState()));
     }
 
     public ExternalTransferDetails getExternalTransfer(Long accountId, TransferId transferId) {
-        return getExternalTransfers(accountId).stream()
-                .filter(x -> Objects.equals(x.transferId(), transferId.value()))
-                .findFirst().orElseThrow(() -> new TransferIdNotFoundException("Transfer with id " + transferId.value() + " not found"));
+        Account account = getAccountOrThrowException(accountId);
+        return getExternalTransfer(account, transferId);
+    }
+
+    /**
+     * Same as {@link #getExternalTransfer(Long, TransferId)} without knowing the sender account.
+     */
+    public ExternalTransferDetails getExternalTransfer(TransferId transferId) {
+        Account account = accountsRepository.findByExternalTransferId(transferId).orElseThrow(() -> transferIdNotFound(transferId));
+        return getExternalTransfer(account, transferId);
+    }
+
+    private ExternalTransferDetails getExternalTransfer(Account account, TransferId transferId) {
+        WithdrawalId withdrawalId = new WithdrawalId(transferId.value());
+        WithdrawalHistory history = account.findWithdrawalHistory();
+        return (history == null ? Optional.<WithdrawalHistory.Entry>empty() : history.get(withdrawalId))
+                .or(() -> accountsRepository.findArchivedWithdrawal(account.getId(), withdrawalId))
+                .map(TransferService::toExternalTransferDetails)
+                .orElseThrow(() -> transferIdNotFound(transferId));
+    }
+
+    private static TransferIdNotFoundException transferIdNotFound(TransferId transferId) {
+        return new TransferIdNotFoundException("Transfer with id " + transferId.value() + " not found");
+    }
+
+    private static ExternalTransferDetails toExternalTransferDetails(WithdrawalHistory.Entry entry) {
+        RequestedExternalWithdrawal withdrawal = entry.getWithdrawal();
+        return new ExternalTransferDetails(withdrawal.withdrawalId().value(), withdrawal.amount(), withdrawal.withdrawalState().name(),
+                withdrawal.address().value(), entry.getRequestedAtInMillis());
     }
 }
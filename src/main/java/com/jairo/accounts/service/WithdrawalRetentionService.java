@@ -0,0 +1,58 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.RetentionPolicy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the heap used by withdrawal histories bounded: settled withdrawals out of the {@link RetentionPolicy} are
+ * moved to the archive on a fixed delay. Does nothing if no retention policy is configured.
+ */
+@Singleton
+public class WithdrawalRetentionService {
+
+    private final AccountsRepository accountsRepository;
+    private final Optional<RetentionPolicy> retentionPolicy;
+    private final ScheduledExecutorService executor;
+
+    @Inject
+    public WithdrawalRetentionService(AccountsRepository accountsRepository, Config config) {
+        this.accountsRepository = accountsRepository;
+        this.retentionPolicy = config.getRetentionPolicy();
+        this.executor = retentionPolicy.map(policy -> {
+            ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "withdrawal-retention");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduledExecutor.scheduleWithFixedDelay(this::archiveSettledWithdrawals,
+                    policy.sweepIntervalInMillis(), policy.sweepIntervalInMillis(), TimeUnit.MILLISECONDS);
+            return scheduledExecutor;
+        }).orElse(null);
+    }
+
+    /**
+     * @return number of withdrawals archived
+     */
+    public int archiveSettledWithdrawals() {
+        try {
+            return retentionPolicy.map(policy -> accountsRepository.archiveSettledWithdrawals(policy, System.currentTimeMillis())).orElse(0);
+        } catch (RuntimeException e) {
+            //withdrawals not archived yet (e.g. archive file not writable) stay on the heap until next sweep
+            return 0;
+        }
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
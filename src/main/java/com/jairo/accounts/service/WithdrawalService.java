@@ -1,6 +1,9 @@
 package com.jairo.accounts.service;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 public interface WithdrawalService {
@@ -21,6 +24,24 @@ public interface WithdrawalService {
      */
     WithdrawalState getRequestState(WithdrawalId id);
 
+    /**
+     * Return current state of several withdrawals in a single call. Default implementation falls back to
+     * {@link #getRequestState(WithdrawalId)} for each id, implementations backed by a bulk API should override it.
+     * @param ids - withdrawal ids
+     * @return current state of every known withdrawal, ids with no withdrawal are left out of the result
+     */
+    default Map<WithdrawalId, WithdrawalState> getRequestStates(Collection<WithdrawalId> ids) {
+        Map<WithdrawalId, WithdrawalState> states = new HashMap<>();
+        for (WithdrawalId id : ids) {
+            try {
+                states.put(id, getRequestState(id));
+            } catch (IllegalArgumentException e) {
+                //unknown id, it is left out of the result as per contract
+            }
+        }
+        return states;
+    }
+
     enum WithdrawalState {
         PROCESSING, COMPLETED, FAILED
     }
@@ -0,0 +1,46 @@
+package com.jairo.accounts.service.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads when running on a JVM supporting them (21+), the app is built for 17 so they're looked
+ * up reflectively.
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findNewVirtualThreadPerTaskExecutor();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @return an executor starting a new virtual thread per task
+     * @throws UnsupportedOperationException if virtual threads are not supported by the running JVM
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21+, running on " + Runtime.version());
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    private static MethodHandle findNewVirtualThreadPerTaskExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -2,18 +2,219 @@ package com.jairo.accounts.service.config;
 
 import jakarta.inject.Singleton;
 
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.Optional;
+import java.util.OptionalInt;
+
 @Singleton
 public class Config {
 
+    public static final int DEFAULT_MONITORING_BATCH_SIZE = 500;
+
+    public static final int DEFAULT_SCHEDULER_TICK_IN_MILLIS = 10;
+
+    public static final int DEFAULT_NUMBER_OF_WITHDRAWAL_THREADS = 200;
+
+    public static final int DEFAULT_BALANCE_SCALE = 2;
+
+    public static final int DEFAULT_NUMBER_OF_TRANSFER_SHARDS = Runtime.getRuntime().availableProcessors();
+
+    public static final int DEFAULT_TRANSFER_RING_BUFFER_SIZE = 1024;
+
+    public static final int DEFAULT_MAX_BATCH_TRANSFERS = 100_000;
+
+    public static final int DEFAULT_HOT_ACCOUNT_STRIPES = Runtime.getRuntime().availableProcessors() * 2;
+
+    public static final long DEFAULT_GROUP_COMMIT_WINDOW_IN_MICROS = 1000;
+
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_IN_MILLIS = 60_000;
+
+    public static final int DEFAULT_IDEMPOTENCY_CACHE_SIZE = 100_000;
+
+    public static final long DEFAULT_IDEMPOTENCY_KEY_TTL_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    public static final int DEFAULT_LOCK_PROFILER_TOP_ACCOUNTS = 100;
+
+    public static final long DEFAULT_STUCK_WITHDRAWALS_RECONCILE_INTERVAL_IN_MILLIS = 10 * 60 * 1000L;
+
+    public enum BalanceType {
+        /** {@link java.math.BigDecimal} balance, updates serialized on the balance monitor */
+        BIG_DECIMAL,
+        /** lock-free balance of minor units in a long, amounts can't have more decimal places than the balance scale */
+        FIXED_POINT
+    }
+
+    public enum TransferEngineType {
+        /** withdraw from sender then deposit to receiver without locking, money in flight can be observed */
+        SEQUENTIAL,
+        /** both accounts locked in id order, both legs committed atomically */
+        ORDERED_LOCKING,
+        /** accounts partitioned across single threaded shards, no locking */
+        SHARDED
+    }
+
+    public enum AccountStoreType {
+        /** accounts in a {@link java.util.concurrent.ConcurrentHashMap} keyed by boxed id */
+        CONCURRENT_MAP,
+        /** accounts in a segmented array indexed by id, one reference per account */
+        SEGMENTED_ARRAY,
+        /** fixed point balances off heap in a memory mapped file, kept across restarts */
+        MAPPED_FILE
+    }
+
+    public enum JsonMapperType {
+        /** Javalin's Jackson mapper, serializers looked up by reflection on the response type */
+        JACKSON,
+        /** writers pre-built for the response DTOs, listings written straight to the response stream */
+        STREAMING
+    }
+
+    public enum SchedulerType {
+        /** delay queue based {@link java.util.concurrent.ScheduledThreadPoolExecutor} */
+        EXECUTOR,
+        /** hashed timing wheel, O(1) schedule and expiration */
+        HASHED_WHEEL
+    }
+
     private final int monitoringDelayInMillis;
 
     private final int numberOfMonitoringThreads;
 
+    private final int monitoringBatchSize;
+
+    private final PollingPolicy pollingPolicy;
+
+    private final long stuckWithdrawalsReconcileIntervalInMillis;
+
+    private final SchedulerType schedulerType;
+
+    private final int schedulerTickInMillis;
+
+    private final boolean useVirtualThreads;
+
+    private final int numberOfWithdrawalThreads;
+
+    private final BalanceType balanceType;
+
+    private final int balanceScale;
+
+    private final int hotAccountStripes;
+
+    private final TransferEngineType transferEngineType;
+
+    private final int numberOfTransferShards;
+
+    private final int transferRingBufferSize;
+
+    private final int maxBatchTransfers;
+
+    private final RetentionPolicy retentionPolicy;
+
+    private final AccountStoreType accountStoreType;
+
+    private final Path mappedAccountsFile;
+
+    private final Path journalFile;
+
+    private final long groupCommitWindowInMicros;
+
+    private final Path snapshotFile;
+
+    private final long snapshotIntervalInMillis;
+
+    private final int idempotencyCacheSize;
+
+    private final long idempotencyKeyTtlInMillis;
+
+    private final double lockProfilerSampleRate;
+
+    private final int lockProfilerTopAccounts;
+
+    private final int binaryProtocolPort;
+
+    private final JsonMapperType jsonMapperType;
+
     public Config(int monitoringDelayInMillis, int numberOfMonitoringThreads) {
-        this.monitoringDelayInMillis = monitoringDelayInMillis;
-        this.numberOfMonitoringThreads = numberOfMonitoringThreads;
+        this(monitoringDelayInMillis, numberOfMonitoringThreads, DEFAULT_MONITORING_BATCH_SIZE);
+    }
+
+    public Config(int monitoringDelayInMillis, int numberOfMonitoringThreads, int monitoringBatchSize) {
+        this(builder()
+                .monitoringDelayInMillis(monitoringDelayInMillis)
+                .numberOfMonitoringThreads(numberOfMonitoringThreads)
+                .monitoringBatchSize(monitoringBatchSize));
     }
 
+    private Config(Builder builder) {
+        this.monitoringDelayInMillis = builder.monitoringDelayInMillis;
+        this.numberOfMonitoringThreads = builder.numberOfMonitoringThreads;
+        this.monitoringBatchSize = builder.monitoringBatchSize;
+        //when no policy is given every pending withdrawal is polled on each monitoring sweep
+        this.pollingPolicy = builder.pollingPolicy != null || monitoringDelayInMillis <= 0
+                ? builder.pollingPolicy
+                : PollingPolicy.fixed(monitoringDelayInMillis);
+        this.stuckWithdrawalsReconcileIntervalInMillis = builder.stuckWithdrawalsReconcileIntervalInMillis;
+        if (stuckWithdrawalsReconcileIntervalInMillis <= 0) {
+            throw new IllegalArgumentException("Stuck withdrawals reconcile interval must be > 0");
+        }
+        this.schedulerType = builder.schedulerType;
+        this.schedulerTickInMillis = builder.schedulerTickInMillis;
+        this.useVirtualThreads = builder.useVirtualThreads;
+        this.numberOfWithdrawalThreads = builder.numberOfWithdrawalThreads;
+        this.balanceType = builder.balanceType;
+        this.balanceScale = builder.balanceScale;
+        this.hotAccountStripes = builder.hotAccountStripes;
+        this.transferEngineType = builder.transferEngineType;
+        this.numberOfTransferShards = builder.numberOfTransferShards;
+        this.transferRingBufferSize = builder.transferRingBufferSize;
+        this.maxBatchTransfers = builder.maxBatchTransfers;
+        this.retentionPolicy = builder.retentionPolicy;
+        this.accountStoreType = builder.accountStoreType;
+        this.mappedAccountsFile = builder.mappedAccountsFile;
+        if (accountStoreType == AccountStoreType.MAPPED_FILE && mappedAccountsFile == null) {
+            throw new IllegalArgumentException("Mapped account store needs a file");
+        }
+        this.journalFile = builder.journalFile;
+        this.groupCommitWindowInMicros = builder.groupCommitWindowInMicros;
+        if (groupCommitWindowInMicros < 0) {
+            throw new IllegalArgumentException("Group commit window must be >= 0");
+        }
+        this.snapshotFile = builder.snapshotFile;
+        this.snapshotIntervalInMillis = builder.snapshotIntervalInMillis;
+        if (snapshotFile != null && journalFile == null) {
+            throw new IllegalArgumentException("Snapshots need a journal");
+        }
+        if (snapshotIntervalInMillis <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be > 0");
+        }
+        this.idempotencyCacheSize = builder.idempotencyCacheSize;
+        this.idempotencyKeyTtlInMillis = builder.idempotencyKeyTtlInMillis;
+        if (idempotencyCacheSize <= 0 || idempotencyKeyTtlInMillis <= 0) {
+            throw new IllegalArgumentException("Idempotency cache size and key ttl must be > 0");
+        }
+        this.lockProfilerSampleRate = builder.lockProfilerSampleRate;
+        this.lockProfilerTopAccounts = builder.lockProfilerTopAccounts;
+        if (!(lockProfilerSampleRate >= 0 && lockProfilerSampleRate <= 1)) {
+            throw new IllegalArgumentException("Lock profiler sample rate must be in [0, 1]");
+        }
+        if (lockProfilerTopAccounts <= 0) {
+            throw new IllegalArgumentException("Lock profiler top accounts must be > 0");
+        }
+        this.binaryProtocolPort = builder.binaryProtocolPort;
+        if (binaryProtocolPort < -1 || binaryProtocolPort > 65535) {
+            throw new IllegalArgumentException("Binary protocol port must be in range [0, 65535]");
+        }
+        this.jsonMapperType = builder.jsonMapperType;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return delay between two sweeps of the pending withdrawals, it's the resolution of the polling policy
+     */
     public int getMonitoringDelayInMillis() {
         return monitoringDelayInMillis;
     }
@@ -21,4 +222,383 @@ public class Config {
     public int getNumberOfMonitoringThreads() {
         return numberOfMonitoringThreads;
     }
+
+    /**
+     * @return max number of withdrawal ids sent to the withdrawal service in a single status request
+     */
+    public int getMonitoringBatchSize() {
+        return monitoringBatchSize;
+    }
+
+    public PollingPolicy getPollingPolicy() {
+        return pollingPolicy;
+    }
+
+    /**
+     * @return interval at which withdrawals stuck past the polling policy max age are polled again, so the ones
+     * settled meanwhile are reconciled
+     */
+    public long getStuckWithdrawalsReconcileIntervalInMillis() {
+        return stuckWithdrawalsReconcileIntervalInMillis;
+    }
+
+    /**
+     * @return scheduler used to time next poll of each pending withdrawal
+     */
+    public SchedulerType getSchedulerType() {
+        return schedulerType;
+    }
+
+    /**
+     * @return resolution of the {@link SchedulerType#HASHED_WHEEL} scheduler
+     */
+    public int getSchedulerTickInMillis() {
+        return schedulerTickInMillis;
+    }
+
+    /**
+     * @return true if http requests and withdrawal monitoring must run on virtual threads, so threads blocked on
+     * the withdrawal service are cheap. Ignored (platform threads are used) when the JVM doesn't support them.
+     */
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * @return number of threads calling the withdrawal service on behalf of async transfers, unused with virtual threads
+     */
+    public int getNumberOfWithdrawalThreads() {
+        return numberOfWithdrawalThreads;
+    }
+
+    public BalanceType getBalanceType() {
+        return balanceType;
+    }
+
+    /**
+     * @return number of decimal places of {@link BalanceType#FIXED_POINT} and hot account balances
+     */
+    public int getBalanceScale() {
+        return balanceScale;
+    }
+
+    /**
+     * @return number of stripes deposits to a hot account are spread over
+     */
+    public int getHotAccountStripes() {
+        return hotAccountStripes;
+    }
+
+    public TransferEngineType getTransferEngineType() {
+        return transferEngineType;
+    }
+
+    /**
+     * @return number of shards (and threads) of {@link TransferEngineType#SHARDED} engine
+     */
+    public int getNumberOfTransferShards() {
+        return numberOfTransferShards;
+    }
+
+    /**
+     * @return max number of transfers waiting on a shard of {@link TransferEngineType#SHARDED} engine
+     */
+    public int getTransferRingBufferSize() {
+        return transferRingBufferSize;
+    }
+
+    /**
+     * @return max number of transfers of a batch request
+     */
+    public int getMaxBatchTransfers() {
+        return maxBatchTransfers;
+    }
+
+    /**
+     * @return policy archiving settled withdrawals, empty if they're kept on the heap forever
+     */
+    public Optional<RetentionPolicy> getRetentionPolicy() {
+        return Optional.ofNullable(retentionPolicy);
+    }
+
+    public AccountStoreType getAccountStoreType() {
+        return accountStoreType;
+    }
+
+    /**
+     * @return file of the {@link AccountStoreType#MAPPED_FILE} store
+     */
+    public Path getMappedAccountsFile() {
+        return mappedAccountsFile;
+    }
+
+    /**
+     * @return file of the journal of balance changes, empty if they're not journaled
+     */
+    public Optional<Path> getJournalFile() {
+        return Optional.ofNullable(journalFile);
+    }
+
+    /**
+     * @return max time a journaled event waits for other ones before being synced to disk with them
+     */
+    public long getGroupCommitWindowInMicros() {
+        return groupCommitWindowInMicros;
+    }
+
+    /**
+     * @return file of the snapshots of the journaled state, empty if restarts replay the whole journal
+     */
+    public Optional<Path> getSnapshotFile() {
+        return Optional.ofNullable(snapshotFile);
+    }
+
+    public long getSnapshotIntervalInMillis() {
+        return snapshotIntervalInMillis;
+    }
+
+    /**
+     * @return max number of idempotency keys remembered, the oldest ones are forgotten first
+     */
+    public int getIdempotencyCacheSize() {
+        return idempotencyCacheSize;
+    }
+
+    /**
+     * @return time the response of a request with an idempotency key is replayed to its retries
+     */
+    public long getIdempotencyKeyTtlInMillis() {
+        return idempotencyKeyTtlInMillis;
+    }
+
+    /**
+     * @return ratio of account lock acquisitions sampled by the lock profiler, 0 when profiling is disabled
+     */
+    public double getLockProfilerSampleRate() {
+        return lockProfilerSampleRate;
+    }
+
+    /**
+     * @return number of most contended accounts tracked by the lock profiler
+     */
+    public int getLockProfilerTopAccounts() {
+        return lockProfilerTopAccounts;
+    }
+
+    /**
+     * @return port the binary transfer protocol is served on (0 for any free port), empty if it isn't served
+     */
+    public OptionalInt getBinaryProtocolPort() {
+        return binaryProtocolPort < 0 ? OptionalInt.empty() : OptionalInt.of(binaryProtocolPort);
+    }
+
+    public JsonMapperType getJsonMapperType() {
+        return jsonMapperType;
+    }
+
+    public static class Builder {
+        private int monitoringDelayInMillis;
+        private int numberOfMonitoringThreads;
+        private int monitoringBatchSize = DEFAULT_MONITORING_BATCH_SIZE;
+        private PollingPolicy pollingPolicy;
+        private long stuckWithdrawalsReconcileIntervalInMillis = DEFAULT_STUCK_WITHDRAWALS_RECONCILE_INTERVAL_IN_MILLIS;
+        private SchedulerType schedulerType = SchedulerType.HASHED_WHEEL;
+        private int schedulerTickInMillis = DEFAULT_SCHEDULER_TICK_IN_MILLIS;
+        private boolean useVirtualThreads;
+        private int numberOfWithdrawalThreads = DEFAULT_NUMBER_OF_WITHDRAWAL_THREADS;
+        private BalanceType balanceType = BalanceType.BIG_DECIMAL;
+        private int balanceScale = DEFAULT_BALANCE_SCALE;
+        private int hotAccountStripes = DEFAULT_HOT_ACCOUNT_STRIPES;
+        private TransferEngineType transferEngineType = TransferEngineType.ORDERED_LOCKING;
+        private int numberOfTransferShards = DEFAULT_NUMBER_OF_TRANSFER_SHARDS;
+        private int transferRingBufferSize = DEFAULT_TRANSFER_RING_BUFFER_SIZE;
+        private int maxBatchTransfers = DEFAULT_MAX_BATCH_TRANSFERS;
+        private RetentionPolicy retentionPolicy;
+        private AccountStoreType accountStoreType = AccountStoreType.CONCURRENT_MAP;
+        private Path mappedAccountsFile;
+        private Path journalFile;
+        private long groupCommitWindowInMicros = DEFAULT_GROUP_COMMIT_WINDOW_IN_MICROS;
+        private Path snapshotFile;
+        private long snapshotIntervalInMillis = DEFAULT_SNAPSHOT_INTERVAL_IN_MILLIS;
+        private int idempotencyCacheSize = DEFAULT_IDEMPOTENCY_CACHE_SIZE;
+        private long idempotencyKeyTtlInMillis = DEFAULT_IDEMPOTENCY_KEY_TTL_IN_MILLIS;
+        private double lockProfilerSampleRate;
+        private int lockProfilerTopAccounts = DEFAULT_LOCK_PROFILER_TOP_ACCOUNTS;
+        private int binaryProtocolPort = -1;
+        private JsonMapperType jsonMapperType = JsonMapperType.STREAMING;
+
+        private Builder() {
+        }
+
+        public Builder monitoringDelayInMillis(int monitoringDelayInMillis) {
+            this.monitoringDelayInMillis = monitoringDelayInMillis;
+            return this;
+        }
+
+        public Builder numberOfMonitoringThreads(int numberOfMonitoringThreads) {
+            this.numberOfMonitoringThreads = numberOfMonitoringThreads;
+            return this;
+        }
+
+        public Builder monitoringBatchSize(int monitoringBatchSize) {
+            this.monitoringBatchSize = monitoringBatchSize;
+            return this;
+        }
+
+        public Builder pollingPolicy(PollingPolicy pollingPolicy) {
+            this.pollingPolicy = pollingPolicy;
+            return this;
+        }
+
+        public Builder stuckWithdrawalsReconcileIntervalInMillis(long stuckWithdrawalsReconcileIntervalInMillis) {
+            this.stuckWithdrawalsReconcileIntervalInMillis = stuckWithdrawalsReconcileIntervalInMillis;
+            return this;
+        }
+
+        public Builder schedulerType(SchedulerType schedulerType) {
+            this.schedulerType = schedulerType;
+            return this;
+        }
+
+        public Builder schedulerTickInMillis(int schedulerTickInMillis) {
+            this.schedulerTickInMillis = schedulerTickInMillis;
+            return this;
+        }
+
+        public Builder useVirtualThreads(boolean useVirtualThreads) {
+            this.useVirtualThreads = useVirtualThreads;
+            return this;
+        }
+
+        public Builder numberOfWithdrawalThreads(int numberOfWithdrawalThreads) {
+            this.numberOfWithdrawalThreads = numberOfWithdrawalThreads;
+            return this;
+        }
+
+        public Builder bigDecimalBalances() {
+            this.balanceType = BalanceType.BIG_DECIMAL;
+            return this;
+        }
+
+        public Builder fixedPointBalances(int balanceScale) {
+            this.balanceType = BalanceType.FIXED_POINT;
+            this.balanceScale = balanceScale;
+            return this;
+        }
+
+        /**
+         * Fixed point balances with the scale of the currency minor unit, e.g. 2 for EUR or 0 for JPY
+         */
+        public Builder fixedPointBalances(Currency currency) {
+            return fixedPointBalances(currency.getDefaultFractionDigits());
+        }
+
+        public Builder hotAccountStripes(int hotAccountStripes) {
+            this.hotAccountStripes = hotAccountStripes;
+            return this;
+        }
+
+        public Builder transferEngineType(TransferEngineType transferEngineType) {
+            this.transferEngineType = transferEngineType;
+            return this;
+        }
+
+        public Builder shardedTransferEngine(int numberOfTransferShards) {
+            this.transferEngineType = TransferEngineType.SHARDED;
+            this.numberOfTransferShards = numberOfTransferShards;
+            return this;
+        }
+
+        public Builder transferRingBufferSize(int transferRingBufferSize) {
+            this.transferRingBufferSize = transferRingBufferSize;
+            return this;
+        }
+
+        public Builder maxBatchTransfers(int maxBatchTransfers) {
+            this.maxBatchTransfers = maxBatchTransfers;
+            return this;
+        }
+
+        public Builder retentionPolicy(RetentionPolicy retentionPolicy) {
+            this.retentionPolicy = retentionPolicy;
+            return this;
+        }
+
+        public Builder accountStoreType(AccountStoreType accountStoreType) {
+            this.accountStoreType = accountStoreType;
+            return this;
+        }
+
+        /**
+         * Accounts kept in given memory mapped file, with fixed point balances of the configured balance scale
+         */
+        public Builder mappedAccountStore(Path mappedAccountsFile) {
+            this.accountStoreType = AccountStoreType.MAPPED_FILE;
+            this.mappedAccountsFile = mappedAccountsFile;
+            return this;
+        }
+
+        public Builder journal(Path journalFile) {
+            return journal(journalFile, DEFAULT_GROUP_COMMIT_WINDOW_IN_MICROS);
+        }
+
+        /**
+         * Balance changes journaled to given file, synced to disk in groups of events appended within given window
+         */
+        public Builder journal(Path journalFile, long groupCommitWindowInMicros) {
+            this.journalFile = journalFile;
+            this.groupCommitWindowInMicros = groupCommitWindowInMicros;
+            return this;
+        }
+
+        public Builder snapshot(Path snapshotFile) {
+            return snapshot(snapshotFile, DEFAULT_SNAPSHOT_INTERVAL_IN_MILLIS);
+        }
+
+        /**
+         * Journaled state written to given file on startup and then at given interval, needs a journal
+         */
+        public Builder snapshot(Path snapshotFile, long snapshotIntervalInMillis) {
+            this.snapshotFile = snapshotFile;
+            this.snapshotIntervalInMillis = snapshotIntervalInMillis;
+            return this;
+        }
+
+        /**
+         * Responses of requests with an idempotency key replayed to their retries for given time, up to given number
+         * of keys
+         */
+        public Builder idempotencyCache(int idempotencyCacheSize, long idempotencyKeyTtlInMillis) {
+            this.idempotencyCacheSize = idempotencyCacheSize;
+            this.idempotencyKeyTtlInMillis = idempotencyKeyTtlInMillis;
+            return this;
+        }
+
+        /**
+         * Samples given ratio of account lock acquisitions, tracking the accounts most often locked and longest
+         * waited for (up to given number of accounts each)
+         */
+        public Builder lockProfiler(double sampleRate, int topAccounts) {
+            this.lockProfilerSampleRate = sampleRate;
+            this.lockProfilerTopAccounts = topAccounts;
+            return this;
+        }
+
+        /**
+         * Serves the binary transfer protocol on given port alongside http, 0 for any free port
+         */
+        public Builder binaryProtocol(int port) {
+            this.binaryProtocolPort = port;
+            return this;
+        }
+
+        public Builder jsonMapper(JsonMapperType jsonMapperType) {
+            this.jsonMapperType = jsonMapperType;
+            return this;
+        }
+
+        public Config build() {
+            return new Config(this);
+        }
+    }
 }
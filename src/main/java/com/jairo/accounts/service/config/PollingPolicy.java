@@ -0,0 +1,51 @@
+package com.jairo.accounts.service.config;
+
+/**
+ * How often a pending withdrawal is polled: first poll happens {@code initialDelayInMillis} after the request,
+ * every following delay is multiplied by {@code multiplier} up to {@code maxDelayInMillis}, and randomly spread
+ * by +/- {@code jitter} (a fraction of the delay) so withdrawals requested together don't keep being polled together.
+ * A withdrawal still PROCESSING after {@code maxAgeInMillis} is considered stuck, 0 means no max age.
+ */
+public record PollingPolicy(long initialDelayInMillis, double multiplier, long maxDelayInMillis, double jitter, long maxAgeInMillis) {
+
+    public static final long NO_MAX_AGE = 0;
+
+    public PollingPolicy {
+        if (initialDelayInMillis <= 0) {
+            throw new IllegalArgumentException("Initial polling delay in millis must be > 0");
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("Polling delay multiplier must be >= 1");
+        }
+        if (maxDelayInMillis < initialDelayInMillis) {
+            throw new IllegalArgumentException("Max polling delay must be >= initial polling delay");
+        }
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("Polling jitter must be in range [0, 1)");
+        }
+        if (maxAgeInMillis < 0) {
+            throw new IllegalArgumentException("Max age in millis must be >= 0");
+        }
+    }
+
+    /**
+     * @return policy polling at a constant delay, with no jitter and no max age
+     */
+    public static PollingPolicy fixed(long delayInMillis) {
+        return new PollingPolicy(delayInMillis, 1, delayInMillis, 0, NO_MAX_AGE);
+    }
+
+    /**
+     * @param attempt - number of polls already made for the withdrawal
+     * @param random - uniformly distributed value in range [0, 1) used to apply the jitter
+     * @return delay in millis before next poll
+     */
+    public long delayInMillis(int attempt, double random) {
+        double delay = Math.min(initialDelayInMillis * Math.pow(multiplier, attempt), maxDelayInMillis);
+        return Math.max(1, Math.round(delay * (1 + jitter * (2 * random - 1))));
+    }
+
+    public boolean hasMaxAge() {
+        return maxAgeInMillis != NO_MAX_AGE;
+    }
+}
@@ -0,0 +1,39 @@
+package com.jairo.accounts.service.config;
+
+import java.nio.file.Path;
+
+/**
+ * How long settled (COMPLETED or FAILED) withdrawals are kept on the heap. Every {@code sweepIntervalInMillis},
+ * settled withdrawals requested more than {@code maxAgeInMillis} ago, and the oldest settled ones beyond
+ * {@code maxCount} per account, are moved to the append-only {@code archiveFile}, where they can still be listed.
+ * PROCESSING withdrawals are never archived. 0 means no max age or no max count.
+ */
+public record RetentionPolicy(long maxAgeInMillis, int maxCount, Path archiveFile, long sweepIntervalInMillis) {
+
+    public static final long NO_MAX_AGE = 0;
+
+    public static final int NO_MAX_COUNT = 0;
+
+    public RetentionPolicy {
+        if (maxAgeInMillis < 0) {
+            throw new IllegalArgumentException("Max age in millis must be >= 0");
+        }
+        if (maxCount < 0) {
+            throw new IllegalArgumentException("Max count must be >= 0");
+        }
+        if (archiveFile == null) {
+            throw new IllegalArgumentException("Archive file is mandatory");
+        }
+        if (sweepIntervalInMillis <= 0) {
+            throw new IllegalArgumentException("Sweep interval in millis must be > 0");
+        }
+    }
+
+    public boolean hasMaxAge() {
+        return maxAgeInMillis != NO_MAX_AGE;
+    }
+
+    public boolean hasMaxCount() {
+        return maxCount != NO_MAX_COUNT;
+    }
+}
@@ -0,0 +1,80 @@
+package com.jairo.accounts.service.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer. Each slot has a sequence telling whether
+ * it's free for the producer of a given lap or holds an element for the consumer, so neither side ever locks.
+ */
+final class MpscRingBuffer<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    //only accessed by the consumer
+    private long head;
+
+    /**
+     * @param capacity - rounded up to a power of 2
+     */
+    MpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be in range (0, 2^30]");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long available = sequences.get(index) - position;
+            if (available < 0) {
+                return false;
+            }
+            if (available == 0 && tail.compareAndSet(position, position + 1)) {
+                elements[index] = element;
+                //publishes the element to the consumer, a volatile store so that it can't be reordered with the read
+                //of the consumer parked flag following it (a release only store could, and the wakeup be lost)
+                sequences.set(index, position + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Only to be called by the consumer thread.
+     */
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * Only to be called by the consumer thread.
+     * @return null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        //frees the slot for the producer of next lap
+        sequences.lazySet(index, head + elements.length);
+        head++;
+        return element;
+    }
+}
@@ -0,0 +1,230 @@
+package com.jairo.accounts.service.engine;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.exception.NotSufficientFundsException;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.Transferred;
+import com.jairo.accounts.service.metrics.Histogram;
+import com.jairo.accounts.service.metrics.LockContentionProfiler;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Commits both legs of a transfer atomically while holding the locks of both accounts (see {@link Account#getLock()}).
+ * Locks are always taken in lock order (the account id by default), so two transfers in opposite directions can't
+ * deadlock. Balances read through {@link #getBalances(Collection)} are taken under the same locks, so money is never
+ * seen in flight.
+ * <p>
+ * Only transfers of this engine are serialized, deposits and external withdrawals still update balances directly
+ * (they're single account updates, so they don't leave money in flight).
+ * <p>
+ * Transfers are journaled once the sender has been debited, before the receiver is credited (see {@link Journal}).
+ * <p>
+ * Time a single transfer waits for both locks is recorded as accounts_lock_wait_seconds, and each account lock
+ * acquisition is reported to the {@link LockContentionProfiler}.
+ */
+@Singleton
+public class OrderedLockingTransferEngine implements TransferEngine {
+
+    private static final Comparator<Account> LOCK_ORDER = Comparator.comparingLong(Account::getLockOrder);
+
+    //max number of accounts locked at once by a batch, they're locked by nested monitors
+    private static final int MAX_ACCOUNTS_LOCKED_BY_BATCH = 64;
+
+    private final Journal journal;
+    private final Histogram lockWait;
+    private final LockContentionProfiler lockContentionProfiler;
+
+    public OrderedLockingTransferEngine() {
+        this(Journal.NONE);
+    }
+
+    public OrderedLockingTransferEngine(Journal journal) {
+        this(journal, new MetricsRegistry(), LockContentionProfiler.DISABLED);
+    }
+
+    @Inject
+    public OrderedLockingTransferEngine(Journal journal, MetricsRegistry metricsRegistry, LockContentionProfiler lockContentionProfiler) {
+        this.journal = journal;
+        this.lockContentionProfiler = lockContentionProfiler;
+        this.lockWait = metricsRegistry.histogram("accounts_lock_wait_seconds", "Time a transfer of the ordered locking engine waits for the locks of both accounts");
+    }
+
+    @Override
+    public void transfer(Account sender, Account receiver, BigDecimal amount) {
+        boolean senderFirst = LOCK_ORDER.compare(sender, receiver) < 0;
+        Account first = senderFirst ? sender : receiver;
+        Account second = senderFirst ? receiver : sender;
+        long lockRequestedAt = System.nanoTime();
+        synchronized (first.getLock()) {
+            long firstLockedAt = System.nanoTime();
+            synchronized (second.getLock()) {
+                long lockedAt = System.nanoTime();
+                lockWait.record(lockedAt - lockRequestedAt);
+                lockContentionProfiler.acquired(first.getId(), firstLockedAt - lockRequestedAt);
+                lockContentionProfiler.acquired(second.getId(), lockedAt - firstLockedAt);
+                move(sender, receiver, amount);
+            }
+        }
+    }
+
+    /**
+     * Takes amount from sender to receiver, both accounts being locked by the caller
+     */
+    private void move(Account sender, Account receiver, BigDecimal amount) {
+        sender.withdraw(amount);
+        try {
+            journal.append(new Transferred(sender.getId(), receiver.getId(), amount));
+        } catch (RuntimeException e) {
+            sender.deposit(amount);
+            throw e;
+        }
+        try {
+            receiver.deposit(amount);
+        } catch (RuntimeException e) {
+            //e.g. receiver balance overflow, undo the withdrawal so the transfer has no effect, even if it can't be journaled
+            try {
+                journal.append(new Transferred(receiver.getId(), sender.getId(), amount));
+            } catch (RuntimeException journalFailure) {
+                e.addSuppressed(journalFailure);
+            } finally {
+                sender.deposit(amount);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Best-effort batches are split in consecutive chunks touching at most {@value #MAX_ACCOUNTS_LOCKED_BY_BATCH}
+     * accounts, every account of a chunk is locked once for the whole chunk instead of twice per transfer.
+     * <p>
+     * All-or-nothing batches lock all their accounts for the whole batch, so they can't touch more than
+     * {@value #MAX_ACCOUNTS_LOCKED_BY_BATCH} accounts. The batch is checked against the balances read under those
+     * locks before anything is applied, so a transfer failing for lack of funds leaves every balance untouched. A
+     * transfer failing once applied (e.g. balance overflow, journal failure, or funds withdrawn externally meanwhile)
+     * has the transfers applied before it reversed before the locks are released, no other transfer or balance read
+     * of this engine sees them.
+     */
+    @Override
+    public List<TransferOutcome> transferBatch(List<Transfer> transfers, boolean allOrNothing) {
+        if (allOrNothing) {
+            Set<Account> accounts = new HashSet<>();
+            for (Transfer transfer : transfers) {
+                if (!fitsInChunk(accounts, transfer)) {
+                    throw new IllegalArgumentException("All-or-nothing batch can't touch more than " + MAX_ACCOUNTS_LOCKED_BY_BATCH + " accounts");
+                }
+                accounts.add(transfer.sender());
+                accounts.add(transfer.receiver());
+            }
+            return locked(accounts, () -> transferAllOrNothing(transfers));
+        }
+        List<TransferOutcome> outcomes = new ArrayList<>(transfers.size());
+        int from = 0;
+        while (from < transfers.size()) {
+            Set<Account> chunkAccounts = new HashSet<>();
+            int to = from;
+            for (; to < transfers.size() && fitsInChunk(chunkAccounts, transfers.get(to)); to++) {
+                chunkAccounts.add(transfers.get(to).sender());
+                chunkAccounts.add(transfers.get(to).receiver());
+            }
+            List<Transfer> chunk = transfers.subList(from, to);
+            outcomes.addAll(locked(chunkAccounts, () -> TransferEngine.super.transferBatch(chunk, false)));
+            from = to;
+        }
+        return outcomes;
+    }
+
+    /**
+     * Every account of the batch is locked by the caller
+     */
+    private List<TransferOutcome> transferAllOrNothing(List<Transfer> transfers) {
+        //by account id, several instances may stand for the same account
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            BigDecimal senderBalance = balances.computeIfAbsent(transfer.sender().getId(), id -> transfer.sender().getBalance());
+            if (senderBalance.compareTo(transfer.amount()) < 0) {
+                return notAppliedBut(transfers.size(), i, new NotSufficientFundsException(
+                        "Not sufficient funds available in account %s: balance is %s at this point of the batch"
+                                .formatted(transfer.sender().getId(), senderBalance.toPlainString())));
+            }
+            balances.put(transfer.sender().getId(), senderBalance.subtract(transfer.amount()));
+            BigDecimal receiverBalance = balances.computeIfAbsent(transfer.receiver().getId(), id -> transfer.receiver().getBalance());
+            balances.put(transfer.receiver().getId(), receiverBalance.add(transfer.amount()));
+        }
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            try {
+                move(transfer.sender(), transfer.receiver(), transfer.amount());
+            } catch (RuntimeException e) {
+                for (int applied = i - 1; applied >= 0; applied--) {
+                    Transfer reversed = transfers.get(applied);
+                    try {
+                        move(reversed.receiver(), reversed.sender(), reversed.amount());
+                    } catch (RuntimeException reverseFailure) {
+                        reverseFailure.addSuppressed(e);
+                        throw new IllegalStateException("Transfer %s of all-or-nothing batch failed and transfer %s couldn't be reversed"
+                                .formatted(i, applied), reverseFailure);
+                    }
+                }
+                return notAppliedBut(transfers.size(), i, e);
+            }
+        }
+        return Collections.nCopies(transfers.size(), TransferOutcome.COMPLETED);
+    }
+
+    private static List<TransferOutcome> notAppliedBut(int size, int failedIndex, RuntimeException failure) {
+        List<TransferOutcome> outcomes = new ArrayList<>(Collections.nCopies(size, TransferOutcome.NOT_APPLIED));
+        outcomes.set(failedIndex, TransferOutcome.failed(failure));
+        return outcomes;
+    }
+
+    private static boolean fitsInChunk(Set<Account> chunkAccounts, Transfer transfer) {
+        int newAccounts = (chunkAccounts.contains(transfer.sender()) ? 0 : 1) + (chunkAccounts.contains(transfer.receiver()) ? 0 : 1);
+        return chunkAccounts.size() + newAccounts <= MAX_ACCOUNTS_LOCKED_BY_BATCH;
+    }
+
+    /**
+     * Locks every account (in lock order) for the duration of the read, meant for a handful of accounts.
+     */
+    @Override
+    public Map<Long, BigDecimal> getBalances(Collection<Account> accounts) {
+        return locked(accounts, () -> {
+            Map<Long, BigDecimal> balances = new LinkedHashMap<>();
+            accounts.forEach(account -> balances.put(account.getId(), account.getBalance()));
+            return balances;
+        });
+    }
+
+    private <T> T locked(Collection<Account> accounts, Supplier<T> action) {
+        return locked(accounts.stream().distinct().sorted(LOCK_ORDER).toList(), 0, action);
+    }
+
+    private <T> T locked(List<Account> lockOrder, int index, Supplier<T> action) {
+        if (index == lockOrder.size()) {
+            return action.get();
+        }
+        Account account = lockOrder.get(index);
+        long lockRequestedAt = lockContentionProfiler.isEnabled() ? System.nanoTime() : 0;
+        synchronized (account.getLock()) {
+            if (lockContentionProfiler.isEnabled()) {
+                lockContentionProfiler.acquired(account.getId(), System.nanoTime() - lockRequestedAt);
+            }
+            return locked(lockOrder, index + 1, action);
+        }
+    }
+}
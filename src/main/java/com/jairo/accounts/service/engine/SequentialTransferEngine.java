@@ -0,0 +1,62 @@
+package com.jairo.accounts.service.engine;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.Transferred;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Withdraws from sender and then deposits to receiver as two independent updates, without any locking. Money in
+ * flight (withdrawn but not yet deposited) can be observed by concurrent readers.
+ */
+@Singleton
+public class SequentialTransferEngine implements TransferEngine {
+
+    private final Journal journal;
+
+    public SequentialTransferEngine() {
+        this(Journal.NONE);
+    }
+
+    @Inject
+    public SequentialTransferEngine(Journal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void transfer(Account sender, Account receiver, BigDecimal amount) {
+        sender.withdraw(amount);
+        try {
+            journal.append(new Transferred(sender.getId(), receiver.getId(), amount));
+        } catch (RuntimeException e) {
+            sender.deposit(amount);
+            throw e;
+        }
+        try {
+            receiver.deposit(amount);
+        } catch (RuntimeException e) {
+            //the journal already credits the receiver, the reverse transfer keeps it in line with balances
+            try {
+                journal.append(new Transferred(receiver.getId(), sender.getId(), amount));
+            } catch (RuntimeException journalFailure) {
+                e.addSuppressed(journalFailure);
+            } finally {
+                sender.deposit(amount);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<Long, BigDecimal> getBalances(Collection<Account> accounts) {
+        Map<Long, BigDecimal> balances = new LinkedHashMap<>();
+        accounts.forEach(account -> balances.put(account.getId(), account.getBalance()));
+        return balances;
+    }
+}
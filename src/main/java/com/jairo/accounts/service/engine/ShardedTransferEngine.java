@@ -0,0 +1,250 @@
+package com.jairo.accounts.service.engine;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.Transferred;
+import com.jairo.accounts.service.config.Config;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single writer engine (LMAX style): accounts are partitioned by id across shards, each one processed by its own
+ * thread fed by a lock-free ring buffer, so transfers never lock and never contend on a balance.
+ * <ul>
+ * <li>intra-shard transfers: both legs applied by the shard thread, no other transfer can interleave</li>
+ * <li>cross-shard transfers: sender shard reserves (withdraws) the amount and hands the credit off to receiver
+ * shard, which deposits it, or refunds it to the sender shard if the deposit fails</li>
+ * </ul>
+ * Callers wait until the receiver has been credited. Shards hand off work to each other through unbounded inboxes, so
+ * a shard never waits on another one. Cross-shard amounts reserved but not credited yet are not visible through
+ * {@link #getBalances(Collection)}.
+ * <p>
+ * Deposits and external withdrawals still update balances outside the shard threads, so balances must stay thread safe.
+ * <p>
+ * Transfers are journaled once reserved, a refund is journaled as the reverse transfer.
+ */
+@Singleton
+public class ShardedTransferEngine implements TransferEngine {
+
+    //idle shard threads spin this many times before parking
+    private static final int SPINS_BEFORE_PARKING = 1_000;
+    //parked shard threads check for work at least this often, should a wakeup ever be missed
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Shard[] shards;
+    private final Journal journal;
+    private final int spinsBeforeParking;
+
+    @Inject
+    public ShardedTransferEngine(Config config, Journal journal) {
+        this(config.getNumberOfTransferShards(), config.getTransferRingBufferSize(), journal, SPINS_BEFORE_PARKING);
+    }
+
+    /**
+     * @param numberOfShards - number of shards, each one with its own thread
+     * @param ringBufferSize - max number of transfers waiting on a shard, callers spin when it's full
+     * @param journal - journal of the transfers
+     * @param spinsBeforeParking - times an idle shard thread spins before parking
+     */
+    ShardedTransferEngine(int numberOfShards, int ringBufferSize, Journal journal, int spinsBeforeParking) {
+        this.journal = journal;
+        this.spinsBeforeParking = spinsBeforeParking;
+        if (numberOfShards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be > 0");
+        }
+        this.shards = new Shard[numberOfShards];
+        for (int i = 0; i < numberOfShards; i++) {
+            shards[i] = new Shard(i, ringBufferSize);
+        }
+    }
+
+    @Override
+    public void transfer(Account sender, Account receiver, BigDecimal amount) {
+        Command command = new Command(sender, receiver, amount);
+        shardOf(sender).submit(command);
+        try {
+            command.result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public Map<Long, BigDecimal> getBalances(Collection<Account> accounts) {
+        Map<Long, BigDecimal> balances = new LinkedHashMap<>();
+        accounts.forEach(account -> balances.put(account.getId(), account.getBalance()));
+        return balances;
+    }
+
+    public int getNumberOfShards() {
+        return shards.length;
+    }
+
+    /**
+     * Stops shard threads, pending transfers are never completed.
+     */
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+    }
+
+    private Shard shardOf(Account account) {
+        return shards[(int) Math.floorMod(account.getId(), (long) shards.length)];
+    }
+
+    private enum Step {
+        /** withdraw from sender, on sender shard */
+        RESERVE,
+        /** deposit to receiver, on receiver shard */
+        CREDIT,
+        /** deposit back to sender after a failed credit, on sender shard */
+        REFUND
+    }
+
+    private static final class Command {
+        private final Account sender;
+        private final Account receiver;
+        private final BigDecimal amount;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private Step step = Step.RESERVE;
+        private RuntimeException creditFailure;
+
+        private Command(Account sender, Account receiver, BigDecimal amount) {
+            this.sender = sender;
+            this.receiver = receiver;
+            this.amount = amount;
+        }
+    }
+
+    private final class Shard {
+        private final MpscRingBuffer<Command> ringBuffer;
+        //commands handed off by other shards
+        private final Queue<Command> inbox = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        private volatile boolean parked;
+        private volatile boolean running = true;
+
+        private Shard(int index, int ringBufferSize) {
+            this.ringBuffer = new MpscRingBuffer<>(ringBufferSize);
+            this.thread = new Thread(this::run, "transfer-shard-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void submit(Command command) {
+            while (!ringBuffer.offer(command)) {
+                if (!running) {
+                    throw new RejectedExecutionException("Transfer engine has been shut down");
+                }
+                Thread.onSpinWait();
+            }
+            wakeUp();
+        }
+
+        private void handOff(Command command) {
+            inbox.add(command);
+            wakeUp();
+        }
+
+        private void wakeUp() {
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void run() {
+            int idleSpins = 0;
+            while (running) {
+                Command command = inbox.poll();
+                if (command == null) {
+                    command = ringBuffer.poll();
+                }
+                if (command != null) {
+                    process(command);
+                    idleSpins = 0;
+                } else if (++idleSpins < spinsBeforeParking) {
+                    Thread.onSpinWait();
+                } else {
+                    //volatile write then volatile reads, paired with the volatile publication then read of parked by
+                    //producers: either the producer sees parked and unparks, or this thread sees the command
+                    parked = true;
+                    if (inbox.isEmpty() && ringBuffer.isEmpty()) {
+                        LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                    }
+                    parked = false;
+                    idleSpins = 0;
+                }
+            }
+        }
+
+        private void process(Command command) {
+            try {
+                switch (command.step) {
+                    case RESERVE -> reserve(command);
+                    case CREDIT -> credit(command);
+                    case REFUND -> {
+                        command.sender.deposit(command.amount);
+                        command.result.completeExceptionally(command.creditFailure);
+                    }
+                }
+            } catch (RuntimeException e) {
+                command.result.completeExceptionally(e);
+            }
+        }
+
+        private void reserve(Command command) {
+            command.sender.withdraw(command.amount);
+            try {
+                journal.append(new Transferred(command.sender.getId(), command.receiver.getId(), command.amount));
+            } catch (RuntimeException e) {
+                command.sender.deposit(command.amount);
+                throw e;
+            }
+            Shard receiverShard = shardOf(command.receiver);
+            if (receiverShard == this) {
+                credit(command);
+            } else {
+                command.step = Step.CREDIT;
+                receiverShard.handOff(command);
+            }
+        }
+
+        private void credit(Command command) {
+            try {
+                command.receiver.deposit(command.amount);
+            } catch (RuntimeException e) {
+                //e.g. receiver balance overflow, the reserved amount goes back to sender even if it can't be journaled
+                try {
+                    journal.append(new Transferred(command.receiver.getId(), command.sender.getId(), command.amount));
+                } catch (RuntimeException journalFailure) {
+                    e.addSuppressed(journalFailure);
+                }
+                Shard senderShard = shardOf(command.sender);
+                if (senderShard == this) {
+                    command.sender.deposit(command.amount);
+                    command.result.completeExceptionally(e);
+                } else {
+                    command.step = Step.REFUND;
+                    command.creditFailure = e;
+                    senderShard.handOff(command);
+                }
+                return;
+            }
+            command.result.complete(null);
+        }
+    }
+}
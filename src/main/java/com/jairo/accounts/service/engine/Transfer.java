@@ -0,0 +1,8 @@
+package com.jairo.accounts.service.engine;
+
+import com.jairo.accounts.domain.Account;
+
+import java.math.BigDecimal;
+
+public record Transfer(Account sender, Account receiver, BigDecimal amount) {
+}
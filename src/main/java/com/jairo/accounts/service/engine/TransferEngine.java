@@ -0,0 +1,48 @@
+package com.jairo.accounts.service.engine;
+
+import com.jairo.accounts.domain.Account;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves money between two accounts of this service.
+ */
+public interface TransferEngine {
+
+    /**
+     * @throws com.jairo.accounts.exception.NotSufficientFundsException if sender balance is lower than amount, in
+     * which case neither account is changed
+     */
+    void transfer(Account sender, Account receiver, BigDecimal amount);
+
+    /**
+     * Applies transfers in order, one by one. All-or-nothing batches are only supported by engines able to apply the
+     * whole batch without any other transfer seeing part of it, this one isn't.
+     * @return outcome of each transfer, in the same order
+     * @throws IllegalArgumentException if all-or-nothing isn't supported for the batch, in which case nothing is applied
+     */
+    default List<TransferOutcome> transferBatch(List<Transfer> transfers, boolean allOrNothing) {
+        if (allOrNothing) {
+            throw new IllegalArgumentException("All-or-nothing batches aren't supported by " + getClass().getSimpleName());
+        }
+        List<TransferOutcome> outcomes = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            try {
+                transfer(transfer.sender(), transfer.receiver(), transfer.amount());
+                outcomes.add(TransferOutcome.COMPLETED);
+            } catch (RuntimeException e) {
+                outcomes.add(TransferOutcome.failed(e));
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * @return balance of each account by account id, as seen by transfers of this engine
+     */
+    Map<Long, BigDecimal> getBalances(Collection<Account> accounts);
+}
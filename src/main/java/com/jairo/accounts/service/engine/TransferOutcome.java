@@ -0,0 +1,23 @@
+package com.jairo.accounts.service.engine;
+
+/**
+ * Outcome of a transfer of a batch.
+ * @param failure - cause of a FAILED transfer, null otherwise
+ */
+public record TransferOutcome(Status status, RuntimeException failure) {
+
+    public enum Status {
+        COMPLETED,
+        FAILED,
+        /** not applied, or reversed before anyone could see it, because another transfer of an all-or-nothing batch failed */
+        NOT_APPLIED
+    }
+
+    public static final TransferOutcome COMPLETED = new TransferOutcome(Status.COMPLETED, null);
+
+    public static final TransferOutcome NOT_APPLIED = new TransferOutcome(Status.NOT_APPLIED, null);
+
+    public static TransferOutcome failed(RuntimeException failure) {
+        return new TransferOutcome(Status.FAILED, failure);
+    }
+}
@@ -0,0 +1,93 @@
+package com.jairo.accounts.service.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of durations over fixed buckets, exposed as a Prometheus histogram in seconds. Recording finds the
+ * bucket with a scan of the (few) bucket bounds and increments a {@link LongAdder}, so it doesn't allocate nor lock.
+ */
+public final class Histogram {
+
+    /**
+     * Bounds for request-like latencies, from 50 micros to 10 seconds
+     */
+    public static final long[] LATENCY_BUCKETS_IN_NANOS = {
+            micros(50), micros(100), micros(250), micros(500),
+            millis(1), millis(2), millis(5), millis(10), millis(25), millis(50), millis(100), millis(250), millis(500),
+            seconds(1), seconds(2), seconds(5), seconds(10)
+    };
+
+    private final long[] upperBoundsInNanos;
+    //count of values of each bucket (not cumulative), the last one is +Inf
+    private final LongAdder[] buckets;
+    private final LongAdder sumInNanos = new LongAdder();
+
+    Histogram(long[] upperBoundsInNanos) {
+        for (int i = 1; i < upperBoundsInNanos.length; i++) {
+            if (upperBoundsInNanos[i] <= upperBoundsInNanos[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be increasing");
+            }
+        }
+        this.upperBoundsInNanos = upperBoundsInNanos.clone();
+        this.buckets = new LongAdder[upperBoundsInNanos.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public static long micros(long micros) {
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    public static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    public void record(long durationInNanos) {
+        int bucket = 0;
+        while (bucket < upperBoundsInNanos.length && durationInNanos > upperBoundsInNanos[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumInNanos.add(durationInNanos);
+    }
+
+    /**
+     * Records the time elapsed since given {@link System#nanoTime()}
+     */
+    public void recordSince(long startInNanos) {
+        record(System.nanoTime() - startInNanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    long[] getUpperBoundsInNanos() {
+        return upperBoundsInNanos;
+    }
+
+    /**
+     * @return count of values of each bucket, not cumulative, the last one being +Inf
+     */
+    long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    long getSumInNanos() {
+        return sumInNanos.sum();
+    }
+}
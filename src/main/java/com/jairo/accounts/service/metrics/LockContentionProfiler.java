@@ -0,0 +1,133 @@
+package com.jairo.accounts.service.metrics;
+
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.Config.TransferEngineType;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples account lock acquisitions to find hot accounts: the ones locked most often and the ones transfers wait the
+ * longest for. Each is a {@link SpaceSaving} sketch of a fixed number of accounts, so memory doesn't grow with the
+ * number of accounts. Disabled unless a sample rate is configured, then an acquisition which isn't sampled only costs
+ * a random draw.
+ * <p>
+ * Only the {@link TransferEngineType#ORDERED_LOCKING} engine takes account locks, the profiler is disabled with any
+ * other engine: {@link TransferEngineType#SEQUENTIAL} doesn't lock at all, and {@link TransferEngineType#SHARDED}
+ * serializes the transfers of an account on its shard thread instead. The report tells which engine is profiled.
+ * <p>
+ * Samples are recorded in one of several stripes picked by thread, each with its own sketches and monitor, so
+ * threads locking accounts rarely wait for each other to record. Stripes are merged into a report on read.
+ */
+@Singleton
+public class LockContentionProfiler {
+
+    public static final LockContentionProfiler DISABLED = new LockContentionProfiler(0, 1);
+
+    /**
+     * @param mostLocked - sampled acquisitions of the accounts locked most often
+     * @param mostWaitedFor - sampled nanos waited for the accounts waited for the longest
+     */
+    public record Report(TransferEngineType transferEngine, double sampleRate, long sampledAcquisitions, long sampledWaitInNanos,
+                         List<SpaceSaving.Entry> mostLocked, List<SpaceSaving.Entry> mostWaitedFor) {
+    }
+
+    private static final class Stripe {
+        //guarded by the stripe
+        private final SpaceSaving acquisitions;
+        //guarded by the stripe
+        private final SpaceSaving waits;
+
+        private Stripe(int topAccounts) {
+            this.acquisitions = new SpaceSaving(topAccounts);
+            this.waits = new SpaceSaving(topAccounts);
+        }
+    }
+
+    private final TransferEngineType transferEngine;
+    private final double sampleRate;
+    private final int topAccounts;
+    private final Stripe[] stripes;
+
+    @Inject
+    public LockContentionProfiler(Config config) {
+        this(config.getLockProfilerSampleRate(), config.getLockProfilerTopAccounts(), config.getTransferEngineType());
+    }
+
+    /**
+     * Profiles the {@link TransferEngineType#ORDERED_LOCKING} engine
+     */
+    public LockContentionProfiler(double sampleRate, int topAccounts) {
+        this(sampleRate, topAccounts, TransferEngineType.ORDERED_LOCKING);
+    }
+
+    /**
+     * @param sampleRate - ratio of acquisitions sampled, in [0, 1], ignored unless the engine locks accounts
+     * @param topAccounts - number of accounts tracked by each sketch
+     */
+    public LockContentionProfiler(double sampleRate, int topAccounts, TransferEngineType transferEngine) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be in [0, 1]");
+        }
+        this.transferEngine = transferEngine;
+        this.sampleRate = transferEngine == TransferEngineType.ORDERED_LOCKING ? sampleRate : 0;
+        this.topAccounts = topAccounts;
+        //a power of 2 at least the number of cores, so a stripe is picked with a mask
+        int numberOfStripes = this.sampleRate > 0 ? Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) : 1;
+        this.stripes = new Stripe[numberOfStripes];
+        for (int i = 0; i < numberOfStripes; i++) {
+            stripes[i] = new Stripe(topAccounts);
+        }
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    /**
+     * Records, if sampled, that the lock of given account has been acquired after waiting given time
+     */
+    public void acquired(long accountId, long waitInNanos) {
+        if (sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            record(accountId, waitInNanos);
+        }
+    }
+
+    private void record(long accountId, long waitInNanos) {
+        long threadId = Thread.currentThread().getId();
+        Stripe stripe = stripes[(int) ((threadId * 0x9E3779B97F4A7C15L) >>> 32) & (stripes.length - 1)];
+        synchronized (stripe) {
+            stripe.acquisitions.add(accountId, 1);
+            stripe.waits.add(accountId, waitInNanos);
+        }
+    }
+
+    /**
+     * @return samples of every stripe merged, weakly consistent with concurrent acquisitions
+     */
+    public Report report() {
+        SpaceSaving acquisitions = new SpaceSaving(topAccounts);
+        SpaceSaving waits = new SpaceSaving(topAccounts);
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                acquisitions.merge(stripe.acquisitions);
+                waits.merge(stripe.waits);
+            }
+        }
+        return new Report(transferEngine, sampleRate, acquisitions.getTotalWeight(), waits.getTotalWeight(), acquisitions.top(), waits.top());
+    }
+
+    /**
+     * Forgets every sample, e.g. to profile from the start of a latency spike
+     */
+    public void reset() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.acquisitions.clear();
+                stripe.waits.clear();
+            }
+        }
+    }
+}
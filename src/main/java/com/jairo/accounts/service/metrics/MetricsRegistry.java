@@ -0,0 +1,142 @@
+package com.jairo.accounts.service.metrics;
+
+import jakarta.inject.Singleton;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics of the app, written in the Prometheus text format. Every labelled series is created when registered, so
+ * recording a value is a field access away and never allocates, only registering and writing do. Registering the
+ * same name and labels again returns the existing counter or histogram, and replaces the value of a gauge.
+ */
+@Singleton
+public class MetricsRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static final class Family {
+        private final Type type;
+        private final String help;
+        //series by rendered labels, e.g. state="COMPLETED"
+        private final Map<String, Object> series = new LinkedHashMap<>();
+
+        private Family(Type type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    //guarded by this
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * @param labels - label names and values, e.g. "state", "COMPLETED"
+     */
+    public synchronized Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).series.computeIfAbsent(renderLabels(labels), ignored -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return histogram(name, help, Histogram.LATENCY_BUCKETS_IN_NANOS, labels);
+    }
+
+    public synchronized Histogram histogram(String name, String help, long[] bucketsInNanos, String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM).series.computeIfAbsent(renderLabels(labels), ignored -> new Histogram(bucketsInNanos));
+    }
+
+    /**
+     * @param value - read each time metrics are written
+     */
+    public synchronized void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series.put(renderLabels(labels), value);
+    }
+
+    private Family family(String name, String help, Type type) {
+        if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+            throw new IllegalArgumentException("Invalid metric name " + name);
+        }
+        Family family = families.computeIfAbsent(name, ignored -> new Family(type, help));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already a " + family.type);
+        }
+        return family;
+    }
+
+    private static String renderLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return rendered.toString();
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format
+     */
+    public synchronized String write() {
+        StringBuilder out = new StringBuilder(4096);
+        families.forEach((name, family) -> {
+            out.append("# HELP ").append(name).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase(Locale.ROOT)).append('\n');
+            family.series.forEach((labels, series) -> {
+                if (series instanceof Counter counter) {
+                    sample(out, name, labels, null, counter.get());
+                } else if (series instanceof LongSupplier gauge) {
+                    sample(out, name, labels, null, gauge.getAsLong());
+                } else if (series instanceof Histogram histogram) {
+                    writeHistogram(out, name, labels, histogram);
+                }
+            });
+        });
+        return out.toString();
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        long[] upperBounds = histogram.getUpperBoundsInNanos();
+        long[] counts = histogram.getBucketCounts();
+        long cumulativeCount = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulativeCount += counts[i];
+            String le = "le=\"" + (i < upperBounds.length ? seconds(upperBounds[i]) : "+Inf") + '"';
+            sample(out, name + "_bucket", labels, le, cumulativeCount);
+        }
+        out.append(name).append("_sum");
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(seconds(histogram.getSumInNanos())).append('\n');
+        sample(out, name + "_count", labels, null, cumulativeCount);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String extraLabel, long value) {
+        out.append(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            out.append('{').append(labels);
+            if (extraLabel != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+}
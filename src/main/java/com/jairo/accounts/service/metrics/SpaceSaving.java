@@ -0,0 +1,208 @@
+package com.jairo.accounts.service.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Space-Saving sketch of the heaviest items of a weighted stream, in memory bounded by its capacity whatever the
+ * number of distinct items. Once full, a new item replaces the lightest one and inherits its weight as error, so the
+ * weight of a tracked item is overestimated by at most its error, and any item heavier than total weight / capacity
+ * is guaranteed to be tracked.
+ * <p>
+ * Items are kept in a min-heap on weight, so the lightest one is found in O(1) and updates take O(log capacity). The
+ * heap position of each item is found through an open addressing table of primitives, adding doesn't allocate.
+ * Sketches of several streams can be merged, e.g. one per thread. Not thread safe.
+ */
+public final class SpaceSaving {
+
+    public record Entry(long item, long weight, long error) {
+    }
+
+    private final int capacity;
+    private final long[] items;
+    private final long[] weights;
+    private final long[] errors;
+    //heap position + 1 of each tracked item by linear probing on the item hash, 0 in a free slot
+    private final long[] slotItems;
+    private final int[] slotPositions;
+    private final int slotMask;
+    private int size;
+    private long totalWeight;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.items = new long[capacity];
+        this.weights = new long[capacity];
+        this.errors = new long[capacity];
+        //at most half full
+        int slots = Integer.highestOneBit(Math.max(capacity, 2) * 4 - 1);
+        this.slotItems = new long[slots];
+        this.slotPositions = new int[slots];
+        this.slotMask = slots - 1;
+    }
+
+    /**
+     * @param weight - ignored unless > 0
+     */
+    public void add(long item, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        totalWeight += weight;
+        int position = positionOf(item);
+        if (position >= 0) {
+            weights[position] += weight;
+            siftDown(position);
+        } else if (size < capacity) {
+            set(size, item, weight, 0);
+            siftUp(size++);
+        } else {
+            //evict the lightest item, its weight is an upper bound of what the new one may have had before
+            long minWeight = weights[0];
+            removePosition(items[0]);
+            set(0, item, minWeight + weight, minWeight);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @return tracked items, heaviest first
+     */
+    public List<Entry> top() {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(items[i], weights[i], errors[i]));
+        }
+        entries.sort(Comparator.comparingLong(Entry::weight).reversed());
+        return entries;
+    }
+
+    /**
+     * @return weight of every item added, tracked or not
+     */
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Adds the items of another sketch, as if this one had seen the stream of both. An item tracked by only one of them
+     * may have had up to the lightest weight of the other one if it's full, which is added to its weight and error, so
+     * the bounds of a single sketch still hold. Only the heaviest items within capacity are kept.
+     */
+    public void merge(SpaceSaving other) {
+        long minWeight = size == capacity ? weights[0] : 0;
+        long otherMinWeight = other.size == other.capacity ? other.weights[0] : 0;
+        List<Entry> merged = new ArrayList<>(size + other.size);
+        for (int i = 0; i < size; i++) {
+            int otherPosition = other.positionOf(items[i]);
+            merged.add(otherPosition >= 0
+                    ? new Entry(items[i], weights[i] + other.weights[otherPosition], errors[i] + other.errors[otherPosition])
+                    : new Entry(items[i], weights[i] + otherMinWeight, errors[i] + otherMinWeight));
+        }
+        for (int i = 0; i < other.size; i++) {
+            if (positionOf(other.items[i]) < 0) {
+                merged.add(new Entry(other.items[i], other.weights[i] + minWeight, other.errors[i] + minWeight));
+            }
+        }
+        merged.sort(Comparator.comparingLong(Entry::weight).reversed());
+        long mergedTotalWeight = totalWeight + other.totalWeight;
+        clear();
+        for (Entry entry : merged.subList(0, Math.min(capacity, merged.size()))) {
+            set(size, entry.item(), entry.weight(), entry.error());
+            siftUp(size++);
+        }
+        totalWeight = mergedTotalWeight;
+    }
+
+    public void clear() {
+        Arrays.fill(slotPositions, 0);
+        size = 0;
+        totalWeight = 0;
+    }
+
+    private void set(int position, long item, long weight, long error) {
+        items[position] = item;
+        weights[position] = weight;
+        errors[position] = error;
+        int slot = slotOf(item);
+        slotItems[slot] = item;
+        slotPositions[slot] = position + 1;
+    }
+
+    private int homeSlot(long item) {
+        return (int) ((item * 0x9E3779B97F4A7C15L) >>> 32) & slotMask;
+    }
+
+    //slot of the item, or the free slot where it would go
+    private int slotOf(long item) {
+        int slot = homeSlot(item);
+        while (slotPositions[slot] != 0 && slotItems[slot] != item) {
+            slot = (slot + 1) & slotMask;
+        }
+        return slot;
+    }
+
+    //heap position of the item, -1 if it isn't tracked
+    private int positionOf(long item) {
+        return slotPositions[slotOf(item)] - 1;
+    }
+
+    private void removePosition(long item) {
+        int free = slotOf(item);
+        slotPositions[free] = 0;
+        //shifts back the items of the probe sequence which can't be found anymore past the freed slot
+        for (int slot = (free + 1) & slotMask; slotPositions[slot] != 0; slot = (slot + 1) & slotMask) {
+            int home = homeSlot(slotItems[slot]);
+            boolean reachable = free <= slot ? free < home && home <= slot : free < home || home <= slot;
+            if (!reachable) {
+                slotItems[free] = slotItems[slot];
+                slotPositions[free] = slotPositions[slot];
+                slotPositions[slot] = 0;
+                free = slot;
+            }
+        }
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (weights[parent] <= weights[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int lightest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && weights[left] < weights[lightest]) {
+                lightest = left;
+            }
+            if (right < size && weights[right] < weights[lightest]) {
+                lightest = right;
+            }
+            if (lightest == position) {
+                return;
+            }
+            swap(position, lightest);
+            position = lightest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long item = items[i];
+        long weight = weights[i];
+        long error = errors[i];
+        set(i, items[j], weights[j], errors[j]);
+        set(j, item, weight, error);
+    }
+}
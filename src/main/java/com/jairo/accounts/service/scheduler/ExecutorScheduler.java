@@ -0,0 +1,30 @@
+package com.jairo.accounts.service.scheduler;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Scheduler} backed by a {@link ScheduledThreadPoolExecutor}: each schedule and cancel costs O(log n) on the
+ * executor's delay queue, which is guarded by a single lock shared by every thread.
+ */
+public class ExecutorScheduler implements Scheduler {
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    public ExecutorScheduler(int numberOfThreads) {
+        this.executor = new ScheduledThreadPoolExecutor(numberOfThreads);
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        ScheduledFuture<?> future = executor.schedule(task, delay, unit);
+        return () -> future.cancel(false);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,221 @@
+package com.jairo.accounts.service.scheduler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link Scheduler} based on a hashed timing wheel: a ring of buckets, each covering one tick, walked by a single
+ * ticking thread. Scheduling a task just appends it to a lock-free queue, the ticking thread moves it to the bucket
+ * of its deadline (O(1)) and, once the deadline's tick is reached, hands the task off to the worker executor (O(1)).
+ * Cancelled tasks are unlinked from their bucket by the ticking thread as well, so buckets are never shared.
+ * <p>
+ * Tasks run at most one tick after their deadline, never before.
+ */
+public class HashedWheelScheduler implements Scheduler {
+
+    //max number of new tasks moved to the wheel per tick, so a burst of schedules can't delay expiration for long
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long tickDurationInNanos;
+    private final Executor executor;
+    private final Queue<WheelTimeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final Thread tickingThread;
+    private final long startTime;
+    private volatile boolean running = true;
+    private long tick;
+
+    /**
+     * @param tickDuration - duration of a tick, it's the resolution of the scheduler
+     * @param unit - time unit of tick duration
+     * @param ticksPerWheel - number of buckets in the wheel, rounded up to a power of 2
+     * @param executor - executor running the expired tasks
+     */
+    public HashedWheelScheduler(long tickDuration, TimeUnit unit, int ticksPerWheel, Executor executor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be > 0");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("Ticks per wheel must be in range (0, 2^30]");
+        }
+        this.wheel = new Bucket[ticksPerWheel == 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.tickDurationInNanos = unit.toNanos(tickDuration);
+        this.executor = executor;
+        this.startTime = System.nanoTime();
+        this.tickingThread = new Thread(this::run, "hashed-wheel-scheduler");
+        this.tickingThread.setDaemon(true);
+        this.tickingThread.start();
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new RejectedExecutionException("Scheduler has been shut down");
+        }
+        WheelTimeout timeout = new WheelTimeout(task, System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0)));
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        tickingThread.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            waitForNextTick();
+            if (!running) {
+                return;
+            }
+            removeCancelledTimeouts();
+            transferNewTimeoutsToBuckets();
+            wheel[(int) (tick & mask)].expireTimeouts();
+            tick++;
+        }
+    }
+
+    /**
+     * Waits until the end of current tick, so every timeout of current bucket is due when expired.
+     */
+    private void waitForNextTick() {
+        long deadline = tickDurationInNanos * (tick + 1);
+        for (long now = System.nanoTime() - startTime; now < deadline && running; now = System.nanoTime() - startTime) {
+            LockSupport.parkNanos(this, deadline - now);
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        for (WheelTimeout timeout = cancelledTimeouts.poll(); timeout != null; timeout = cancelledTimeouts.poll()) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferNewTimeoutsToBuckets() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTimeout timeout = newTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != WheelTimeout.ST_INIT) {
+                continue;
+            }
+            long ticks = timeout.deadline / tickDurationInNanos;
+            //an already due timeout goes in current bucket so it's expired straight away
+            long expirationTick = Math.max(ticks, tick);
+            timeout.remainingRounds = (expirationTick - tick) / wheel.length;
+            wheel[(int) (expirationTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(WheelTimeout timeout) {
+        if (timeout.expire()) {
+            try {
+                executor.execute(timeout.task);
+            } catch (RejectedExecutionException e) {
+                //executor shut down, nothing else to do with the task
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts, only accessed by the ticking thread.
+     */
+    private final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        private void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expireTimeouts() {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    expire(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(WheelTimeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    private final class WheelTimeout implements Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = ST_INIT;
+
+        //only accessed by the ticking thread
+        private long remainingRounds;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+        private Bucket bucket;
+
+        private WheelTimeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        private boolean expire() {
+            return STATE.compareAndSet(this, ST_INIT, ST_EXPIRED);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.jairo.accounts.service.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one-shot tasks after a delay. Tasks are expected to be short, anything blocking must be handed off.
+ */
+public interface Scheduler {
+
+    /**
+     * @param task - task to run once the delay has elapsed
+     * @param delay - delay before running the task
+     * @param unit - time unit of the delay
+     * @return handle of the scheduled task, can be used to cancel it
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit);
+
+    /**
+     * Stops the scheduler, pending tasks are discarded.
+     */
+    void shutdown();
+
+    interface Timeout {
+        /**
+         * @return true if task was cancelled before running, false if it already ran or was already cancelled
+         */
+        boolean cancel();
+    }
+}
@@ -4,26 +4,75 @@ import com.jairo.accounts.service.WithdrawalService;
 import jakarta.inject.Singleton;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.*;
 
+/**
+ * Withdrawal provider settling requests 1 to 10 seconds after they're made. Latency of requests and failure rates can
+ * be tuned to simulate a slow or unreliable provider.
+ */
 @Singleton
 public class WithdrawalServiceStub implements WithdrawalService {
     private final ConcurrentMap<WithdrawalId, Withdrawal> requests = new ConcurrentHashMap<>();
+    private final long minLatencyInMillis;
+    private final long maxLatencyInMillis;
+    private final double unavailabilityRate;
+    private final double failureRate;
+
+    public WithdrawalServiceStub() {
+        this(0, 0, 0, 0.5);
+    }
+
+    /**
+     * @param minLatencyInMillis - min time taken to accept a request
+     * @param maxLatencyInMillis - max time taken to accept a request, latency is uniformly distributed up to it
+     * @param unavailabilityRate - ratio of requests rejected as if the provider was unavailable, in [0, 1]
+     * @param failureRate - ratio of accepted withdrawals ending up FAILED rather than COMPLETED, in [0, 1]
+     */
+    public WithdrawalServiceStub(long minLatencyInMillis, long maxLatencyInMillis, double unavailabilityRate, double failureRate) {
+        if (minLatencyInMillis < 0 || maxLatencyInMillis < minLatencyInMillis)
+            throw new IllegalArgumentException("Latency range must be 0 <= min <= max");
+        if (unavailabilityRate < 0 || unavailabilityRate > 1 || failureRate < 0 || failureRate > 1)
+            throw new IllegalArgumentException("Rates must be in [0, 1]");
+        this.minLatencyInMillis = minLatencyInMillis;
+        this.maxLatencyInMillis = maxLatencyInMillis;
+        this.unavailabilityRate = unavailabilityRate;
+        this.failureRate = failureRate;
+    }
 
     @Override
     public void requestWithdrawal(WithdrawalId id, Address address, BigDecimal amount) {
+        simulateLatency();
+        if (unavailabilityRate > 0 && ThreadLocalRandom.current().nextDouble() < unavailabilityRate)
+            throw new IllegalStateException("Withdrawal service unavailable");
         final var existing = requests.putIfAbsent(id, new Withdrawal(finalState(), finaliseAt(), address, amount));
         if (existing != null && !Objects.equals(existing.address, address) && !Objects.equals(existing.amount, amount))
             throw new IllegalStateException("Withdrawal request with id[%s] is already present".formatted(id));
     }
 
+    private void simulateLatency() {
+        final var latency = maxLatencyInMillis > minLatencyInMillis
+                ? ThreadLocalRandom.current().nextLong(minLatencyInMillis, maxLatencyInMillis + 1)
+                : minLatencyInMillis;
+        if (latency == 0)
+            return;
+        try {
+            TimeUnit.MILLISECONDS.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private WithdrawalState finalState() {
-        return ThreadLocalRandom.current().nextBoolean() ? COMPLETED : FAILED;
+        return ThreadLocalRandom.current().nextDouble() < failureRate ? FAILED : COMPLETED;
     }
 
     private long finaliseAt() {
@@ -35,13 +84,24 @@ public class WithdrawalServiceStub implements WithdrawalService {
         final var request = requests.get(id);
         if (request == null)
             throw new IllegalArgumentException("Request %s is not found".formatted(id));
-        return request.finalState();
+        return request.stateAt(System.currentTimeMillis());
+    }
+
+    @Override
+    public Map<WithdrawalId, WithdrawalState> getRequestStates(Collection<WithdrawalId> ids) {
+        final var now = System.currentTimeMillis();
+        final var states = new HashMap<WithdrawalId, WithdrawalState>(ids.size() * 2);
+        for (WithdrawalId id : ids) {
+            final var request = requests.get(id);
+            if (request != null)
+                states.put(id, request.stateAt(now));
+        }
+        return states;
     }
 
     record Withdrawal(WithdrawalState state, long finaliseAt, Address address, BigDecimal amount) {
-        public WithdrawalState finalState() {
-            return finaliseAt <= System.currentTimeMillis() ? state : PROCESSING;
+        public WithdrawalState stateAt(long timeInMillis) {
+            return finaliseAt <= timeInMillis ? state : PROCESSING;
         }
     }
 }
-
@@ -0,0 +1,170 @@
+package com.jairo.accounts.binary;
+
+import com.jairo.accounts.binary.BinaryProtocol.Status;
+import com.jairo.accounts.binary.BinaryTransferClient.Response;
+import com.jairo.accounts.endpoints.dto.AccountDTO;
+import com.jairo.accounts.endpoints.dto.ExternalTransferDetails;
+import com.jairo.accounts.guice.AppModule;
+import com.jairo.accounts.javalin.JavalinApp;
+import io.javalin.json.JavalinJackson;
+import io.javalin.testtools.HttpClient;
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Set;
+
+import static io.javalin.testtools.JavalinTest.test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryTransferServerTest {
+    private final JavalinApp javalinApp = new JavalinApp(AppModule.defaultConfig().binaryProtocol(0).build());
+    private final JavalinJackson javalinJackson = new JavalinJackson();
+
+    private Long createdAccount(HttpClient client, BigDecimal initialBalance) throws IOException {
+        okhttp3.Response response = client.post("/accounts/%s".formatted(initialBalance.toPlainString()));
+        assertThat(response.code()).isEqualTo(HttpStatus.CREATED_201);
+        AccountDTO account = javalinJackson.fromJsonString(response.body().string(), AccountDTO.class);
+        return account.accountId();
+    }
+
+    private BinaryTransferClient connect() throws IOException {
+        return BinaryTransferClient.connect(new InetSocketAddress("localhost", javalinApp.getBinaryTransferServer().orElseThrow().getPort()));
+    }
+
+    @Test
+    void binaryServerOnlyCreatedWhenPortConfigured() {
+        assertThat(new JavalinApp().getBinaryTransferServer().isPresent()).isFalse();
+        assertThat(javalinApp.getBinaryTransferServer().isPresent()).isTrue();
+    }
+
+    @Test
+    void pipelinedInternalTransfersAreAnsweredInOrder() {
+        test(javalinApp.getApp(), (server, client) -> {
+            Long senderAccountId = createdAccount(client, BigDecimal.valueOf(100));
+            Long receiverAccountId = createdAccount(client, BigDecimal.ZERO);
+            try (BinaryTransferClient binaryClient = connect()) {
+                for (long requestId = 0; requestId < 100; requestId++) {
+                    binaryClient.internalTransfer(requestId, senderAccountId, receiverAccountId, new BigDecimal("1.00"));
+                }
+                binaryClient.internalTransfer(100, senderAccountId, receiverAccountId, new BigDecimal("0.01"));
+                binaryClient.flush();
+                for (long requestId = 0; requestId < 100; requestId++) {
+                    Response response = binaryClient.read();
+                    assertThat(response.requestId()).isEqualTo(requestId);
+                    assertThat(response.status()).isEqualTo(Status.OK);
+                    assertThat(response.transferId()).isNull();
+                }
+                assertThat(binaryClient.read().status()).isEqualTo(Status.NOT_SUFFICIENT_FUNDS);
+
+                //everything has been received, it can all go back
+                binaryClient.internalTransfer(101, receiverAccountId, senderAccountId, BigDecimal.valueOf(100));
+                assertThat(binaryClient.read()).isEqualTo(new Response(101, Status.OK, null, null));
+            }
+        });
+    }
+
+    @Test
+    void failedInternalTransfersAreAnsweredWithTheirStatus() {
+        test(javalinApp.getApp(), (server, client) -> {
+            Long accountId = createdAccount(client, BigDecimal.TEN);
+            try (BinaryTransferClient binaryClient = connect()) {
+                binaryClient.internalTransfer(1, accountId, -1, BigDecimal.ONE);
+                binaryClient.internalTransfer(2, accountId, accountId, BigDecimal.ONE);
+                binaryClient.internalTransfer(3, -1, accountId, BigDecimal.ONE);
+                binaryClient.flush();
+
+                Response notFound = binaryClient.read();
+                assertThat(notFound.requestId()).isEqualTo(1);
+                assertThat(notFound.status()).isEqualTo(Status.NOT_FOUND);
+                assertThat(notFound.message()).isNotEmpty();
+                Response invalid = binaryClient.read();
+                assertThat(invalid.requestId()).isEqualTo(2);
+                assertThat(invalid.status()).isEqualTo(Status.INVALID);
+                assertThat(invalid.message()).isEqualTo("Sender and receiver account can't be same");
+                assertThat(binaryClient.read().status()).isEqualTo(Status.NOT_FOUND);
+            }
+        });
+    }
+
+    @Test
+    void externalTransferIsAnsweredWithItsTransferId() {
+        test(javalinApp.getApp(), (server, client) -> {
+            Long accountId = createdAccount(client, BigDecimal.TEN);
+            try (BinaryTransferClient binaryClient = connect()) {
+                binaryClient.externalTransfer(7, accountId, "some-address", new BigDecimal("2.50"));
+                binaryClient.externalTransfer(8, accountId, "some-address", BigDecimal.TEN);
+                binaryClient.flush();
+
+                Set<Status> statuses = new HashSet<>();
+                Response accepted = null;
+                for (int i = 0; i < 2; i++) {
+                    Response response = binaryClient.read();
+                    statuses.add(response.status());
+                    if (response.requestId() == 7) {
+                        accepted = response;
+                    }
+                }
+                assertThat(statuses).containsOnly(Status.OK, Status.NOT_SUFFICIENT_FUNDS);
+                assertThat(accepted.status()).isEqualTo(Status.OK);
+                okhttp3.Response transferResponse = client.get("/accounts/%s/transfer/external/%s".formatted(accountId, accepted.transferId()));
+                assertThat(transferResponse.code()).isEqualTo(HttpStatus.OK_200);
+                ExternalTransferDetails details = javalinJackson.fromJsonString(transferResponse.body().string(), ExternalTransferDetails.class);
+                assertThat(details.amount()).isEqualByComparingTo(new BigDecimal("2.50"));
+            }
+        });
+    }
+
+    @Test
+    void malformedRequestIsAnsweredAndConnectionKeptOpen() {
+        test(javalinApp.getApp(), (server, client) -> {
+            Long senderAccountId = createdAccount(client, BigDecimal.TEN);
+            Long receiverAccountId = createdAccount(client, BigDecimal.ZERO);
+            int port = javalinApp.getBinaryTransferServer().orElseThrow().getPort();
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+                //unknown type 9
+                ByteBuffer request = ByteBuffer.allocate(4 + 9 + 4 + BinaryProtocol.INTERNAL_TRANSFER_LENGTH);
+                request.putInt(9).put((byte) 9).putLong(42);
+                request.putInt(BinaryProtocol.INTERNAL_TRANSFER_LENGTH).put(BinaryProtocol.INTERNAL_TRANSFER).putLong(43)
+                        .putLong(senderAccountId).putLong(receiverAccountId);
+                BinaryProtocol.putAmount(request, BigDecimal.ONE);
+                channel.write(request.flip());
+
+                ByteBuffer responses = ByteBuffer.allocate(BinaryProtocol.MAX_RESPONSE_LENGTH * 2);
+                while (responses.position() < 4 || responses.position() < 4 + responses.getInt(0) + 4 + 9) {
+                    channel.read(responses);
+                }
+                responses.flip();
+                int length = responses.getInt();
+                assertThat(responses.getLong()).isEqualTo(42);
+                assertThat(Status.of(responses.get())).isEqualTo(Status.MALFORMED);
+                assertThat(BinaryProtocol.getMessage(responses)).contains("type 9");
+                assertThat(responses.position()).isEqualTo(4 + length);
+                assertThat(responses.getInt()).isEqualTo(9);
+                assertThat(responses.getLong()).isEqualTo(43);
+                assertThat(Status.of(responses.get())).isEqualTo(Status.OK);
+            }
+        });
+    }
+
+    @Test
+    void frameTooLongClosesConnection() {
+        test(javalinApp.getApp(), (server, client) -> {
+            try (BinaryTransferClient binaryClient = connect()) {
+                //longest frame a client can send is fine
+                binaryClient.externalTransfer(1, -1, "a".repeat(255), BigDecimal.ONE);
+                assertThat(binaryClient.read().status()).isEqualTo(Status.NOT_FOUND);
+            }
+            int port = javalinApp.getBinaryTransferServer().orElseThrow().getPort();
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+                channel.write(ByteBuffer.allocate(4).putInt(BinaryProtocol.MAX_FRAME_LENGTH + 1).flip());
+                assertThat(channel.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+            }
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package com.jairo.accounts.domain;
 
+import com.jairo.accounts.exception.NotSufficientFundsException;
 import com.jairo.accounts.service.WithdrawalService;
 import com.jairo.accounts.service.WithdrawalService.Address;
 import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
@@ -8,7 +9,14 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.PROCESSING;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -101,4 +109,72 @@ class AccountTest {
                 .containsKey(withdrawalId)
                 .containsValue(new RequestedExternalWithdrawal(withdrawalId, WithdrawalService.WithdrawalState.COMPLETED, amount, address));
     }
-}
\ No newline at end of file
+
+    @Test
+    void withdrawalIsSettledAndRefundedOnlyOnce() {
+        Account account = new Account(1l, BigDecimal.TEN);
+        WithdrawalId withdrawalId = new WithdrawalId(UUID.randomUUID());
+        account.requestWithdrawal(BigDecimal.ONE, withdrawalId, new Address("address"));
+
+        assertThat(account.failWithdrawal(withdrawalId)).isTrue();
+        assertThat(account.failWithdrawal(withdrawalId)).isFalse();
+        assertThat(account.completeWithdrawal(withdrawalId)).isFalse();
+
+        assertThat(account.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(account.getRequestedExternalWithdrawal(withdrawalId).get().withdrawalState()).isEqualTo(WithdrawalService.WithdrawalState.FAILED);
+    }
+
+    @Test
+    void concurrentFailuresOfSameWithdrawalRefundItOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 1_000; round++) {
+                Account account = new Account(1l, BigDecimal.TEN);
+                WithdrawalId withdrawalId = new WithdrawalId(UUID.randomUUID());
+                account.requestWithdrawal(BigDecimal.ONE, withdrawalId, new Address("address"));
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> failures = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    failures.add(executor.submit(() -> {
+                        start.await();
+                        return account.failWithdrawal(withdrawalId);
+                    }));
+                }
+                start.countDown();
+                int settled = 0;
+                for (Future<Boolean> failure : failures) {
+                    settled += failure.get(10, TimeUnit.SECONDS) ? 1 : 0;
+                }
+
+                assertThat(settled).isEqualTo(1);
+                assertThat(account.getBalance()).isEqualTo(BigDecimal.TEN);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void withdrawMoreThanFixedPointBalanceNotAllowed() {
+        Account account = new Account(1l, new FixedPointBalance(BigDecimal.TEN, 2));
+        account.withdraw(BigDecimal.valueOf(2));
+
+        assertThatExceptionOfType(NotSufficientFundsException.class).isThrownBy(() -> account.withdraw(BigDecimal.valueOf(9)));
+        assertThat(account.getBalance()).isEqualTo(new BigDecimal("8.00"));
+    }
+
+    @Test
+    void withdrawalHistoryIsOnlyAllocatedOnFirstWithdrawalRequest() {
+        Account account = new Account(1l, BigDecimal.TEN);
+        WithdrawalId withdrawalId = new WithdrawalId(UUID.randomUUID());
+
+        account.withdraw(BigDecimal.ONE);
+        assertThat(account.getRequestedExternalWithdrawal(withdrawalId).isPresent()).isFalse();
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> account.completeWithdrawal(withdrawalId));
+        assertThat(account.hasWithdrawalHistory()).isFalse();
+
+        account.requestWithdrawal(BigDecimal.ONE, withdrawalId, new Address("address"));
+        assertThat(account.hasWithdrawalHistory()).isTrue();
+        assertThat(account.getRequestedExternalWithdrawal(withdrawalId).isPresent()).isTrue();
+    }
+}
@@ -0,0 +1,79 @@
+package com.jairo.accounts.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class FixedPointBalanceTest {
+
+    @Test
+    void depositAndWithdrawAmountsUpToBalanceScale() {
+        FixedPointBalance balance = new FixedPointBalance(new BigDecimal("10.5"), 2);
+
+        balance.deposit(new BigDecimal("0.25"));
+        assertThat(balance.tryWithdraw(new BigDecimal("3"))).isTrue();
+
+        assertThat(balance.get()).isEqualTo(new BigDecimal("7.75"));
+    }
+
+    @Test
+    void withdrawMoreThanBalanceLeavesBalanceUnchanged() {
+        FixedPointBalance balance = new FixedPointBalance(BigDecimal.TEN, 2);
+
+        assertThat(balance.tryWithdraw(new BigDecimal("10.01"))).isFalse();
+        assertThat(balance.get()).isEqualTo(new BigDecimal("10.00"));
+    }
+
+    @Test
+    void amountsWithMoreDecimalPlacesThanScaleAreRejected() {
+        FixedPointBalance balance = new FixedPointBalance(BigDecimal.TEN, 2);
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> balance.deposit(new BigDecimal("0.001")));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> balance.tryWithdraw(new BigDecimal("0.001")));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new FixedPointBalance(new BigDecimal("0.001"), 2));
+        assertThat(balance.get()).isEqualTo(new BigDecimal("10.00"));
+    }
+
+    @Test
+    void depositOverflowingBalanceIsRejected() {
+        FixedPointBalance balance = new FixedPointBalance(BigDecimal.valueOf(Long.MAX_VALUE - 1), 0);
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> balance.deposit(BigDecimal.valueOf(2)));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> balance.deposit(new BigDecimal("1E+30")));
+        assertThat(balance.get()).isEqualTo(BigDecimal.valueOf(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void scaleIsTakenFromCurrencyMinorUnit() {
+        assertThat(FixedPointBalance.forCurrency(BigDecimal.ONE, Currency.getInstance("EUR")).getScale()).isEqualTo(2);
+        assertThat(FixedPointBalance.forCurrency(BigDecimal.ONE, Currency.getInstance("JPY")).getScale()).isEqualTo(0);
+    }
+
+    @Test
+    void concurrentDepositsAndWithdrawalsResultInAccurateBalance() throws Exception {
+        FixedPointBalance balance = new FixedPointBalance(BigDecimal.valueOf(1000), 2);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+        for (int i = 0; i < completableFutures.length; i++) {
+            completableFutures[i] = CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    balance.deposit(new BigDecimal("0.01"));
+                    assertThat(balance.tryWithdraw(new BigDecimal("0.01"))).isTrue();
+                }
+            }, executorService);
+        }
+        CompletableFuture.allOf(completableFutures).get(10, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        assertThat(balance.get()).isEqualTo(new BigDecimal("1000.00"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.jairo.accounts.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class StripedBalanceTest {
+
+    @Test
+    void withdrawConsolidatesDepositsSpreadOverStripes() throws Exception {
+        StripedBalance balance = new StripedBalance(BigDecimal.ONE, 2, 8);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+        for (int i = 0; i < completableFutures.length; i++) {
+            completableFutures[i] = CompletableFuture.runAsync(() -> balance.deposit(new BigDecimal("2.50")), executorService);
+        }
+        CompletableFuture.allOf(completableFutures).get(10, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        assertThat(balance.get()).isEqualTo(new BigDecimal("21.00"));
+        assertThat(balance.tryWithdraw(new BigDecimal("21"))).isTrue();
+        assertThat(balance.get()).isEqualTo(new BigDecimal("0.00"));
+    }
+
+    @Test
+    void withdrawMoreThanBalanceLeavesBalanceUnchanged() {
+        StripedBalance balance = new StripedBalance(BigDecimal.TEN, 2, 4);
+        balance.deposit(BigDecimal.ONE);
+
+        assertThat(balance.tryWithdraw(new BigDecimal("11.01"))).isFalse();
+        assertThat(balance.get()).isEqualTo(new BigDecimal("11.00"));
+    }
+
+    @Test
+    void amountsWithMoreDecimalPlacesThanScaleAreRejected() {
+        StripedBalance balance = new StripedBalance(BigDecimal.TEN, 2, 4);
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> balance.deposit(new BigDecimal("0.001")));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> balance.tryWithdraw(new BigDecimal("0.001")));
+        assertThat(balance.get()).isEqualTo(new BigDecimal("10.00"));
+    }
+
+    @Test
+    void depositOverflowingBalanceIsRejected() {
+        StripedBalance balance = new StripedBalance(BigDecimal.ZERO, 0, 2);
+        BigDecimal maxPerStripe = BigDecimal.valueOf(Long.MAX_VALUE / 4);
+
+        //two stripes and the base can take the max each
+        balance.deposit(maxPerStripe);
+        balance.deposit(maxPerStripe);
+        balance.deposit(maxPerStripe);
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> balance.deposit(BigDecimal.ONE));
+        assertThat(balance.get()).isEqualTo(maxPerStripe.multiply(BigDecimal.valueOf(3)));
+    }
+
+    @Test
+    void contendedDepositsAreNotRejectedWhenBaseIsAboveCapAfterConsolidation() throws Exception {
+        StripedBalance balance = new StripedBalance(BigDecimal.ZERO, 0, 2);
+        BigDecimal maxPerStripe = BigDecimal.valueOf(Long.MAX_VALUE / 4);
+        balance.deposit(maxPerStripe);
+        balance.deposit(maxPerStripe);
+        //consolidates both stripes into the base before failing
+        assertThat(balance.tryWithdraw(maxPerStripe.multiply(BigDecimal.valueOf(3)))).isFalse();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+        for (int i = 0; i < completableFutures.length; i++) {
+            completableFutures[i] = CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    balance.deposit(BigDecimal.ONE);
+                }
+            }, executorService);
+        }
+        CompletableFuture.allOf(completableFutures).get(10, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        assertThat(balance.get()).isEqualTo(maxPerStripe.multiply(BigDecimal.valueOf(2)).add(BigDecimal.valueOf(80_000)));
+    }
+
+    @Test
+    void concurrentDepositsAndWithdrawalsResultInAccurateBalance() throws Exception {
+        StripedBalance balance = new StripedBalance(BigDecimal.valueOf(1000), 2, 4);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+        for (int i = 0; i < completableFutures.length; i++) {
+            completableFutures[i] = CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    balance.deposit(new BigDecimal("0.01"));
+                    assertThat(balance.tryWithdraw(new BigDecimal("0.01"))).isTrue();
+                }
+            }, executorService);
+        }
+        CompletableFuture.allOf(completableFutures).get(10, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        assertThat(balance.get()).isEqualTo(new BigDecimal("1000.00"));
+    }
+}
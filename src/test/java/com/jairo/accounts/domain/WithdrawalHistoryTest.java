@@ -0,0 +1,125 @@
+package com.jairo.accounts.domain;
+
+import com.jairo.accounts.domain.WithdrawalHistory.Cursor;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.COMPLETED;
+import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.FAILED;
+import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.PROCESSING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.groups.Tuple.tuple;
+
+class WithdrawalHistoryTest {
+
+    private final WithdrawalHistory history = new WithdrawalHistory();
+
+    private static RequestedExternalWithdrawal withdrawal(String address) {
+        return new RequestedExternalWithdrawal(new WithdrawalId(UUID.randomUUID()), PROCESSING, BigDecimal.ONE, new Address(address));
+    }
+
+    @Test
+    void requestTimesAreKeptMonotonicSoRequestOrderIsTimeOrder() {
+        history.add(withdrawal("first"), 2000);
+        history.add(withdrawal("second"), 1000);
+        history.add(withdrawal("third"), 3000);
+
+        assertThat(history.inRequestOrder(null, Long.MIN_VALUE, Long.MAX_VALUE))
+                .extracting(entry -> entry.getWithdrawal().address().value(), WithdrawalHistory.Entry::getRequestedAtInMillis)
+                .containsExactly(tuple("first", 2000L), tuple("second", 2000L),
+                        tuple("third", 3000L));
+    }
+
+    @Test
+    void entriesAreFilteredByTimeRangeAndCursor() {
+        history.add(withdrawal("first"), 1000);
+        WithdrawalHistory.Entry second = history.add(withdrawal("second"), 2000);
+        history.add(withdrawal("third"), 2000);
+        history.add(withdrawal("fourth"), 3000);
+
+        assertThat(history.inRequestOrder(null, 2000, 3000)).extracting(entry -> entry.getWithdrawal().address().value())
+                .containsExactly("second", "third");
+        assertThat(history.inRequestOrder(Cursor.parse(second.getCursor().toString()), 2000, 3000)).extracting(entry -> entry.getWithdrawal().address().value())
+                .containsExactly("third");
+        assertThat(history.inRequestOrder(second.getCursor(), Long.MIN_VALUE, 1000)).isEmpty();
+    }
+
+    @Test
+    void stateUpdateIsSeenThroughEveryIndex() {
+        RequestedExternalWithdrawal withdrawal = withdrawal("address");
+        history.add(withdrawal, 1000);
+
+        assertThat(history.updateState(withdrawal.withdrawalId(), COMPLETED)).contains(withdrawal);
+
+        assertThat(history.get(withdrawal.withdrawalId()).get().getWithdrawal().withdrawalState()).isEqualTo(COMPLETED);
+        assertThat(history.asMap().get(withdrawal.withdrawalId()).withdrawalState()).isEqualTo(COMPLETED);
+        assertThat(history.inRequestOrder(null, Long.MIN_VALUE, Long.MAX_VALUE).iterator().next().getWithdrawal().withdrawalState()).isEqualTo(COMPLETED);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Cursor.parse("not-a-cursor"));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Cursor.parse("123"));
+    }
+
+    @Test
+    void oldAndExcessSettledWithdrawalsAreArchivedBeforeBeingRemoved() {
+        RequestedExternalWithdrawal old = withdrawal("old");
+        RequestedExternalWithdrawal pending = withdrawal("pending");
+        RequestedExternalWithdrawal excess = withdrawal("excess");
+        RequestedExternalWithdrawal kept = withdrawal("kept");
+        history.add(old, 1000);
+        history.add(pending, 1000);
+        history.add(excess, 3000);
+        history.add(kept, 4000);
+        history.updateState(old.withdrawalId(), FAILED);
+        history.updateState(excess.withdrawalId(), COMPLETED);
+        history.updateState(kept.withdrawalId(), COMPLETED);
+        List<String> archivedWhileInHistory = new ArrayList<>();
+
+        List<WithdrawalHistory.Entry> removed = history.removeSettled(2000, 1, entries -> entries.forEach(entry -> {
+            assertThat(history.get(entry.getWithdrawal().withdrawalId()).isPresent()).isTrue();
+            archivedWhileInHistory.add(entry.getWithdrawal().address().value());
+        }));
+
+        assertThat(removed).extracting(entry -> entry.getWithdrawal().address().value()).containsExactly("old", "excess");
+        assertThat(archivedWhileInHistory).containsExactly("old", "excess");
+        assertThat(history.inRequestOrder(null, Long.MIN_VALUE, Long.MAX_VALUE)).extracting(entry -> entry.getWithdrawal().address().value())
+                .containsExactly("pending", "kept");
+        assertThat(history.get(old.withdrawalId()).isPresent()).isFalse();
+    }
+
+    @Test
+    void nothingIsRemovedIfArchivingFails() {
+        RequestedExternalWithdrawal withdrawal = withdrawal("address");
+        history.add(withdrawal, 1000);
+        history.updateState(withdrawal.withdrawalId(), COMPLETED);
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> history.removeSettled(Long.MAX_VALUE, 0, entries -> {
+            throw new IllegalStateException("archive not writable");
+        }));
+
+        assertThat(history.size()).isEqualTo(1);
+    }
+
+    @Test
+    void mergeReturnsEntriesInRequestOrderAndEntriesFoundInBothOnce() {
+        WithdrawalHistory.Entry first = history.add(withdrawal("first"), 1000);
+        WithdrawalHistory.Entry second = history.add(withdrawal("second"), 2000);
+        WithdrawalHistory.Entry third = history.add(withdrawal("third"), 3000);
+        WithdrawalHistory.Entry fourth = history.add(withdrawal("fourth"), 4000);
+
+        List<WithdrawalHistory.Entry> merged = new ArrayList<>();
+        WithdrawalHistory.mergeInRequestOrder(List.of(second, third).iterator(), List.of(first, third, fourth).iterator())
+                .forEachRemaining(merged::add);
+
+        assertThat(merged).containsExactly(first, second, third, fourth);
+    }
+}
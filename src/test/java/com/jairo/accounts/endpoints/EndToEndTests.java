@@ -2,21 +2,42 @@ package com.jairo.accounts.endpoints;
 
 import com.jairo.accounts.endpoints.dto.AccountDTO;
 import com.jairo.accounts.endpoints.dto.ExternalTransferDetails;
+import com.jairo.accounts.endpoints.dto.ExternalTransfersPage;
+import com.jairo.accounts.endpoints.dto.LockContentionDTO;
 import com.jairo.accounts.endpoints.dto.TransferIdDTO;
+import com.jairo.accounts.endpoints.dto.TransferResultDTO;
+import com.jairo.accounts.guice.AppModule;
 import com.jairo.accounts.javalin.JavalinApp;
+import com.jairo.accounts.service.WithdrawalService;
+import com.jairo.accounts.service.config.Config;
 import io.javalin.Javalin;
 import io.javalin.json.JavalinJackson;
 import io.javalin.testtools.HttpClient;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.eclipse.jetty.http.HttpStatus;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static io.javalin.testtools.JavalinTest.test;
+import static org.awaitility.Awaitility.await;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 
 class EndToEndTests {
     private final Javalin app = new JavalinApp().getApp();
@@ -52,6 +73,74 @@ class EndToEndTests {
         });
     }
 
+    @Test
+    void scenarioInternalTransfersThroughHotAccount() {
+        test(app, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(15000.56));
+            Response hotAccountResponse = client.post("/accounts/0?hot=true");
+            assertThat(hotAccountResponse.code()).isEqualTo(HttpStatus.CREATED_201);
+            AccountDTO hotAccount = javalinJackson.fromJsonString(hotAccountResponse.body().string(), AccountDTO.class);
+            Long hotAccountId = hotAccount.accountId();
+
+            assertThat(internalTransfer(client, senderAccountId, hotAccountId, 10000).code()).isEqualTo(HttpStatus.OK_200);
+            assertThat(internalTransfer(client, hotAccountId, senderAccountId, 10000.01f).code()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY_422);
+            assertThat(internalTransfer(client, hotAccountId, senderAccountId, 10000).code()).isEqualTo(HttpStatus.OK_200);
+        });
+    }
+
+    private static Response internalTransferBatch(HttpClient client, String query, String contentType, String body) {
+        Consumer<Request.Builder> request = builder -> builder.post(RequestBody.create(body, MediaType.get(contentType)));
+        return client.request("/accounts/transfer/internal/batch" + query, request);
+    }
+
+    @Test
+    void scenarioBestEffortBatchOfInternalTransfersAsJsonArray() {
+        test(app, (server, client) -> {
+            Long firstAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(100));
+            Long secondAccountId = successfullyCreatedAccount(client, BigDecimal.ZERO);
+            String body = """
+                    [{"senderAccountId": %1$s, "receiverAccountId": %2$s, "amount": 60.5},
+                     {"senderAccountId": %1$s, "receiverAccountId": %2$s, "amount": 60.5},
+                     {"senderAccountId": %2$s, "receiverAccountId": %1$s, "amount": 0.5}]
+                    """.formatted(firstAccountId, secondAccountId);
+
+            Response batchResponse = internalTransferBatch(client, "", "application/json", body);
+            assertThat(batchResponse.code()).isEqualTo(HttpStatus.OK_200);
+            TransferResultDTO[] results = javalinJackson.fromJsonString(batchResponse.body().string(), TransferResultDTO[].class);
+            assertThat(results).extracting(TransferResultDTO::status).containsExactly("COMPLETED", "FAILED", "COMPLETED");
+
+            assertThat(internalTransfer(client, secondAccountId, firstAccountId, 60).code()).isEqualTo(HttpStatus.OK_200);
+        });
+    }
+
+    @Test
+    void scenarioFailedAllOrNothingBatchOfInternalTransfersAsNdjsonAppliesNothing() {
+        test(app, (server, client) -> {
+            Long firstAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(100));
+            Long secondAccountId = successfullyCreatedAccount(client, BigDecimal.ZERO);
+            String body = """
+                    {"senderAccountId": %1$s, "receiverAccountId": %2$s, "amount": 60}
+                    {"senderAccountId": %1$s, "receiverAccountId": %2$s, "amount": 60}
+                    """.formatted(firstAccountId, secondAccountId);
+
+            Response batchResponse = internalTransferBatch(client, "?mode=all_or_nothing", "application/x-ndjson", body);
+            assertThat(batchResponse.code()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY_422);
+            TransferResultDTO[] results = javalinJackson.fromJsonString(batchResponse.body().string(), TransferResultDTO[].class);
+            assertThat(results).extracting(TransferResultDTO::status).containsExactly("NOT_APPLIED", "FAILED");
+
+            assertThat(internalTransfer(client, firstAccountId, secondAccountId, 100).code()).isEqualTo(HttpStatus.OK_200);
+        });
+    }
+
+    @Test
+    void scenarioMalformedBatchOfInternalTransfersIsRejected() {
+        test(app, (server, client) -> {
+            Response batchResponse = internalTransferBatch(client, "", "application/json", "[{\"senderAccountId\": ");
+            assertThat(batchResponse.code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+            assertThat(internalTransferBatch(client, "?mode=unknown", "application/json", "[]").code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+        });
+    }
+
     @Test
     void scenarioFailedInternalTransferFromNonExistentAccount() {
         test(app, (server, client) -> {
@@ -123,4 +212,266 @@ class EndToEndTests {
             assertThat(transferDetails).containsExactlyInAnyOrder(transfer1Details, transfer2Details);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void scenarioListExternalTransfersPageByPage() {
+        test(app, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(15000.56));
+            for (int i = 0; i < 3; i++) {
+                assertThat(externalTransfer(client, senderAccountId, "address-" + i, 100).code()).isEqualTo(HttpStatus.OK_200);
+            }
+
+            Response firstPageResponse = client.get("/accounts/%s/transfers/external?limit=2".formatted(senderAccountId));
+            assertThat(firstPageResponse.code()).isEqualTo(HttpStatus.OK_200);
+            ExternalTransfersPage firstPage = javalinJackson.fromJsonString(firstPageResponse.body().string(), ExternalTransfersPage.class);
+            assertThat(firstPage.transfers()).extracting(ExternalTransferDetails::address).containsExactly("address-0", "address-1");
+
+            Response secondPageResponse = client.get("/accounts/%s/transfers/external?limit=2&cursor=%s".formatted(senderAccountId, firstPage.nextCursor()));
+            ExternalTransfersPage secondPage = javalinJackson.fromJsonString(secondPageResponse.body().string(), ExternalTransfersPage.class);
+            assertThat(secondPage.transfers()).extracting(ExternalTransferDetails::address).containsExactly("address-2");
+            assertThat(secondPage.nextCursor()).isNull();
+
+            Response filteredResponse = client.get("/accounts/%s/transfers/external?status=processing,completed,failed&from=0".formatted(senderAccountId));
+            ExternalTransferDetails[] filtered = javalinJackson.fromJsonString(filteredResponse.body().string(), ExternalTransferDetails[].class);
+            assertThat(filtered).hasSize(3);
+
+            assertThat(client.get("/accounts/%s/transfers/external?cursor=invalid".formatted(senderAccountId)).code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+            assertThat(client.get("/accounts/%s/transfers/external?status=unknown".formatted(senderAccountId)).code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+            assertThat(client.get("/accounts/999/transfers/external").code()).isEqualTo(HttpStatus.NOT_FOUND_404);
+        });
+    }
+
+    @Test
+    void scenarioGetExternalTransferWithoutItsAccount() {
+        test(app, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(15000.56));
+
+            Response transferCreationResponse = externalTransfer(client, senderAccountId, "address-1", 10000);
+            TransferIdDTO transferId = javalinJackson.fromJsonString(transferCreationResponse.body().string(), TransferIdDTO.class);
+
+            Response transferStateResponse = client.get("/transfers/external/%s".formatted(transferId.transferId()));
+            assertThat(transferStateResponse.code()).isEqualTo(HttpStatus.OK_200);
+            ExternalTransferDetails transferDetails = javalinJackson.fromJsonString(transferStateResponse.body().string(), ExternalTransferDetails.class);
+            assertThat(transferDetails.transferId()).isEqualTo(transferId.transferId());
+            assertThat(transferDetails.address()).isEqualTo("address-1");
+
+            assertThat(client.get("/transfers/external/%s".formatted(UUID.randomUUID())).code()).isEqualTo(HttpStatus.NOT_FOUND_404);
+        });
+    }
+
+    @Test
+    void scenarioExternalTransferWithVirtualThreadsEnabled() {
+        Javalin virtualThreadsApp = new JavalinApp(AppModule.defaultConfig().useVirtualThreads(true).build()).getApp();
+        test(virtualThreadsApp, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(15000.56));
+
+            Response transferCreationResponse = externalTransfer(client, senderAccountId, "address-1", 10000);
+            assertThat(transferCreationResponse.code()).isEqualTo(HttpStatus.OK_200);
+            TransferIdDTO transferId = javalinJackson.fromJsonString(transferCreationResponse.body().string(), TransferIdDTO.class);
+
+            Response transferStateResponse = externalTransferState(client, senderAccountId, transferId.transferId());
+            assertThat(transferStateResponse.code()).isEqualTo(HttpStatus.OK_200);
+        });
+    }
+
+    private static Set<Thread> liveThreadsNamed(Predicate<String> name) {
+        return Thread.getAllStackTraces().keySet().stream().filter(thread -> name.test(thread.getName())).collect(Collectors.toSet());
+    }
+
+    @Test
+    void scenarioStoppedAppStopsItsServicesAndRestartsFromItsFiles(@TempDir Path directory) throws IOException {
+        Config config = AppModule.defaultConfig()
+                .shardedTransferEngine(2)
+                .mappedAccountStore(directory.resolve("accounts"))
+                .journal(directory.resolve("journal"))
+                .build();
+        Predicate<String> appThread = name -> name.equals("journal-writer") || name.startsWith("transfer-shard-");
+        Set<Thread> threadsBefore = liveThreadsNamed(appThread);
+        Long[] accountIds = new Long[2];
+        Set<Thread> appThreads = new HashSet<>();
+        test(new JavalinApp(config).getApp(), (server, client) -> {
+            accountIds[0] = successfullyCreatedAccount(client, BigDecimal.valueOf(100));
+            accountIds[1] = successfullyCreatedAccount(client, BigDecimal.ZERO);
+            assertThat(internalTransfer(client, accountIds[0], accountIds[1], 40).code()).isEqualTo(HttpStatus.OK_200);
+            appThreads.addAll(liveThreadsNamed(appThread));
+            appThreads.removeAll(threadsBefore);
+        });
+
+        assertThat(appThreads).isNotEmpty();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> appThreads.stream().noneMatch(Thread::isAlive));
+        test(new JavalinApp(config).getApp(), (server, client) -> {
+            //60 left to sender, a transfer of 61 would fail
+            assertThat(internalTransfer(client, accountIds[0], accountIds[1], 60).code()).isEqualTo(HttpStatus.OK_200);
+            assertThat(internalTransfer(client, accountIds[0], accountIds[1], 1).code()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY_422);
+        });
+    }
+
+    @Test
+    void scenarioFailedExternalTransferWhenWithdrawalServiceIsUnavailableRollsBackBalance() {
+        WithdrawalService unavailableWithdrawalService = mock(WithdrawalService.class);
+        doThrow(new IllegalStateException("Withdrawal service unavailable")).when(unavailableWithdrawalService).requestWithdrawal(any(), any(), any());
+        Javalin appWithUnavailableWithdrawalService = new JavalinApp(AppModule.defaultConfig().build(),
+                binder -> binder.bind(WithdrawalService.class).toInstance(unavailableWithdrawalService)).getApp();
+        test(appWithUnavailableWithdrawalService, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(15000.56));
+
+            Response transferResponse = externalTransfer(client, senderAccountId, "address", 10000);
+            assertThat(transferResponse.code()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR_500);
+
+            Response listOfTransfersResponse = client.get("/accounts/%s/transfers/external".formatted(senderAccountId));
+            ExternalTransferDetails[] transferDetails = javalinJackson.fromJsonString(listOfTransfersResponse.body().string(), ExternalTransferDetails[].class);
+            assertThat(transferDetails).extracting(ExternalTransferDetails::status).containsExactly("FAILED");
+        });
+    }
+
+    private static Response idempotentPost(HttpClient client, String path, String idempotencyKey) {
+        return client.request(path, builder -> builder
+                .post(RequestBody.create(new byte[0]))
+                .header(TransfersResource.HEADER_IDEMPOTENCY_KEY, idempotencyKey));
+    }
+
+    @Test
+    void scenarioRetriedExternalTransferWithIdempotencyKeyWithdrawsOnce() {
+        test(app, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(150));
+            String path = "/accounts/transfer/external/from/%s/to/address/100".formatted(senderAccountId);
+
+            Response firstResponse = idempotentPost(client, path, "key-1");
+            assertThat(firstResponse.code()).isEqualTo(HttpStatus.OK_200);
+            assertThat(firstResponse.header(TransfersResource.HEADER_IDEMPOTENT_REPLAYED)).isNull();
+            TransferIdDTO firstTransferId = javalinJackson.fromJsonString(firstResponse.body().string(), TransferIdDTO.class);
+
+            Response retryResponse = idempotentPost(client, path, "key-1");
+            assertThat(retryResponse.code()).isEqualTo(HttpStatus.OK_200);
+            assertThat(retryResponse.header(TransfersResource.HEADER_IDEMPOTENT_REPLAYED)).isEqualTo("true");
+            TransferIdDTO retryTransferId = javalinJackson.fromJsonString(retryResponse.body().string(), TransferIdDTO.class);
+            assertThat(retryTransferId).isEqualTo(firstTransferId);
+
+            Response listOfTransfersResponse = client.get("/accounts/%s/transfers/external".formatted(senderAccountId));
+            ExternalTransferDetails[] transferDetails = javalinJackson.fromJsonString(listOfTransfersResponse.body().string(), ExternalTransferDetails[].class);
+            assertThat(transferDetails).hasSize(1);
+
+            //a new key is a new transfer, which the remaining balance can't afford
+            assertThat(idempotentPost(client, path, "key-2").code()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY_422);
+        });
+    }
+
+    @Test
+    void scenarioRetriedInternalTransferWithIdempotencyKeyTransfersOnce() {
+        test(app, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(150));
+            Long receiverAccountId = successfullyCreatedAccount(client, BigDecimal.ZERO);
+            String path = "/accounts/transfer/internal/from/%s/to/%s/100".formatted(senderAccountId, receiverAccountId);
+
+            assertThat(idempotentPost(client, path, "key-1").code()).isEqualTo(HttpStatus.OK_200);
+            Response retryResponse = idempotentPost(client, path, "key-1");
+            assertThat(retryResponse.code()).isEqualTo(HttpStatus.OK_200);
+            assertThat(retryResponse.header(TransfersResource.HEADER_IDEMPOTENT_REPLAYED)).isEqualTo("true");
+
+            //sender has 50 left, receiver 100
+            assertThat(internalTransfer(client, senderAccountId, receiverAccountId, 50.01f).code()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY_422);
+            assertThat(internalTransfer(client, receiverAccountId, senderAccountId, 100).code()).isEqualTo(HttpStatus.OK_200);
+
+            String otherPath = "/accounts/transfer/internal/from/%s/to/%s/1".formatted(senderAccountId, receiverAccountId);
+            assertThat(idempotentPost(client, otherPath, "key-1").code()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY_422);
+            assertThat(idempotentPost(client, otherPath, " ").code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+        });
+    }
+
+    @Test
+    void scenarioMetricsCountTransfersAndRequestsByRoute() {
+        test(app, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(150));
+            Long receiverAccountId = successfullyCreatedAccount(client, BigDecimal.ZERO);
+            assertThat(internalTransfer(client, senderAccountId, receiverAccountId, 100).code()).isEqualTo(HttpStatus.OK_200);
+            assertThat(internalTransfer(client, senderAccountId, receiverAccountId, 100).code()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY_422);
+            assertThat(client.get("/no/such/path").code()).isEqualTo(HttpStatus.NOT_FOUND_404);
+
+            //requests are recorded once responded
+            await().untilAsserted(() -> {
+                Response metricsResponse = client.get(JavalinApp.METRICS);
+                assertThat(metricsResponse.code()).isEqualTo(HttpStatus.OK_200);
+                assertThat(metricsResponse.header("Content-Type")).startsWith("text/plain");
+                String metrics = metricsResponse.body().string();
+                assertThat(metrics).contains("accounts_transfers_total{result=\"completed\"} 1\n");
+                assertThat(metrics).contains("accounts_transfers_total{result=\"not_sufficient_funds\"} 1\n");
+                assertThat(metrics).contains("accounts_lock_wait_seconds_count 2\n");
+                String internalTransferRoute = "method=\"POST\",route=\"/accounts/transfer/internal/from/{senderAccountId}/to/{receiverAccountId}/{amount}\"";
+                assertThat(metrics).contains("http_requests_total{" + internalTransferRoute + ",status=\"2xx\"} 1\n");
+                assertThat(metrics).contains("http_requests_total{" + internalTransferRoute + ",status=\"4xx\"} 1\n");
+                assertThat(metrics).contains("http_request_duration_seconds_count{" + internalTransferRoute + "} 2\n");
+                assertThat(metrics).contains("http_requests_total{method=\"GET\",route=\"unmatched\",status=\"4xx\"} 1\n");
+            });
+        });
+    }
+
+    @Test
+    void scenarioLockContentionReportsHotAccountUntilReset() {
+        Javalin profiledApp = new JavalinApp(AppModule.defaultConfig().lockProfiler(1, 10).build()).getApp();
+        test(profiledApp, (server, client) -> {
+            Long hotAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(100));
+            for (int i = 0; i < 3; i++) {
+                Long receiverAccountId = successfullyCreatedAccount(client, BigDecimal.ZERO);
+                assertThat(internalTransfer(client, hotAccountId, receiverAccountId, 1).code()).isEqualTo(HttpStatus.OK_200);
+            }
+
+            Response contentionResponse = client.get(JavalinApp.LOCK_CONTENTION);
+            assertThat(contentionResponse.code()).isEqualTo(HttpStatus.OK_200);
+            LockContentionDTO contention = javalinJackson.fromJsonString(contentionResponse.body().string(), LockContentionDTO.class);
+            assertThat(contention.sampleRate()).isEqualTo(1);
+            assertThat(contention.sampledAcquisitions()).isEqualTo(6);
+            assertThat(contention.mostLocked()).hasSize(4);
+            assertThat(contention.mostLocked().get(0).accountId()).isEqualTo(hotAccountId);
+            assertThat(contention.mostLocked().get(0).count()).isEqualTo(3);
+
+            assertThat(client.delete(JavalinApp.LOCK_CONTENTION).code()).isEqualTo(HttpStatus.NO_CONTENT_204);
+            LockContentionDTO afterReset = javalinJackson.fromJsonString(client.get(JavalinApp.LOCK_CONTENTION).body().string(), LockContentionDTO.class);
+            assertThat(afterReset.sampledAcquisitions()).isZero();
+            assertThat(afterReset.mostLocked()).isEmpty();
+        });
+    }
+
+    @Test
+    void scenarioMalformedPathParametersAreBadRequests() {
+        test(app, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(150));
+            Long receiverAccountId = successfullyCreatedAccount(client, BigDecimal.ZERO);
+
+            assertThat(client.post("/accounts/1..0").code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+            assertThat(client.post("/accounts/transfer/internal/from/x/to/%s/1".formatted(receiverAccountId)).code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+            assertThat(client.post("/accounts/transfer/internal/from/%s/to/%s/1,5".formatted(senderAccountId, receiverAccountId)).code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+            assertThat(client.get("/transfers/external/not-a-uuid").code()).isEqualTo(HttpStatus.BAD_REQUEST_400);
+            //well formed, but not a valid amount
+            assertThat(internalTransfer(client, senderAccountId, receiverAccountId, -1).code()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY_422);
+        });
+    }
+
+    @Test
+    void scenarioListingsWithStreamingJsonMapperMatchJacksonOnes() {
+        Javalin jacksonApp = new JavalinApp(AppModule.defaultConfig().jsonMapper(Config.JsonMapperType.JACKSON).build()).getApp();
+        String[] streamingListings = listingsOfThreeExternalTransfers(app);
+        String[] jacksonListings = listingsOfThreeExternalTransfers(jacksonApp);
+        for (int i = 0; i < streamingListings.length; i++) {
+            //transfer ids and request times differ between the apps
+            assertThat(streamingListings[i].replaceAll("\"transferId\":\"[^\"]+\"|\"requestedAtInMillis\":\\d+|\"nextCursor\":\"[^\"]+\"", ""))
+                    .isEqualTo(jacksonListings[i].replaceAll("\"transferId\":\"[^\"]+\"|\"requestedAtInMillis\":\\d+|\"nextCursor\":\"[^\"]+\"", ""));
+        }
+        assertThat(streamingListings[1]).startsWith("{\"transfers\":[{").contains("\"nextCursor\":\"");
+    }
+
+    private String[] listingsOfThreeExternalTransfers(Javalin javalin) {
+        String[] listings = new String[3];
+        test(javalin, (server, client) -> {
+            Long senderAccountId = successfullyCreatedAccount(client, BigDecimal.valueOf(15000.56));
+            for (int i = 0; i < 3; i++) {
+                assertThat(externalTransfer(client, senderAccountId, "address-" + i, 100).code()).isEqualTo(HttpStatus.OK_200);
+            }
+            Response all = client.get("/accounts/%s/transfers/external".formatted(senderAccountId));
+            assertThat(all.header("Content-Type")).startsWith("application/json");
+            listings[0] = all.body().string();
+            listings[1] = client.get("/accounts/%s/transfers/external?limit=2".formatted(senderAccountId)).body().string();
+            listings[2] = client.get("/accounts/%s/transfers/external?limit=5".formatted(senderAccountId)).body().string();
+        });
+        return listings;
+    }
+}
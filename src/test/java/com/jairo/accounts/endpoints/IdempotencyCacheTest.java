@@ -0,0 +1,110 @@
+package com.jairo.accounts.endpoints;
+
+import io.javalin.http.NotFoundResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyCacheTest {
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final IdempotencyCache cache = new IdempotencyCache(2, 1000, nanoClock::get);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private Supplier<CompletableFuture<Integer>> execution() {
+        return () -> CompletableFuture.completedFuture(executions.incrementAndGet());
+    }
+
+    @Test
+    void duplicateGetsTheFirstResponseWithoutExecutingAgain() {
+        IdempotencyCache.Outcome<Integer> first = cache.execute("key", "POST /transfer", execution());
+        IdempotencyCache.Outcome<Integer> duplicate = cache.execute("key", "POST /transfer", execution());
+
+        assertThat(first.replayed()).isFalse();
+        assertThat(duplicate.replayed()).isTrue();
+        assertThat(duplicate.response().join()).isEqualTo(1);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheSameExecution() throws Exception {
+        CompletableFuture<Integer> inFlight = new CompletableFuture<>();
+        CountDownLatch executing = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<IdempotencyCache.Outcome<Integer>> first = executor.submit(() -> cache.execute("key", "POST /transfer", () -> {
+                executions.incrementAndGet();
+                executing.countDown();
+                return inFlight;
+            }));
+            assertThat(executing.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<IdempotencyCache.Outcome<Integer>> duplicate = executor.submit(() -> cache.execute("key", "POST /transfer", execution()));
+
+            assertThat(duplicate.get(5, TimeUnit.SECONDS).response().isDone()).isFalse();
+            inFlight.complete(42);
+
+            assertThat(first.get(5, TimeUnit.SECONDS).response().join()).isEqualTo(42);
+            assertThat(duplicate.get().response().join()).isEqualTo(42);
+            assertThat(executions.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void keyCantBeReusedForAnotherRequest() {
+        cache.execute("key", "POST /transfer/1", execution());
+
+        assertThatThrownBy(() -> cache.execute("key", "POST /transfer/2", execution()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void clientErrorsAreReplayedOtherFailuresAreExecutedAgain() {
+        cache.execute("not-found", "POST /transfer", () -> CompletableFuture.failedFuture(new NotFoundResponse("no account")));
+        IdempotencyCache.Outcome<Integer> notFound = cache.execute("not-found", "POST /transfer", execution());
+        assertThat(notFound.replayed()).isTrue();
+        assertThat(notFound.response().isCompletedExceptionally()).isTrue();
+
+        cache.execute("unavailable", "POST /transfer", () -> {
+            throw new IllegalStateException("withdrawal service unavailable");
+        });
+        IdempotencyCache.Outcome<Integer> retry = cache.execute("unavailable", "POST /transfer", execution());
+        assertThat(retry.replayed()).isFalse();
+        assertThat(retry.response().join()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredKeysAreExecutedAgain() {
+        cache.execute("key", "POST /transfer", execution());
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        IdempotencyCache.Outcome<Integer> afterTtl = cache.execute("key", "POST /transfer", execution());
+
+        assertThat(afterTtl.replayed()).isFalse();
+        assertThat(afterTtl.response().join()).isEqualTo(2);
+    }
+
+    @Test
+    void oldestKeysAreForgottenOnceFull() {
+        cache.execute("key-1", "POST /transfer", execution());
+        cache.execute("key-2", "POST /transfer", execution());
+        cache.execute("key-3", "POST /transfer", execution());
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.execute("key-3", "POST /transfer", execution()).replayed()).isTrue();
+        assertThat(cache.execute("key-1", "POST /transfer", execution()).replayed()).isFalse();
+    }
+}
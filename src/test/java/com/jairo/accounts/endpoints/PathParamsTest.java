@@ -0,0 +1,77 @@
+package com.jairo.accounts.endpoints;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathParamsTest {
+
+    private static final List<String> MALFORMED = List.of("", "-", "+", ".", "1-", "1..2", "1.2.3", "12a", " 1", "1 ", "0x10", "1e", "1e+",
+            "e5", "1,5", "NaN", "Infinity", "\u0661");
+
+    @Test
+    void parsesLongsAsLongValueOf() {
+        for (String value : List.of("0", "7", "-7", "+7", "0042", "9223372036854775807", "-9223372036854775808")) {
+            assertThat(PathParams.parseLong(value)).isEqualTo(Long.valueOf(value));
+        }
+    }
+
+    @Test
+    void rejectsMalformedOrOutOfRangeLongs() {
+        for (String value : List.of("9223372036854775808", "-9223372036854775809", "99999999999999999999", "1.0", "1e3")) {
+            assertThat(PathParams.parseLong(value)).isNull();
+        }
+        for (String value : MALFORMED) {
+            assertThat(PathParams.parseLong(value)).isNull();
+        }
+    }
+
+    @Test
+    void parsesDecimalsAsBigDecimalConstructorWithSameScale() {
+        for (String value : List.of("0", "10000.0", "15000.56", "-1.5", "+2", ".5", "5.", "1.0E7", "1.5e-3", "2E+2", "0.000",
+                "123456789012345678901234567890.123456789")) {
+            BigDecimal parsed = PathParams.parseDecimal(value);
+            assertThat(parsed).isEqualTo(new BigDecimal(value));
+            assertThat(parsed.scale()).isEqualTo(new BigDecimal(value).scale());
+        }
+    }
+
+    @Test
+    void parsesRandomDecimalsAsBigDecimalConstructor() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            String value = BigDecimal.valueOf(random.nextLong(), random.nextInt(40) - 20).toString();
+            assertThat(PathParams.parseDecimal(value)).isEqualTo(new BigDecimal(value));
+        }
+    }
+
+    @Test
+    void rejectsMalformedDecimals() {
+        for (String value : MALFORMED) {
+            assertThat(PathParams.parseDecimal(value)).isNull();
+        }
+        assertThat(PathParams.parseDecimal("1e1234567890")).isNull();
+    }
+
+    @Test
+    void parsesCanonicalUuids() {
+        for (int i = 0; i < 100; i++) {
+            UUID uuid = UUID.randomUUID();
+            assertThat(PathParams.parseUuid(uuid.toString())).isEqualTo(uuid);
+            assertThat(PathParams.parseUuid(uuid.toString().toUpperCase())).isEqualTo(uuid);
+        }
+    }
+
+    @Test
+    void rejectsMalformedUuids() {
+        for (String value : List.of("", "153fa564-f9ff-497c-a28c-95c97b09ca6", "153fa564-f9ff-497c-a28c-95c97b09ca6cc",
+                "153fa564f9ff-497c-a28c-95c97b09ca6c1", "153fa564-f9ff-497c-a28c-95c97b09ca6g", "1-2-3-4-5")) {
+            assertThat(PathParams.parseUuid(value)).isNull();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.jairo.accounts.endpoints;
+
+import com.jairo.accounts.endpoints.dto.AccountDTO;
+import com.jairo.accounts.endpoints.dto.ExternalTransferDetails;
+import com.jairo.accounts.endpoints.dto.ExternalTransfersPage;
+import com.jairo.accounts.endpoints.dto.HotAccountDTO;
+import com.jairo.accounts.endpoints.dto.LockContentionDTO;
+import com.jairo.accounts.endpoints.dto.TransferIdDTO;
+import com.jairo.accounts.endpoints.dto.TransferResultDTO;
+import io.javalin.json.JavalinJackson;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingJsonMapperTest {
+
+    private static final ExternalTransferDetails TRANSFER = new ExternalTransferDetails(
+            UUID.fromString("3f2504e0-4f89-11d3-9a0c-0305e82c3301"), new BigDecimal("10.50"), "PROCESSING", "some \"address\"", 1700000000000L);
+    private static final ExternalTransferDetails TRANSFER_WITH_LARGE_AMOUNT = new ExternalTransferDetails(
+            UUID.fromString("00000000-0000-0001-0000-000000000002"), new BigDecimal("1E+3"), "COMPLETED", "\u00e9t\u00e9", -1);
+
+    private final StreamingJsonMapper streamingJsonMapper = new StreamingJsonMapper();
+    private final JavalinJackson javalinJackson = new JavalinJackson();
+
+    private void assertSameJsonAsJackson(Object value) {
+        assertThat(streamingJsonMapper.toJsonString(value, value.getClass()))
+                .isEqualTo(javalinJackson.toJsonString(value, value.getClass()));
+    }
+
+    @Test
+    void writesDtosAsJackson() {
+        assertSameJsonAsJackson(new AccountDTO(42L));
+        assertSameJsonAsJackson(new AccountDTO(null));
+        assertSameJsonAsJackson(new TransferIdDTO(TRANSFER.transferId()));
+        assertSameJsonAsJackson(TRANSFER);
+        assertSameJsonAsJackson(TRANSFER_WITH_LARGE_AMOUNT);
+        assertSameJsonAsJackson(new ExternalTransferDetails(null, null, null, null, 0));
+        assertSameJsonAsJackson(new TransferResultDTO(3, "FAILED", "Account with id 1 not found"));
+        assertSameJsonAsJackson(new TransferResultDTO(0, "COMPLETED", null));
+    }
+
+    @Test
+    void writesCollectionsAndPagesAsJackson() {
+        assertSameJsonAsJackson(List.of(new TransferResultDTO(0, "COMPLETED", null), new TransferResultDTO(1, "FAILED", "error")));
+        assertSameJsonAsJackson(new ExternalTransfersPage(List.of(TRANSFER, TRANSFER_WITH_LARGE_AMOUNT), "cursor"));
+        assertSameJsonAsJackson(new ExternalTransfersPage(List.of(), null));
+    }
+
+    @Test
+    void leavesOtherValuesToJackson() {
+        assertSameJsonAsJackson(new LockContentionDTO("ORDERED_LOCKING", 0.5, 10, 100, List.of(new HotAccountDTO(1L, 2, 0)), List.of()));
+        assertSameJsonAsJackson(List.of(TRANSFER, new AccountDTO(1L), 3, "text"));
+        assertThat(streamingJsonMapper.toJsonString("{\"already\":\"serialized\"}", String.class)).isEqualTo("{\"already\":\"serialized\"}");
+    }
+
+    @Test
+    void writesStreamAsJsonArray() {
+        ByteArrayOutputStream streamingOutput = new ByteArrayOutputStream();
+        streamingJsonMapper.writeToOutputStream(Stream.of(TRANSFER, TRANSFER_WITH_LARGE_AMOUNT), streamingOutput);
+
+        assertThat(streamingOutput.toString(StandardCharsets.UTF_8))
+                .isEqualTo(javalinJackson.toJsonString(List.of(TRANSFER, TRANSFER_WITH_LARGE_AMOUNT), List.class));
+    }
+
+    @Test
+    void readsWithJackson() {
+        ExternalTransferDetails transfer = streamingJsonMapper.fromJsonString(streamingJsonMapper.toJsonString(TRANSFER, ExternalTransferDetails.class), ExternalTransferDetails.class);
+
+        assertThat(transfer).isEqualTo(TRANSFER);
+    }
+}
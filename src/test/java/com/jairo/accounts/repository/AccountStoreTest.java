@@ -0,0 +1,101 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.BigDecimalBalance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.jairo.accounts.repository.SegmentedArrayAccountStore.SEGMENT_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountStoreTest {
+
+    static Stream<Supplier<AccountStore>> stores() {
+        return Stream.of(ConcurrentMapAccountStore::new, SegmentedArrayAccountStore::new, AccountStoreTest::mappedAccountStore);
+    }
+
+    private static AccountStore mappedAccountStore() {
+        try {
+            Path file = Files.createTempFile("accounts", ".store");
+            file.toFile().deleteOnExit();
+            return new MappedAccountStore(file, 2);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Account add(AccountStore store, long accountId) {
+        return store instanceof MappedAccountStore mappedAccountStore
+                ? mappedAccountStore.add(accountId, mappedAccountStore.newBalance(accountId, BigDecimal.ZERO))
+                : store.add(accountId, new BigDecimalBalance(BigDecimal.ZERO));
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void accountsAreFoundByIdAcrossSegments(Supplier<AccountStore> storeFactory) {
+        AccountStore store = storeFactory.get();
+        Account first = add(store, 1);
+        Account lastOfFirstSegment = add(store, SEGMENT_SIZE - 1);
+        Account firstOfSecondSegment = add(store, SEGMENT_SIZE);
+
+        //mapped accounts are flyweights, every instance of an account shares its lock
+        assertThat(store.get(1).getLock()).isSameAs(first.getLock());
+        assertThat(store.get(SEGMENT_SIZE - 1).getLock()).isSameAs(lastOfFirstSegment.getLock());
+        assertThat(store.get(SEGMENT_SIZE).getLock()).isSameAs(firstOfSecondSegment.getLock());
+        assertThat(store.get(2)).isNull();
+        assertThat(store.get(-1)).isNull();
+        assertThat(store.get(Long.MAX_VALUE)).isNull();
+        assertThat(store.size()).isEqualTo(3);
+        assertThat(store.maxId()).isEqualTo(SEGMENT_SIZE);
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void replacedAccountIsCountedOnce(Supplier<AccountStore> storeFactory) {
+        AccountStore store = storeFactory.get();
+        add(store, 1);
+        Account replacement = add(store, 1);
+
+        assertThat(store.get(1).getLock()).isSameAs(replacement.getLock());
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void concurrentPutsAreAllVisible(Supplier<AccountStore> storeFactory) throws Exception {
+        AccountStore store = storeFactory.get();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+        for (int i = 0; i < completableFutures.length; i++) {
+            long firstId = (long) i * 50_000;
+            completableFutures[i] = CompletableFuture.runAsync(() -> {
+                for (long id = firstId; id < firstId + 50_000; id++) {
+                    add(store, id);
+                }
+            }, executorService);
+        }
+        CompletableFuture.allOf(completableFutures).get(10, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        List<Account> accounts = new ArrayList<>();
+        store.forEach(accounts::add);
+        assertThat(store.size()).isEqualTo(400_000);
+        assertThat(accounts).hasSize(400_000);
+        assertThat(store.get(399_999).getId()).isEqualTo(399_999L);
+    }
+}
@@ -0,0 +1,91 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.RequestedExternalWithdrawal;
+import com.jairo.accounts.domain.WithdrawalHistory;
+import com.jairo.accounts.domain.WithdrawalHistory.Entry;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.COMPLETED;
+import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.FAILED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+class FileWithdrawalArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private static Entry entry(String address, long requestedAtInMillis, long sequence) {
+        RequestedExternalWithdrawal withdrawal = new RequestedExternalWithdrawal(new WithdrawalId(UUID.randomUUID()),
+                sequence % 2 == 0 ? FAILED : COMPLETED, new BigDecimal("12.345"), new Address(address));
+        return Entry.of(withdrawal, requestedAtInMillis, sequence);
+    }
+
+    private static List<String> addresses(Iterator<Entry> entries) {
+        List<String> addresses = new ArrayList<>();
+        entries.forEachRemaining(entry -> addresses.add(entry.getWithdrawal().address().value()));
+        return addresses;
+    }
+
+    @Test
+    void archivedWithdrawalsAreReadBackInRequestOrderWhateverTheArchivingOrder() throws IOException {
+        try (FileWithdrawalArchive archive = new FileWithdrawalArchive(directory.resolve("archive"))) {
+            Entry first = entry("first", 1000, 1);
+            archive.append(1L, List.of(entry("third", 3000, 3), entry("fourth", 3000, 4)));
+            archive.append(1L, List.of(first, entry("second", 2000, 2)));
+            archive.append(2L, List.of(entry("other account", 1500, 1)));
+
+            List<Entry> entries = new ArrayList<>();
+            archive.inRequestOrder(1L, null, Long.MIN_VALUE, Long.MAX_VALUE).forEachRemaining(entries::add);
+            assertThat(entries).extracting(entry -> entry.getWithdrawal().address().value(), Entry::getRequestedAtInMillis, Entry::getSequence)
+                    .containsExactly(tuple("first", 1000L, 1L), tuple("second", 2000L, 2L), tuple("third", 3000L, 3L), tuple("fourth", 3000L, 4L));
+            assertThat(entries.get(0).getWithdrawal()).isEqualTo(first.getWithdrawal());
+            assertThat(archive.find(1L, first.getWithdrawal().withdrawalId()).get().getWithdrawal()).isEqualTo(first.getWithdrawal());
+            assertThat(archive.find(2L, first.getWithdrawal().withdrawalId()).isPresent()).isFalse();
+        }
+    }
+
+    @Test
+    void archivedWithdrawalsAreFilteredByTimeRangeAndCursor() throws IOException {
+        try (FileWithdrawalArchive archive = new FileWithdrawalArchive(directory.resolve("archive"))) {
+            archive.append(1L, List.of(entry("first", 1000, 1), entry("second", 2000, 2), entry("third", 2000, 3), entry("fourth", 3000, 4)));
+
+            assertThat(addresses(archive.inRequestOrder(1L, null, 2000, 3000))).containsExactly("second", "third");
+            assertThat(addresses(archive.inRequestOrder(1L, new WithdrawalHistory.Cursor(2000, 2), 1000, 3000))).containsExactly("third");
+            assertThat(addresses(archive.inRequestOrder(1L, new WithdrawalHistory.Cursor(1000, 1), 2000, Long.MAX_VALUE)))
+                    .containsExactly("second", "third", "fourth");
+            assertThat(addresses(archive.inRequestOrder(3L, null, Long.MIN_VALUE, Long.MAX_VALUE))).isEmpty();
+        }
+    }
+
+    @Test
+    void indexIsRebuiltOnReopenDroppingTruncatedRecord() throws IOException {
+        Path file = directory.resolve("archive");
+        try (FileWithdrawalArchive archive = new FileWithdrawalArchive(file)) {
+            archive.append(1L, List.of(entry("first", 1000, 1), entry("second", 2000, 2)));
+        }
+        //record cut short by a crash while appending
+        Files.write(file, new byte[]{0, 0, 0, 100, 1, 2}, StandardOpenOption.APPEND);
+
+        try (FileWithdrawalArchive archive = new FileWithdrawalArchive(file)) {
+            assertThat(addresses(archive.inRequestOrder(1L, null, Long.MIN_VALUE, Long.MAX_VALUE))).containsExactly("first", "second");
+            archive.append(1L, List.of(entry("third", 3000, 3)));
+        }
+        try (FileWithdrawalArchive archive = new FileWithdrawalArchive(file)) {
+            assertThat(addresses(archive.inRequestOrder(1L, null, Long.MIN_VALUE, Long.MAX_VALUE))).containsExactly("first", "second", "third");
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.jairo.accounts.repository;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.engine.TransferEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.COMPLETED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class MappedAccountStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void balancesAndIdsSurviveReopeningTheFile() throws IOException {
+        Path file = directory.resolve("accounts");
+        try (MappedAccountStore store = new MappedAccountStore(file, 2)) {
+            AccountsRepository repository = new AccountsRepository(Config.builder().mappedAccountStore(file).build(), store);
+            Account first = repository.createNew(new BigDecimal("100.00"));
+            Account second = repository.createNew(BigDecimal.TEN);
+            first.withdraw(new BigDecimal("0.01"));
+            second.deposit(new BigDecimal("0.01"));
+        }
+
+        try (MappedAccountStore store = new MappedAccountStore(file, 2)) {
+            AccountsRepository repository = new AccountsRepository(Config.builder().mappedAccountStore(file).build(), store);
+            assertThat(repository.findById(1L).get().getBalance()).isEqualTo(new BigDecimal("99.99"));
+            assertThat(repository.findById(2L).get().getBalance()).isEqualTo(new BigDecimal("10.01"));
+            assertThat(repository.findById(3L).isPresent()).isFalse();
+            assertThat(repository.createNew(BigDecimal.ONE).getId()).isEqualTo(3L);
+        }
+    }
+
+    @Test
+    void accountIsOnlyFoundOnceItsOpeningIsJournaled() throws IOException {
+        Path file = directory.resolve("accounts");
+        try (MappedAccountStore store = new MappedAccountStore(file, 2)) {
+            Journal failingJournal = mock(Journal.class);
+            doAnswer(invocation -> {
+                //journaled before the account can be found
+                assertThat(store.get(1)).isNull();
+                assertThat(store.maxId()).isZero();
+                throw new UncheckedIOException(new IOException("Disk full"));
+            }).when(failingJournal).append(any());
+            AccountsRepository repository = new AccountsRepository(Config.builder().mappedAccountStore(file).build(), store, failingJournal);
+
+            assertThatExceptionOfType(UncheckedIOException.class).isThrownBy(() -> repository.createNew(BigDecimal.TEN));
+
+            assertThat(repository.findById(1L).isPresent()).isFalse();
+            assertThat(store.size()).isZero();
+        }
+        try (MappedAccountStore store = new MappedAccountStore(file, 2)) {
+            assertThat(store.maxId()).isZero();
+            assertThat(store.get(1)).isNull();
+        }
+    }
+
+    @Test
+    void fileWithAnotherBalanceScaleIsRejected() throws IOException {
+        Path file = directory.resolve("accounts");
+        new MappedAccountStore(file, 2).close();
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> new MappedAccountStore(file, 0));
+    }
+
+    @Test
+    void instancesOfSameAccountShareLockAndWithdrawalHistory() throws IOException {
+        try (MappedAccountStore store = new MappedAccountStore(directory.resolve("accounts"), 2)) {
+            Account account = store.add(1, store.newBalance(1, BigDecimal.TEN));
+            store.add(2, store.newBalance(2, BigDecimal.TEN));
+            WithdrawalId withdrawalId = new WithdrawalId(UUID.randomUUID());
+
+            account.requestWithdrawal(BigDecimal.ONE, withdrawalId, new Address("address"));
+            store.get(1).completeWithdrawal(withdrawalId);
+
+            Account otherInstance = store.get(1);
+            assertThat(otherInstance).isNotSameAs(account);
+            assertThat(otherInstance.getLock()).isSameAs(account.getLock());
+            assertThat(otherInstance.getBalance()).isEqualTo(new BigDecimal("9.00"));
+            assertThat(account.getRequestedExternalWithdrawal(withdrawalId).get().withdrawalState()).isEqualTo(COMPLETED);
+            List<Long> accountsWithWithdrawals = new ArrayList<>();
+            store.forEachWithWithdrawalHistory(accountWithWithdrawals -> accountsWithWithdrawals.add(accountWithWithdrawals.getId()));
+            assertThat(accountsWithWithdrawals).containsExactly(1L);
+        }
+    }
+
+    @Test
+    void concurrentTransfersBetweenMappedAccountsNeitherDeadlockNorLoseMoney() throws Exception {
+        try (MappedAccountStore store = new MappedAccountStore(directory.resolve("accounts"), 2)) {
+            //ids one lock stripe apart share a lock
+            long[] accountIds = {1, 2, 1 + MappedAccountStore.LOCK_STRIPES, 2 + MappedAccountStore.LOCK_STRIPES};
+            for (long accountId : accountIds) {
+                store.add(accountId, store.newBalance(accountId, BigDecimal.valueOf(1000)));
+            }
+            TransferEngine transferEngine = new OrderedLockingTransferEngine();
+            ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+            CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+            for (int i = 0; i < completableFutures.length; i++) {
+                int thread = i;
+                completableFutures[i] = CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        Account sender = store.get(accountIds[(thread + j) % accountIds.length]);
+                        Account receiver = store.get(accountIds[(thread + j + 1 + j % 2) % accountIds.length]);
+                        transferEngine.transfer(sender, receiver, new BigDecimal("0.01"));
+                    }
+                }, executorService);
+            }
+            CompletableFuture.allOf(completableFutures).get(20, TimeUnit.SECONDS);
+            executorService.shutdown();
+
+            List<Account> accounts = new ArrayList<>();
+            for (long accountId : accountIds) {
+                accounts.add(store.get(accountId));
+            }
+            assertThat(transferEngine.getBalances(accounts).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+                    .isEqualTo(new BigDecimal("4000.00"));
+        }
+    }
+
+    @Test
+    void concurrentDepositsAndWithdrawalsOnMappedBalanceAreAccurate() throws Exception {
+        try (MappedAccountStore store = new MappedAccountStore(directory.resolve("accounts"), 2)) {
+            store.add(1, store.newBalance(1, BigDecimal.valueOf(1000)));
+            ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+            CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+            for (int i = 0; i < completableFutures.length; i++) {
+                completableFutures[i] = CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        Account account = store.get(1);
+                        account.deposit(new BigDecimal("0.01"));
+                        account.withdraw(new BigDecimal("0.01"));
+                    }
+                }, executorService);
+            }
+            CompletableFuture.allOf(completableFutures).get(10, TimeUnit.SECONDS);
+            executorService.shutdown();
+
+            assertThat(store.get(1).getBalance()).isEqualTo(new BigDecimal("1000.00"));
+        }
+    }
+}
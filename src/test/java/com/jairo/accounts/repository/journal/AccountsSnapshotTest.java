@@ -0,0 +1,126 @@
+package com.jairo.accounts.repository.journal;
+
+import com.jairo.accounts.repository.journal.JournalEvent.AccountOpened;
+import com.jairo.accounts.repository.journal.JournalEvent.Transferred;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalRequested;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalStateChanged;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class AccountsSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private record AccountState(long accountId, BigDecimal balance, boolean hot) {
+    }
+
+    private static List<AccountState> accounts(AccountsSnapshot snapshot) {
+        List<AccountState> accounts = new ArrayList<>();
+        snapshot.forEachAccount((accountId, balance, hot) -> accounts.add(new AccountState(accountId, balance, hot)));
+        return accounts;
+    }
+
+    @Test
+    void eventsAreAppliedToBalancesAndPendingWithdrawals() {
+        UUID completed = UUID.randomUUID();
+        UUID failed = UUID.randomUUID();
+        UUID pending = UUID.randomUUID();
+        AccountsSnapshot snapshot = new AccountsSnapshot();
+        snapshot.apply(new AccountOpened(1L, new BigDecimal("100.50"), false));
+        snapshot.apply(new AccountOpened(3L, BigDecimal.ZERO, true));
+        snapshot.apply(new Transferred(1L, 3L, new BigDecimal("0.25")));
+        snapshot.apply(new WithdrawalRequested(1L, completed, BigDecimal.ONE, "address", 1000L));
+        snapshot.apply(new WithdrawalRequested(1L, failed, BigDecimal.TEN, "address", 2000L));
+        snapshot.apply(new WithdrawalRequested(3L, pending, new BigDecimal("0.05"), "address", 3000L));
+        snapshot.apply(new WithdrawalStateChanged(1L, completed, WithdrawalState.COMPLETED));
+        snapshot.apply(new WithdrawalStateChanged(1L, failed, WithdrawalState.FAILED));
+
+        assertThat(accounts(snapshot)).containsExactly(
+                new AccountState(1L, new BigDecimal("99.25"), false),
+                new AccountState(3L, new BigDecimal("0.20"), true));
+        assertThat(snapshot.getPendingWithdrawals()).containsExactly(new WithdrawalRequested(3L, pending, new BigDecimal("0.05"), "address", 3000L));
+    }
+
+    @Test
+    void eventOfAnAccountNotOpenedIsRejected() {
+        AccountsSnapshot snapshot = new AccountsSnapshot();
+        snapshot.apply(new AccountOpened(1L, BigDecimal.TEN, false));
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> snapshot.apply(new Transferred(1L, 2L, BigDecimal.ONE)));
+    }
+
+    @Test
+    void snapshotIsReadBackAsWritten() {
+        BigDecimal hugeBalance = new BigDecimal("123456789012345678901234567890.123");
+        WithdrawalRequested pending = new WithdrawalRequested(70_000L, UUID.randomUUID(), new BigDecimal("1E+3"), "address-\u00e9", 1718000000000L);
+        AccountsSnapshot snapshot = new AccountsSnapshot();
+        snapshot.apply(new AccountOpened(1L, hugeBalance, false));
+        snapshot.apply(new AccountOpened(2L, new BigDecimal("-0.00"), false));
+        snapshot.apply(new AccountOpened(70_000L, new BigDecimal("5000.123456"), true));
+        snapshot.apply(pending);
+        Path file = directory.resolve("snapshot");
+        snapshot.write(file);
+
+        AccountsSnapshot read = AccountsSnapshot.read(file);
+
+        assertThat(accounts(read)).containsExactlyElementsOf(accounts(snapshot));
+        assertThat(accounts(read).get(0).balance().scale()).isEqualTo(3);
+        assertThat(read.getPendingWithdrawals()).containsExactly(pending);
+        assertThat(read.getNumberOfAccounts()).isEqualTo(3);
+    }
+
+    @Test
+    void missingSnapshotIsAnEmptyStateAtTheBeginningOfTheJournal() {
+        AccountsSnapshot snapshot = AccountsSnapshot.read(directory.resolve("snapshot"));
+
+        assertThat(snapshot.getJournalPosition()).isZero();
+        assertThat(snapshot.getNumberOfAccounts()).isZero();
+    }
+
+    @Test
+    void corruptedSnapshotIsRejected() throws IOException {
+        AccountsSnapshot snapshot = new AccountsSnapshot();
+        for (long id = 1; id <= 1000; id++) {
+            snapshot.apply(new AccountOpened(id, BigDecimal.valueOf(id), false));
+        }
+        Path file = directory.resolve("snapshot");
+        snapshot.write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> AccountsSnapshot.read(file));
+    }
+
+    @Test
+    void journalIsAppliedUpToGivenPositionThenFromWhereItStopped() {
+        Path journalFile = directory.resolve("journal");
+        long firstPosition;
+        try (FileJournal journal = new FileJournal(journalFile, 0)) {
+            journal.append(new AccountOpened(1L, BigDecimal.TEN, false));
+            journal.append(new AccountOpened(2L, BigDecimal.ZERO, false));
+            journal.awaitDurable();
+            firstPosition = journal.getDurablePosition();
+            journal.append(new Transferred(1L, 2L, BigDecimal.ONE));
+        }
+        AccountsSnapshot snapshot = new AccountsSnapshot();
+
+        assertThat(snapshot.applyJournal(journalFile, firstPosition)).isEqualTo(2);
+        assertThat(snapshot.getJournalPosition()).isEqualTo(firstPosition);
+        assertThat(snapshot.applyJournal(journalFile, Long.MAX_VALUE)).isEqualTo(1);
+        assertThat(accounts(snapshot)).containsExactly(new AccountState(1L, BigDecimal.valueOf(9), false), new AccountState(2L, BigDecimal.ONE, false));
+    }
+}
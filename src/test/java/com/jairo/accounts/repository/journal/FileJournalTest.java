@@ -0,0 +1,133 @@
+package com.jairo.accounts.repository.journal;
+
+import com.jairo.accounts.repository.journal.JournalEvent.AccountOpened;
+import com.jairo.accounts.repository.journal.JournalEvent.Transferred;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalRequested;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalStateChanged;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class FileJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<JournalEvent> read(Path file) {
+        List<JournalEvent> events = new ArrayList<>();
+        FileJournal.read(file, events::add);
+        return events;
+    }
+
+    @Test
+    void eventsAreReadBackInAppendOrder() {
+        Path file = directory.resolve("journal");
+        UUID withdrawalId = UUID.randomUUID();
+        List<JournalEvent> events = List.of(
+                new AccountOpened(1L, new BigDecimal("100.50"), false),
+                new AccountOpened(2L, BigDecimal.ZERO, true),
+                new Transferred(1L, 2L, new BigDecimal("0.001")),
+                new WithdrawalRequested(2L, withdrawalId, BigDecimal.TEN, "address-\u00e9", 1234L),
+                new WithdrawalStateChanged(2L, withdrawalId, WithdrawalState.FAILED));
+        try (FileJournal journal = new FileJournal(file, 100)) {
+            events.forEach(journal::append);
+            journal.awaitDurable();
+        }
+
+        assertThat(read(file)).containsExactlyElementsOf(events);
+    }
+
+    @Test
+    void reopenedJournalAppendsAfterExistingEvents() {
+        Path file = directory.resolve("journal");
+        try (FileJournal journal = new FileJournal(file, 0)) {
+            journal.append(new AccountOpened(1L, BigDecimal.ONE, false));
+        }
+        try (FileJournal journal = new FileJournal(file, 0)) {
+            journal.append(new AccountOpened(2L, BigDecimal.ONE, false));
+        }
+
+        assertThat(read(file)).containsExactly(new AccountOpened(1L, BigDecimal.ONE, false), new AccountOpened(2L, BigDecimal.ONE, false));
+    }
+
+    @Test
+    void tornOrCorruptedTailIsDroppedOnOpen() throws IOException {
+        Path file = directory.resolve("journal");
+        try (FileJournal journal = new FileJournal(file, 0)) {
+            journal.append(new AccountOpened(1L, BigDecimal.ONE, false));
+            journal.append(new AccountOpened(2L, BigDecimal.ONE, false));
+        }
+        long size = Files.size(file);
+        //last record torn in its middle
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+        assertThat(read(file)).containsExactly(new AccountOpened(1L, BigDecimal.ONE, false));
+
+        try (FileJournal journal = new FileJournal(file, 0)) {
+            journal.append(new Transferred(1L, 2L, BigDecimal.ONE));
+        }
+        assertThat(read(file)).containsExactly(new AccountOpened(1L, BigDecimal.ONE, false), new Transferred(1L, 2L, BigDecimal.ONE));
+
+        //last byte of the last record flipped
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        assertThat(read(file)).containsExactly(new AccountOpened(1L, BigDecimal.ONE, false));
+    }
+
+    @Test
+    void concurrentAppendsAreDurableOnceAwaitedAndShareSyncs() throws Exception {
+        Path file = directory.resolve("journal");
+        int threads = 8;
+        int eventsPerThread = 200;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try (FileJournal journal = new FileJournal(file, TimeUnit.MILLISECONDS.toMicros(2))) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                long accountId = thread;
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < eventsPerThread; i++) {
+                        journal.append(new Transferred(accountId, i, BigDecimal.ONE));
+                        journal.awaitDurable();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            //every awaited event is on disk without closing the journal
+            assertThat(read(file)).hasSize(threads * eventsPerThread);
+            assertThat(journal.getAppended()).isEqualTo(threads * eventsPerThread);
+            assertThat(journal.getSyncs()).isLessThan(threads * eventsPerThread);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void closedJournalRejectsEvents() {
+        FileJournal journal = new FileJournal(directory.resolve("journal"), 0);
+        journal.close();
+
+        assertThatExceptionOfType(UncheckedIOException.class).isThrownBy(() -> journal.append(new Transferred(1L, 2L, BigDecimal.ONE)));
+    }
+}
@@ -5,12 +5,15 @@ import com.jairo.accounts.service.WithdrawalService.Address;
 import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
 import com.jairo.accounts.service.WithdrawalService.WithdrawalState;
 import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.PollingPolicy;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.*;
@@ -18,8 +21,10 @@ import static java.util.UUID.randomUUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.awaitility.Awaitility.await;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
 
 class ExternalTransferMonitoringServiceTest {
 
@@ -35,6 +40,12 @@ class ExternalTransferMonitoringServiceTest {
         assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new ExternalTransferMonitoringService(mock(WithdrawalService.class), new Config( monitoringDelayInMillis, 1)));
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 0})
+    void classConstructorFailsIfIncorrectMonitoringBatchSizeProvided(int monitoringBatchSize) {
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new ExternalTransferMonitoringService(mock(WithdrawalService.class), new Config( 100, 1, monitoringBatchSize)));
+    }
+
     @Test
     void classConstructorSucceedsIfCorrectNumberOfThreadsProvided() {
         ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(mock(WithdrawalService.class), new Config( 100, 1));
@@ -44,7 +55,7 @@ class ExternalTransferMonitoringServiceTest {
     @ParameterizedTest
     @EnumSource(value = WithdrawalState.class, names = {"FAILED", "COMPLETED"}, mode = EnumSource.Mode.INCLUDE)
     void monitorsTransferRequestUntilCompletedOrFailed(WithdrawalState finalWithdrawalState) {
-        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        WithdrawalService withdrawalService = mock(WithdrawalService.class, CALLS_REAL_METHODS);
         ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, new Config( 100, 1));
 
         Account sender = new Account(1l);
@@ -65,4 +76,207 @@ class ExternalTransferMonitoringServiceTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    void pendingTransferRequestsArePolledTogetherInSingleBulkCall() {
+        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, new Config( 100, 1));
+
+        Account sender = new Account(1l, BigDecimal.valueOf(1000));
+        WithdrawalId withdrawalId1 = new WithdrawalId(randomUUID());
+        WithdrawalId withdrawalId2 = new WithdrawalId(randomUUID());
+        sender.requestWithdrawal(BigDecimal.valueOf(300), withdrawalId1, new Address("address"));
+        sender.requestWithdrawal(BigDecimal.valueOf(200), withdrawalId2, new Address("address"));
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenReturn(Map.of(withdrawalId1, COMPLETED, withdrawalId2, FAILED));
+
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId1);
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId2);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> externalTransferMonitoringService.getNumberOfPendingWithdrawals() == 0);
+        assertThat(sender.getRequestedExternalWithdrawals().get(withdrawalId1).withdrawalState()).isEqualTo(COMPLETED);
+        assertThat(sender.getRequestedExternalWithdrawals().get(withdrawalId2).withdrawalState()).isEqualTo(FAILED);
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(700));
+        verify(withdrawalService).getRequestStates(argThat(ids -> ids.containsAll(List.of(withdrawalId1, withdrawalId2))));
+        verify(withdrawalService, never()).getRequestState(any());
+    }
+
+    @Test
+    void transferRequestUnknownToWithdrawalServiceRemainsPending() {
+        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, new Config( 100, 1));
+
+        Account sender = new Account(1l, BigDecimal.valueOf(1000));
+        WithdrawalId withdrawalId = new WithdrawalId(randomUUID());
+        sender.requestWithdrawal(BigDecimal.valueOf(500), withdrawalId, new Address("address"));
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenReturn(Map.of());
+
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId);
+
+        verify(withdrawalService, timeout(1000).atLeast(2)).getRequestStates(anyCollection());
+        assertThat(externalTransferMonitoringService.getNumberOfPendingWithdrawals()).isEqualTo(1);
+        assertThat(sender.getRequestedExternalWithdrawals().get(withdrawalId).withdrawalState()).isEqualTo(PROCESSING);
+    }
+
+    @Test
+    void failedBulkCallIsNotCountedAsPolls() {
+        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, new Config( 100, 1));
+
+        Account sender = new Account(1l, BigDecimal.valueOf(1000));
+        WithdrawalId withdrawalId = new WithdrawalId(randomUUID());
+        sender.requestWithdrawal(BigDecimal.valueOf(500), withdrawalId, new Address("address"));
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenThrow(new RuntimeException("Withdrawal service unavailable"));
+
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId);
+
+        verify(withdrawalService, timeout(1000).atLeast(2)).getRequestStates(anyCollection());
+        assertThat(externalTransferMonitoringService.getNumberOfPolls()).isEqualTo(0);
+        assertThat(externalTransferMonitoringService.getPollAttempts(withdrawalId).getAsInt()).isGreaterThanOrEqualTo(1);
+        externalTransferMonitoringService.shutdown();
+    }
+
+    @Test
+    void settlementFailureLeavesWithdrawalPendingAndRestOfBatchIsStillSettled() {
+        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        Config config = Config.builder()
+                .monitoringDelayInMillis(10)
+                .numberOfMonitoringThreads(1)
+                .pollingPolicy(PollingPolicy.fixed(50))
+                .build();
+        ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+
+        Account failingSender = spy(new Account(1l, BigDecimal.valueOf(1000)));
+        Account sender = new Account(2l, BigDecimal.valueOf(1000));
+        WithdrawalId withdrawalId1 = new WithdrawalId(randomUUID());
+        WithdrawalId withdrawalId2 = new WithdrawalId(randomUUID());
+        failingSender.requestWithdrawal(BigDecimal.valueOf(300), withdrawalId1, new Address("address"));
+        sender.requestWithdrawal(BigDecimal.valueOf(200), withdrawalId2, new Address("address"));
+        doThrow(new IllegalStateException("Settlement failed")).doCallRealMethod().when(failingSender).completeWithdrawal(withdrawalId1);
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenReturn(Map.of(withdrawalId1, COMPLETED, withdrawalId2, COMPLETED));
+
+        externalTransferMonitoringService.initiateResponseMonitoring(failingSender, withdrawalId1);
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId2);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> failingSender.getRequestedExternalWithdrawals().get(withdrawalId1).withdrawalState() == COMPLETED
+                && sender.getRequestedExternalWithdrawals().get(withdrawalId2).withdrawalState() == COMPLETED);
+        assertThat(externalTransferMonitoringService.getNumberOfPendingWithdrawals()).isEqualTo(0);
+        verify(failingSender, times(2)).completeWithdrawal(withdrawalId1);
+        externalTransferMonitoringService.shutdown();
+    }
+
+    @Test
+    void pendingTransferRequestIsPolledLessOftenAsItAges() {
+        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        Config config = Config.builder()
+                .monitoringDelayInMillis(10)
+                .numberOfMonitoringThreads(1)
+                .pollingPolicy(new PollingPolicy(50, 2, 400, 0, PollingPolicy.NO_MAX_AGE))
+                .build();
+        ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+
+        Account sender = new Account(1l, BigDecimal.valueOf(1000));
+        WithdrawalId withdrawalId = new WithdrawalId(randomUUID());
+        sender.requestWithdrawal(BigDecimal.valueOf(500), withdrawalId, new Address("address"));
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenReturn(Map.of(withdrawalId, PROCESSING));
+
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId);
+
+        //polls at 50, 150, 350, 750 and 1150 millis, a fixed 10 millis delay would have polled 100 times
+        await().pollDelay(1, TimeUnit.SECONDS).atMost(2, TimeUnit.SECONDS).until(() -> true);
+        assertThat(externalTransferMonitoringService.getPollAttempts(withdrawalId).getAsInt()).isBetween(3, 5);
+        assertThat(externalTransferMonitoringService.getNumberOfPolls()).isBetween(3L, 5L);
+    }
+
+    @Test
+    void transferRequestStillProcessingAfterMaxAgeIsMarkedAsStuckAndNoLongerPolled() {
+        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        Config config = Config.builder()
+                .monitoringDelayInMillis(10)
+                .numberOfMonitoringThreads(1)
+                .pollingPolicy(new PollingPolicy(50, 2, 1000, 0, 300))
+                .build();
+        ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+
+        Account sender = new Account(1l, BigDecimal.valueOf(1000));
+        WithdrawalId withdrawalId = new WithdrawalId(randomUUID());
+        sender.requestWithdrawal(BigDecimal.valueOf(500), withdrawalId, new Address("address"));
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenReturn(Map.of(withdrawalId, PROCESSING));
+
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> externalTransferMonitoringService.getNumberOfPendingWithdrawals() == 0);
+        //polls at 50, 150 and at the 300 millis deadline
+        assertThat(externalTransferMonitoringService.getStuckWithdrawals())
+                .containsExactly(new ExternalTransferMonitoringService.StuckWithdrawal(withdrawalId, sender.getId(), 3));
+        assertThat(sender.getRequestedExternalWithdrawals().get(withdrawalId).withdrawalState()).isEqualTo(PROCESSING);
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(500));
+        long numberOfPolls = externalTransferMonitoringService.getNumberOfPolls();
+        await().pollDelay(200, TimeUnit.MILLISECONDS).until(() -> true);
+        assertThat(externalTransferMonitoringService.getNumberOfPolls()).isEqualTo(numberOfPolls);
+    }
+
+    @Test
+    void stuckWithdrawalFoundSettledWhenReconciledIsNoLongerStuckAndReleasesItsFunds() {
+        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        Config config = Config.builder()
+                .monitoringDelayInMillis(10)
+                .numberOfMonitoringThreads(1)
+                .pollingPolicy(new PollingPolicy(50, 2, 1000, 0, 100))
+                .stuckWithdrawalsReconcileIntervalInMillis(300)
+                .build();
+        ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+
+        Account sender = new Account(1l, BigDecimal.valueOf(1000));
+        WithdrawalId withdrawalId = new WithdrawalId(randomUUID());
+        sender.requestWithdrawal(BigDecimal.valueOf(500), withdrawalId, new Address("address"));
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenReturn(Map.of(withdrawalId, PROCESSING));
+
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> externalTransferMonitoringService.getStuckWithdrawals().size() == 1);
+        //still processing when reconciled, stays stuck
+        externalTransferMonitoringService.reconcileStuckWithdrawals();
+        assertThat(externalTransferMonitoringService.getStuckWithdrawals()).hasSize(1);
+        assertThat(externalTransferMonitoringService.getNumberOfReconciledWithdrawals()).isEqualTo(0);
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenReturn(Map.of(withdrawalId, FAILED));
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> externalTransferMonitoringService.getStuckWithdrawals().isEmpty());
+        assertThat(externalTransferMonitoringService.getPollAttempts(withdrawalId).isPresent()).isFalse();
+        assertThat(externalTransferMonitoringService.getNumberOfReconciledWithdrawals()).isEqualTo(1);
+        assertThat(sender.getRequestedExternalWithdrawals().get(withdrawalId).withdrawalState()).isEqualTo(FAILED);
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(1000));
+        externalTransferMonitoringService.shutdown();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Config.SchedulerType.class)
+    void monitorsTransferRequestWithEitherScheduler(Config.SchedulerType schedulerType) {
+        WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        Config config = Config.builder()
+                .monitoringDelayInMillis(10)
+                .numberOfMonitoringThreads(1)
+                .pollingPolicy(PollingPolicy.fixed(50))
+                .schedulerType(schedulerType)
+                .build();
+        ExternalTransferMonitoringService externalTransferMonitoringService = new ExternalTransferMonitoringService(withdrawalService, config);
+
+        Account sender = new Account(1l, BigDecimal.valueOf(1000));
+        WithdrawalId withdrawalId = new WithdrawalId(randomUUID());
+        sender.requestWithdrawal(BigDecimal.valueOf(500), withdrawalId, new Address("address"));
+
+        when(withdrawalService.getRequestStates(anyCollection())).thenReturn(Map.of(withdrawalId, PROCESSING), Map.of(withdrawalId, COMPLETED));
+
+        externalTransferMonitoringService.initiateResponseMonitoring(sender, withdrawalId);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> sender.getRequestedExternalWithdrawals().get(withdrawalId).withdrawalState() == COMPLETED);
+        assertThat(externalTransferMonitoringService.getNumberOfPolls()).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.jairo.accounts.service;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.RequestedExternalWithdrawal;
+import com.jairo.accounts.domain.TransferId;
+import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.FileJournal;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.service.WithdrawalService.Address;
+import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.PROCESSING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class RecoveryServiceTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Components of a running app sharing a journal, started the way the app starts them.
+     */
+    private final class App implements AutoCloseable {
+        private final FileJournal journal;
+        private final AccountsRepository accountsRepository;
+        private final ExternalTransferMonitoringService externalTransferMonitoringService = mock(ExternalTransferMonitoringService.class);
+        private final WithdrawalService withdrawalService = mock(WithdrawalService.class);
+        private final TransferService transferService;
+        private final RecoveryService recoveryService;
+
+        private App(Config config) {
+            journal = new FileJournal(config);
+            accountsRepository = new AccountsRepository(config, journal);
+            recoveryService = new RecoveryService(accountsRepository, externalTransferMonitoringService, journal, config);
+            transferService = new TransferService(accountsRepository, withdrawalService, mock(AsyncWithdrawalService.class),
+                    externalTransferMonitoringService, new OrderedLockingTransferEngine(journal), journal, new MetricsRegistry());
+        }
+
+        private BigDecimal balance(long accountId) {
+            return accountsRepository.findById(accountId).orElseThrow().getBalance();
+        }
+
+        @Override
+        public void close() {
+            recoveryService.shutdown();
+            journal.close();
+        }
+    }
+
+    private Config config(boolean snapshots) {
+        Config.Builder config = Config.builder().journal(directory.resolve("journal"), 0);
+        return snapshots ? config.snapshot(directory.resolve("snapshot")).build() : config.build();
+    }
+
+    @Test
+    void restartRestoresBalancesAndMonitorsPendingWithdrawalsAgain() {
+        TransferId pending;
+        try (App app = new App(config(false))) {
+            Long first = app.accountsRepository.createNew(BigDecimal.valueOf(100)).getId();
+            Long second = app.accountsRepository.createNewHot(new BigDecimal("10.50")).getId();
+            app.transferService.transfer(first, second, BigDecimal.valueOf(30));
+            app.transferService.transfer(second, first, new BigDecimal("0.50"));
+            doThrow(new IllegalStateException("Withdrawal service unavailable")).when(app.withdrawalService)
+                    .requestWithdrawal(any(WithdrawalId.class), eq(new Address("failing")), any(BigDecimal.class));
+            assertThatExceptionOfType(IllegalStateException.class)
+                    .isThrownBy(() -> app.transferService.transfer(first, new Address("failing"), BigDecimal.valueOf(5)));
+            pending = app.transferService.transfer(second, new Address("address"), BigDecimal.ONE);
+        }
+
+        try (App app = new App(config(false))) {
+            assertThat(app.balance(1L)).isEqualTo(new BigDecimal("70.50"));
+            assertThat(app.balance(2L)).isEqualTo(new BigDecimal("39.00"));
+            Account second = app.accountsRepository.findById(2L).orElseThrow();
+            WithdrawalId withdrawalId = new WithdrawalId(pending.value());
+            assertThat(second.getRequestedExternalWithdrawal(withdrawalId))
+                    .isEqualTo(Optional.of(new RequestedExternalWithdrawal(withdrawalId, PROCESSING, BigDecimal.ONE, new Address("address"))));
+            assertThat(app.accountsRepository.findByExternalTransferId(pending)).isEqualTo(Optional.of(second));
+            verify(app.externalTransferMonitoringService).initiateResponseMonitoring(same(second), eq(withdrawalId));
+            //ids carry on after the restored accounts
+            assertThat(app.accountsRepository.createNew(BigDecimal.ONE).getId()).isEqualTo(3L);
+        }
+    }
+
+    @Test
+    void restartLoadsSnapshotThenJournalAppendedAfterIt() {
+        try (App app = new App(config(true))) {
+            app.accountsRepository.createNew(BigDecimal.valueOf(100));
+            app.accountsRepository.createNew(BigDecimal.ZERO);
+            app.transferService.transfer(1L, 2L, BigDecimal.valueOf(10));
+            assertThat(app.recoveryService.writeSnapshot()).isTrue();
+            app.transferService.transfer(1L, 2L, BigDecimal.valueOf(5));
+        }
+        assertThat(Files.exists(directory.resolve("snapshot"))).isTrue();
+
+        try (App app = new App(config(true))) {
+            assertThat(app.balance(1L)).isEqualTo(BigDecimal.valueOf(85));
+            assertThat(app.balance(2L)).isEqualTo(BigDecimal.valueOf(15));
+            verifyNoInteractions(app.externalTransferMonitoringService);
+            app.transferService.transfer(2L, 1L, BigDecimal.valueOf(15));
+        }
+
+        try (App app = new App(config(true))) {
+            assertThat(app.balance(1L)).isEqualTo(BigDecimal.valueOf(100));
+            assertThat(app.balance(2L)).isEqualTo(BigDecimal.ZERO);
+        }
+    }
+
+    @Test
+    void nothingIsRestoredWithoutJournal() {
+        AccountsRepository accountsRepository = new AccountsRepository();
+        RecoveryService recoveryService = new RecoveryService(accountsRepository, mock(ExternalTransferMonitoringService.class),
+                Journal.NONE, Config.builder().build());
+
+        assertThat(recoveryService.writeSnapshot()).isFalse();
+        assertThat(accountsRepository.size()).isZero();
+    }
+}
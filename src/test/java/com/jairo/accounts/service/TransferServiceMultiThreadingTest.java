@@ -3,8 +3,11 @@ package com.jairo.accounts.service;
 import com.jairo.accounts.domain.Account;
 import com.jairo.accounts.domain.RequestedExternalWithdrawal;
 import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.Journal;
 import com.jairo.accounts.service.WithdrawalService.Address;
 import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
@@ -31,7 +34,7 @@ class TransferServiceMultiThreadingTest {
     @Test
     void multipleTransfersBetweenAccountsInParallelResultInAccurateBalancesOnBothSides() throws ExecutionException, InterruptedException, TimeoutException {
         AccountsRepository accountsRepository = mock(AccountsRepository.class);
-        TransferService transferService = new TransferService(accountsRepository, mock(WithdrawalService.class), mock(ExternalTransferMonitoringService.class));
+        TransferService transferService = new TransferService(accountsRepository, mock(WithdrawalService.class), mock(AsyncWithdrawalService.class), mock(ExternalTransferMonitoringService.class), new OrderedLockingTransferEngine(), Journal.NONE, new MetricsRegistry());
 
         Account sender = new Account(1l, BigDecimal.valueOf(2000));
         Account receiver = new Account(2l);
@@ -100,7 +103,7 @@ class TransferServiceMultiThreadingTest {
         WithdrawalServiceWithSimulatedDelay withdrawalService = new WithdrawalServiceWithSimulatedDelay(PROCESSING, 100, 200);
         AccountsRepository accountsRepository = new AccountsRepository();
         Config config = new Config(MONITORING_DELAY_IN_MILLIS, NUMBER_OF_THREADS);
-        TransferService transferService = new TransferService(accountsRepository, withdrawalService, new ExternalTransferMonitoringService(withdrawalService, config));
+        TransferService transferService = new TransferService(accountsRepository, withdrawalService, new ExecutorAsyncWithdrawalService(withdrawalService, executorService), new ExternalTransferMonitoringService(withdrawalService, config), new OrderedLockingTransferEngine(), Journal.NONE, new MetricsRegistry());
 
         Account sender = accountsRepository.createNew(BigDecimal.valueOf(10000));
 
@@ -124,7 +127,7 @@ class TransferServiceMultiThreadingTest {
     @Test
     void multipleParallelTransfersBetweenSameTwoAccountsDoNoCauseDeadlock() throws ExecutionException, InterruptedException, TimeoutException {
         AccountsRepository accountsRepository = mock(AccountsRepository.class);
-        TransferService transferService = new TransferService(accountsRepository, mock(WithdrawalService.class), mock(ExternalTransferMonitoringService.class));
+        TransferService transferService = new TransferService(accountsRepository, mock(WithdrawalService.class), mock(AsyncWithdrawalService.class), mock(ExternalTransferMonitoringService.class), new OrderedLockingTransferEngine(), Journal.NONE, new MetricsRegistry());
 
         Account account1 = new Account(1l, BigDecimal.valueOf(2000));
         Account account2 = new Account(2l, BigDecimal.valueOf(4000));
@@ -151,7 +154,7 @@ class TransferServiceMultiThreadingTest {
         WithdrawalServiceWithSimulatedDelay withdrawalService = new WithdrawalServiceWithSimulatedDelay(100, 200);
         AccountsRepository accountsRepository = new AccountsRepository();
         Config config = new Config(MONITORING_DELAY_IN_MILLIS, NUMBER_OF_THREADS);
-        TransferService transferService = new TransferService(accountsRepository, withdrawalService, new ExternalTransferMonitoringService(withdrawalService, config));
+        TransferService transferService = new TransferService(accountsRepository, withdrawalService, new ExecutorAsyncWithdrawalService(withdrawalService, executorService), new ExternalTransferMonitoringService(withdrawalService, config), new OrderedLockingTransferEngine(), Journal.NONE, new MetricsRegistry());
 
         Account sender = accountsRepository.createNew(BigDecimal.valueOf(10000));
 
@@ -3,24 +3,52 @@ package com.jairo.accounts.service;
 import com.jairo.accounts.domain.Account;
 import com.jairo.accounts.domain.RequestedExternalWithdrawal;
 import com.jairo.accounts.domain.TransferId;
+import com.jairo.accounts.domain.WithdrawalHistory;
+import com.jairo.accounts.endpoints.dto.ExternalTransferDetails;
+import com.jairo.accounts.endpoints.dto.ExternalTransfersPage;
+import com.jairo.accounts.endpoints.dto.InternalTransferDTO;
+import com.jairo.accounts.endpoints.dto.TransferResultDTO;
 import com.jairo.accounts.exception.NotSufficientFundsException;
+import com.jairo.accounts.exception.TransferIdNotFoundException;
 import com.jairo.accounts.repository.AccountsRepository;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalRequested;
+import com.jairo.accounts.repository.journal.JournalEvent.WithdrawalStateChanged;
+import com.jairo.accounts.service.TransferService.BatchMode;
 import com.jairo.accounts.service.WithdrawalService.Address;
 import com.jairo.accounts.service.WithdrawalService.WithdrawalId;
+import com.jairo.accounts.service.config.Config;
+import com.jairo.accounts.service.config.RetentionPolicy;
+import com.jairo.accounts.service.engine.OrderedLockingTransferEngine;
+import com.jairo.accounts.service.engine.TransferEngine;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
 import org.assertj.core.groups.Tuple;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.COMPLETED;
 import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.FAILED;
 import static com.jairo.accounts.service.WithdrawalService.WithdrawalState.PROCESSING;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.*;
@@ -33,7 +61,15 @@ class TransferServiceTest {
     @Mock
     private WithdrawalService withdrawalService;
     @Mock
+    private AsyncWithdrawalService asyncWithdrawalService;
+    @Mock
     private ExternalTransferMonitoringService externalTransferMonitoringService;
+    @Spy
+    private TransferEngine transferEngine = new OrderedLockingTransferEngine();
+    @Mock
+    private Journal journal;
+    @Spy
+    private MetricsRegistry metricsRegistry = new MetricsRegistry();
 
     @InjectMocks
     private TransferService transferService;
@@ -96,6 +132,61 @@ class TransferServiceTest {
         verify(externalTransferMonitoringService).initiateResponseMonitoring(same(sender), any(WithdrawalId.class));
     }
 
+    @Test
+    void transferToAddressIsDurableBeforeWithdrawalIsRequestedAndItsFailureIsJournaled() {
+        Account sender = new Account(1l, BigDecimal.valueOf(100));
+        Address receiverAddress = new Address("receiver");
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(sender));
+        doThrow(new RuntimeException("Error connecting to external withdrawal service")).when(withdrawalService)
+                .requestWithdrawal(any(WithdrawalId.class), any(Address.class), any(BigDecimal.class));
+
+        assertThatExceptionOfType(RuntimeException.class).isThrownBy(() -> transferService.transfer(sender.getId(), receiverAddress, BigDecimal.TEN));
+
+        WithdrawalHistory.Entry entry = sender.getWithdrawalHistory().inRequestOrder(null, Long.MIN_VALUE, Long.MAX_VALUE).iterator().next();
+        UUID withdrawalId = entry.getWithdrawal().withdrawalId().value();
+        InOrder inOrder = inOrder(journal, withdrawalService);
+        inOrder.verify(journal).append(new WithdrawalRequested(1L, withdrawalId, BigDecimal.TEN, "receiver", entry.getRequestedAtInMillis()));
+        inOrder.verify(journal).awaitDurable();
+        inOrder.verify(withdrawalService).requestWithdrawal(any(WithdrawalId.class), any(Address.class), any(BigDecimal.class));
+        inOrder.verify(journal).append(new WithdrawalStateChanged(1L, withdrawalId, FAILED));
+    }
+
+    @Test
+    void transferToAddressNotDurableIsJournaledAsFailedAndReleasesFunds() {
+        Account sender = new Account(1l, BigDecimal.valueOf(100));
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(sender));
+        doThrow(new UncheckedIOException(new IOException("Disk full"))).when(journal).awaitDurable();
+
+        assertThatExceptionOfType(UncheckedIOException.class).isThrownBy(() -> transferService.transfer(sender.getId(), new Address("receiver"), BigDecimal.TEN));
+
+        UUID withdrawalId = sender.getWithdrawalHistory().inRequestOrder(null, Long.MIN_VALUE, Long.MAX_VALUE).iterator().next()
+                .getWithdrawal().withdrawalId().value();
+        verify(journal).append(new WithdrawalStateChanged(1L, withdrawalId, FAILED));
+        verify(withdrawalService, never()).requestWithdrawal(any(WithdrawalId.class), any(Address.class), any(BigDecimal.class));
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(100));
+    }
+
+    @Test
+    void transferToAddressFailureNotJournaledStillReleasesFundsAndThrowsWithdrawalServiceFailure() {
+        Account sender = new Account(1l, BigDecimal.valueOf(100));
+        RuntimeException withdrawalServiceFailure = new RuntimeException("Error connecting to external withdrawal service");
+        UncheckedIOException journalFailure = new UncheckedIOException(new IOException("Disk full"));
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(sender));
+        doThrow(withdrawalServiceFailure).when(withdrawalService)
+                .requestWithdrawal(any(WithdrawalId.class), any(Address.class), any(BigDecimal.class));
+        //the request itself is journaled
+        lenient().when(journal.append(any(WithdrawalStateChanged.class))).thenThrow(journalFailure);
+
+        assertThatThrownBy(() -> transferService.transfer(sender.getId(), new Address("receiver"), BigDecimal.TEN))
+                .isSameAs(withdrawalServiceFailure);
+
+        assertThat(withdrawalServiceFailure.getSuppressed()).containsExactly(journalFailure);
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(100));
+    }
+
     @Test
     void transferToAddressFailedAndBalanceRemainsUnChangedInSenderAndExternalRequestRegisteredAsFailedAndMonitoringNotInitiated() {
         Account sender = new Account(1l, BigDecimal.valueOf(100));
@@ -116,4 +207,238 @@ class TransferServiceTest {
         verifyNoInteractions(externalTransferMonitoringService);
     }
 
-}
\ No newline at end of file
+    @Test
+    void asyncTransferToAddressReservesFundsStraightAwayAndInitiatesMonitoringOnceRequestAccepted() {
+        Account sender = new Account(1l, BigDecimal.valueOf(100));
+        BigDecimal amountToWithdraw = BigDecimal.valueOf(95);
+        CompletableFuture<Void> withdrawalRequest = new CompletableFuture<>();
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(sender));
+        when(asyncWithdrawalService.requestWithdrawal(any(WithdrawalId.class), any(Address.class), any(BigDecimal.class))).thenReturn(withdrawalRequest);
+
+        CompletableFuture<TransferId> transfer = transferService.transferAsync(sender.getId(), new Address("receiver"), amountToWithdraw);
+
+        assertThat(transfer).isNotDone();
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(5));
+        assertThat(sender.getRequestedExternalWithdrawals().values()).extracting(RequestedExternalWithdrawal::amount, RequestedExternalWithdrawal::withdrawalState)
+                .containsExactlyInAnyOrder(Tuple.tuple(amountToWithdraw, PROCESSING));
+        verifyNoInteractions(externalTransferMonitoringService);
+
+        withdrawalRequest.complete(null);
+
+        assertThat(transfer.join().value()).isEqualTo(sender.getRequestedExternalWithdrawals().keySet().iterator().next().value());
+        verify(externalTransferMonitoringService).initiateResponseMonitoring(same(sender), any(WithdrawalId.class));
+        verifyNoInteractions(withdrawalService);
+    }
+
+    @Test
+    void asyncTransferToAddressFailedAndBalanceIsRolledBackInSenderAndExternalRequestRegisteredAsFailedAndMonitoringNotInitiated() {
+        Account sender = new Account(1l, BigDecimal.valueOf(100));
+        BigDecimal amountToWithdraw = BigDecimal.valueOf(95);
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(sender));
+        when(asyncWithdrawalService.requestWithdrawal(any(WithdrawalId.class), any(Address.class), any(BigDecimal.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Error connecting to external withdrawal service")));
+
+        CompletableFuture<TransferId> transfer = transferService.transferAsync(sender.getId(), new Address("receiver"), amountToWithdraw);
+
+        assertThat(transfer).isCompletedExceptionally();
+        assertThat(sender.getRequestedExternalWithdrawals().values()).extracting(RequestedExternalWithdrawal::amount, RequestedExternalWithdrawal::withdrawalState)
+                .containsExactlyInAnyOrder(Tuple.tuple(amountToWithdraw, FAILED));
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(100));
+        verifyNoInteractions(externalTransferMonitoringService);
+    }
+
+    @Test
+    void asyncTransferToAddressWithNotEnoughFundsFailsStraightAwayWithoutRequestingWithdrawal() {
+        Account sender = new Account(1l, BigDecimal.valueOf(100));
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(sender));
+
+        assertThatExceptionOfType(NotSufficientFundsException.class).isThrownBy(() ->
+                transferService.transferAsync(sender.getId(), new Address("receiver"), BigDecimal.valueOf(101)));
+        assertThat(sender.getRequestedExternalWithdrawals()).isEmpty();
+        verifyNoInteractions(asyncWithdrawalService, externalTransferMonitoringService);
+    }
+
+    @Test
+    void bestEffortBatchAppliesTransfersInOrderAndReportsFailedOnes() {
+        Account first = new Account(1l, BigDecimal.valueOf(100));
+        Account second = new Account(2l);
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(first));
+        when(accountsRepository.findById(2l)).thenReturn(Optional.of(second));
+        when(accountsRepository.findById(3l)).thenReturn(Optional.empty());
+
+        List<TransferResultDTO> results = transferService.transferBatch(List.of(
+                new InternalTransferDTO(1l, 2l, BigDecimal.valueOf(60)),
+                new InternalTransferDTO(1l, 2l, BigDecimal.valueOf(60)),
+                new InternalTransferDTO(2l, 3l, BigDecimal.valueOf(10)),
+                new InternalTransferDTO(2l, 1l, BigDecimal.valueOf(10))), BatchMode.BEST_EFFORT);
+
+        assertThat(results).extracting(TransferResultDTO::index, TransferResultDTO::status).containsExactly(
+                Tuple.tuple(0, "COMPLETED"), Tuple.tuple(1, "FAILED"), Tuple.tuple(2, "FAILED"), Tuple.tuple(3, "COMPLETED"));
+        assertThat(results.get(2).error()).isEqualTo("Account with id 3 not found");
+        assertThat(first.getBalance()).isEqualTo(BigDecimal.valueOf(50));
+        assertThat(second.getBalance()).isEqualTo(BigDecimal.valueOf(50));
+        //each account is looked up once for the whole batch
+        verify(accountsRepository).findById(1l);
+        verify(accountsRepository).findById(2l);
+    }
+
+    @Test
+    void allOrNothingBatchWithFailedTransferLeavesBalancesUnchanged() {
+        Account first = new Account(1l, BigDecimal.valueOf(100));
+        Account second = new Account(2l);
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(first));
+        when(accountsRepository.findById(2l)).thenReturn(Optional.of(second));
+
+        List<TransferResultDTO> results = transferService.transferBatch(List.of(
+                new InternalTransferDTO(1l, 2l, BigDecimal.valueOf(60)),
+                new InternalTransferDTO(2l, 1l, BigDecimal.valueOf(10)),
+                new InternalTransferDTO(1l, 2l, BigDecimal.valueOf(60)),
+                new InternalTransferDTO(2l, 1l, BigDecimal.valueOf(10))), BatchMode.ALL_OR_NOTHING);
+
+        assertThat(results).extracting(TransferResultDTO::status).containsExactly("NOT_APPLIED", "NOT_APPLIED", "FAILED", "NOT_APPLIED");
+        assertThat(first.getBalance()).isEqualTo(BigDecimal.valueOf(100));
+        assertThat(second.getBalance()).isZero();
+    }
+
+    @Test
+    void allOrNothingBatchWithInvalidTransferAppliesNothing() {
+        Account first = new Account(1l, BigDecimal.valueOf(100));
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(first));
+        when(accountsRepository.findById(2l)).thenReturn(Optional.of(new Account(2l)));
+
+        List<TransferResultDTO> results = transferService.transferBatch(List.of(
+                new InternalTransferDTO(1l, 2l, BigDecimal.valueOf(60)),
+                new InternalTransferDTO(1l, 1l, BigDecimal.valueOf(10))), BatchMode.ALL_OR_NOTHING);
+
+        assertThat(results).extracting(TransferResultDTO::status).containsExactly("NOT_APPLIED", "FAILED");
+        assertThat(first.getBalance()).isEqualTo(BigDecimal.valueOf(100));
+        verifyNoInteractions(transferEngine);
+    }
+
+    @Test
+    void externalTransferIsIndexedAndFoundWithOrWithoutItsAccount() {
+        Account sender = new Account(1l, BigDecimal.valueOf(100));
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(sender));
+
+        TransferId transferId = transferService.transfer(sender.getId(), new Address("receiver"), BigDecimal.TEN);
+        verify(accountsRepository).indexExternalTransfer(transferId, 1l);
+        when(accountsRepository.findByExternalTransferId(transferId)).thenReturn(Optional.of(sender));
+
+        ExternalTransferDetails transfer = transferService.getExternalTransfer(1l, transferId);
+        assertThat(transfer).isEqualTo(new ExternalTransferDetails(transferId.value(), BigDecimal.TEN, "PROCESSING", "receiver", transfer.requestedAtInMillis()));
+        assertThat(transferService.getExternalTransfer(transferId)).isEqualTo(transfer);
+    }
+
+    @Test
+    void readingExternalTransfersOfAccountWhichNeverWithdrewDoesNotAllocateItsHistory() {
+        Account account = new Account(1l, BigDecimal.valueOf(100));
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(account));
+
+        assertThat(transferService.getExternalTransfers(1l)).isEmpty();
+        assertThat(transferService.getExternalTransfers(1l, new ExternalTransfersQuery(null, Set.of(), Long.MIN_VALUE, Long.MAX_VALUE, 10)).transfers()).isEmpty();
+        assertThatExceptionOfType(TransferIdNotFoundException.class)
+                .isThrownBy(() -> transferService.getExternalTransfer(1l, new TransferId(UUID.randomUUID())));
+        assertThat(account.hasWithdrawalHistory()).isFalse();
+    }
+
+    @Test
+    void unknownExternalTransferIsNotFound() {
+        Account account = new Account(1l, BigDecimal.valueOf(100));
+        TransferId transferId = new TransferId(UUID.randomUUID());
+
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(account));
+        when(accountsRepository.findByExternalTransferId(transferId)).thenReturn(Optional.empty());
+
+        assertThatExceptionOfType(TransferIdNotFoundException.class).isThrownBy(() -> transferService.getExternalTransfer(1l, transferId));
+        assertThatExceptionOfType(TransferIdNotFoundException.class).isThrownBy(() -> transferService.getExternalTransfer(transferId));
+    }
+
+    @Test
+    void externalTransfersArePagedInRequestOrderAndFilteredByStatus() {
+        Account sender = new Account(1l, BigDecimal.valueOf(100));
+        when(accountsRepository.findById(1l)).thenReturn(Optional.of(sender));
+        for (int i = 0; i < 5; i++) {
+            WithdrawalId withdrawalId = new WithdrawalId(UUID.randomUUID());
+            sender.requestWithdrawal(BigDecimal.valueOf(i + 1), withdrawalId, new Address("address-" + i));
+            if (i % 2 == 0) {
+                sender.completeWithdrawal(withdrawalId);
+            }
+        }
+
+        ExternalTransfersQuery firstPageQuery = new ExternalTransfersQuery(null, Set.of(COMPLETED), Long.MIN_VALUE, Long.MAX_VALUE, 2);
+        ExternalTransfersPage firstPage = transferService.getExternalTransfers(1l, firstPageQuery);
+        assertThat(firstPage.transfers()).extracting(ExternalTransferDetails::address).containsExactly("address-0", "address-2");
+        assertThat(firstPage.nextCursor()).isNotNull();
+
+        ExternalTransfersQuery secondPageQuery = new ExternalTransfersQuery(WithdrawalHistory.Cursor.parse(firstPage.nextCursor()),
+                Set.of(COMPLETED), Long.MIN_VALUE, Long.MAX_VALUE, 2);
+        ExternalTransfersPage secondPage = transferService.getExternalTransfers(1l, secondPageQuery);
+        assertThat(secondPage.transfers()).extracting(ExternalTransferDetails::address).containsExactly("address-4");
+        assertThat(secondPage.nextCursor()).isNull();
+
+        assertThat(transferService.streamExternalTransfers(1l, ExternalTransfersQuery.all())).extracting(ExternalTransferDetails::address)
+                .containsExactly("address-0", "address-1", "address-2", "address-3", "address-4");
+    }
+
+    @Test
+    void archivedExternalTransfersAreStillListedInRequestOrderThroughTheirAccount(@TempDir Path directory) {
+        RetentionPolicy retentionPolicy = new RetentionPolicy(RetentionPolicy.NO_MAX_AGE, 1, directory.resolve("archive"), 1000);
+        AccountsRepository repository = new AccountsRepository(Config.builder().retentionPolicy(retentionPolicy).build());
+        TransferService service = new TransferService(repository, withdrawalService, asyncWithdrawalService, externalTransferMonitoringService, transferEngine, journal, new MetricsRegistry());
+        Account sender = repository.createNew(BigDecimal.valueOf(100));
+        List<TransferId> transferIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            transferIds.add(service.transfer(sender.getId(), new Address("address-" + i), BigDecimal.ONE));
+            if (i != 1) {
+                sender.completeWithdrawal(new WithdrawalId(transferIds.get(i).value()));
+            }
+        }
+
+        //the newest completed withdrawal and the processing one stay on the heap
+        assertThat(repository.archiveSettledWithdrawals(retentionPolicy, System.currentTimeMillis())).isEqualTo(2);
+        assertThat(sender.getWithdrawalHistory().size()).isEqualTo(2);
+
+        assertThat(service.getExternalTransfers(sender.getId())).extracting(ExternalTransferDetails::address, ExternalTransferDetails::status)
+                .containsExactly(Tuple.tuple("address-0", "COMPLETED"), Tuple.tuple("address-1", "PROCESSING"),
+                        Tuple.tuple("address-2", "COMPLETED"), Tuple.tuple("address-3", "COMPLETED"));
+        ExternalTransfersPage firstPage = service.getExternalTransfers(sender.getId(),
+                new ExternalTransfersQuery(null, Set.of(), Long.MIN_VALUE, Long.MAX_VALUE, 2));
+        ExternalTransfersPage secondPage = service.getExternalTransfers(sender.getId(),
+                new ExternalTransfersQuery(WithdrawalHistory.Cursor.parse(firstPage.nextCursor()), Set.of(), Long.MIN_VALUE, Long.MAX_VALUE, 2));
+        assertThat(secondPage.transfers()).extracting(ExternalTransferDetails::address).containsExactly("address-2", "address-3");
+        assertThat(service.getExternalTransfer(sender.getId(), transferIds.get(0)).status()).isEqualTo("COMPLETED");
+        //archived transfers are no longer indexed by id
+        assertThatExceptionOfType(TransferIdNotFoundException.class).isThrownBy(() -> service.getExternalTransfer(transferIds.get(0)));
+    }
+
+    @Test
+    void withdrawalsArchivedByPreviousRunAreNotListedForNewAccountsOfInMemoryStore(@TempDir Path directory) {
+        RetentionPolicy retentionPolicy = new RetentionPolicy(RetentionPolicy.NO_MAX_AGE, 1, directory.resolve("archive"), 1000);
+        Config config = Config.builder().retentionPolicy(retentionPolicy).build();
+        AccountsRepository previousRun = new AccountsRepository(config);
+        TransferService previousService = new TransferService(previousRun, withdrawalService, asyncWithdrawalService, externalTransferMonitoringService, transferEngine, journal, new MetricsRegistry());
+        Account previousSender = previousRun.createNew(BigDecimal.valueOf(100));
+        TransferId transferId = previousService.transfer(previousSender.getId(), new Address("address-0"), BigDecimal.ONE);
+        previousSender.completeWithdrawal(new WithdrawalId(transferId.value()));
+        TransferId newestTransferId = previousService.transfer(previousSender.getId(), new Address("address-1"), BigDecimal.ONE);
+        previousSender.completeWithdrawal(new WithdrawalId(newestTransferId.value()));
+        assertThat(previousRun.archiveSettledWithdrawals(retentionPolicy, System.currentTimeMillis())).isEqualTo(1);
+
+        //accounts aren't persisted, ids start over
+        AccountsRepository restarted = new AccountsRepository(config);
+        TransferService service = new TransferService(restarted, withdrawalService, asyncWithdrawalService, externalTransferMonitoringService, transferEngine, journal, new MetricsRegistry());
+        Account newAccount = restarted.createNew(BigDecimal.TEN);
+
+        assertThat(newAccount.getId()).isEqualTo(previousSender.getId());
+        assertThat(service.getExternalTransfers(newAccount.getId())).isEmpty();
+        assertThat(restarted.findArchivedWithdrawal(newAccount.getId(), new WithdrawalId(transferId.value())).isPresent()).isFalse();
+    }
+}
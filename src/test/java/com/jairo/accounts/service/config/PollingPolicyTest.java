@@ -0,0 +1,47 @@
+package com.jairo.accounts.service.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class PollingPolicyTest {
+
+    @Test
+    void delayGrowsExponentiallyUpToMaxDelay() {
+        PollingPolicy pollingPolicy = new PollingPolicy(100, 2, 1000, 0, 0);
+
+        assertThat(pollingPolicy.delayInMillis(0, 0.5)).isEqualTo(100);
+        assertThat(pollingPolicy.delayInMillis(1, 0.5)).isEqualTo(200);
+        assertThat(pollingPolicy.delayInMillis(3, 0.5)).isEqualTo(800);
+        assertThat(pollingPolicy.delayInMillis(4, 0.5)).isEqualTo(1000);
+        assertThat(pollingPolicy.delayInMillis(100, 0.5)).isEqualTo(1000);
+    }
+
+    @Test
+    void jitterSpreadsDelayAroundItsNominalValue() {
+        PollingPolicy pollingPolicy = new PollingPolicy(1000, 1, 1000, 0.1, 0);
+
+        assertThat(pollingPolicy.delayInMillis(0, 0)).isEqualTo(900);
+        assertThat(pollingPolicy.delayInMillis(0, 0.5)).isEqualTo(1000);
+        assertThat(pollingPolicy.delayInMillis(0, 0.99999)).isEqualTo(1100);
+    }
+
+    @Test
+    void fixedPolicyAlwaysPollsAtSameDelayAndHasNoMaxAge() {
+        PollingPolicy pollingPolicy = PollingPolicy.fixed(100);
+
+        assertThat(pollingPolicy.delayInMillis(0, 0.1)).isEqualTo(100);
+        assertThat(pollingPolicy.delayInMillis(50, 0.9)).isEqualTo(100);
+        assertThat(pollingPolicy.hasMaxAge()).isFalse();
+    }
+
+    @Test
+    void invalidPoliciesAreRejected() {
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new PollingPolicy(0, 2, 1000, 0, 0));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new PollingPolicy(100, 0.5, 1000, 0, 0));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new PollingPolicy(100, 2, 50, 0, 0));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new PollingPolicy(100, 2, 1000, 1, 0));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new PollingPolicy(100, 2, 1000, 0, -1));
+    }
+}
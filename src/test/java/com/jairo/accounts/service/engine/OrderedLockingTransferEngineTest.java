@@ -0,0 +1,268 @@
+package com.jairo.accounts.service.engine;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.FixedPointBalance;
+import com.jairo.accounts.exception.NotSufficientFundsException;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.repository.journal.JournalEvent.Transferred;
+import com.jairo.accounts.service.metrics.LockContentionProfiler;
+import com.jairo.accounts.service.metrics.MetricsRegistry;
+import com.jairo.accounts.service.metrics.SpaceSaving;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.jairo.accounts.service.engine.TransferOutcome.Status.COMPLETED;
+import static com.jairo.accounts.service.engine.TransferOutcome.Status.FAILED;
+import static com.jairo.accounts.service.engine.TransferOutcome.Status.NOT_APPLIED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderedLockingTransferEngineTest {
+
+    private final OrderedLockingTransferEngine transferEngine = new OrderedLockingTransferEngine();
+
+    @Test
+    void failedDepositToReceiverUndoesWithdrawalFromSender() {
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L, new FixedPointBalance(BigDecimal.valueOf(Long.MAX_VALUE), 0));
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> transferEngine.transfer(sender, receiver, BigDecimal.ONE));
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.valueOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void failedDepositIsJournaledAsReverseTransfer() {
+        Journal journal = mock(Journal.class);
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L, new FixedPointBalance(BigDecimal.valueOf(Long.MAX_VALUE), 0));
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new OrderedLockingTransferEngine(journal).transfer(sender, receiver, BigDecimal.ONE));
+
+        InOrder inOrder = inOrder(journal);
+        inOrder.verify(journal).append(new Transferred(1L, 2L, BigDecimal.ONE));
+        inOrder.verify(journal).append(new Transferred(2L, 1L, BigDecimal.ONE));
+    }
+
+    @Test
+    void failedDepositIsUndoneEvenIfReverseTransferCantBeJournaled() {
+        Journal journal = mock(Journal.class);
+        UncheckedIOException journalFailure = new UncheckedIOException(new IOException("Disk full"));
+        when(journal.append(any())).thenReturn(1L).thenThrow(journalFailure);
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L, new FixedPointBalance(BigDecimal.valueOf(Long.MAX_VALUE), 0));
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new OrderedLockingTransferEngine(journal).transfer(sender, receiver, BigDecimal.ONE))
+                .matches(e -> List.of(e.getSuppressed()).contains(journalFailure));
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.valueOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void transferNotJournaledIsUndone() {
+        Journal journal = mock(Journal.class);
+        doThrow(new UncheckedIOException(new IOException("Journal is closed"))).when(journal).append(any());
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L);
+
+        assertThatExceptionOfType(UncheckedIOException.class).isThrownBy(() -> new OrderedLockingTransferEngine(journal).transfer(sender, receiver, BigDecimal.ONE));
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    void notSufficientFundsIsNotJournaled() {
+        Journal journal = mock(Journal.class);
+
+        assertThatExceptionOfType(NotSufficientFundsException.class)
+                .isThrownBy(() -> new OrderedLockingTransferEngine(journal).transfer(new Account(1L, BigDecimal.TEN), new Account(2L), BigDecimal.valueOf(11)));
+
+        verify(journal, never()).append(any());
+    }
+
+    @Test
+    void notSufficientFundsLeavesBothAccountsUnchanged() {
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L);
+
+        assertThatExceptionOfType(NotSufficientFundsException.class).isThrownBy(() -> transferEngine.transfer(sender, receiver, BigDecimal.valueOf(11)));
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    void bestEffortBatchTouchingMoreAccountsThanLockedAtOnceAppliesEveryTransfer() {
+        List<Account> accounts = new ArrayList<>();
+        List<Transfer> transfers = new ArrayList<>();
+        for (long id = 0; id < 200; id++) {
+            accounts.add(new Account(id, BigDecimal.ONE));
+        }
+        for (int i = 0; i < accounts.size(); i++) {
+            transfers.add(new Transfer(accounts.get(i), accounts.get((i + 1) % accounts.size()), BigDecimal.ONE));
+        }
+
+        assertThat(transferEngine.transferBatch(transfers, false)).extracting(TransferOutcome::status).containsOnly(COMPLETED).hasSize(200);
+        assertThat(accounts).extracting(Account::getBalance).containsOnly(BigDecimal.ONE);
+    }
+
+    @Test
+    void allOrNothingBatchRollsBackAppliedTransfersWhenOneFails() {
+        Account first = new Account(1L, BigDecimal.TEN);
+        Account second = new Account(2L);
+        Account third = new Account(3L);
+
+        List<TransferOutcome> outcomes = transferEngine.transferBatch(List.of(
+                new Transfer(first, second, BigDecimal.TEN),
+                new Transfer(second, third, BigDecimal.ONE),
+                new Transfer(first, third, BigDecimal.ONE),
+                new Transfer(third, first, BigDecimal.ONE)), true);
+
+        assertThat(outcomes).extracting(TransferOutcome::status).containsExactly(NOT_APPLIED, NOT_APPLIED, FAILED, NOT_APPLIED);
+        assertThat(outcomes.get(2).failure()).isInstanceOf(NotSufficientFundsException.class);
+        assertThat(transferEngine.getBalances(List.of(first, second, third)).values())
+                .containsExactly(BigDecimal.TEN, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    @Test
+    void allOrNothingBatchFailingOnceAppliedReversesAppliedTransfersBeforeReleasingLocks() {
+        Journal journal = mock(Journal.class);
+        Account first = new Account(1L, BigDecimal.TEN);
+        Account second = new Account(2L);
+        //second transfer fails once first account has been debited
+        Account third = new Account(3L, new FixedPointBalance(BigDecimal.valueOf(Long.MAX_VALUE), 0));
+
+        List<TransferOutcome> outcomes = new OrderedLockingTransferEngine(journal).transferBatch(List.of(
+                new Transfer(first, second, BigDecimal.ONE),
+                new Transfer(first, third, BigDecimal.ONE)), true);
+
+        assertThat(outcomes).extracting(TransferOutcome::status).containsExactly(NOT_APPLIED, FAILED);
+        assertThat(first.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(second.getBalance()).isEqualTo(BigDecimal.ZERO);
+        InOrder inOrder = inOrder(journal);
+        inOrder.verify(journal).append(new Transferred(1L, 2L, BigDecimal.ONE));
+        inOrder.verify(journal).append(new Transferred(1L, 3L, BigDecimal.ONE));
+        inOrder.verify(journal).append(new Transferred(3L, 1L, BigDecimal.ONE));
+        inOrder.verify(journal).append(new Transferred(2L, 1L, BigDecimal.ONE));
+    }
+
+    @Test
+    void allOrNothingBatchTouchingMoreAccountsThanLockedAtOnceIsRejected() {
+        List<Account> accounts = new ArrayList<>();
+        List<Transfer> transfers = new ArrayList<>();
+        for (long id = 0; id < 65; id++) {
+            accounts.add(new Account(id, BigDecimal.ONE));
+        }
+        for (int i = 0; i < accounts.size(); i++) {
+            transfers.add(new Transfer(accounts.get(i), accounts.get((i + 1) % accounts.size()), BigDecimal.ONE));
+        }
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> transferEngine.transferBatch(transfers, true));
+        assertThat(transferEngine.transferBatch(transfers.subList(0, 63), true)).extracting(TransferOutcome::status).containsOnly(COMPLETED);
+    }
+
+    @Test
+    void allOrNothingBatchIsNeverSeenHalfApplied() throws Exception {
+        Account first = new Account(1L, BigDecimal.valueOf(1_000));
+        Account second = new Account(2L, BigDecimal.valueOf(1_000));
+        Account third = new Account(3L, BigDecimal.valueOf(1_000));
+        //second account is drained then refilled by each batch, the last transfer of every other batch fails
+        List<Transfer> applied = List.of(new Transfer(second, third, BigDecimal.valueOf(1_000)), new Transfer(first, second, BigDecimal.valueOf(1_000)),
+                new Transfer(third, first, BigDecimal.valueOf(1_000)));
+        List<Transfer> failing = List.of(new Transfer(second, third, BigDecimal.valueOf(1_000)), new Transfer(first, second, BigDecimal.valueOf(1_000)),
+                new Transfer(third, first, BigDecimal.valueOf(2_001)));
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Void> batches = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    transferEngine.transferBatch(i % 2 == 0 ? applied : failing, true);
+                }
+                done.set(true);
+            }, executor);
+            while (!done.get()) {
+                assertThat(transferEngine.getBalances(List.of(first, second, third)).values()).containsOnly(BigDecimal.valueOf(1_000));
+            }
+            batches.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lockProfilerReportsAccountLockedByEveryTransferAsHottest() {
+        LockContentionProfiler profiler = new LockContentionProfiler(1, 4);
+        OrderedLockingTransferEngine engine = new OrderedLockingTransferEngine(Journal.NONE, new MetricsRegistry(), profiler);
+        Account hotAccount = new Account(0L, BigDecimal.valueOf(1_000));
+        for (long id = 1; id <= 100; id++) {
+            engine.transfer(hotAccount, new Account(id), BigDecimal.ONE);
+        }
+        engine.transferBatch(List.of(new Transfer(hotAccount, new Account(101L), BigDecimal.ONE)), false);
+
+        LockContentionProfiler.Report report = profiler.report();
+        //a batch locks its accounts for the chunk, then again (reentrantly) for each transfer
+        assertThat(report.sampledAcquisitions()).isEqualTo(204);
+        //only 4 accounts tracked out of 102
+        assertThat(report.mostLocked()).hasSize(4);
+        SpaceSaving.Entry hottest = report.mostLocked().get(0);
+        assertThat(hottest.item()).isEqualTo(0L);
+        assertThat(hottest.weight() - hottest.error()).isGreaterThanOrEqualTo(102);
+    }
+
+    @Test
+    void concurrentTransfersInBothDirectionsNeverShowMoneyInFlight() throws Exception {
+        List<Account> accounts = List.of(new Account(1L, BigDecimal.valueOf(1000)), new Account(2L, BigDecimal.valueOf(1000)),
+                new Account(3L, BigDecimal.valueOf(1000)));
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        AtomicBoolean inconsistentReadSeen = new AtomicBoolean();
+
+        CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+        for (int i = 0; i < completableFutures.length; i++) {
+            completableFutures[i] = CompletableFuture.runAsync(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 10_000; j++) {
+                    Account sender = accounts.get(random.nextInt(accounts.size()));
+                    Account receiver = accounts.get((accounts.indexOf(sender) + 1 + random.nextInt(accounts.size() - 1)) % accounts.size());
+                    try {
+                        transferEngine.transfer(sender, receiver, BigDecimal.ONE);
+                    } catch (NotSufficientFundsException e) {
+                        //fine, only the total matters
+                    }
+                    BigDecimal total = transferEngine.getBalances(accounts).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+                    if (total.compareTo(BigDecimal.valueOf(3000)) != 0) {
+                        inconsistentReadSeen.set(true);
+                    }
+                }
+            }, executorService);
+        }
+        CompletableFuture.allOf(completableFutures).get(30, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        assertThat(inconsistentReadSeen.get()).isFalse();
+        assertThat(transferEngine.getBalances(accounts).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualByComparingTo(BigDecimal.valueOf(3000));
+    }
+}
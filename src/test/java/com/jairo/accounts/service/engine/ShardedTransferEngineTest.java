@@ -0,0 +1,185 @@
+package com.jairo.accounts.service.engine;
+
+import com.jairo.accounts.domain.Account;
+import com.jairo.accounts.domain.FixedPointBalance;
+import com.jairo.accounts.exception.NotSufficientFundsException;
+import com.jairo.accounts.repository.journal.Journal;
+import com.jairo.accounts.service.config.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardedTransferEngineTest {
+
+    //accounts are assigned to shards by id modulo number of shards
+    private final ShardedTransferEngine transferEngine = new ShardedTransferEngine(config(), Journal.NONE);
+
+    private static Config config() {
+        return Config.builder().shardedTransferEngine(2).transferRingBufferSize(16).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferEngine.shutdown();
+    }
+
+    @Test
+    void transferWithinShard() {
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(3L);
+
+        transferEngine.transfer(sender, receiver, BigDecimal.ONE);
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(9));
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.ONE);
+    }
+
+    @Test
+    void transferAcrossShardsIsCreditedBeforeReturning() {
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L);
+
+        transferEngine.transfer(sender, receiver, BigDecimal.ONE);
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(9));
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.ONE);
+    }
+
+    @Test
+    void notSufficientFundsIsThrownToCallerAndBothAccountsAreUnchanged() {
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L);
+
+        assertThatExceptionOfType(NotSufficientFundsException.class).isThrownBy(() -> transferEngine.transfer(sender, receiver, BigDecimal.valueOf(11)));
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    void allOrNothingBatchIsRejectedWithoutApplyingAnything() {
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> transferEngine.transferBatch(List.of(new Transfer(sender, receiver, BigDecimal.ONE)), true));
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    void failedCreditAcrossShardsIsRefundedToSender() {
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L, new FixedPointBalance(BigDecimal.valueOf(Long.MAX_VALUE), 0));
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> transferEngine.transfer(sender, receiver, BigDecimal.ONE));
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.valueOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void failedCreditIsRefundedToSenderEvenIfReverseTransferCantBeJournaled() {
+        Journal journal = mock(Journal.class);
+        UncheckedIOException journalFailure = new UncheckedIOException(new IOException("Disk full"));
+        when(journal.append(any())).thenReturn(1L).thenThrow(journalFailure);
+        ShardedTransferEngine journaledEngine = new ShardedTransferEngine(config(), journal);
+        Account sender = new Account(1L, BigDecimal.TEN);
+        Account receiver = new Account(2L, new FixedPointBalance(BigDecimal.valueOf(Long.MAX_VALUE), 0));
+        try {
+            assertThatExceptionOfType(IllegalArgumentException.class)
+                    .isThrownBy(() -> journaledEngine.transfer(sender, receiver, BigDecimal.ONE))
+                    .matches(e -> List.of(e.getSuppressed()).contains(journalFailure));
+        } finally {
+            journaledEngine.shutdown();
+        }
+
+        assertThat(sender.getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(receiver.getBalance()).isEqualTo(BigDecimal.valueOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void concurrentTransfersBetweenRandomAccountsKeepTotalBalance() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            accounts.add(new Account(id, BigDecimal.valueOf(100)));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        CompletableFuture<?>[] completableFutures = new CompletableFuture[8];
+        for (int i = 0; i < completableFutures.length; i++) {
+            completableFutures[i] = CompletableFuture.runAsync(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 5_000; j++) {
+                    int sender = random.nextInt(accounts.size());
+                    int receiver = (sender + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+                    try {
+                        transferEngine.transfer(accounts.get(sender), accounts.get(receiver), BigDecimal.valueOf(random.nextInt(1, 20)));
+                    } catch (NotSufficientFundsException e) {
+                        //fine, only the total matters
+                    }
+                }
+            }, executorService);
+        }
+        CompletableFuture.allOf(completableFutures).get(30, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        assertThat(transferEngine.getBalances(accounts).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualTo(BigDecimal.valueOf(1000));
+        assertThat(accounts).allMatch(account -> account.getBalance().signum() >= 0);
+    }
+
+    @Test
+    void shardParkingRightAwayNeverMissesAWakeup() throws Exception {
+        //a single shard parking after 1 idle spin, so it parks and is woken up around almost every transfer
+        ShardedTransferEngine parkingEngine = new ShardedTransferEngine(1, 4, Journal.NONE, 1);
+        List<Account> accounts = new ArrayList<>();
+        for (long id = 1; id <= 4; id++) {
+            accounts.add(new Account(id, BigDecimal.valueOf(1_000_000)));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        try {
+            CompletableFuture<?>[] completableFutures = new CompletableFuture[16];
+            for (int i = 0; i < completableFutures.length; i++) {
+                completableFutures[i] = CompletableFuture.runAsync(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int j = 0; j < 2_000; j++) {
+                        int sender = random.nextInt(accounts.size());
+                        int receiver = (sender + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+                        parkingEngine.transfer(accounts.get(sender), accounts.get(receiver), BigDecimal.ONE);
+                        if (random.nextInt(16) == 0) {
+                            //lets the shard go idle and park before the next transfer
+                            LockSupport.parkNanos(10_000);
+                        }
+                    }
+                }, executorService);
+            }
+            //a lost wakeup would leave a transfer waiting for the next one, and the last ones forever
+            CompletableFuture.allOf(completableFutures).get(60, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdownNow();
+            parkingEngine.shutdown();
+        }
+
+        assertThat(parkingEngine.getBalances(accounts).values().stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualTo(BigDecimal.valueOf(4_000_000));
+    }
+}
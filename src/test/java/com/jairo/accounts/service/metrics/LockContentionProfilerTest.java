@@ -0,0 +1,63 @@
+package com.jairo.accounts.service.metrics;
+
+import com.jairo.accounts.service.config.Config.TransferEngineType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LockContentionProfilerTest {
+
+    @Test
+    void acquisitionsRecordedByManyThreadsAreAllReported() throws Exception {
+        LockContentionProfiler profiler = new LockContentionProfiler(1, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Void>> threads = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                long coldAccount = 100 + thread;
+                threads.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        profiler.acquired(i % 2 == 0 ? 0L : coldAccount, 3);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(threads.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LockContentionProfiler.Report report = profiler.report();
+        assertThat(report.transferEngine()).isEqualTo(TransferEngineType.ORDERED_LOCKING);
+        assertThat(report.sampledAcquisitions()).isEqualTo(80_000);
+        assertThat(report.sampledWaitInNanos()).isEqualTo(240_000);
+        SpaceSaving.Entry hottest = report.mostLocked().get(0);
+        assertThat(hottest.item()).isEqualTo(0L);
+        assertThat(hottest.weight()).isEqualTo(40_000);
+        assertThat(hottest.error()).isEqualTo(0);
+
+        profiler.reset();
+        assertThat(profiler.report().sampledAcquisitions()).isEqualTo(0);
+        assertThat(profiler.report().mostLocked()).isEmpty();
+    }
+
+    @Test
+    void isDisabledWithEnginesWhichDontLockAccounts() {
+        for (TransferEngineType transferEngine : List.of(TransferEngineType.SEQUENTIAL, TransferEngineType.SHARDED)) {
+            LockContentionProfiler profiler = new LockContentionProfiler(1, 10, transferEngine);
+            profiler.acquired(1L, 1);
+
+            assertThat(profiler.isEnabled()).isFalse();
+            LockContentionProfiler.Report report = profiler.report();
+            assertThat(report.transferEngine()).isEqualTo(transferEngine);
+            assertThat(report.sampleRate()).isEqualTo(0.0);
+            assertThat(report.sampledAcquisitions()).isEqualTo(0);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.jairo.accounts.service.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class MetricsRegistryTest {
+
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+    @Test
+    void writesCountersByLabels() {
+        metricsRegistry.counter("transfers_total", "Transfers", "result", "completed").add(3);
+        metricsRegistry.counter("transfers_total", "Transfers", "result", "failed").increment();
+        metricsRegistry.counter("transfers_total", "Transfers", "result", "completed").increment();
+
+        assertThat(metricsRegistry.write()).isEqualTo("""
+                # HELP transfers_total Transfers
+                # TYPE transfers_total counter
+                transfers_total{result="completed"} 4
+                transfers_total{result="failed"} 1
+                """);
+    }
+
+    @Test
+    void writesCumulativeHistogramBucketsInSeconds() {
+        Histogram histogram = metricsRegistry.histogram("duration_seconds", "Duration",
+                new long[]{Histogram.millis(1), Histogram.millis(10)}, "route", "/a");
+        histogram.record(Histogram.micros(500));
+        histogram.record(Histogram.millis(5));
+        histogram.record(Histogram.millis(5));
+        histogram.record(Histogram.seconds(1));
+
+        assertThat(metricsRegistry.write()).isEqualTo("""
+                # HELP duration_seconds Duration
+                # TYPE duration_seconds histogram
+                duration_seconds_bucket{route="/a",le="0.001"} 1
+                duration_seconds_bucket{route="/a",le="0.01"} 3
+                duration_seconds_bucket{route="/a",le="+Inf"} 4
+                duration_seconds_sum{route="/a"} 1.0105
+                duration_seconds_count{route="/a"} 4
+                """);
+    }
+
+    @Test
+    void readsGaugesWhenWritten() {
+        AtomicLong pending = new AtomicLong();
+        metricsRegistry.gauge("pending", "Pending", pending::get);
+        pending.set(42);
+
+        assertThat(metricsRegistry.write()).contains("# TYPE pending gauge\npending 42\n");
+    }
+
+    @Test
+    void escapesLabelValues() {
+        metricsRegistry.counter("errors_total", "Errors", "type", "a\"b\\c").increment();
+
+        assertThat(metricsRegistry.write()).contains("errors_total{type=\"a\\\"b\\\\c\"} 1\n");
+    }
+
+    @Test
+    void rejectsSameNameWithOtherType() {
+        metricsRegistry.counter("requests", "Requests");
+
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> metricsRegistry.histogram("requests", "Requests"));
+    }
+
+    @Test
+    void rejectsInvalidNamesAndLabels() {
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> metricsRegistry.counter("requests-total", "Requests"));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> metricsRegistry.counter("requests_total", "Requests", "route"));
+    }
+
+    @Test
+    void rejectsDecreasingBuckets() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> metricsRegistry.histogram("duration_seconds", "Duration", new long[]{Histogram.millis(2), Histogram.millis(1)}));
+    }
+
+    @Test
+    void recordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Counter counter = metricsRegistry.counter("transfers_total", "Transfers");
+        Histogram histogram = metricsRegistry.histogram("duration_seconds", "Duration");
+        //warm up so recording is compiled and escape analysis applies
+        for (int i = 0; i < 100_000; i++) {
+            counter.increment();
+            histogram.record(i * 1000L);
+        }
+
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            counter.increment();
+            histogram.record(i * 1000L);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        assertThat(counter.get()).isEqualTo(200_000);
+        assertThat(histogram.getCount()).isEqualTo(200_000);
+        //a few bytes for the probe itself, allocating recordings would take megabytes
+        assertThat(allocated).isLessThan(1024);
+    }
+}
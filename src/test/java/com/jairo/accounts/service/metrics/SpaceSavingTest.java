@@ -0,0 +1,127 @@
+package com.jairo.accounts.service.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class SpaceSavingTest {
+
+    @Test
+    void weightsAreExactWhileUnderCapacity() {
+        SpaceSaving sketch = new SpaceSaving(3);
+        sketch.add(1, 5);
+        sketch.add(2, 1);
+        sketch.add(1, 2);
+        sketch.add(3, 4);
+
+        assertThat(sketch.top()).containsExactly(new SpaceSaving.Entry(1, 7, 0), new SpaceSaving.Entry(3, 4, 0), new SpaceSaving.Entry(2, 1, 0));
+        assertThat(sketch.getTotalWeight()).isEqualTo(12);
+    }
+
+    @Test
+    void newItemReplacesLightestOneAndInheritsItsWeightAsError() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.add(1, 5);
+        sketch.add(2, 1);
+        sketch.add(3, 2);
+
+        assertThat(sketch.top()).containsExactly(new SpaceSaving.Entry(1, 5, 0), new SpaceSaving.Entry(3, 3, 1));
+    }
+
+    @Test
+    void heavyHittersAreFoundAmongManyMoreItemsWithinErrorBounds() {
+        SpaceSaving sketch = new SpaceSaving(20);
+        Map<Long, Long> exactWeights = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            //a third of the weight goes to 3 hot items, the rest is spread over 10K items
+            long item = random.nextInt(3) == 0 ? random.nextInt(3) : 3 + random.nextInt(10_000);
+            long weight = 1 + random.nextInt(10);
+            sketch.add(item, weight);
+            exactWeights.merge(item, weight, Long::sum);
+        }
+
+        List<SpaceSaving.Entry> top = sketch.top();
+        assertThat(top).hasSize(20);
+        assertThat(top.subList(0, 3)).extracting(SpaceSaving.Entry::item).containsOnly(0L, 1L, 2L);
+        for (SpaceSaving.Entry entry : top) {
+            long exactWeight = exactWeights.get(entry.item());
+            assertThat(entry.weight()).isGreaterThanOrEqualTo(exactWeight);
+            assertThat(entry.weight() - entry.error()).isLessThanOrEqualTo(exactWeight);
+        }
+    }
+
+    @Test
+    void mergedSketchesFindHeavyHittersOfBothStreamsWithinErrorBounds() {
+        SpaceSaving merged = new SpaceSaving(20);
+        SpaceSaving other = new SpaceSaving(20);
+        Map<Long, Long> exactWeights = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            //hot items 0 and 1 only in the first stream, 2 in both
+            boolean first = i % 2 == 0;
+            long item = random.nextInt(3) == 0 ? (first ? random.nextInt(3) : 2) : 3 + random.nextInt(10_000);
+            long weight = 1 + random.nextInt(10);
+            (first ? merged : other).add(item, weight);
+            exactWeights.merge(item, weight, Long::sum);
+        }
+        long totalWeight = merged.getTotalWeight() + other.getTotalWeight();
+
+        merged.merge(other);
+
+        List<SpaceSaving.Entry> top = merged.top();
+        assertThat(top).hasSize(20);
+        assertThat(top.subList(0, 3)).extracting(SpaceSaving.Entry::item).containsOnly(0L, 1L, 2L);
+        assertThat(top.get(0).item()).isEqualTo(2L);
+        assertThat(merged.getTotalWeight()).isEqualTo(totalWeight);
+        for (SpaceSaving.Entry entry : top) {
+            long exactWeight = exactWeights.get(entry.item());
+            assertThat(entry.weight()).isGreaterThanOrEqualTo(exactWeight);
+            assertThat(entry.weight() - entry.error()).isLessThanOrEqualTo(exactWeight);
+        }
+    }
+
+    @Test
+    void mergingIntoEmptySketchKeepsWeightsExact() {
+        SpaceSaving sketch = new SpaceSaving(3);
+        sketch.add(1, 5);
+        sketch.add(2, 1);
+        SpaceSaving merged = new SpaceSaving(3);
+
+        merged.merge(sketch);
+        merged.add(2, 1);
+
+        assertThat(merged.top()).containsExactly(new SpaceSaving.Entry(1, 5, 0), new SpaceSaving.Entry(2, 2, 0));
+    }
+
+    @Test
+    void ignoresWeightsNotGreaterThanZero() {
+        SpaceSaving sketch = new SpaceSaving(1);
+        sketch.add(1, 1);
+        sketch.add(2, 0);
+
+        assertThat(sketch.top()).containsExactly(new SpaceSaving.Entry(1, 1, 0));
+    }
+
+    @Test
+    void clearForgetsEveryItem() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.add(1, 1);
+        sketch.clear();
+        sketch.add(2, 1);
+
+        assertThat(sketch.top()).containsExactly(new SpaceSaving.Entry(2, 1, 0));
+        assertThat(sketch.getTotalWeight()).isEqualTo(1);
+    }
+
+    @Test
+    void capacityMustBeGreaterThanZero() {
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new SpaceSaving(0));
+    }
+}
@@ -0,0 +1,90 @@
+package com.jairo.accounts.service.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.awaitility.Awaitility.await;
+
+class HashedWheelSchedulerTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 0})
+    void classConstructorFailsIfIncorrectTickDurationProvided(int tickDuration) {
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new HashedWheelScheduler(tickDuration, TimeUnit.MILLISECONDS, 8, executorService));
+    }
+
+    @Test
+    void taskRunsOnExecutorNotBeforeItsDelay() throws InterruptedException {
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(10, TimeUnit.MILLISECONDS, 8, executorService);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong elapsed = new AtomicLong();
+        long start = System.nanoTime();
+
+        scheduler.schedule(() -> {
+            elapsed.set(System.nanoTime() - start);
+            latch.countDown();
+        }, 200, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(elapsed.get()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+        scheduler.shutdown();
+    }
+
+    @Test
+    void tasksWithDelayLongerThanWheelRotationRunAfterSeveralRounds() {
+        //wheel of 4 buckets of 10 millis, rotates every 40 millis
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(10, TimeUnit.MILLISECONDS, 4, executorService);
+        AtomicInteger executed = new AtomicInteger();
+        long start = System.nanoTime();
+
+        for (int delay = 0; delay < 300; delay += 3) {
+            scheduler.schedule(executed::incrementAndGet, delay, TimeUnit.MILLISECONDS);
+        }
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> executed.get() == 100);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(297));
+        scheduler.shutdown();
+    }
+
+    @Test
+    void cancelledTaskNeverRuns() {
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(10, TimeUnit.MILLISECONDS, 8, executorService);
+        AtomicInteger executed = new AtomicInteger();
+
+        Scheduler.Timeout cancelled = scheduler.schedule(() -> executed.addAndGet(100), 50, TimeUnit.MILLISECONDS);
+        scheduler.schedule(executed::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+
+        assertThat(cancelled.cancel()).isTrue();
+        assertThat(cancelled.cancel()).isFalse();
+        await().atMost(1, TimeUnit.SECONDS).until(() -> executed.get() > 0);
+        assertThat(executed.get()).isEqualTo(1);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void scheduleFailsOnceSchedulerIsShutDown() {
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(10, TimeUnit.MILLISECONDS, 8, executorService);
+        scheduler.shutdown();
+
+        assertThatExceptionOfType(RejectedExecutionException.class).isThrownBy(() -> scheduler.schedule(() -> {}, 10, TimeUnit.MILLISECONDS));
+    }
+}